@@ -0,0 +1,162 @@
+package com.tribalscale.test.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountStore;
+import com.tribalscale.test.service.impl.H2AccountStore;
+import com.tribalscale.test.service.impl.InMemoryAccountStore;
+import com.tribalscale.test.service.impl.MappedAccountStore;
+import com.tribalscale.test.service.impl.OffHeapAccountStore;
+import com.tribalscale.test.table.MappedAccountTable;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactories;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and balance updates of each {@link AccountStore}, the H2 one over a pool of connections to an in-memory
+ * database.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountStoreBenchmark {
+
+    @Param({"h2", "memory", "off-heap", "mapped"})
+    public String store;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private AccountStore accountStore;
+    private ConnectionPool connectionPool;
+    private Path mappedTable;
+
+    @State(Scope.Thread)
+    public static class Accounts {
+
+        private final SplittableRandom random = new SplittableRandom();
+
+        String next(int accounts) {
+            return Integer.toString(random.nextInt(accounts));
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        // The R2DBC driver logs every statement at debug level
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        var accountRepository = new InMemoryAccountRepository();
+        for (int i = 0; i < accounts; i++) {
+            accountRepository.save(account(i)).block();
+        }
+
+        switch (store) {
+            case "h2":
+                accountStore = new H2AccountStore(h2AccountRepository());
+                break;
+            case "memory":
+                var inMemoryAccountStore = new InMemoryAccountStore(new AccountRecovery(accountRepository, Optional.empty(), Optional.empty()));
+                inMemoryAccountStore.afterSingletonsInstantiated();
+                accountStore = inMemoryAccountStore;
+                break;
+            case "off-heap":
+                var properties = new MoneyTransferProperties();
+                properties.getAccounts().setOffHeapCapacity(accounts);
+                var offHeapAccountStore = new OffHeapAccountStore(new AccountRecovery(accountRepository, Optional.empty(), Optional.empty()), properties);
+                offHeapAccountStore.afterSingletonsInstantiated();
+                accountStore = offHeapAccountStore;
+                break;
+            case "mapped":
+                mappedTable = Files.createTempFile("accounts", ".table");
+                Files.delete(mappedTable);
+                var mappedAccountStore = new MappedAccountStore(accountRepository, new MappedAccountTable(mappedTable, accounts));
+                mappedAccountStore.afterSingletonsInstantiated();
+                accountStore = mappedAccountStore;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown store " + store);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (connectionPool != null) {
+            connectionPool.dispose();
+        }
+        if (accountStore instanceof MappedAccountStore) {
+            ((MappedAccountStore) accountStore).destroy();
+            Files.delete(mappedTable);
+        }
+    }
+
+    @Benchmark
+    public Account get(Accounts state) {
+        return accountStore.get(state.next(accounts)).block();
+    }
+
+    @Benchmark
+    public Integer debitAndCredit(Accounts state) {
+        return accountStore.debit(state.next(accounts), 100L)
+                .then(accountStore.credit(state.next(accounts), 100L))
+                .block();
+    }
+
+    private AccountRepository h2AccountRepository() {
+        connectionPool = (ConnectionPool) ConnectionFactories.get("r2dbc:pool:h2:mem:///accountstorebenchmark?options=DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                .populate(connectionPool)
+                .block();
+
+        var databaseClient = DatabaseClient.create(connectionPool);
+        databaseClient.sql("DELETE FROM ACCOUNT").then().block();
+        Flux.range(0, accounts)
+                .concatMap(i -> databaseClient.sql("INSERT INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) VALUES (:accountId, 'EUR', :balance)")
+                        .bind("accountId", Integer.toString(i))
+                        .bind("balance", Long.MAX_VALUE / 2)
+                        .then())
+                .blockLast();
+
+        return new R2dbcRepositoryFactory(new R2dbcEntityTemplate(connectionPool)).getRepository(AccountRepository.class);
+    }
+
+    private static Account account(int i) {
+        return Account.builder()
+                .accountId(Integer.toString(i))
+                .currency("EUR")
+                .balance(Long.MAX_VALUE / 2)
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.tribalscale.test.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.cache.AccountCache;
+import com.tribalscale.test.cache.AccountCurrencyCache;
+import com.tribalscale.test.commit.GroupCommit;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.fx.FxRateTable;
+import com.tribalscale.test.history.TransferHistory;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.journal.DisabledTransferJournal;
+import com.tribalscale.test.lane.AccountLanes;
+import com.tribalscale.test.lookup.AccountLookups;
+import com.tribalscale.test.metrics.TransferMetrics;
+import com.tribalscale.test.service.AccountTransferService;
+import com.tribalscale.test.service.impl.AccountTransferServiceImpl;
+import com.tribalscale.test.service.impl.InMemoryAccountStore;
+import com.tribalscale.test.service.impl.LedgerAccountTransferServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers and lookups through both engines, over the {@link InMemoryAccountRepository} and the
+ * {@link InMemoryAccountStore} loaded from it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountTransferServiceBenchmark {
+
+    @Param({"repository", "ledger"})
+    public String engine;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private AccountTransferService accountTransferService;
+    private LedgerAccountTransferServiceImpl ledger;
+
+    @State(Scope.Thread)
+    public static class Accounts {
+
+        private final SplittableRandom random = new SplittableRandom();
+
+        String next(int accounts) {
+            return Integer.toString(random.nextInt(accounts));
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        // The services log every call, which would be all there is to measure
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        var properties = new MoneyTransferProperties();
+        var fxRateTable = new FxRateTable(Path.of(properties.getFx().getRatesFile()), Duration.ZERO);
+        // Measures the engines alone, without the database round trip of the history
+        var transferHistory = new TransferHistory(null, false, 1);
+        var balanceUpdates = new BalanceUpdates(Duration.ZERO, Schedulers.parallel(), new SimpleMeterRegistry());
+        var accountRepository = new InMemoryAccountRepository();
+        for (int i = 0; i < accounts; i++) {
+            accountRepository.save(Account.builder()
+                    .accountId(Integer.toString(i))
+                    .currency("EUR")
+                    .balance(Long.MAX_VALUE / 2)
+                    .build())
+                    .block();
+        }
+
+        var accountRecovery = new AccountRecovery(accountRepository, Optional.empty(), Optional.empty());
+        if ("ledger".equals(engine)) {
+            ledger = new LedgerAccountTransferServiceImpl(accountRecovery, new DisabledTransferJournal(), transferHistory,
+                    balanceUpdates, fxRateTable, properties);
+            ledger.afterSingletonsInstantiated();
+            accountTransferService = ledger;
+        } else {
+            var accountStore = new InMemoryAccountStore(accountRecovery);
+            accountStore.afterSingletonsInstantiated();
+            accountTransferService = new AccountTransferServiceImpl(accountStore, new AccountCache(properties),
+                    new AccountCurrencyCache(properties), new AccountLookups(accountStore, Duration.ZERO, 1, Schedulers.parallel()),
+                    fxRateTable, new DisabledTransferJournal(), transferHistory, balanceUpdates, new TransferMetrics(new SimpleMeterRegistry()),
+                    new AccountLanes(properties, new SimpleMeterRegistry()),
+                    new GroupCommit(new NoTransactionalOperator(), false, 1, Duration.ZERO, Schedulers.parallel(), new SimpleMeterRegistry()),
+                    new NoTransactionalOperator());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (ledger != null) {
+            ledger.destroy();
+        }
+    }
+
+    @Benchmark
+    public Integer transfer(Accounts state) {
+        return accountTransferService.transferMoneyFromAccountToAnotherAccount(MoneyTransfer.builder()
+                .sourceAccount(state.next(accounts))
+                .targetAccount(state.next(accounts))
+                .currency("EUR")
+                .amount(100L)
+                .build())
+                .block();
+    }
+
+    @Benchmark
+    public Account accountDetails(Accounts state) {
+        return accountTransferService.getAccountDetailsByAccountId(state.next(accounts)).block();
+    }
+}
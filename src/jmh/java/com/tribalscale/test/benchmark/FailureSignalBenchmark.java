@@ -0,0 +1,74 @@
+package com.tribalscale.test.benchmark;
+
+import com.tribalscale.test.domain.Account;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.tribalscale.test.domain.ErrorCode.ACCOUNT_NOT_FOUND;
+
+/**
+ * The not found signal of an account lookup, built eagerly with a stack trace as every lookup used to, against the
+ * stackless exception built only once the lookup comes back empty. Run with {@code -prof gc}: a found account is
+ * expected to allocate no exception at all, a missing one still its message but no stack trace.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FailureSignalBenchmark {
+
+    private final String accountId = "1";
+    private final Mono<Account> found = Mono.just(Account.builder()
+            .accountId(accountId)
+            .currency("EUR")
+            .balance(300000L)
+            .build());
+    private final Mono<Account> missing = Mono.empty();
+
+    @Benchmark
+    public Account eagerFound() {
+        return found.switchIfEmpty(Mono.error(eagerNotFound(accountId)))
+                .block();
+    }
+
+    @Benchmark
+    public Account lazyFound() {
+        return found.switchIfEmpty(Mono.error(() -> ACCOUNT_NOT_FOUND.exception(accountId)))
+                .block();
+    }
+
+    @Benchmark
+    public Throwable eagerMissing() {
+        return missing.switchIfEmpty(Mono.error(eagerNotFound(accountId)))
+                .then(Mono.<Throwable>empty())
+                .onErrorResume(Mono::just)
+                .block();
+    }
+
+    @Benchmark
+    public Throwable lazyMissing() {
+        return missing.switchIfEmpty(Mono.error(() -> ACCOUNT_NOT_FOUND.exception(accountId)))
+                .then(Mono.<Throwable>empty())
+                .onErrorResume(Mono::just)
+                .block();
+    }
+
+    /**
+     * The not found exception as it used to be built, formatting its message and filling in its stack trace.
+     */
+    private static RuntimeException eagerNotFound(String accountId) {
+        return new IllegalStateException(String.format("Account with id: %s, doesn't exist", accountId));
+    }
+}
@@ -0,0 +1,152 @@
+package com.tribalscale.test.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.cache.AccountCache;
+import com.tribalscale.test.cache.AccountCurrencyCache;
+import com.tribalscale.test.commit.GroupCommit;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.fx.FxRateTable;
+import com.tribalscale.test.history.TransferHistory;
+import com.tribalscale.test.journal.DisabledTransferJournal;
+import com.tribalscale.test.lane.AccountLanes;
+import com.tribalscale.test.lookup.AccountLookups;
+import com.tribalscale.test.metrics.TransferMetrics;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountTransferService;
+import com.tribalscale.test.service.impl.AccountTransferServiceImpl;
+import com.tribalscale.test.service.impl.H2AccountStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers through the repository engine on the H2 store with the history recorded, each in its own transaction or
+ * in group commits of up to the batch size, from as many concurrent callers as there are threads. The throughput is
+ * that of all the callers, the sampled time the latency of a transfer, its wait for the batch included.
+ * <p>
+ * Each transaction opens its own connection to the in-memory database: with this many callers blocking on it, the
+ * connection pool ends up with borrowers pending while its connections are idle.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    /**
+     * Maximum number of transfers committed together, each commits on its own at 0.
+     */
+    @Param({"0", "1", "8", "32", "128"})
+    public int batchSize;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private AccountTransferService accountTransferService;
+    private ConnectionFactory connectionFactory;
+
+    @State(Scope.Thread)
+    public static class Accounts {
+
+        private final SplittableRandom random = new SplittableRandom();
+
+        String next(int accounts) {
+            return Integer.toString(random.nextInt(accounts));
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        // The services log every call, which would be all there is to measure
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        var properties = new MoneyTransferProperties();
+        var registry = new SimpleMeterRegistry();
+        connectionFactory = ConnectionFactories.get("r2dbc:h2:mem:///groupcommitbenchmark?options=DB_CLOSE_DELAY=-1");
+        var databaseClient = DatabaseClient.create(connectionFactory);
+        var accountStore = new H2AccountStore(accountRepository(databaseClient));
+        TransactionalOperator transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+
+        accountTransferService = new AccountTransferServiceImpl(accountStore, new AccountCache(properties),
+                new AccountCurrencyCache(properties), new AccountLookups(accountStore, Duration.ZERO, 1, Schedulers.parallel()),
+                new FxRateTable(Path.of(properties.getFx().getRatesFile()), Duration.ZERO), new DisabledTransferJournal(),
+                new TransferHistory(databaseClient, true, 1), new BalanceUpdates(Duration.ZERO, Schedulers.parallel(), registry),
+                new TransferMetrics(registry), new AccountLanes(properties, registry),
+                new GroupCommit(transactionalOperator, batchSize > 0, Math.max(batchSize, 1),
+                        properties.getGroupCommit().getWindow(), Schedulers.parallel(), registry),
+                transactionalOperator);
+
+        // Caches the currencies of all the accounts, which would otherwise be read while measuring
+        Flux.range(0, accounts / 2)
+                .concatMap(i -> accountTransferService.transferMoneyFromAccountToAnotherAccount(transfer(2 * i, 2 * i + 1)))
+                .blockLast();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Integer transfer(Accounts state) {
+        return accountTransferService.transferMoneyFromAccountToAnotherAccount(transfer(state.next(accounts), state.next(accounts)))
+                .block();
+    }
+
+    private static MoneyTransfer transfer(int sourceAccount, int targetAccount) {
+        return transfer(Integer.toString(sourceAccount), Integer.toString(targetAccount));
+    }
+
+    private static MoneyTransfer transfer(String sourceAccount, String targetAccount) {
+        return MoneyTransfer.builder()
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .currency("EUR")
+                .amount(100L)
+                .build();
+    }
+
+    private AccountRepository accountRepository(DatabaseClient databaseClient) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                .populate(connectionFactory)
+                .block();
+
+        databaseClient.sql("DELETE FROM ACCOUNT").then().block();
+        Flux.range(0, accounts)
+                .concatMap(i -> databaseClient.sql("INSERT INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) VALUES (:accountId, 'EUR', :balance)")
+                        .bind("accountId", Integer.toString(i))
+                        .bind("balance", Long.MAX_VALUE / 2)
+                        .then())
+                .blockLast();
+
+        return new R2dbcRepositoryFactory(new R2dbcEntityTemplate(connectionFactory)).getRepository(AccountRepository.class);
+    }
+}
@@ -0,0 +1,151 @@
+package com.tribalscale.test.benchmark;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.repository.AccountRepository;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link AccountRepository} over a map, so the benchmarks measure the service code rather than the database. The
+ * guarded updates keep the semantics of the queries they stand in for.
+ */
+public class InMemoryAccountRepository implements AccountRepository {
+
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<Account> getByAccountId(String id) {
+        return Mono.fromSupplier(() -> accounts.get(id));
+    }
+
+    @Override
+    public Flux<Account> getAllByAccountIdIn(Collection<String> accountIds) {
+        return Flux.fromIterable(accountIds).flatMap(this::getByAccountId);
+    }
+
+    @Override
+    public Mono<Integer> debitAmount(String accountId, long amount) {
+        return update(accountId, account -> account.getBalance() >= amount
+                ? account.withBalance(account.getBalance() - amount)
+                : null);
+    }
+
+    @Override
+    public Mono<Integer> creditAmount(String accountId, long amount) {
+        return update(accountId, account -> account.withBalance(account.getBalance() + amount));
+    }
+
+    @Override
+    public <S extends Account> Mono<S> save(S entity) {
+        return Mono.fromSupplier(() -> {
+            accounts.put(entity.getAccountId(), entity);
+            return entity;
+        });
+    }
+
+    @Override
+    public <S extends Account> Flux<S> saveAll(Iterable<S> entities) {
+        return Flux.fromIterable(entities).flatMap(this::save);
+    }
+
+    @Override
+    public <S extends Account> Flux<S> saveAll(Publisher<S> entityStream) {
+        return Flux.from(entityStream).flatMap(this::save);
+    }
+
+    @Override
+    public Mono<Account> findById(String id) {
+        return getByAccountId(id);
+    }
+
+    @Override
+    public Mono<Account> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String id) {
+        return Mono.fromSupplier(() -> accounts.containsKey(id));
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<Account> findAll() {
+        return Flux.defer(() -> Flux.fromIterable(accounts.values()));
+    }
+
+    @Override
+    public Flux<Account> findAllById(Iterable<String> ids) {
+        return Flux.fromIterable(ids).flatMap(this::findById);
+    }
+
+    @Override
+    public Flux<Account> findAllById(Publisher<String> idStream) {
+        return Flux.from(idStream).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return Mono.fromSupplier(() -> (long) accounts.size());
+    }
+
+    @Override
+    public Mono<Void> deleteById(String id) {
+        return Mono.fromRunnable(() -> accounts.remove(id));
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(Account entity) {
+        return deleteById(entity.getAccountId());
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends Account> entities) {
+        return Flux.fromIterable(entities).flatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends Account> entityStream) {
+        return Flux.from(entityStream).flatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return Mono.fromRunnable(accounts::clear);
+    }
+
+    /**
+     * Applies the update atomically, an update returning null leaves the account as it was.
+     *
+     * @return 1 when the account was updated, 0 when it doesn't exist or the update was refused
+     */
+    private Mono<Integer> update(String accountId, UnaryOperator<Account> update) {
+        return Mono.fromSupplier(() -> {
+            int[] updated = {0};
+            accounts.computeIfPresent(accountId, (id, account) -> {
+                Account result = update.apply(account);
+                if (result == null) {
+                    return account;
+                }
+                updated[0] = 1;
+                return result;
+            });
+            return updated[0];
+        });
+    }
+}
@@ -0,0 +1,82 @@
+package com.tribalscale.test.benchmark;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.payload.AccountPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.mapper.AccountMapper;
+import com.tribalscale.test.mapper.AccountMapperImpl;
+import com.tribalscale.test.mapper.MoneyTransferMapper;
+import com.tribalscale.test.mapper.MoneyTransferMapperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MapStruct mappers between the payloads and the domain, including the conversion of the amounts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+
+    private final MoneyTransferMapper moneyTransferMapper = new MoneyTransferMapperImpl();
+    private final AccountMapper accountMapper = new AccountMapperImpl();
+
+    private final MoneyTransferRequestPayload moneyTransferPayload = MoneyTransferRequestPayload.builder()
+            .sourceAccount("1")
+            .targetAccount("2")
+            .currency("EUR")
+            .amount(1234.56)
+            .build();
+
+    private final MoneyTransfer moneyTransfer = MoneyTransfer.builder()
+            .sourceAccount("1")
+            .targetAccount("2")
+            .currency("EUR")
+            .amount(123456L)
+            .build();
+
+    private final AccountPayload accountPayload = AccountPayload.builder()
+            .accountId("1")
+            .currency("EUR")
+            .balance(1234.56)
+            .build();
+
+    private final Account account = Account.builder()
+            .accountId("1")
+            .currency("EUR")
+            .balance(123456L)
+            .build();
+
+    @Benchmark
+    public MoneyTransfer moneyTransferPayloadToEntity() {
+        return moneyTransferMapper.payloadToEntity(moneyTransferPayload);
+    }
+
+    @Benchmark
+    public MoneyTransferRequestPayload moneyTransferEntityToPayload() {
+        return moneyTransferMapper.entityToPayload(moneyTransfer);
+    }
+
+    @Benchmark
+    public Account accountPayloadToEntity() {
+        return accountMapper.payloadToEntity(accountPayload);
+    }
+
+    @Benchmark
+    public AccountPayload accountEntityToPayload() {
+        return accountMapper.entityToPayload(account);
+    }
+}
@@ -0,0 +1,52 @@
+package com.tribalscale.test.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson reading and writing a transfer payload, with an object mapper configured like the application's.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneyTransferPayloadJsonBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private final byte[] json = "{\"sourceAccount\":\"1\",\"targetAccount\":\"2\",\"currency\":\"EUR\",\"amount\":1234.56}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final MoneyTransferRequestPayload payload = MoneyTransferRequestPayload.builder()
+            .sourceAccount("1")
+            .targetAccount("2")
+            .currency("EUR")
+            .amount(1234.56)
+            .build();
+
+    @Benchmark
+    public MoneyTransferRequestPayload read() throws IOException {
+        return objectMapper.readValue(json, MoneyTransferRequestPayload.class);
+    }
+
+    @Benchmark
+    public byte[] write() throws IOException {
+        return objectMapper.writeValueAsBytes(payload);
+    }
+}
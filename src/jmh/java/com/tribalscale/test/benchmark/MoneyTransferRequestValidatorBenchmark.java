@@ -0,0 +1,50 @@
+package com.tribalscale.test.benchmark;
+
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.domain.validator.MoneyTransferRequestValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A valid transfer payload checked by the Bean Validation engine, as it was on every request, and by the
+ * {@link MoneyTransferRequestValidator} replacing it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MoneyTransferRequestValidatorBenchmark {
+
+    private final Validator beanValidator = Validation.buildDefaultValidatorFactory().getValidator();
+    private final MoneyTransferRequestValidator validator = new MoneyTransferRequestValidator();
+
+    private final MoneyTransferRequestPayload payload = MoneyTransferRequestPayload.builder()
+            .currency("EUR")
+            .amount(1000d)
+            .sourceAccount("11aa23")
+            .targetAccount("42bb17")
+            .build();
+
+    @Benchmark
+    public boolean beanValidation() {
+        return beanValidator.validate(payload).isEmpty();
+    }
+
+    @Benchmark
+    public boolean moneyTransferRequestValidator() {
+        return validator.isValid(payload);
+    }
+}
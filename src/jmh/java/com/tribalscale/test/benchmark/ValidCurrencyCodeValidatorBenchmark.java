@@ -0,0 +1,46 @@
+package com.tribalscale.test.benchmark;
+
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.domain.validator.ValidCurrencyCode;
+import com.tribalscale.test.domain.validator.ValidCurrencyCodeValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The currency code check run on every transfer payload, for a known code, an unknown one and a malformed one.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidCurrencyCodeValidatorBenchmark {
+
+    @Param({"EUR", "XYZ", "euro"})
+    public String currency;
+
+    private final ValidCurrencyCodeValidator validator = new ValidCurrencyCodeValidator();
+
+    @Setup
+    public void setUp() throws NoSuchFieldException {
+        validator.initialize(MoneyTransferRequestPayload.class.getDeclaredField("currency")
+                .getAnnotation(ValidCurrencyCode.class));
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        return validator.isValid(currency, null);
+    }
+}
@@ -1,8 +1,10 @@
 package com.tribalscale.test;
 
+import com.tribalscale.test.config.MoneyTransferProperties;
 import io.r2dbc.spi.ConnectionFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.io.ClassPathResource;
@@ -16,6 +18,7 @@ import springfox.documentation.spring.web.plugins.Docket;
 
 @EnableCaching
 @SpringBootApplication
+@EnableConfigurationProperties(MoneyTransferProperties.class)
 public class MoneyTransferApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,174 @@
+package com.tribalscale.test.balance;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Pushes the balance of an account to its subscribers whenever a transfer touching it commits.
+ * <p>
+ * Each account with subscribers gets a multicast sink replaying its latest balance to the subscribers joining, dropped
+ * along with its last subscriber. A change only reads the account when it has subscribers, and a single read per
+ * account is in flight at a time: changes arriving meanwhile are coalesced into the next read, so the balances are
+ * pushed in the order they were committed and a hot account costs at most one read per read latency, whatever its
+ * number of subscribers. Each subscriber buffers the latest balance only, a slow one skips to it instead of queueing
+ * every change. Nothing runs on a thread of its own, however many subscribers there are.
+ */
+@Component
+@Slf4j
+public class BalanceUpdates implements DisposableBean {
+
+    private final Map<String, AccountUpdates> accounts = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Scheduler scheduler;
+    private final Sinks.Many<Long> heartbeats = Sinks.many().multicast().directBestEffort();
+    private final Disposable heartbeat;
+
+    @Autowired
+    public BalanceUpdates(MoneyTransferProperties properties, MeterRegistry registry) {
+        this(properties.getBalanceUpdates().getHeartbeatInterval(), Schedulers.parallel(), registry);
+    }
+
+    /**
+     * @param heartbeatInterval how often the subscribers get a heartbeat, never when zero
+     */
+    public BalanceUpdates(Duration heartbeatInterval, Scheduler scheduler, MeterRegistry registry) {
+        this.scheduler = scheduler;
+        this.heartbeat = heartbeatInterval.isZero()
+                ? null
+                : Flux.interval(heartbeatInterval, heartbeatInterval, scheduler)
+                .onBackpressureDrop()
+                .subscribe(heartbeats::tryEmitNext);
+
+        Gauge.builder("moneytransfer.balance.updates.accounts", accounts, Map::size)
+                .description("Accounts with subscribers to their balance updates")
+                .register(registry);
+        Gauge.builder("moneytransfer.balance.updates.subscribers", subscribers, AtomicInteger::get)
+                .description("Subscribers to the balance updates of an account")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        if (heartbeat != null) {
+            heartbeat.dispose();
+        }
+    }
+
+    /**
+     * The balances of the account, starting with the current one, as long as the subscriber stays subscribed.
+     *
+     * @param loader reads the current state of an account
+     */
+    public Flux<Account> subscribe(String accountId, Function<String, Mono<Account>> loader) {
+        return Flux.defer(() -> {
+            AccountUpdates updates = accounts.compute(accountId, (id, existing) -> {
+                AccountUpdates joined = existing == null ? new AccountUpdates(id) : existing;
+                joined.subscribers++;
+                return joined;
+            });
+            subscribers.incrementAndGet();
+            if (!updates.loaded.getAndSet(true)) {
+                updates.refresh(loader);
+            }
+
+            // A subscriber joining during a read gets the replayed balance, then the same one again
+            return updates.sink.asFlux()
+                    .onBackpressureLatest()
+                    .distinctUntilChanged()
+                    .doFinally(signal -> leave(updates));
+        });
+    }
+
+    /**
+     * Pushes the balance of the account to its subscribers, if it has any.
+     *
+     * @param loader reads the current state of an account
+     */
+    public void changed(String accountId, Function<String, Mono<Account>> loader) {
+        AccountUpdates updates = accounts.get(accountId);
+        if (updates != null) {
+            updates.refresh(loader);
+        }
+    }
+
+    /**
+     * Ticks at the heartbeat interval, dropped for the subscribers not ready for one. Writing them lets the server
+     * notice the subscribers which went away without a word, and drop their sinks.
+     */
+    public Flux<Long> heartbeats() {
+        return heartbeats.asFlux();
+    }
+
+    private void leave(AccountUpdates updates) {
+        subscribers.decrementAndGet();
+        accounts.computeIfPresent(updates.accountId, (id, existing) -> --existing.subscribers == 0 ? null : existing);
+    }
+
+    private class AccountUpdates {
+
+        final String accountId;
+        final Sinks.Many<Account> sink = Sinks.many().replay().latest();
+        final AtomicBoolean loaded = new AtomicBoolean();
+
+        /**
+         * Guarded by the lock of the map entry.
+         */
+        int subscribers;
+
+        /**
+         * Changes not read yet, a read is in flight while non zero.
+         */
+        final AtomicInteger changes = new AtomicInteger();
+
+        AccountUpdates(String accountId) {
+            this.accountId = accountId;
+        }
+
+        void refresh(Function<String, Mono<Account>> loader) {
+            if (changes.getAndIncrement() == 0) {
+                read(loader);
+            }
+        }
+
+        /**
+         * Reads the account off the caller's thread, then reads it again if it changed during the read. Emissions are
+         * serialized by the single read in flight.
+         */
+        private void read(Function<String, Mono<Account>> loader) {
+            int read = changes.get();
+            Mono.defer(() -> loader.apply(accountId))
+                    .subscribeOn(scheduler)
+                    .subscribe(sink::tryEmitNext,
+                            e -> {
+                                log.warn("Couldn't read the balance of account id: {}, with message: {}", accountId, e.getMessage());
+                                readAgainIfChanged(loader, read);
+                            },
+                            () -> readAgainIfChanged(loader, read));
+        }
+
+        private void readAgainIfChanged(Function<String, Mono<Account>> loader, int read) {
+            if (changes.addAndGet(-read) != 0) {
+                read(loader);
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tribalscale.test.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Bounded read cache of accounts, evicting by size and time to live. Concurrent lookups of the same account share one
+ * load. Hit, miss and eviction counts are published as the "accounts" cache metrics.
+ */
+@Component
+@ConditionalOnProperty(prefix = "moneytransfer", name = "engine", havingValue = "repository", matchIfMissing = true)
+public class AccountCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "accounts";
+
+    private final AsyncCache<String, Account> cache;
+
+    public AccountCache(MoneyTransferProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCache().getMaximumSize())
+                .expireAfterWrite(properties.getCache().getTimeToLive())
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * @return the cached account, loading it with the loader when missing. Accounts the loader doesn't find are not cached.
+     */
+    public Mono<Account> get(String accountId, Function<String, Mono<Account>> loader) {
+        // The load is shared by every caller asking for the same account, each one gets a copy so a cancelled caller
+        // doesn't cancel it for the rest
+        return Mono.fromFuture(() -> {
+            var load = new CompletableFuture<Account>();
+            CompletableFuture<Account> cached = cache.get(accountId, (id, executor) -> load);
+            if (cached == load) {
+                // Started once the cache released the entry: the database driver may complete the load on this thread
+                // and resume other requests from there, which could touch the same entry
+                loader.apply(accountId).subscribe(load::complete, load::completeExceptionally, () -> load.complete(null));
+            }
+            return cached.copy();
+        });
+    }
+
+    public void evict(String... accountIds) {
+        cache.synchronous().invalidateAll(List.of(accountIds));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache.synchronous(), CACHE_NAME);
+    }
+}
@@ -0,0 +1,56 @@
+package com.tribalscale.test.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the account currencies, which never change: unlike the {@link AccountCache} nothing is evicted by
+ * the transfers, so converting a transfer between accounts seen before doesn't read them. Published as the
+ * "account.currencies" cache metrics.
+ */
+@Component
+@ConditionalOnProperty(prefix = "moneytransfer", name = "engine", havingValue = "repository", matchIfMissing = true)
+public class AccountCurrencyCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "account.currencies";
+
+    private final Cache<String, String> cache;
+
+    public AccountCurrencyCache(MoneyTransferProperties properties) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCache().getMaximumSize())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the currency of the account, loading the account with the loader when missing, empty when the loader
+     * doesn't find it
+     */
+    public Mono<String> get(String accountId, Function<String, Mono<Account>> loader) {
+        return Mono.defer(() -> {
+            String currency = cache.getIfPresent(accountId);
+            if (currency != null) {
+                return Mono.just(currency);
+            }
+            return loader.apply(accountId)
+                    .map(Account::getCurrency)
+                    .doOnNext(loaded -> cache.put(accountId, loaded));
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+}
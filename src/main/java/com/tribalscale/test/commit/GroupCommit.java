@@ -0,0 +1,256 @@
+package com.tribalscale.test.commit;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Applies transfers in batches sharing one transaction, so a single commit pays for all of them.
+ * <p>
+ * A batch opens with the first transfer submitted while none is committing, and is applied at the end of its window
+ * or once it's full. The transfers submitted while a batch commits make up the next one, applied as soon as the commit
+ * is done, so the batches grow with the load rather than with the window. One batch runs at a time, its transfers
+ * applied in the order they were submitted, and their callers complete once the shared commit succeeds.
+ * <p>
+ * A transfer rejected with a {@link MoneyTransferApplicationException} must have undone its own updates, it fails on
+ * its own and the rest of its batch commits. Any other failure, the commit's included, rolls the whole batch back and
+ * its transfers are applied again each in its own transaction, so only the failing ones fail.
+ * <p>
+ * All the transfers go through this one batcher, whatever their accounts, so unrelated transfers share the latency of
+ * the batches ahead of them: a transfer waits for at most the batch committing and its own, each of no more than
+ * {@code max-size} transfers, as long as they are submitted slower than they commit. The batches aren't split by
+ * account: a transfer touches two accounts, so two batches committing side by side could share some, each holding
+ * the row locks of its earlier transfers while waiting for those of the other, and stall until the lock timeout fails
+ * them both. The window and the size of the batches bound the latency instead.
+ */
+@Component
+@ConditionalOnProperty(prefix = "moneytransfer", name = "engine", havingValue = "repository", matchIfMissing = true)
+@Slf4j
+public class GroupCommit {
+
+    private final TransactionalOperator transactionalOperator;
+    private final boolean enabled;
+    private final int maxSize;
+    private final long windowNanos;
+    private final Scheduler scheduler;
+    private final DistributionSummary batchSizes;
+
+    /**
+     * Transfers submitted and not applied yet, guarded by this.
+     */
+    private List<Submitted<?>> pending = new ArrayList<>();
+
+    /**
+     * Whether a batch is being applied or committed, guarded by this.
+     */
+    private boolean committing;
+
+    @Autowired
+    public GroupCommit(TransactionalOperator transactionalOperator, MoneyTransferProperties properties, MeterRegistry registry) {
+        this(transactionalOperator, properties.getGroupCommit().isEnabled(), properties.getGroupCommit().getMaxSize(),
+                properties.getGroupCommit().getWindow(), Schedulers.parallel(), registry);
+    }
+
+    public GroupCommit(TransactionalOperator transactionalOperator, boolean enabled, int maxSize, Duration window,
+                       Scheduler scheduler, MeterRegistry registry) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("A batch of transfers needs room for at least one transfer");
+        }
+
+        this.transactionalOperator = transactionalOperator;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.windowNanos = window.toNanos();
+        this.scheduler = scheduler;
+        this.batchSizes = DistributionSummary.builder("moneytransfer.group.commit.size")
+                .description("Transfers committed together")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies the transfer in the next batch, completing once the batch commits. A caller cancelling before its batch
+     * is applied is left out of it, afterwards the transfer commits along with the others.
+     */
+    public <T> Mono<T> execute(Supplier<Mono<T>> transfer) {
+        return Mono.create(sink -> {
+            var submitted = new Submitted<>(transfer, sink);
+            sink.onCancel(() -> submitted.cancelled = true);
+            submit(submitted);
+        });
+    }
+
+    private void submit(Submitted<?> submitted) {
+        List<Submitted<?>> full = null;
+        synchronized (this) {
+            pending.add(submitted);
+            if (committing) {
+                return;
+            }
+
+            if (pending.size() == 1) {
+                List<Submitted<?>> opened = pending;
+                scheduler.schedule(() -> commitIfPending(opened), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            if (pending.size() == maxSize) {
+                full = takeBatch();
+            }
+        }
+
+        if (full != null) {
+            commit(full);
+        }
+    }
+
+    /**
+     * Applies the batch at the end of its window, unless it was applied already because it got full.
+     */
+    private void commitIfPending(List<Submitted<?>> opened) {
+        List<Submitted<?>> batch;
+        synchronized (this) {
+            if (pending != opened || committing) {
+                return;
+            }
+            batch = takeBatch();
+        }
+
+        commit(batch);
+    }
+
+    /**
+     * Applies the transfers submitted during the commit of the last batch, if any. They're applied off the thread
+     * which completed the commit, a driver completing on the caller's thread would otherwise nest every batch in the
+     * stack of the previous one.
+     */
+    private void committed() {
+        List<Submitted<?>> next;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                committing = false;
+                return;
+            }
+            next = takeBatch();
+        }
+
+        scheduler.schedule(() -> commit(next));
+    }
+
+    /**
+     * Guarded by this.
+     */
+    private List<Submitted<?>> takeBatch() {
+        List<Submitted<?>> batch = pending;
+        if (batch.size() > maxSize) {
+            pending = new ArrayList<>(batch.subList(maxSize, batch.size()));
+            batch = batch.subList(0, maxSize);
+        } else {
+            pending = new ArrayList<>();
+        }
+        committing = true;
+        return batch;
+    }
+
+    /**
+     * Applies the transfers of the batch whose callers are still waiting, the others aren't counted in its size.
+     */
+    private void commit(List<Submitted<?>> taken) {
+        List<Submitted<?>> batch = taken.stream()
+                .filter(submitted -> !submitted.cancelled)
+                .collect(Collectors.toList());
+        if (batch.isEmpty()) {
+            committed();
+            return;
+        }
+
+        batchSizes.record(batch.size());
+        Flux.fromIterable(batch)
+                .concatMap(Submitted::apply)
+                .then()
+                .as(transactionalOperator::transactional)
+                .subscribe(null,
+                        e -> {
+                            log.warn("Couldn't commit a batch of {} transfers, committing them one by one, with message: {}",
+                                    batch.size(), e.getMessage());
+                            commitOneByOne(batch);
+                        },
+                        () -> {
+                            committed();
+                            batch.forEach(Submitted::complete);
+                        });
+    }
+
+    private void commitOneByOne(List<Submitted<?>> batch) {
+        Flux.fromIterable(batch)
+                .filter(submitted -> !submitted.cancelled)
+                .concatMap(submitted -> submitted.commitAlone(transactionalOperator))
+                .subscribe(null, e -> committed(), this::committed);
+    }
+
+    private static final class Submitted<T> {
+
+        final Supplier<Mono<T>> transfer;
+        final MonoSink<T> sink;
+        volatile boolean cancelled;
+
+        /**
+         * Outcome of the transfer within the batch, published to the caller once the batch commits.
+         */
+        T updated;
+        MoneyTransferApplicationException rejection;
+
+        Submitted(Supplier<Mono<T>> transfer, MonoSink<T> sink) {
+            this.transfer = transfer;
+            this.sink = sink;
+        }
+
+        /**
+         * Applies the transfer within the transaction of the batch, keeping a rejection for its caller instead of
+         * failing the batch.
+         */
+        Mono<T> apply() {
+            return Mono.defer(transfer)
+                    .doOnNext(value -> updated = value)
+                    .onErrorResume(MoneyTransferApplicationException.class, e -> {
+                        rejection = e;
+                        return Mono.empty();
+                    });
+        }
+
+        void complete() {
+            if (rejection != null) {
+                sink.error(rejection);
+            } else {
+                sink.success(updated);
+            }
+        }
+
+        Mono<Void> commitAlone(TransactionalOperator transactionalOperator) {
+            return transactionalOperator.transactional(Mono.defer(transfer))
+                    .doOnSuccess(sink::success)
+                    .doOnError(sink::error)
+                    .onErrorResume(e -> Mono.empty())
+                    .then();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.tribalscale.test.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * Lets the clients of the HTTP endpoints send and accept their payloads as CBOR ({@code application/cbor}) or Smile
+ * ({@code application/x-jackson-smile}) instead of JSON, negotiated from the Content-Type and Accept headers. Binary
+ * payloads skip the parsing and printing of numbers and field names as text.
+ * <p>
+ * Spring MVC would register both converters on its own, with mappers left out of the {@code spring.jackson}
+ * properties, so they don't serialize like the JSON one. These replace them with mappers built like the JSON one.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatsConfiguration {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+}
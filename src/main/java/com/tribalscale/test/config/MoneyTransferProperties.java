@@ -0,0 +1,319 @@
+package com.tribalscale.test.config;
+
+import com.tribalscale.test.journal.FlushPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "moneytransfer")
+public class MoneyTransferProperties {
+
+    /**
+     * Which {@link com.tribalscale.test.service.AccountTransferService} implementation handles the transfers.
+     */
+    private Engine engine = Engine.REPOSITORY;
+
+    private Accounts accounts = new Accounts();
+
+    private Ledger ledger = new Ledger();
+
+    private Lanes lanes = new Lanes();
+
+    private Batch batch = new Batch();
+
+    private Cache cache = new Cache();
+
+    private Lookups lookups = new Lookups();
+
+    private Idempotency idempotency = new Idempotency();
+
+    private Journal journal = new Journal();
+
+    private Logging logging = new Logging();
+
+    private Fx fx = new Fx();
+
+    private History history = new History();
+
+    private BalanceUpdates balanceUpdates = new BalanceUpdates();
+
+    private GroupCommit groupCommit = new GroupCommit();
+
+    private Settlement settlement = new Settlement();
+
+    public enum Engine {
+        /**
+         * Every transfer is applied against the database through the account repository.
+         */
+        REPOSITORY,
+        /**
+         * Balances are kept in a sharded in-memory ledger, loaded from the database on startup.
+         */
+        LEDGER
+    }
+
+    @Data
+    public static class Accounts {
+        /**
+         * Where the repository engine keeps the accounts.
+         */
+        private Store store = Store.H2;
+
+        /**
+         * Maximum number of accounts of the off-heap store, each of them taking a 16 byte record.
+         */
+        private int offHeapCapacity = 1 << 20;
+
+        /**
+         * File of the mapped account table, relative to the working directory.
+         */
+        private String mappedTable = "accounts/accounts.table";
+
+        /**
+         * Maximum number of accounts of the mapped table, each of them taking a 128 byte record. Only applies when the
+         * table is created.
+         */
+        private int mappedCapacity = 1 << 20;
+
+        public enum Store {
+            /**
+             * The ACCOUNT table, updated in the transaction of the transfer.
+             */
+            H2,
+            /**
+             * A concurrent map loaded from the database on startup, updates are not written back.
+             */
+            MEMORY,
+            /**
+             * Records of a direct buffer loaded from the database on startup, updates are not written back.
+             */
+            OFF_HEAP,
+            /**
+             * A memory mapped file loaded from the database the first time only, kept across restarts.
+             */
+            MAPPED
+        }
+    }
+
+    @Data
+    public static class Ledger {
+        /**
+         * Number of shards, each of them owning a single writer thread.
+         */
+        private int shards = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Data
+    public static class Lanes {
+        /**
+         * Whether the transfers of the repository engine sharing an account are queued in-process, instead of
+         * waiting on each other's row locks in the database.
+         */
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * Maximum number of transfers of a batch stream being processed at the same time.
+         */
+        private int concurrency = 16;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * Maximum number of accounts kept in the account read cache.
+         */
+        private long maximumSize = 100_000;
+
+        /**
+         * How long a cached account is served before it's read again from the repository.
+         */
+        private Duration timeToLive = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Lookups {
+        /**
+         * How long the first account lookup of a batch waits for others to share its query, no batching when zero.
+         */
+        private Duration window = Duration.ofMillis(1);
+
+        /**
+         * Number of accounts a batch of lookups is sent at, before the end of its window.
+         */
+        private int maxBatchSize = 100;
+
+        /**
+         * Maximum number of accounts of a multiple account lookup request.
+         */
+        private int maxIds = 100;
+    }
+
+    @Data
+    public static class Idempotency {
+        /**
+         * Where the outcomes of the transfers requested with an Idempotency-Key are kept.
+         */
+        private Store store = Store.MEMORY;
+
+        /**
+         * Maximum number of idempotency keys kept.
+         */
+        private long maximumSize = 1_000_000;
+
+        /**
+         * How long the outcome of a transfer is replayed for retries with the same key.
+         */
+        private Duration timeToLive = Duration.ofHours(24);
+
+        /**
+         * How often expired and overflowing keys are deleted from the H2 store.
+         */
+        private Duration purgeInterval = Duration.ofMinutes(1);
+
+        public enum Store {
+            MEMORY,
+            H2
+        }
+    }
+
+    @Data
+    public static class Journal {
+        /**
+         * Whether every applied transfer is appended to the memory mapped journal.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the journal segments and snapshots, relative to the working directory.
+         */
+        private String directory = "journal";
+
+        /**
+         * Number of fixed size records of a journal segment file before rolling to a new one.
+         */
+        private int recordsPerSegment = 1 << 20;
+
+        private FlushPolicy flush = FlushPolicy.GROUP;
+
+        /**
+         * With the group flush policy, number of records forcing a flush.
+         */
+        private int groupSize = 512;
+
+        /**
+         * With the group flush policy, longest time a record waits to be flushed.
+         */
+        private Duration groupInterval = Duration.ofMillis(10);
+
+        private Snapshot snapshot = new Snapshot();
+    }
+
+    @Data
+    public static class Logging {
+        private Mode mode = Mode.VERBOSE;
+
+        /**
+         * Share of the successful transfers logging a structured event, from 0 to 1. Failed transfers always log one.
+         */
+        private double successSampleRate = 1.0;
+
+        public enum Mode {
+            /**
+             * Every step of a transfer is logged, along with its structured event.
+             */
+            VERBOSE,
+            /**
+             * A transfer only logs its structured event.
+             */
+            PRODUCTION
+        }
+    }
+
+    @Data
+    public static class Fx {
+        /**
+         * Properties file of the exchange rates, relative to the working directory, naming the base currency and the
+         * rate of each currency against it. Without it only transfers in the currency of both accounts are accepted.
+         */
+        private String ratesFile = "fx/rates.properties";
+
+        /**
+         * How often the rates file is checked for changes, never when zero.
+         */
+        private Duration reloadInterval = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class History {
+        /**
+         * Whether every applied transfer is recorded in the TRANSFER table, for the history of the accounts.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Number of transfers read per query when streaming the history of an account.
+         */
+        private int pageSize = 500;
+    }
+
+    @Data
+    public static class BalanceUpdates {
+        /**
+         * How often the balance update streams get a heartbeat, which lets the server notice the clients gone away.
+         * Never when zero.
+         */
+        private Duration heartbeatInterval = Duration.ofSeconds(15);
+    }
+
+    @Data
+    public static class GroupCommit {
+        /**
+         * Whether the transfers of the repository engine are applied in batches sharing one transaction and its
+         * commit, when the account store takes part in transactions.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of transfers committed together. Batches are committed one at a time, so it also bounds how
+         * many transfers of other accounts a transfer may wait for.
+         */
+        private int maxSize = 64;
+
+        /**
+         * How long the first transfer of a batch waits for others to join it, when no batch is committing.
+         */
+        private Duration window = Duration.ofNanos(200_000);
+    }
+
+    @Data
+    public static class Settlement {
+        /**
+         * Maximum number of transfers settled together, a larger window is rejected rather than held in memory.
+         */
+        private int maxTransfers = 100_000;
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * Whether the journal is periodically compacted into snapshots of all the account balances, which the ledger
+         * engine restores from on startup.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time between two snapshots, a snapshot is only written when transfers were journaled since the last one.
+         */
+        private Duration interval = Duration.ofMinutes(1);
+
+        /**
+         * Number of snapshots kept in the journal directory.
+         */
+        private int retain = 2;
+    }
+}
@@ -0,0 +1,45 @@
+package com.tribalscale.test.config;
+
+import com.tribalscale.test.metrics.MeteredConnectionFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import org.springframework.boot.autoconfigure.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.boot.autoconfigure.r2dbc.EmbeddedDatabaseConnection;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The connection pool of the database, sized and bounded by the {@code spring.r2dbc.pool} properties and metered by
+ * {@link MeteredConnectionFactory}. It replaces the pool Spring Boot would configure, which can't time the
+ * acquisitions.
+ */
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(R2dbcProperties.class)
+public class R2dbcPoolConfiguration {
+
+    private static final String POOL_NAME = "connectionFactory";
+
+    @Bean(destroyMethod = "dispose")
+    public MeteredConnectionFactory connectionFactory(R2dbcProperties properties, MeterRegistry meterRegistry) {
+        var connectionFactory = ConnectionFactoryBuilder.of(properties, () -> EmbeddedDatabaseConnection.H2).build();
+
+        R2dbcProperties.Pool pool = properties.getPool();
+        PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+        ConnectionPoolConfiguration.Builder builder = ConnectionPoolConfiguration.builder(connectionFactory)
+                .name(POOL_NAME);
+        map.from(pool.getInitialSize()).to(builder::initialSize);
+        map.from(pool.getMaxSize()).to(builder::maxSize);
+        map.from(pool.getMaxIdleTime()).to(builder::maxIdleTime);
+        map.from(pool.getMaxLifeTime()).to(builder::maxLifeTime);
+        map.from(pool.getMaxAcquireTime()).to(builder::maxAcquireTime);
+        map.from(pool.getMaxCreateConnectionTime()).to(builder::maxCreateConnectionTime);
+        map.from(pool.getValidationQuery()).whenHasText().to(builder::validationQuery);
+        map.from(pool.getValidationDepth()).to(builder::validationDepth);
+
+        return new MeteredConnectionFactory(new ConnectionPool(builder.build()), POOL_NAME, meterRegistry);
+    }
+}
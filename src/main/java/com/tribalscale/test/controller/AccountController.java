@@ -1,28 +1,55 @@
 package com.tribalscale.test.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.domain.Settlement;
+import com.tribalscale.test.domain.TransferOutcome;
 import com.tribalscale.test.domain.payload.AccountPayload;
 import com.tribalscale.test.domain.payload.ErrorPayload;
 import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferResultPayload;
+import com.tribalscale.test.domain.payload.SettlementPayload;
+import com.tribalscale.test.domain.payload.TransferPayload;
+import com.tribalscale.test.domain.validator.AccountIds;
+import com.tribalscale.test.domain.validator.MoneyTransferRequestValidator;
+import com.tribalscale.test.history.TransferCursor;
+import com.tribalscale.test.logging.CorrelationId;
 import com.tribalscale.test.mapper.AccountMapper;
 import com.tribalscale.test.mapper.MoneyTransferMapper;
+import com.tribalscale.test.mapper.TransferMapper;
 import com.tribalscale.test.service.AccountTransferService;
+import com.tribalscale.test.service.IdempotencyStore;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import javax.validation.Valid;
-import javax.validation.constraints.NotBlank;
-import javax.validation.constraints.Pattern;
 import javax.validation.constraints.Size;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.LinkedHashSet;
+import java.util.List;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 @Api(description = "Endpoints for moving money from account to account, and getting account details", tags = {"money-transfer"})
 @RestController
@@ -32,23 +59,109 @@ import static org.springframework.http.HttpStatus.OK;
 @Slf4j
 public class AccountController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String BALANCE_EVENT = "balance";
+
     private final AccountTransferService accountTransferService;
+    private final IdempotencyStore idempotencyStore;
     private final MoneyTransferMapper moneyTransferMapper;
     private final AccountMapper accountMapper;
+    private final TransferMapper transferMapper;
+    private final MoneyTransferRequestValidator moneyTransferRequestValidator;
+    private final ObjectMapper objectMapper;
+    private final MoneyTransferProperties properties;
+    private final TransferPipeline transferPipeline;
+    private final BalanceUpdates balanceUpdates;
+
+    /**
+     * Transfer payloads are checked by the {@link MoneyTransferRequestValidator} rather than the Bean Validation engine.
+     */
+    @InitBinder
+    public void initBinder(WebDataBinder binder) {
+        if (binder.getTarget() instanceof MoneyTransferRequestPayload) {
+            binder.setValidator(moneyTransferRequestValidator);
+        }
+    }
 
     @ApiOperation(value = "Creates a transfer between the source and target account with the given amount.")
     @ApiResponses({@ApiResponse(code = 200, message = "The transfer between the source account and the target was made"),
             @ApiResponse(code = 400, message = "The source account doesn't has enough funds as specified in the amount, or either invalid input parameters", response = ErrorPayload.class),
             @ApiResponse(code = 404, message = "Either the source or the target couldn't be found.", response = ErrorPayload.class),
+            @ApiResponse(code = 409, message = "The idempotency key is in use by a transfer without an outcome yet", response = ErrorPayload.class),
+            @ApiResponse(code = 422, message = "The idempotency key was already used for a different transfer", response = ErrorPayload.class),
             @ApiResponse(code = 500, message = "An internal server happened", response = ErrorPayload.class)})
     @PostMapping("/transfer")
-    public Mono<ResponseEntity<Void>> transferFundsToAccount(@Valid @RequestBody MoneyTransferRequestPayload payload) {
+    public Mono<ResponseEntity<Void>> transferFundsToAccount(@Validated @RequestBody MoneyTransferRequestPayload payload,
+                                                             @ApiParam(value = "Retries with the same key get the outcome of the first request instead of transferring again")
+                                                             @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 255) String idempotencyKey,
+                                                             @RequestHeader(value = CorrelationId.HEADER, required = false) String correlationIdHeader) {
         log.info("Received request to make transfer from account id: {} to account id: {} for amount: {}",
                 payload.getSourceAccount(), payload.getTargetAccount(), payload.getAmount());
 
-        return accountTransferService.transferMoneyFromAccountToAnotherAccount(moneyTransferMapper.payloadToEntity(payload))
-                .map(moneyTransfer -> ResponseEntity.status(OK)
-                        .build());
+        String correlationId = CorrelationId.of(correlationIdHeader);
+        if (idempotencyKey == null) {
+            return transferPipeline.transfer(payload, correlationId)
+                    .map(moneyTransfer -> ResponseEntity.status(OK)
+                            .build());
+        }
+
+        String requestHash = moneyTransferMapper.payloadToEntity(payload).fingerprint();
+        return idempotencyStore.execute(idempotencyKey, requestHash, () -> transferPipeline.transfer(payload, correlationId)
+                        .map(moneyTransfer -> TransferOutcome.succeeded())
+                        .onErrorResume(MoneyTransferApplicationException.class, e -> Mono.just(TransferOutcome.failed(e))))
+                .flatMap(outcome -> outcome.isSucceeded()
+                        ? Mono.just(ResponseEntity.status(OK).build())
+                        : Mono.error(outcome.toException()));
+    }
+
+    @ApiOperation(value = "Creates every transfer of a newline delimited JSON stream, streaming back one result per transfer.")
+    @ApiResponses({@ApiResponse(code = 200, message = "One result per submitted transfer, in the order they were submitted"),
+            @ApiResponse(code = 500, message = "An internal server happened", response = ErrorPayload.class)})
+    @PostMapping(value = "/transfers", consumes = APPLICATION_NDJSON_VALUE, produces = APPLICATION_NDJSON_VALUE)
+    public Flux<MoneyTransferResultPayload> transferFundsToAccounts(InputStream payloads,
+                                                                   @RequestHeader(value = CorrelationId.HEADER, required = false) String correlationIdHeader) {
+        log.info("Received request to make a batch of transfers");
+
+        String correlationId = CorrelationId.of(correlationIdHeader);
+        return Flux.using(() -> new BufferedReader(new InputStreamReader(payloads, UTF_8)),
+                        reader -> Flux.fromStream(reader.lines()),
+                        this::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic())
+                // Numbered before the blank lines are dropped, so an index is the line of the transfer in the request
+                .index()
+                .filter(line -> !line.getT2().isBlank())
+                .flatMapSequential(line -> transferFundsToAccount(line.getT1(), line.getT2(), correlationId),
+                        properties.getBatch().getConcurrency());
+    }
+
+    @ApiOperation(value = "Settles every transfer of a newline delimited JSON stream together, applying the net position of each account once.")
+    @ApiResponses({@ApiResponse(code = 200, message = "Every transfer was made and recorded, or none of them"),
+            @ApiResponse(code = 400, message = "An account would be left short of funds, a transfer contains invalid input parameters or there are too many of them", response = ErrorPayload.class),
+            @ApiResponse(code = 404, message = "An account of the transfers couldn't be found.", response = ErrorPayload.class),
+            @ApiResponse(code = 500, message = "An internal server happened", response = ErrorPayload.class)})
+    @PostMapping(value = "/settlements", consumes = APPLICATION_NDJSON_VALUE)
+    public Mono<SettlementPayload> settleTransfers(InputStream payloads,
+                                                   @RequestHeader(value = CorrelationId.HEADER, required = false) String correlationIdHeader) {
+        log.info("Received request to settle a window of transfers");
+
+        int maxTransfers = properties.getSettlement().getMaxTransfers();
+        return Flux.using(() -> new BufferedReader(new InputStreamReader(payloads, UTF_8)),
+                        reader -> Flux.fromStream(reader.lines()),
+                        this::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic())
+                // Numbered before the blank lines are dropped, so an index is the line of the transfer in the request
+                .index()
+                .filter(line -> !line.getT2().isBlank())
+                // One more than allowed, to tell a full window apart from a larger one without reading it all
+                .take(maxTransfers + 1L)
+                .concatMap(line -> settledTransfer(line.getT1(), line.getT2()))
+                .collectList()
+                .flatMap(moneyTransfers -> moneyTransfers.size() > maxTransfers
+                        ? Mono.error(ConstraintViolations.of("settleTransfers.payloads",
+                        "must be at most " + maxTransfers + " transfers"))
+                        : accountTransferService.settle(moneyTransfers))
+                .map(AccountController::settlement)
+                .contextWrite(CorrelationId.context(CorrelationId.of(correlationIdHeader)));
     }
 
     @ApiOperation(value = "Get the details for the account with the given account id.")
@@ -57,10 +170,136 @@ public class AccountController {
             @ApiResponse(code = 404, message = "The provided account id doesn't exist.", response = ErrorPayload.class),
             @ApiResponse(code = 500, message = "An internal server happened", response = ErrorPayload.class)})
     @GetMapping("/{id}")
-    public Mono<AccountPayload> getAccountDetails(@PathVariable("id") @NotBlank @Size(max = 100) @Pattern(regexp = "^[a-zA-Z0-9\\s]*$") String id) {
+    public Mono<AccountPayload> getAccountDetails(@PathVariable("id") String id) {
         log.info("Received request to get details for account id: {}", id);
 
+        if (!AccountIds.isValid(id)) {
+            return Mono.error(ConstraintViolations.accountId("getAccountDetails.id"));
+        }
+
         return accountTransferService.getAccountDetailsByAccountId(id)
                 .map(accountMapper::entityToPayload);
     }
+
+    @ApiOperation(value = "Stream the details of the account with the given account id as Server-Sent Events, whenever a transfer touching it is committed.")
+    @ApiResponses({@ApiResponse(code = 200, message = "A balance event with the current account details, then one per committed transfer. A slow client skips to the latest one."),
+            @ApiResponse(code = 400, message = "The account id contains a wrong format.", response = ErrorPayload.class),
+            @ApiResponse(code = 404, message = "The provided account id doesn't exist.", response = ErrorPayload.class),
+            @ApiResponse(code = 500, message = "An internal server happened", response = ErrorPayload.class)})
+    @GetMapping(value = "/{id}/stream", produces = TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AccountPayload>> streamAccountDetails(@PathVariable("id") String id) {
+        log.info("Received request to stream the details of account id: {}", id);
+
+        if (!AccountIds.isValid(id)) {
+            return Flux.error(ConstraintViolations.accountId("streamAccountDetails.id"));
+        }
+
+        Flux<ServerSentEvent<AccountPayload>> balances = accountTransferService.getAccountBalanceUpdates(id)
+                .map(account -> ServerSentEvent.builder(accountMapper.entityToPayload(account))
+                        .event(BALANCE_EVENT)
+                        .build());
+        // Heartbeats are comments, ignored by the clients. They only start along with the first balance, so a missing
+        // account still gets its error response.
+        Flux<ServerSentEvent<AccountPayload>> heartbeats = balanceUpdates.heartbeats()
+                .map(tick -> ServerSentEvent.<AccountPayload>builder()
+                        .comment("")
+                        .build());
+
+        return balances.switchOnFirst((first, all) -> first.hasValue() ? all.mergeWith(heartbeats) : all);
+    }
+
+    @ApiOperation(value = "Get the details of every account with one of the given account ids.")
+    @ApiResponses({@ApiResponse(code = 200, message = "The account details in the order of the ids, leaving out the accounts that don't exist."),
+            @ApiResponse(code = 400, message = "An account id contains a wrong format, or there are too many of them.", response = ErrorPayload.class),
+            @ApiResponse(code = 500, message = "An internal server happened", response = ErrorPayload.class)})
+    @GetMapping(params = "ids")
+    public Flux<AccountPayload> getAccountsDetails(@ApiParam(value = "Comma separated account ids") @RequestParam("ids") List<String> ids) {
+        log.info("Received request to get details for {} account ids", ids.size());
+
+        if (ids.size() > properties.getLookups().getMaxIds()) {
+            return Flux.error(ConstraintViolations.of("getAccountsDetails.ids",
+                    "must be at most " + properties.getLookups().getMaxIds() + " account ids"));
+        }
+        for (String id : ids) {
+            if (!AccountIds.isValid(id)) {
+                return Flux.error(ConstraintViolations.of("getAccountsDetails.ids", "must be alphanumeric account ids"));
+            }
+        }
+
+        return accountTransferService.getAccountDetailsByAccountIds(new LinkedHashSet<>(ids))
+                .map(accountMapper::entityToPayload);
+    }
+
+    @ApiOperation(value = "Get the transfers of the account with the given account id, newest first, as a newline delimited JSON stream.")
+    @ApiResponses({@ApiResponse(code = 200, message = "The transfers from or to the account older than the cursor, streamed as the client reads them."),
+            @ApiResponse(code = 400, message = "The account id, the cursor or the limit contains a wrong format.", response = ErrorPayload.class),
+            @ApiResponse(code = 404, message = "The provided account id doesn't exist.", response = ErrorPayload.class),
+            @ApiResponse(code = 500, message = "An internal server happened", response = ErrorPayload.class)})
+    @GetMapping(value = "/{id}/transfers", produces = APPLICATION_NDJSON_VALUE)
+    public Flux<TransferPayload> getAccountTransfers(@PathVariable("id") String id,
+                                                     @ApiParam(value = "The cursor of the last transfer already read, the newest transfers when absent")
+                                                     @RequestParam(value = "cursor", required = false) String cursor,
+                                                     @ApiParam(value = "Maximum number of transfers, the whole history when absent")
+                                                     @RequestParam(value = "limit", required = false) Long limit) {
+        log.info("Received request to get the transfers of account id: {}", id);
+
+        if (!AccountIds.isValid(id)) {
+            return Flux.error(ConstraintViolations.accountId("getAccountTransfers.id"));
+        }
+        if (limit != null && limit < 1) {
+            return Flux.error(ConstraintViolations.of("getAccountTransfers.limit", "must be greater than 0"));
+        }
+
+        TransferCursor after;
+        try {
+            after = cursor == null ? TransferCursor.FIRST : TransferCursor.parse(cursor);
+        } catch (IllegalArgumentException e) {
+            return Flux.error(ConstraintViolations.of("getAccountTransfers.cursor", "must be the cursor of a transfer"));
+        }
+
+        return accountTransferService.getTransfersByAccountId(id, after, limit == null ? Long.MAX_VALUE : limit)
+                .map(transferMapper::entityToPayload);
+    }
+
+    private Mono<MoneyTransferResultPayload> transferFundsToAccount(long index, String line, String correlationId) {
+        MoneyTransferRequestPayload payload;
+        try {
+            payload = objectMapper.readValue(line, MoneyTransferRequestPayload.class);
+        } catch (IOException e) {
+            log.error("Couldn't parse transfer at index: {} of the batch, with message: {}", index, e.getMessage());
+            return Mono.just(TransferPipeline.rejected(index));
+        }
+
+        return transferPipeline.result(index, payload, correlationId);
+    }
+
+    /**
+     * A window is settled whole or not at all, a transfer which can't be parsed or validated rejects it.
+     */
+    private Mono<MoneyTransfer> settledTransfer(long index, String line) {
+        try {
+            MoneyTransferRequestPayload payload = objectMapper.readValue(line, MoneyTransferRequestPayload.class);
+            if (moneyTransferRequestValidator.isValid(payload)) {
+                return Mono.just(moneyTransferMapper.payloadToEntity(payload));
+            }
+        } catch (IOException e) {
+            log.error("Couldn't parse transfer at index: {} of the settlement, with message: {}", index, e.getMessage());
+        }
+        return Mono.error(ConstraintViolations.of("settleTransfers.payloads[" + index + "]", "must be a valid transfer"));
+    }
+
+    private static SettlementPayload settlement(Settlement settlement) {
+        return SettlementPayload.builder()
+                .transfers(settlement.getTransfers())
+                .accounts(settlement.getAccounts())
+                .build();
+    }
+
+    private void closeQuietly(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("Couldn't close the batch transfer stream, with message: {}", e.getMessage());
+        }
+    }
 }
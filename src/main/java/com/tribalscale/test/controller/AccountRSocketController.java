@@ -0,0 +1,73 @@
+package com.tribalscale.test.controller;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.payload.AccountPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferResultPayload;
+import com.tribalscale.test.domain.validator.AccountIds;
+import com.tribalscale.test.logging.CorrelationId;
+import com.tribalscale.test.mapper.AccountMapper;
+import com.tribalscale.test.service.AccountTransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The transfers and account lookups of {@link AccountController} over RSocket, on the TCP port set by
+ * {@code spring.rsocket.server.port}. The payloads are those of the HTTP endpoints, encoded as CBOR or JSON as the
+ * requester sets up its connection, and the outcome of a transfer is the result of the batch transfer endpoint.
+ */
+@Controller
+@RequiredArgsConstructor
+@Slf4j
+public class AccountRSocketController {
+
+    private final AccountTransferService accountTransferService;
+    private final AccountMapper accountMapper;
+    private final MoneyTransferProperties properties;
+    private final TransferPipeline transferPipeline;
+
+    /**
+     * Request-response, one transfer and its result.
+     */
+    @MessageMapping("transfer")
+    public Mono<MoneyTransferResultPayload> transfer(MoneyTransferRequestPayload payload) {
+        log.info("Received RSocket request to make transfer from account id: {} to account id: {} for amount: {}",
+                payload.getSourceAccount(), payload.getTargetAccount(), payload.getAmount());
+
+        return transferPipeline.result(0, payload, CorrelationId.of(null));
+    }
+
+    /**
+     * Request-channel, one result per transfer in the order they were sent. The requester's demand bounds the results
+     * in flight, and the transfers being made at the same time are bounded as for the batch transfer endpoint.
+     */
+    @MessageMapping("transfers")
+    public Flux<MoneyTransferResultPayload> transfers(Flux<MoneyTransferRequestPayload> payloads) {
+        log.info("Received RSocket request to make a stream of transfers");
+
+        String correlationId = CorrelationId.of(null);
+        return payloads.index()
+                .flatMapSequential(payload -> transferPipeline.result(payload.getT1(), payload.getT2(), correlationId),
+                        properties.getBatch().getConcurrency());
+    }
+
+    /**
+     * Request-response, the details of the account.
+     */
+    @MessageMapping("account.{id}")
+    public Mono<AccountPayload> account(@DestinationVariable("id") String id) {
+        log.info("Received RSocket request to get details for account id: {}", id);
+
+        if (!AccountIds.isValid(id)) {
+            return Mono.error(ConstraintViolations.accountId("account.id"));
+        }
+
+        return accountTransferService.getAccountDetailsByAccountId(id)
+                .map(accountMapper::entityToPayload);
+    }
+}
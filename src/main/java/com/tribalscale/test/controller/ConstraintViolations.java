@@ -0,0 +1,26 @@
+package com.tribalscale.test.controller;
+
+import javax.validation.ConstraintViolationException;
+import java.util.Set;
+
+/**
+ * The errors of the request parameters checked by hand rather than by the Bean Validation engine, worded like its own
+ * so the {@link com.tribalscale.test.handler.GlobalExceptionHandler} answers both with the same bad request.
+ */
+final class ConstraintViolations {
+
+    private ConstraintViolations() {
+    }
+
+    /**
+     * @param path    the method and parameter, as in {@code getAccountDetails.id}
+     * @param message what the parameter must be
+     */
+    static ConstraintViolationException of(String path, String message) {
+        return new ConstraintViolationException(path + ": " + message, Set.of());
+    }
+
+    static ConstraintViolationException accountId(String path) {
+        return of(path, "must be an alphanumeric account id");
+    }
+}
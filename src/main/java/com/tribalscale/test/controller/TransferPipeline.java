@@ -0,0 +1,86 @@
+package com.tribalscale.test.controller;
+
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferResultPayload;
+import com.tribalscale.test.domain.validator.MoneyTransferRequestValidator;
+import com.tribalscale.test.logging.CorrelationId;
+import com.tribalscale.test.logging.TransferEventLogger;
+import com.tribalscale.test.mapper.MoneyTransferMapper;
+import com.tribalscale.test.metrics.TransferMetrics;
+import com.tribalscale.test.service.AccountTransferService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * The path of a single transfer request, shared by the HTTP and RSocket endpoints: mapped to a transfer, timed until
+ * it's committed whatever the engine, logged as an event and, for the streams of transfers, turned into the result of
+ * its index.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TransferPipeline {
+
+    private final AccountTransferService accountTransferService;
+    private final MoneyTransferMapper moneyTransferMapper;
+    private final MoneyTransferRequestValidator moneyTransferRequestValidator;
+    private final TransferMetrics transferMetrics;
+    private final TransferEventLogger transferEventLogger;
+
+    /**
+     * Transfers through the service. The correlation id is written here rather than by the callers, the idempotency
+     * store subscribes to the transfer apart from them.
+     *
+     * @param payload a payload already validated
+     */
+    public Mono<Integer> transfer(MoneyTransferRequestPayload payload, String correlationId) {
+        MoneyTransfer moneyTransfer = moneyTransferMapper.payloadToEntity(payload);
+        return transferEventLogger.logTransfer(moneyTransfer, transferMetrics.timeTransfer(moneyTransfer,
+                        accountTransferService.transferMoneyFromAccountToAnotherAccount(moneyTransfer)))
+                .contextWrite(CorrelationId.context(correlationId));
+    }
+
+    /**
+     * Validates and transfers the payload at the index of a stream of transfers, any outcome a result rather than an
+     * error, so one transfer failing doesn't end the stream. A failure is told by its error code as on the single
+     * transfer endpoint, by the name of its status when it has none.
+     */
+    public Mono<MoneyTransferResultPayload> result(long index, MoneyTransferRequestPayload payload, String correlationId) {
+        if (!moneyTransferRequestValidator.isValid(payload)) {
+            return Mono.just(rejected(index));
+        }
+
+        return transfer(payload, correlationId)
+                .thenReturn(result(index, OK.value(), null))
+                .onErrorResume(MoneyTransferApplicationException.class, e -> Mono.just(result(index, e.getStatusCode(),
+                        e.getErrorCode() != null ? e.getErrorCode().name() : HttpStatus.valueOf(e.getStatusCode()).name())))
+                .onErrorResume(e -> {
+                    log.error("Transfer at index: {} of the stream failed, with message: {}", index, e.getMessage());
+                    return Mono.just(result(index, INTERNAL_SERVER_ERROR.value(), INTERNAL_SERVER_ERROR.name()));
+                });
+    }
+
+    /**
+     * The result of a transfer which couldn't be read or isn't valid.
+     */
+    public static MoneyTransferResultPayload rejected(long index) {
+        return result(index, BAD_REQUEST.value(), BAD_REQUEST.name());
+    }
+
+    private static MoneyTransferResultPayload result(long index, int status, String errorCode) {
+        return MoneyTransferResultPayload.builder()
+                .index(index)
+                .status(status)
+                .errorCode(errorCode)
+                .build();
+    }
+}
@@ -10,5 +10,8 @@ import lombok.With;
 public class Account {
     String accountId;
     String currency;
-    Double balance;
+    /**
+     * Balance in minor units of the account currency.
+     */
+    long balance;
 }
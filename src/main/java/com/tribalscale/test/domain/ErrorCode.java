@@ -0,0 +1,45 @@
+package com.tribalscale.test.domain;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+
+import static java.lang.String.format;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+/**
+ * Stable codes of the expected transfer failures, with the HTTP status they are answered with.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ErrorCode {
+    ACCOUNT_NOT_FOUND(NOT_FOUND, "Account not found", "Account with id: %s, doesn't exist"),
+    SOURCE_ACCOUNT_NOT_FOUND(NOT_FOUND, "Source account not found", "Source account with id: %s, doesn't exist"),
+    TARGET_ACCOUNT_NOT_FOUND(NOT_FOUND, "Target account not found", "Target account with id: %s, doesn't exist"),
+    INSUFFICIENT_FUNDS(BAD_REQUEST, "Insufficient funds at the source account", "Insufficient funds at Source account with id: %s"),
+    CURRENCY_NOT_CONVERTIBLE(BAD_REQUEST, "No exchange rate for the currencies of the transfer", "No exchange rate to convert the transfer to the currency of account with id: %s"),
+    IDEMPOTENCY_KEY_REUSED(UNPROCESSABLE_ENTITY, "Idempotency key already used for a different transfer", "Idempotency key: %s, was already used for a different transfer"),
+    IDEMPOTENCY_KEY_IN_PROGRESS(CONFLICT, "Idempotency key in use by a transfer without an outcome yet", "Idempotency key: %s, is in use by a transfer without an outcome yet");
+
+    private final HttpStatus status;
+
+    /**
+     * What the client is answered with, the same for every account.
+     */
+    private final String description;
+
+    private final String messageFormat;
+
+    /**
+     * Only meant to be called once the failure happened, typically from {@code Mono.error(Supplier)}.
+     */
+    public MoneyTransferApplicationException exception(String accountId) {
+        return MoneyTransferApplicationException.builder()
+                .message(format(messageFormat, accountId))
+                .errorCode(this)
+                .build();
+    }
+}
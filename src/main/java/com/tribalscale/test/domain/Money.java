@@ -0,0 +1,55 @@
+package com.tribalscale.test.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Conversions between the decimal amounts of the API and the minor units (cents for EUR, yen for JPY...) money is
+ * carried in everywhere else, scaled by the ISO 4217 fraction digits of the currency.
+ */
+public final class Money {
+
+    private static final double[] POWERS_OF_TEN = {1d, 10d, 100d, 1_000d, 10_000d};
+
+    private Money() {
+    }
+
+    public static int fractionDigits(String currency) {
+        if (currency == null) {
+            throw new IllegalArgumentException("The currency is required to scale money amounts");
+        }
+
+        // Currencies without minor units defined, like gold or the testing code, report -1
+        return Math.max(Currency.getInstance(currency).getDefaultFractionDigits(), 0);
+    }
+
+    /**
+     * @return the amount in minor units of the currency, rounded half even to its fraction digits, 0 for no amount
+     */
+    public static long toMinorUnits(Double amount, String currency) {
+        if (amount == null) {
+            return 0L;
+        }
+
+        return BigDecimal.valueOf(amount)
+                .setScale(fractionDigits(currency), RoundingMode.HALF_EVEN)
+                .unscaledValue()
+                .longValueExact();
+    }
+
+    /**
+     * Whether the amount converts to minor units of the currency, a long holds about 9.2e18 of them.
+     */
+    public static boolean fitsMinorUnits(double amount, String currency) {
+        return Double.isFinite(amount)
+                && BigDecimal.valueOf(amount)
+                .setScale(fractionDigits(currency), RoundingMode.HALF_EVEN)
+                .unscaledValue()
+                .bitLength() < Long.SIZE;
+    }
+
+    public static double toMajorUnits(long minorUnits, String currency) {
+        return minorUnits / POWERS_OF_TEN[fractionDigits(currency)];
+    }
+}
@@ -3,11 +3,54 @@ package com.tribalscale.test.domain;
 import lombok.Builder;
 import lombok.Value;
 
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 @Value
 @Builder
 public class MoneyTransfer {
     String currency;
-    Double amount;
+    /**
+     * Amount in minor units of the transfer currency.
+     */
+    long amount;
     String sourceAccount;
     String targetAccount;
+
+    /**
+     * SHA-256 of the transfer in hex, the same for every request of the same transfer. Each field is prefixed with its
+     * length, so no two transfers run into each other's encoding.
+     */
+    public String fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+        }
+
+        update(digest, currency);
+        update(digest, sourceAccount);
+        update(digest, targetAccount);
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(amount).array());
+
+        var hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static void update(MessageDigest digest, String field) {
+        if (field == null) {
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+            return;
+        }
+        byte[] bytes = field.getBytes(UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
 }
@@ -4,15 +4,25 @@ import lombok.Builder;
 import lombok.Getter;
 import lombok.ToString;
 
+/**
+ * Expected failure of a transfer or an account lookup. It's part of the normal flow rather than a bug, so it's created
+ * without a stack trace and is cheap to signal.
+ */
 @Getter
 @ToString
 public class MoneyTransferApplicationException extends RuntimeException {
 
     private final int statusCode;
 
+    /**
+     * Absent for failures that don't have a stable code, like the outcomes replayed from before the codes were stored.
+     */
+    private final ErrorCode errorCode;
+
     @Builder
-    public MoneyTransferApplicationException(final String message, final int statusCode) {
-        super(message);
-        this.statusCode = statusCode;
+    public MoneyTransferApplicationException(final String message, final int statusCode, final ErrorCode errorCode) {
+        super(message, null, false, false);
+        this.statusCode = errorCode != null ? errorCode.getStatus().value() : statusCode;
+        this.errorCode = errorCode;
     }
 }
@@ -0,0 +1,18 @@
+package com.tribalscale.test.domain;
+
+import lombok.Value;
+
+/**
+ * A window of transfers settled together, applied as one balance update per account on their net positions.
+ */
+@Value(staticConstructor = "of")
+public class Settlement {
+    /**
+     * Transfers of the window, each recorded in the history.
+     */
+    int transfers;
+    /**
+     * Accounts whose balance was updated, the ones whose transfers cancel out aren't.
+     */
+    int accounts;
+}
@@ -0,0 +1,48 @@
+package com.tribalscale.test.domain;
+
+import com.tribalscale.test.history.TransferCursor;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A transfer applied between two accounts, as kept in their history.
+ */
+@Value
+@Builder
+public class Transfer {
+    long id;
+    /**
+     * When the transfer was applied, in epoch millis.
+     */
+    long createdAt;
+    String sourceAccount;
+    String targetAccount;
+    String currency;
+    /**
+     * Amount in minor units of the transfer currency.
+     */
+    long amount;
+    /**
+     * Currency of the source account.
+     */
+    String debitCurrency;
+    /**
+     * Amount debited from the source account, in minor units of its currency.
+     */
+    long debit;
+    /**
+     * Currency of the target account.
+     */
+    String creditCurrency;
+    /**
+     * Amount credited to the target account, in minor units of its currency.
+     */
+    long credit;
+
+    /**
+     * @return the cursor the page following this transfer starts after
+     */
+    public TransferCursor cursor() {
+        return TransferCursor.of(id);
+    }
+}
@@ -0,0 +1,34 @@
+package com.tribalscale.test.domain;
+
+import lombok.Value;
+
+/**
+ * The amounts a transfer moves, each one in minor units of the currency of its account, which differ from the amount
+ * of the transfer when it's converted.
+ */
+@Value(staticConstructor = "of")
+public class TransferLegs {
+    /**
+     * Debited from the source account.
+     */
+    long debit;
+    /**
+     * Currency of the source account.
+     */
+    String debitCurrency;
+    /**
+     * Credited to the target account.
+     */
+    long credit;
+    /**
+     * Currency of the target account.
+     */
+    String creditCurrency;
+
+    /**
+     * The legs of a transfer in the currency of both accounts.
+     */
+    public static TransferLegs unconverted(MoneyTransfer moneyTransfer) {
+        return of(moneyTransfer.getAmount(), moneyTransfer.getCurrency(), moneyTransfer.getAmount(), moneyTransfer.getCurrency());
+    }
+}
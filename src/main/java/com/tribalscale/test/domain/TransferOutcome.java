@@ -0,0 +1,67 @@
+package com.tribalscale.test.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.Objects;
+
+import static com.tribalscale.test.domain.ErrorCode.IDEMPOTENCY_KEY_REUSED;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * What a transfer request ended up with, as stored for idempotent retries.
+ */
+@Value
+@Builder(toBuilder = true)
+public class TransferOutcome {
+    int statusCode;
+    String message;
+    ErrorCode errorCode;
+    /**
+     * {@link MoneyTransfer#fingerprint()} of the request, set by the store when it stores the outcome.
+     */
+    String requestHash;
+
+    public static TransferOutcome succeeded() {
+        return TransferOutcome.builder()
+                .statusCode(OK.value())
+                .build();
+    }
+
+    public static TransferOutcome failed(MoneyTransferApplicationException exception) {
+        return TransferOutcome.builder()
+                .statusCode(exception.getStatusCode())
+                .message(exception.getMessage())
+                .errorCode(exception.getErrorCode())
+                .build();
+    }
+
+    public boolean isSucceeded() {
+        return statusCode == OK.value();
+    }
+
+    public TransferOutcome forRequest(String requestHash) {
+        return toBuilder()
+                .requestHash(requestHash)
+                .build();
+    }
+
+    /**
+     * @return this outcome when it's the one of the request
+     * @throws MoneyTransferApplicationException when the key was used for a different request
+     */
+    public TransferOutcome replayedFor(String idempotencyKey, String requestHash) {
+        if (!Objects.equals(this.requestHash, requestHash)) {
+            throw IDEMPOTENCY_KEY_REUSED.exception(idempotencyKey);
+        }
+        return this;
+    }
+
+    public MoneyTransferApplicationException toException() {
+        return MoneyTransferApplicationException.builder()
+                .message(message)
+                .statusCode(statusCode)
+                .errorCode(errorCode)
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package com.tribalscale.test.domain.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Value;
 import lombok.extern.jackson.Jacksonized;
@@ -7,7 +8,13 @@ import lombok.extern.jackson.Jacksonized;
 @Value
 @Builder
 @Jacksonized
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class ErrorPayload {
     int code;
     String message;
+
+    /**
+     * Stable code of the failure, absent when it has none.
+     */
+    String errorCode;
 }
@@ -1,5 +1,6 @@
 package com.tribalscale.test.domain.payload;
 
+import com.tribalscale.test.domain.validator.ConvertibleAmount;
 import com.tribalscale.test.domain.validator.ValidCurrencyCode;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Builder;
@@ -8,11 +9,14 @@ import lombok.extern.jackson.Jacksonized;
 
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Size;
 
 @Value
 @Builder
 @Jacksonized
+@ConvertibleAmount
 public class MoneyTransferRequestPayload {
 
     @ApiModelProperty(notes = "The ISO code for the currency", name = "currency", required = true, value = "EUR")
@@ -22,16 +26,19 @@ public class MoneyTransferRequestPayload {
     String currency;
 
     @ApiModelProperty(notes = "The amount to be transferred, non negative", name = "amount", required = true, value = "1000.0")
+    @NotNull
     @Min(1)
     Double amount;
 
     @ApiModelProperty(notes = "The source account id (alphanumeric)", name = "sourceAccount", required = true, value = "11aa23")
     @NotBlank
+    @Size(max = 100)
     @Pattern(regexp = "^[a-zA-Z0-9\\s]*$")
     String sourceAccount;
 
     @ApiModelProperty(notes = "The target account id (alphanumeric)", name = "sourceAccount", required = true, value = "11aa23")
     @NotBlank
+    @Size(max = 100)
     @Pattern(regexp = "^[a-zA-Z0-9\\s]*$")
     String targetAccount;
 }
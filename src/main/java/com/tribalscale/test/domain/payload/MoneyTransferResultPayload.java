@@ -0,0 +1,22 @@
+package com.tribalscale.test.domain.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Value
+@Builder
+@Jacksonized
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MoneyTransferResultPayload {
+    @ApiModelProperty(notes = "Zero based position of the transfer in the submitted stream", name = "index", required = true, value = "0")
+    long index;
+
+    @ApiModelProperty(notes = "The HTTP status the transfer would have got through the single transfer endpoint", name = "status", required = true, value = "200")
+    int status;
+
+    @ApiModelProperty(notes = "Why the transfer wasn't made, the error code the single transfer endpoint answers with, else the name of the status, absent when it was made", name = "errorCode", value = "INSUFFICIENT_FUNDS")
+    String errorCode;
+}
@@ -0,0 +1,17 @@
+package com.tribalscale.test.domain.payload;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+@Value
+@Builder
+@Jacksonized
+public class SettlementPayload {
+    @ApiModelProperty(notes = "Number of transfers settled, each one recorded in the history of its accounts", name = "transfers", required = true, value = "1000")
+    int transfers;
+
+    @ApiModelProperty(notes = "Number of accounts whose balance was updated with their net position", name = "accounts", required = true, value = "12")
+    int accounts;
+}
@@ -0,0 +1,43 @@
+package com.tribalscale.test.domain.payload;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+
+import java.time.Instant;
+
+@Value
+@Builder
+@Jacksonized
+public class TransferPayload {
+    @ApiModelProperty(notes = "The account id the amount was taken from", name = "sourceAccount", required = true, value = "1")
+    String sourceAccount;
+
+    @ApiModelProperty(notes = "The account id the amount was given to", name = "targetAccount", required = true, value = "2")
+    String targetAccount;
+
+    @ApiModelProperty(notes = "The ISO code for the currency of the amount", name = "currency", required = true, value = "EUR")
+    String currency;
+
+    @ApiModelProperty(notes = "The amount transferred", name = "amount", required = true, value = "1000.0")
+    Double amount;
+
+    @ApiModelProperty(notes = "The ISO code for the currency of the source account", name = "debitCurrency", required = true, value = "USD")
+    String debitCurrency;
+
+    @ApiModelProperty(notes = "The amount taken from the source account, converted to its currency", name = "debit", required = true, value = "1084.2")
+    Double debit;
+
+    @ApiModelProperty(notes = "The ISO code for the currency of the target account", name = "creditCurrency", required = true, value = "EUR")
+    String creditCurrency;
+
+    @ApiModelProperty(notes = "The amount given to the target account, converted to its currency", name = "credit", required = true, value = "1000.0")
+    Double credit;
+
+    @ApiModelProperty(notes = "When the transfer was applied", name = "createdAt", required = true, value = "2021-04-01T10:15:30.120Z")
+    Instant createdAt;
+
+    @ApiModelProperty(notes = "Cursor to get the transfers older than this one", name = "cursor", required = true, value = "42")
+    String cursor;
+}
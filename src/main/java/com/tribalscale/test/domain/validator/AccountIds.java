@@ -0,0 +1,42 @@
+package com.tribalscale.test.domain.validator;
+
+/**
+ * The account id check of the transfer payloads and the account endpoint, by a scan of its characters instead of the
+ * {@code @NotBlank @Size(max = 100) @Pattern(regexp = "^[a-zA-Z0-9\\s]*$")} constraints it stands for.
+ */
+public final class AccountIds {
+
+    public static final int MAX_LENGTH = 100;
+
+    private AccountIds() {
+    }
+
+    /**
+     * Whether the value has at most {@link #MAX_LENGTH} ASCII letters, digits and whitespace characters, at least one
+     * of them not a whitespace.
+     */
+    public static boolean isValid(String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return false;
+        }
+
+        boolean blank = true;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                blank = false;
+            } else if (!isWhitespace(c)) {
+                return false;
+            }
+        }
+
+        return !blank;
+    }
+
+    /**
+     * The {@code \s} class of {@link java.util.regex.Pattern}.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,26 @@
+package com.tribalscale.test.domain.validator;
+
+import javax.validation.Constraint;
+import javax.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * The amount of a transfer is finite and fits in minor units of its currency, which are carried as a long. Left to
+ * the other constraints when the amount or the currency is missing or invalid.
+ */
+@Target(TYPE)
+@Retention(RUNTIME)
+@Constraint(validatedBy = ConvertibleAmountValidator.class)
+@Documented
+public @interface ConvertibleAmount {
+    String message() default "Amount too large for the currency";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
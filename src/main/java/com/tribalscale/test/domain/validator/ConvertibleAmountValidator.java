@@ -0,0 +1,14 @@
+package com.tribalscale.test.domain.validator;
+
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
+
+public class ConvertibleAmountValidator implements ConstraintValidator<ConvertibleAmount, MoneyTransferRequestPayload> {
+
+    @Override
+    public boolean isValid(MoneyTransferRequestPayload value, ConstraintValidatorContext constraintValidatorContext) {
+        return MoneyTransferRequestValidator.isConvertibleAmount(value);
+    }
+}
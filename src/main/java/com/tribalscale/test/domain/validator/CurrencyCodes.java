@@ -0,0 +1,89 @@
+package com.tribalscale.test.domain.validator;
+
+import java.util.BitSet;
+import java.util.Currency;
+
+/**
+ * The ISO 4217 currency codes known to the JDK, as a bit per possible three uppercase letter code so a lookup is a
+ * few arithmetic operations, without the {@code HashSet} {@link Currency#getAvailableCurrencies()} builds per call.
+ * <p>
+ * The index of a code also serves as its compact form, e.g. in the records of the mapped account table.
+ */
+public final class CurrencyCodes {
+
+    private static final int LETTERS = 'Z' - 'A' + 1;
+
+    /**
+     * Number of three uppercase letter codes, the indexes go from 0 to this value excluded.
+     */
+    public static final int INDEXES = LETTERS * LETTERS * LETTERS;
+
+    private static final BitSet CODES = new BitSet(INDEXES);
+    private static final String[] KNOWN_CODES = new String[INDEXES];
+
+    static {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            String code = currency.getCurrencyCode();
+            if (code.length() == 3) {
+                int index = index(code);
+                if (index >= 0) {
+                    CODES.set(index);
+                    KNOWN_CODES[index] = code;
+                }
+            }
+        }
+    }
+
+    private CurrencyCodes() {
+    }
+
+    /**
+     * Whether the value is a known currency code, as {@link Currency#getInstance(String)} would accept it.
+     */
+    public static boolean isValid(String value) {
+        if (value == null || value.length() != 3) {
+            return false;
+        }
+
+        int index = index(value);
+        return index >= 0 && CODES.get(index);
+    }
+
+    /**
+     * Index of the three uppercase letter code, whether it's a known currency or not.
+     *
+     * @return the index, from 0 to {@link #INDEXES} excluded, or -1 when the value isn't three uppercase letters
+     */
+    public static int index(String code) {
+        if (code.length() != 3) {
+            return -1;
+        }
+
+        int index = 0;
+        for (int i = 0; i < 3; i++) {
+            int letter = code.charAt(i) - 'A';
+            if (letter < 0 || letter >= LETTERS) {
+                return -1;
+            }
+            index = index * LETTERS + letter;
+        }
+
+        return index;
+    }
+
+    /**
+     * The code at the index, the same instance every time for the known currencies.
+     */
+    public static String code(int index) {
+        String code = KNOWN_CODES[index];
+        if (code != null) {
+            return code;
+        }
+
+        char[] letters = new char[3];
+        for (int i = 2, remaining = index; i >= 0; i--, remaining /= LETTERS) {
+            letters[i] = (char) ('A' + remaining % LETTERS);
+        }
+        return new String(letters);
+    }
+}
@@ -0,0 +1,66 @@
+package com.tribalscale.test.domain.validator;
+
+import com.tribalscale.test.domain.Money;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.Errors;
+import org.springframework.validation.Validator;
+
+/**
+ * Checks a {@link MoneyTransferRequestPayload} as its Bean Validation constraints describe it, without going through
+ * the validation engine and its regular expressions. The constraints stay on the payload to document it.
+ */
+@Component
+public class MoneyTransferRequestValidator implements Validator {
+
+    @Override
+    public boolean supports(Class<?> clazz) {
+        return MoneyTransferRequestPayload.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public void validate(Object target, Errors errors) {
+        var payload = (MoneyTransferRequestPayload) target;
+
+        if (!CurrencyCodes.isValid(payload.getCurrency())) {
+            errors.rejectValue("currency", "ValidCurrencyCode");
+        }
+        if (!isValidAmount(payload.getAmount())) {
+            errors.rejectValue("amount", "Min");
+        }
+        if (!isConvertibleAmount(payload)) {
+            errors.rejectValue("amount", "ConvertibleAmount");
+        }
+        if (!AccountIds.isValid(payload.getSourceAccount())) {
+            errors.rejectValue("sourceAccount", "Pattern");
+        }
+        if (!AccountIds.isValid(payload.getTargetAccount())) {
+            errors.rejectValue("targetAccount", "Pattern");
+        }
+    }
+
+    public boolean isValid(MoneyTransferRequestPayload payload) {
+        return CurrencyCodes.isValid(payload.getCurrency())
+                && isValidAmount(payload.getAmount())
+                && isConvertibleAmount(payload)
+                && AccountIds.isValid(payload.getSourceAccount())
+                && AccountIds.isValid(payload.getTargetAccount());
+    }
+
+    /**
+     * {@code @NotNull @Min(1)}, which lets NaN through as well.
+     */
+    private static boolean isValidAmount(Double amount) {
+        return amount != null && !(amount < 1);
+    }
+
+    /**
+     * {@link ConvertibleAmount}, an amount overflowing the minor units would otherwise fail the transfer as a server
+     * error.
+     */
+    static boolean isConvertibleAmount(MoneyTransferRequestPayload payload) {
+        return payload.getAmount() == null
+                || !CurrencyCodes.isValid(payload.getCurrency())
+                || Money.fitsMinorUnits(payload.getAmount(), payload.getCurrency());
+    }
+}
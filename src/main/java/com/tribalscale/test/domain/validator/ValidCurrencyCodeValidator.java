@@ -4,7 +4,6 @@ import org.springframework.util.ObjectUtils;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
-import java.util.Currency;
 
 public class ValidCurrencyCodeValidator implements ConstraintValidator<ValidCurrencyCode, String> {
 
@@ -17,15 +16,10 @@ public class ValidCurrencyCodeValidator implements ConstraintValidator<ValidCurr
 
     @Override
     public boolean isValid(String value, ConstraintValidatorContext constraintValidatorContext) {
-        try {
-            boolean containsIsoCode = Currency.getAvailableCurrencies()
-                    .contains(Currency.getInstance(value));
+        boolean containsIsoCode = CurrencyCodes.isValid(value);
 
-            return isOptional
-                    ? (containsIsoCode || (!ObjectUtils.isEmpty(value)))
-                    : containsIsoCode;
-        } catch (IllegalArgumentException e) {
-            return false;
-        }
+        return isOptional
+                ? (containsIsoCode || (!ObjectUtils.isEmpty(value)))
+                : containsIsoCode;
     }
 }
@@ -0,0 +1,103 @@
+package com.tribalscale.test.fx;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+/**
+ * The current {@link FxRates}, read from a local file on startup and read again whenever the file changes. Each load
+ * builds a new snapshot and publishes it with a single volatile write, so a transfer converts with the rates of one
+ * load or the other, never a mix of both, and never waits on a reload.
+ * <p>
+ * Without the file only amounts in their own currency convert. A file that fails to load leaves the previous rates in
+ * place.
+ */
+@Component
+@Slf4j
+public class FxRateTable implements DisposableBean {
+
+    private final Path file;
+    private final Disposable reloads;
+
+    private volatile FxRates rates = FxRates.NONE;
+    private FileTime loadedModifiedTime;
+
+    @Autowired
+    public FxRateTable(MoneyTransferProperties properties) {
+        this(Path.of(properties.getFx().getRatesFile()), properties.getFx().getReloadInterval());
+    }
+
+    /**
+     * @param reloadInterval how often the file is checked for changes, never when zero
+     */
+    public FxRateTable(Path file, Duration reloadInterval) {
+        this.file = file;
+
+        if (!reload() && Files.notExists(file)) {
+            log.info("No exchange rates at {}, only transfers in the currency of both accounts are accepted", file);
+        }
+
+        this.reloads = reloadInterval.isZero()
+                ? null
+                : Flux.interval(reloadInterval, reloadInterval, Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .subscribe(tick -> reload());
+    }
+
+    public FxRates rates() {
+        return rates;
+    }
+
+    /**
+     * Loads the file again when it was modified since the last load.
+     *
+     * @return whether new rates were published
+     */
+    public synchronized boolean reload() {
+        FileTime modifiedTime;
+        try {
+            modifiedTime = Files.getLastModifiedTime(file);
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IOException e) {
+            log.warn("Couldn't check the exchange rates at {}, with message: {}", file, e.getMessage());
+            return false;
+        }
+
+        if (modifiedTime.equals(loadedModifiedTime)) {
+            return false;
+        }
+        // Not tried again until the file changes, whether it loads or not
+        loadedModifiedTime = modifiedTime;
+
+        try {
+            rates = FxRates.read(file);
+        } catch (IllegalArgumentException | UncheckedIOException e) {
+            log.error("Couldn't load the exchange rates at {}, keeping the previous ones, with message: {}", file, e.getMessage());
+            return false;
+        }
+
+        log.info("Loaded the exchange rates of {} currencies from {}", rates.size(), file);
+        return true;
+    }
+
+    @Override
+    public void destroy() {
+        if (reloads != null) {
+            reloads.dispose();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.tribalscale.test.fx;
+
+import com.tribalscale.test.domain.Money;
+import com.tribalscale.test.domain.validator.CurrencyCodes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Immutable snapshot of the exchange rates, as a dense matrix of conversion factors between the currencies it has
+ * rates for. A currency is given its row and column through a slot per {@link CurrencyCodes#index(String)}, and each
+ * factor already folds the fraction digits of both currencies in, so converting minor units is a lookup and a multiply
+ * without any lock.
+ * <p>
+ * The factors are decimals, like the amounts of the API they are kept to {@link java.math.BigDecimal} precision so
+ * converted amounts round half even the way {@link Money#toMinorUnits(Double, String)} does. A binary floating point
+ * factor would round amounts falling on a half cent the wrong way, 55 cents at 1.1 coming out as 61 rather than 60.
+ */
+public final class FxRates {
+
+    /**
+     * What {@link #convert(long, String, String)} returns when there's no rate between the two currencies.
+     */
+    public static final long NO_RATE = Long.MIN_VALUE;
+
+    /**
+     * No rates at all, only amounts in their own currency convert.
+     */
+    public static final FxRates NONE = new FxRates(new String[0], new BigDecimal[0]);
+
+    private static final String BASE = "base";
+
+    /**
+     * Precision of the cross rates, a rate against the base currency is taken as it's written.
+     */
+    private static final MathContext CROSS_RATE = MathContext.DECIMAL128;
+
+    /**
+     * Row of the currency + 1 per currency code index, 0 for the currencies without rates.
+     */
+    private final short[] slots = new short[CurrencyCodes.INDEXES];
+    private final String[] currencies;
+    private final BigDecimal[] factors;
+
+    private FxRates(String[] currencies, BigDecimal[] factors) {
+        this.currencies = currencies;
+        this.factors = factors;
+        for (int i = 0; i < currencies.length; i++) {
+            slots[CurrencyCodes.index(currencies[i])] = (short) (i + 1);
+        }
+    }
+
+    /**
+     * Builds the cross rates of every pair of currencies from their rate against a single base currency.
+     *
+     * @param rates units of each currency for one unit of the base currency, the base itself needs no rate
+     * @throws IllegalArgumentException when a currency isn't known or a rate isn't a positive number
+     */
+    public static FxRates of(String base, Map<String, Double> rates) {
+        var baseRates = new TreeMap<String, Double>(rates);
+        baseRates.putIfAbsent(base, 1d);
+        baseRates.forEach((currency, rate) -> {
+            if (!CurrencyCodes.isValid(currency)) {
+                throw new IllegalArgumentException("Unknown currency " + currency);
+            }
+            if (rate == null || !(rate > 0) || Double.isInfinite(rate)) {
+                throw new IllegalArgumentException("The rate of " + currency + " isn't a positive number: " + rate);
+            }
+        });
+        if (baseRates.get(base) != 1d) {
+            throw new IllegalArgumentException("The rate of the base currency " + base + " isn't 1");
+        }
+
+        String[] currencies = baseRates.keySet().toArray(new String[0]);
+        int size = currencies.length;
+        BigDecimal[] factors = new BigDecimal[size * size];
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                factors[from * size + to] = from == to ? BigDecimal.ONE
+                        : BigDecimal.valueOf(baseRates.get(currencies[to]))
+                        .divide(BigDecimal.valueOf(baseRates.get(currencies[from])), CROSS_RATE)
+                        .scaleByPowerOfTen(Money.fractionDigits(currencies[to]) - Money.fractionDigits(currencies[from]));
+            }
+        }
+
+        return new FxRates(currencies, factors);
+    }
+
+    /**
+     * Reads the rates from a properties file naming the base currency and the rate of each currency against it:
+     * <pre>
+     * base=EUR
+     * USD=1.0842
+     * JPY=162.35
+     * </pre>
+     *
+     * @throws UncheckedIOException when the file can't be read
+     * @throws IllegalArgumentException when the base is missing, or a currency or a rate isn't valid
+     */
+    public static FxRates read(Path file) {
+        var properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't read the exchange rates at " + file, e);
+        }
+
+        String base = properties.getProperty(BASE);
+        if (base == null) {
+            throw new IllegalArgumentException("The exchange rates at " + file + " don't name their " + BASE + " currency");
+        }
+
+        var rates = new TreeMap<String, Double>();
+        for (String currency : properties.stringPropertyNames()) {
+            if (!currency.equals(BASE)) {
+                try {
+                    rates.put(currency, Double.valueOf(properties.getProperty(currency)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("The rate of " + currency + " isn't a number: " + properties.getProperty(currency));
+                }
+            }
+        }
+
+        return of(base.trim(), rates);
+    }
+
+    /**
+     * Converts an amount in minor units of a currency to minor units of another, rounded half even.
+     *
+     * @return the converted amount, the same one between a currency and itself, or {@link #NO_RATE} when there's no
+     * rate between the two currencies or the converted amount doesn't fit in a long
+     */
+    public long convert(long amount, String from, String to) {
+        int fromIndex = CurrencyCodes.index(from);
+        int toIndex = CurrencyCodes.index(to);
+        if (fromIndex < 0 || toIndex < 0) {
+            return NO_RATE;
+        }
+        if (fromIndex == toIndex) {
+            return amount;
+        }
+
+        int row = slots[fromIndex] - 1;
+        int column = slots[toIndex] - 1;
+        if (row < 0 || column < 0) {
+            return NO_RATE;
+        }
+
+        BigInteger converted = BigDecimal.valueOf(amount)
+                .multiply(factors[row * currencies.length + column])
+                .setScale(0, RoundingMode.HALF_EVEN)
+                .unscaledValue();
+        return converted.bitLength() < Long.SIZE ? converted.longValue() : NO_RATE;
+    }
+
+    /**
+     * Number of currencies with rates.
+     */
+    public int size() {
+        return currencies.length;
+    }
+}
@@ -1,5 +1,6 @@
 package com.tribalscale.test.handler;
 
+import com.tribalscale.test.domain.ErrorCode;
 import com.tribalscale.test.domain.MoneyTransferApplicationException;
 import com.tribalscale.test.domain.payload.ErrorPayload;
 import lombok.extern.slf4j.Slf4j;
@@ -10,20 +11,45 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import javax.validation.ConstraintViolationException;
+import java.util.EnumMap;
+import java.util.Map;
 
 import static org.springframework.http.HttpStatus.*;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 
 @RestControllerAdvice
 @Slf4j
 public class GlobalExceptionHandler {
 
+    /**
+     * The answer to each error code never changes, so it's only built once. Errors are always JSON, whatever the
+     * endpoint produces otherwise, e.g. the event stream of the balance updates.
+     */
+    private static final Map<ErrorCode, ResponseEntity<ErrorPayload>> ERROR_CODE_RESPONSES = new EnumMap<>(ErrorCode.class);
+
+    static {
+        for (ErrorCode errorCode : ErrorCode.values()) {
+            ERROR_CODE_RESPONSES.put(errorCode, ResponseEntity.status(errorCode.getStatus())
+                    .contentType(APPLICATION_JSON)
+                    .body(ErrorPayload.builder()
+                            .code(errorCode.getStatus().value())
+                            .message(errorCode.getDescription())
+                            .errorCode(errorCode.name())
+                            .build()));
+        }
+    }
+
     @ExceptionHandler(MoneyTransferApplicationException.class)
     @ResponseStatus
     public ResponseEntity<?> handleApplicationException(final MoneyTransferApplicationException exception) {
         log.error("Received application exception: {}, with message: {}", exception.getClass().getName(), exception.getMessage());
-        log.debug("Error debug: ", exception);
+
+        if (exception.getErrorCode() != null) {
+            return ERROR_CODE_RESPONSES.get(exception.getErrorCode());
+        }
 
         return ResponseEntity.status(exception.getStatusCode())
+                .contentType(APPLICATION_JSON)
                 .body(ErrorPayload.builder()
                         .code(exception.getStatusCode())
                         .message(exception.getStatusCode() == NOT_FOUND.value()
@@ -39,6 +65,7 @@ public class GlobalExceptionHandler {
         log.debug("Error debug: ", exception);
 
         return ResponseEntity.status(INTERNAL_SERVER_ERROR)
+                .contentType(APPLICATION_JSON)
                 .body(ErrorPayload.builder()
                         .code(INTERNAL_SERVER_ERROR.value())
                         .message("Generic error while trying to access to the provided operation")
@@ -52,6 +79,7 @@ public class GlobalExceptionHandler {
         log.debug("Error debug: ", exception);
 
         return ResponseEntity.status(BAD_REQUEST)
+                .contentType(APPLICATION_JSON)
                 .body(ErrorPayload.builder()
                         .code(BAD_REQUEST.value())
                         .message("Error while validating input parameters")
@@ -65,6 +93,7 @@ public class GlobalExceptionHandler {
         log.debug("Error debug: ", exception);
 
         return ResponseEntity.status(BAD_REQUEST)
+                .contentType(APPLICATION_JSON)
                 .body(ErrorPayload.builder()
                         .code(BAD_REQUEST.value())
                         .message("Error while validating input parameters")
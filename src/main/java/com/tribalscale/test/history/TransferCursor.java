@@ -0,0 +1,45 @@
+package com.tribalscale.test.history;
+
+import lombok.Value;
+
+/**
+ * Position in the history of an account, newest first: a page starting after the cursor holds the transfers with a
+ * lower id, whatever was recorded since.
+ * <p>
+ * The ids are given in the order the transfers are inserted, the creation times in the order the clocks of the
+ * instances read them, so only the id orders the transfers the same way on every page.
+ */
+@Value(staticConstructor = "of")
+public class TransferCursor {
+
+    /**
+     * The cursor before the newest transfer.
+     */
+    public static final TransferCursor FIRST = of(Long.MAX_VALUE);
+
+    long id;
+
+    /**
+     * @param token a token formatted by {@link #token()}
+     * @throws IllegalArgumentException when the token isn't one
+     */
+    public static TransferCursor parse(String token) {
+        long id;
+        try {
+            id = Long.parseLong(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a transfer cursor: " + token);
+        }
+        if (id < 0) {
+            throw new IllegalArgumentException("Not a transfer cursor: " + token);
+        }
+        return of(id);
+    }
+
+    /**
+     * @return the cursor as handed to the clients, the id of the transfer
+     */
+    public String token() {
+        return Long.toString(id);
+    }
+}
@@ -0,0 +1,158 @@
+package com.tribalscale.test.history;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.Transfer;
+import com.tribalscale.test.domain.TransferLegs;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The transfers applied between the accounts, kept in the TRANSFER table and read back for an account newest first.
+ * <p>
+ * The history is paged by keyset rather than by offset: a page starts after the id of the last transfer of the previous
+ * one, and each side of the transfers walks its (account, ID DESC) index from there, so reading a page costs the same
+ * however deep into the history it is. The creation time isn't part of the key, the clocks of the instances don't
+ * order the transfers the way their ids do.
+ * <p>
+ * Each transfer keeps its legs as well, what was taken from and given to each account in its own currency.
+ */
+@Component
+public class TransferHistory {
+
+    private static final String COLUMNS = "ID, CREATED_AT, SOURCE_ACCOUNT, TARGET_ACCOUNT, CURRENCY, AMOUNT, "
+            + "DEBIT_CURRENCY, DEBIT, CREDIT_CURRENCY, CREDIT";
+    private static final String AFTER_CURSOR = "ID < :id";
+    private static final String INSERT = "INSERT INTO TRANSFER(CREATED_AT, SOURCE_ACCOUNT, TARGET_ACCOUNT, CURRENCY, "
+            + "AMOUNT, DEBIT_CURRENCY, DEBIT, CREDIT_CURRENCY, CREDIT) VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9)";
+
+    // Each branch orders by its account column as well, H2 only reads an index in order when the ORDER BY starts with
+    // its leading column, otherwise it sorts every transfer of the account older than the cursor. Transfers from an
+    // account to itself are only read by the first branch.
+    private static final String PAGE = "SELECT * FROM (SELECT " + COLUMNS + " FROM TRANSFER"
+            + " WHERE SOURCE_ACCOUNT = :accountId AND " + AFTER_CURSOR
+            + " ORDER BY SOURCE_ACCOUNT, ID DESC LIMIT :limit)"
+            + " UNION ALL SELECT * FROM (SELECT " + COLUMNS + " FROM TRANSFER"
+            + " WHERE TARGET_ACCOUNT = :accountId AND SOURCE_ACCOUNT <> :accountId AND " + AFTER_CURSOR
+            + " ORDER BY TARGET_ACCOUNT, ID DESC LIMIT :limit)"
+            + " ORDER BY ID DESC LIMIT :limit";
+
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final int pageSize;
+
+    @Autowired
+    public TransferHistory(DatabaseClient databaseClient, MoneyTransferProperties properties) {
+        this(databaseClient, properties.getHistory().isEnabled(), properties.getHistory().getPageSize());
+    }
+
+    /**
+     * @param enabled whether the transfers are recorded, the database isn't used when they aren't
+     */
+    public TransferHistory(DatabaseClient databaseClient, boolean enabled, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("A page of the transfer history needs room for at least one transfer");
+        }
+
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Records the transfer with the legs it moved, within the current transaction if there's one.
+     */
+    public Mono<Void> record(MoneyTransfer moneyTransfer, TransferLegs legs) {
+        return recordAll(List.of(moneyTransfer), List.of(legs));
+    }
+
+    /**
+     * Records the transfers in one batch of inserts sent together, within the current transaction if there's one. A
+     * page of the history lists them in the order they're given.
+     *
+     * @param legs the legs of each transfer, in the order of the transfers
+     */
+    public Mono<Void> recordAll(List<MoneyTransfer> moneyTransfers, List<TransferLegs> legs) {
+        if (!enabled || moneyTransfers.isEmpty()) {
+            return Mono.empty();
+        }
+
+        long createdAt = System.currentTimeMillis();
+        return databaseClient.inConnectionMany(connection -> {
+                    Statement statement = connection.createStatement(INSERT);
+                    for (int i = 0; i < moneyTransfers.size(); i++) {
+                        if (i > 0) {
+                            statement.add();
+                        }
+                        MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+                        TransferLegs transferLegs = legs.get(i);
+                        statement.bind(0, createdAt)
+                                .bind(1, moneyTransfer.getSourceAccount())
+                                .bind(2, moneyTransfer.getTargetAccount())
+                                .bind(3, moneyTransfer.getCurrency())
+                                .bind(4, moneyTransfer.getAmount())
+                                .bind(5, transferLegs.getDebitCurrency())
+                                .bind(6, transferLegs.getDebit())
+                                .bind(7, transferLegs.getCreditCurrency())
+                                .bind(8, transferLegs.getCredit());
+                    }
+                    return Flux.from(statement.execute())
+                            .concatMap(Result::getRowsUpdated);
+                })
+                .then();
+    }
+
+    /**
+     * The transfers of the account older than the cursor, newest first. They're read a page at a time as they're
+     * requested, with the next page read ahead at most, so a whole history is streamed without being held in memory.
+     *
+     * @param limit maximum number of transfers
+     */
+    public Flux<Transfer> find(String accountId, TransferCursor after, long limit) {
+        int size = (int) Math.min(limit, pageSize);
+        return page(accountId, after, size)
+                .expand(page -> page.size() < size
+                        ? Mono.empty()
+                        : page(accountId, page.get(page.size() - 1).cursor(), size))
+                .concatMapIterable(Function.identity(), 1)
+                .take(limit);
+    }
+
+    private Mono<List<Transfer>> page(String accountId, TransferCursor after, int size) {
+        if (!enabled) {
+            return Mono.just(List.of());
+        }
+
+        return databaseClient.sql(PAGE)
+                .bind("accountId", accountId)
+                .bind("id", after.getId())
+                .bind("limit", size)
+                .map((row, metadata) -> transfer(row))
+                .all()
+                .collectList();
+    }
+
+    private static Transfer transfer(Row row) {
+        return Transfer.builder()
+                .id(row.get("ID", Long.class))
+                .createdAt(row.get("CREATED_AT", Long.class))
+                .sourceAccount(row.get("SOURCE_ACCOUNT", String.class))
+                .targetAccount(row.get("TARGET_ACCOUNT", String.class))
+                .currency(row.get("CURRENCY", String.class))
+                .amount(row.get("AMOUNT", Long.class))
+                .debitCurrency(row.get("DEBIT_CURRENCY", String.class))
+                .debit(row.get("DEBIT", Long.class))
+                .creditCurrency(row.get("CREDIT_CURRENCY", String.class))
+                .credit(row.get("CREDIT", Long.class))
+                .build();
+    }
+}
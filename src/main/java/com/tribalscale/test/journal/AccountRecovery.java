@@ -0,0 +1,62 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Restores the balances of the engines and stores which keep them in memory and never write them back to the
+ * database: from the latest snapshot and the journal after it when snapshots are enabled, else from the database with
+ * the whole journal applied. Without the journal, they're the balances of the database, and whatever was transferred
+ * since the last startup is lost.
+ */
+@Component
+@Slf4j
+public class AccountRecovery {
+
+    private final AccountRepository accountRepository;
+    private final Optional<MappedTransferJournal> transferJournal;
+    private final Optional<AccountSnapshotter> accountSnapshotter;
+
+    public AccountRecovery(AccountRepository accountRepository, Optional<MappedTransferJournal> transferJournal,
+                           Optional<AccountSnapshotter> accountSnapshotter) {
+        this.accountRepository = accountRepository;
+        this.transferJournal = transferJournal;
+        this.accountSnapshotter = accountSnapshotter;
+    }
+
+    /**
+     * Hands the current balance of every account to the consumer.
+     *
+     * @return the number of accounts restored
+     */
+    public long restore(Consumer<Account> consumer) {
+        if (accountSnapshotter.isPresent()) {
+            return accountSnapshotter.get().restore(consumer);
+        }
+
+        if (transferJournal.isEmpty()) {
+            log.warn("The transfer journal is disabled, balances changed in memory are lost on shutdown");
+            return accountRepository.findAll()
+                    .doOnNext(consumer)
+                    .count()
+                    .block();
+        }
+
+        var changes = new BalanceChanges();
+        long sequence = transferJournal.get().reader().replay(1, changes::add);
+        long count = accountRepository.findAll()
+                .map(changes::applyTo)
+                .doOnNext(consumer)
+                .count()
+                .block();
+        changes.logUnapplied();
+
+        log.info("Restored {} accounts from the repository and {} journal records", count, sequence);
+        return count;
+    }
+}
@@ -0,0 +1,189 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps snapshots of all the account balances next to the {@link MappedTransferJournal}, so restoring the balances
+ * only takes loading the latest snapshot and replaying the few journal records appended after it.
+ * <p>
+ * A snapshot is never taken from the live balances, which would need the transfers to pause for a consistent view.
+ * Instead, the net change of every account over the journal records appended since the latest snapshot is applied
+ * while streaming that snapshot into a new one, in the background.
+ */
+@Component
+@ConditionalOnProperty(prefix = "moneytransfer.journal.snapshot", name = "enabled", havingValue = "true")
+@Slf4j
+public class AccountSnapshotter implements InitializingBean, DisposableBean {
+
+    private final JournalReader journalReader;
+    private final AccountRepository accountRepository;
+    private final Path directory;
+    private final Duration interval;
+    private final int retain;
+
+    private Disposable snapshots;
+
+    public AccountSnapshotter(MappedTransferJournal transferJournal, AccountRepository accountRepository,
+                              MoneyTransferProperties properties) {
+        this.journalReader = transferJournal.reader();
+        this.accountRepository = accountRepository;
+        this.directory = Path.of(properties.getJournal().getDirectory());
+        this.interval = properties.getJournal().getSnapshot().getInterval();
+        this.retain = Math.max(1, properties.getJournal().getSnapshot().getRetain());
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        snapshots = Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromRunnable(this::snapshot)
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> {
+                            log.error("Couldn't snapshot the accounts, with message: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        snapshots.dispose();
+    }
+
+    /**
+     * Hands the current balance of every account to the consumer, from the latest snapshot and the journal records
+     * after it. Without a snapshot the accounts come from the repository with the whole journal applied, and become
+     * the first snapshot.
+     *
+     * @return the number of accounts restored
+     */
+    public synchronized long restore(Consumer<Account> consumer) {
+        Optional<Path> latest = latestSnapshot();
+
+        try {
+            if (latest.isPresent()) {
+                try (SnapshotReader snapshot = new SnapshotReader(latest.get())) {
+                    var changes = new BalanceChanges();
+                    long sequence = journalReader.replay(snapshot.sequence() + 1, changes::add);
+                    snapshot.forEach(account -> consumer.accept(changes.applyTo(account)));
+                    changes.logUnapplied();
+
+                    log.info("Restored {} accounts from the snapshot at sequence {} and {} journal records after it",
+                            snapshot.count(), snapshot.sequence(), sequence - snapshot.sequence());
+                    return snapshot.count();
+                }
+            }
+
+            var changes = new BalanceChanges();
+            long sequence = journalReader.replay(1, changes::add);
+            try (SnapshotWriter snapshot = new SnapshotWriter(directory, sequence)) {
+                for (Account account : accountRepository.findAll().toIterable()) {
+                    Account restored = changes.applyTo(account);
+                    consumer.accept(restored);
+                    snapshot.write(restored);
+                }
+                changes.logUnapplied();
+                snapshot.commit();
+
+                log.info("Restored {} accounts from the repository and {} journal records, snapshot at sequence {}",
+                        snapshot.count(), sequence, sequence);
+                return snapshot.count();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't restore the accounts from " + directory, e);
+        }
+    }
+
+    /**
+     * Writes a new snapshot out of the latest one and the journal records appended since, and drops the snapshots
+     * past the number retained. Nothing is written before the first snapshot, which is taken on restore, or when no
+     * record was appended since the latest one.
+     *
+     * @return the sequence of the latest snapshot, if there's one
+     */
+    synchronized OptionalLong snapshot() {
+        Optional<Path> latest = latestSnapshot();
+        if (latest.isEmpty()) {
+            return OptionalLong.empty();
+        }
+
+        try (SnapshotReader previous = new SnapshotReader(latest.get())) {
+            var changes = new BalanceChanges();
+            long sequence = journalReader.replay(previous.sequence() + 1, changes::add);
+            if (sequence == previous.sequence()) {
+                return OptionalLong.of(sequence);
+            }
+
+            try (SnapshotWriter snapshot = new SnapshotWriter(directory, sequence)) {
+                previous.forEach(account -> write(snapshot, changes.applyTo(account)));
+                changes.logUnapplied();
+                snapshot.commit();
+            }
+
+            log.info("Snapshot of {} accounts taken at sequence {}", previous.count(), sequence);
+            prune();
+            return OptionalLong.of(sequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't snapshot the accounts into " + directory, e);
+        }
+    }
+
+    private static void write(SnapshotWriter snapshot, Account account) {
+        try {
+            snapshot.write(account);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void prune() throws IOException {
+        for (Path snapshot : snapshots().stream().skip(retain).collect(Collectors.toList())) {
+            Files.deleteIfExists(snapshot);
+        }
+    }
+
+    private Optional<Path> latestSnapshot() {
+        return snapshots().stream().findFirst();
+    }
+
+    /**
+     * @return the snapshots, latest first
+     */
+    private List<Path> snapshots() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(SnapshotFormat::isSnapshot)
+                    .sorted(Comparator.comparingLong(SnapshotFormat::sequence).reversed())
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't list the snapshots at " + directory, e);
+        }
+    }
+}
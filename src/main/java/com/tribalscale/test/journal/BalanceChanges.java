@@ -0,0 +1,32 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.Account;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Net change of the balances over a run of journal records. Transfers commute, so only the sum per account matters.
+ */
+@Slf4j
+final class BalanceChanges {
+
+    private final Map<String, Long> changes = new HashMap<>();
+
+    void add(JournalRecord record) {
+        changes.merge(record.getSourceAccount(), -record.getDebit(), Long::sum);
+        changes.merge(record.getTargetAccount(), record.getCredit(), Long::sum);
+    }
+
+    Account applyTo(Account account) {
+        Long change = changes.remove(account.getAccountId());
+        return change == null ? account : account.withBalance(account.getBalance() + change);
+    }
+
+    void logUnapplied() {
+        if (!changes.isEmpty()) {
+            log.warn("{} journaled accounts don't exist anymore, their balance changes are dropped", changes.size());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.tribalscale.test.journal;
+
+/**
+ * When the journal forces the appended records to the storage device.
+ */
+public enum FlushPolicy {
+    /**
+     * Leave it to the operating system, records survive a crash of the application but not of the machine.
+     */
+    NONE,
+    /**
+     * Force every record before the append returns.
+     */
+    EVERY_RECORD,
+    /**
+     * Force once a group of records was appended, or after the group interval when fewer were.
+     */
+    GROUP
+}
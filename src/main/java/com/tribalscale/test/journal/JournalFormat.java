@@ -0,0 +1,95 @@
+package com.tribalscale.test.journal;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary layout of the journal. Segments are preallocated files named after the sequence of their first record and
+ * made of fixed size records:
+ * <pre>
+ *   0  sequence      long, written last with release semantics, 0 while the slot is free
+ *   8  timestamp     long, epoch millis
+ *  16  amount        long, minor units
+ *  24  currency      3 ASCII bytes
+ *  27  version       byte, format of the record, see {@link #VERSION}
+ *  28  source length short + 102 UTF-8 bytes
+ * 132  debit         long, minor units of the source account currency
+ * 140  target length short + 102 UTF-8 bytes
+ * 244  credit        long, minor units of the target account currency
+ * 252  checksum      int, CRC32C of bytes 8 to 252
+ * </pre>
+ * Records of version 0 were journaled before the debit and credit, with 110 bytes per account id, and moved the amount
+ * from and to both accounts. Version 1 gave the last 8 bytes of each id to the debit and credit, ids were never longer
+ * than 100 characters. A record of a later version isn't read, nor appended after.
+ */
+final class JournalFormat {
+
+    /**
+     * Format version of the records appended.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Format version of the records journaled before the debit and credit.
+     */
+    static final byte NO_LEGS_VERSION = 0;
+
+    static final int RECORD_SIZE = 256;
+    static final int MAX_ACCOUNT_ID_BYTES = 102;
+
+    static final int SEQUENCE_OFFSET = 0;
+    static final int TIMESTAMP_OFFSET = 8;
+    static final int AMOUNT_OFFSET = 16;
+    static final int CURRENCY_OFFSET = 24;
+    static final int VERSION_OFFSET = 27;
+    static final int SOURCE_OFFSET = 28;
+    static final int DEBIT_OFFSET = 132;
+    static final int TARGET_OFFSET = 140;
+    static final int CREDIT_OFFSET = 244;
+    static final int CHECKSUM_OFFSET = 252;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Ordered access to the sequence, so a reader seeing it also sees the rest of the record.
+     */
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, BYTE_ORDER);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+
+    private JournalFormat() {
+    }
+
+    static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @return the sequence of the record at the offset, 0 when nothing was committed there yet
+     */
+    static long sequenceAt(ByteBuffer segment, int offset) {
+        return (long) LONG.getAcquire(segment, offset + SEQUENCE_OFFSET);
+    }
+
+    static int checksum(CRC32C crc, ByteBuffer view, int offset) {
+        crc.reset();
+        view.limit(offset + CHECKSUM_OFFSET).position(offset + TIMESTAMP_OFFSET);
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,179 @@
+package com.tribalscale.test.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static com.tribalscale.test.journal.JournalFormat.*;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Reads the records of a journal directory straight from the mapped segments, while it's still being appended to.
+ * Only records whose sequence was committed and whose checksum matches are returned.
+ */
+@Slf4j
+public class JournalReader {
+
+    private final Path directory;
+    private final NavigableMap<Long, ByteBuffer> segments = new ConcurrentSkipListMap<>();
+
+    public JournalReader(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Hands every record from the given sequence on, in sequence order, to the consumer.
+     *
+     * @return the sequence of the last record replayed, or the one before the given sequence when there was none
+     */
+    public long replay(long fromSequence, Consumer<JournalRecord> consumer) {
+        long next = fromSequence;
+        int read;
+        do {
+            read = read(next, Integer.MAX_VALUE, consumer);
+            next += read;
+        } while (read > 0);
+
+        return next - 1;
+    }
+
+    /**
+     * Streams the records from the given sequence on, polling for the ones appended afterwards. The stream never
+     * completes, the records available on each poll are read one at a time as the subscriber requests them.
+     */
+    public Flux<JournalRecord> tail(long fromSequence, Duration pollInterval) {
+        return Flux.defer(() -> {
+            var next = new AtomicLong(fromSequence);
+
+            return Flux.interval(Duration.ZERO, pollInterval)
+                    .onBackpressureDrop()
+                    .concatMap(tick -> Flux.<JournalRecord>generate(sink -> {
+                        if (read(next.get(), 1, sink::next) == 1) {
+                            next.incrementAndGet();
+                        } else {
+                            sink.complete();
+                        }
+                    }), 1);
+        });
+    }
+
+    /**
+     * Reads up to the limit of records from the given sequence on, without crossing to another segment.
+     *
+     * @return how many records were read
+     */
+    private int read(long sequence, int limit, Consumer<JournalRecord> consumer) {
+        Map.Entry<Long, ByteBuffer> segment = segmentFor(sequence);
+        if (segment == null) {
+            return 0;
+        }
+
+        ByteBuffer buffer = segment.getValue();
+        ByteBuffer view = buffer.duplicate();
+        CRC32C crc = new CRC32C();
+        long offset = (sequence - segment.getKey()) * RECORD_SIZE;
+        int read = 0;
+
+        while (read < limit && offset + RECORD_SIZE <= buffer.capacity()) {
+            int recordOffset = (int) offset;
+            if (sequenceAt(buffer, recordOffset) != sequence + read) {
+                break;
+            }
+            if (buffer.getInt(recordOffset + CHECKSUM_OFFSET) != checksum(crc, view, recordOffset)) {
+                log.warn("Journal record {} doesn't match its checksum, stopping there", sequence + read);
+                break;
+            }
+            if (buffer.get(recordOffset + VERSION_OFFSET) > VERSION) {
+                log.warn("Journal record {} has the format version {}, newer than {}, stopping there", sequence + read,
+                        buffer.get(recordOffset + VERSION_OFFSET), VERSION);
+                break;
+            }
+
+            consumer.accept(decode(buffer, view, recordOffset, sequence + read));
+            read++;
+            offset += RECORD_SIZE;
+        }
+
+        return read;
+    }
+
+    private Map.Entry<Long, ByteBuffer> segmentFor(long sequence) {
+        Map.Entry<Long, ByteBuffer> segment = segments.floorEntry(sequence);
+        if (segment == null || !contains(segment, sequence)) {
+            // The sequence belongs to a segment created since the last look at the directory, if any
+            openSegments();
+            segment = segments.floorEntry(sequence);
+        }
+
+        return segment != null && contains(segment, sequence) ? segment : null;
+    }
+
+    private static boolean contains(Map.Entry<Long, ByteBuffer> segment, long sequence) {
+        return (sequence - segment.getKey() + 1) * RECORD_SIZE <= segment.getValue().capacity();
+    }
+
+    private synchronized void openSegments() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(JournalFormat::isSegment)
+                    .filter(path -> !segments.containsKey(JournalFormat.firstSequence(path)))
+                    .forEach(path -> segments.put(JournalFormat.firstSequence(path), map(path)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't list the journal segments at " + directory, e);
+        }
+    }
+
+    private static ByteBuffer map(Path path) {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(BYTE_ORDER);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't map the journal segment " + path, e);
+        }
+    }
+
+    private static JournalRecord decode(ByteBuffer buffer, ByteBuffer view, int offset, long sequence) {
+        // Records journaled before the legs moved the same amount on both sides
+        long amount = buffer.getLong(offset + AMOUNT_OFFSET);
+        boolean legs = buffer.get(offset + VERSION_OFFSET) != NO_LEGS_VERSION;
+
+        return JournalRecord.builder()
+                .sequence(sequence)
+                .timestamp(buffer.getLong(offset + TIMESTAMP_OFFSET))
+                .amount(amount)
+                .debit(legs ? buffer.getLong(offset + DEBIT_OFFSET) : amount)
+                .credit(legs ? buffer.getLong(offset + CREDIT_OFFSET) : amount)
+                .currency(string(view, offset + CURRENCY_OFFSET, 3, true))
+                .sourceAccount(string(view, offset + SOURCE_OFFSET + 2, buffer.getShort(offset + SOURCE_OFFSET), false))
+                .targetAccount(string(view, offset + TARGET_OFFSET + 2, buffer.getShort(offset + TARGET_OFFSET), false))
+                .build();
+    }
+
+    private static String string(ByteBuffer view, int offset, int length, boolean ascii) {
+        byte[] bytes = new byte[length];
+        view.clear().position(offset);
+        view.get(bytes);
+        return new String(bytes, ascii ? US_ASCII : UTF_8);
+    }
+}
@@ -0,0 +1,42 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.MoneyTransfer;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A transfer as read back from the journal.
+ */
+@Value
+@Builder
+public class JournalRecord {
+    long sequence;
+    /**
+     * When the transfer was journaled, in epoch millis.
+     */
+    long timestamp;
+    String sourceAccount;
+    String targetAccount;
+    String currency;
+    /**
+     * Amount in minor units of the currency.
+     */
+    long amount;
+    /**
+     * Amount taken from the source account, in minor units of its currency.
+     */
+    long debit;
+    /**
+     * Amount given to the target account, in minor units of its currency.
+     */
+    long credit;
+
+    public MoneyTransfer toMoneyTransfer() {
+        return MoneyTransfer.builder()
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .currency(currency)
+                .amount(amount)
+                .build();
+    }
+}
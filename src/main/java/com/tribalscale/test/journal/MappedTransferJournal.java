@@ -0,0 +1,236 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.TransferLegs;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static com.tribalscale.test.journal.JournalFormat.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * {@link TransferJournal} writing fixed size records into memory mapped segment files, see {@link JournalFormat}.
+ * Appending is a handful of stores into the mapped memory under a lock, the operating system writes the pages back
+ * unless the {@link FlushPolicy} asks to force them.
+ * <p>
+ * On startup the last segment is scanned to carry on after its last complete record, a record torn by a crash fails its
+ * checksum and is overwritten.
+ */
+@Component
+@ConditionalOnProperty(prefix = "moneytransfer.journal", name = "enabled", havingValue = "true")
+@Slf4j
+public class MappedTransferJournal implements TransferJournal, DisposableBean {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FlushPolicy flushPolicy;
+    private final int groupSize;
+    private final CRC32C crc = new CRC32C();
+    private final Disposable groupFlush;
+
+    private MappedByteBuffer segment;
+    private ByteBuffer view;
+    private int position;
+    private long nextSequence;
+    private int unflushed;
+
+    @Autowired
+    public MappedTransferJournal(MoneyTransferProperties properties) {
+        this(Path.of(properties.getJournal().getDirectory()), properties.getJournal().getRecordsPerSegment(),
+                properties.getJournal().getFlush(), properties.getJournal().getGroupSize(), properties.getJournal().getGroupInterval());
+    }
+
+    public MappedTransferJournal(Path directory, int recordsPerSegment, FlushPolicy flushPolicy, int groupSize, Duration groupInterval) {
+        this.directory = directory;
+        this.segmentSize = Math.multiplyExact(recordsPerSegment, RECORD_SIZE);
+        this.flushPolicy = flushPolicy;
+        this.groupSize = groupSize;
+
+        try {
+            Files.createDirectories(directory);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't open the transfer journal at " + directory, e);
+        }
+
+        this.groupFlush = flushPolicy == FlushPolicy.GROUP
+                ? Flux.interval(groupInterval, groupInterval)
+                .onBackpressureDrop()
+                .subscribe(tick -> flush())
+                : null;
+
+        log.info("Opened the transfer journal at {}, next sequence: {}", directory, nextSequence);
+    }
+
+    @Override
+    public synchronized long append(MoneyTransfer moneyTransfer, TransferLegs legs) {
+        if (position == segmentSize) {
+            roll();
+        }
+
+        long sequence = nextSequence;
+        int offset = position;
+
+        segment.putLong(offset + TIMESTAMP_OFFSET, System.currentTimeMillis());
+        segment.putLong(offset + AMOUNT_OFFSET, moneyTransfer.getAmount());
+        putCurrency(offset + CURRENCY_OFFSET, moneyTransfer.getCurrency());
+        putAccountId(offset + SOURCE_OFFSET, moneyTransfer.getSourceAccount());
+        putAccountId(offset + TARGET_OFFSET, moneyTransfer.getTargetAccount());
+        segment.put(offset + VERSION_OFFSET, VERSION);
+        segment.putLong(offset + DEBIT_OFFSET, legs.getDebit());
+        segment.putLong(offset + CREDIT_OFFSET, legs.getCredit());
+        segment.putInt(offset + CHECKSUM_OFFSET, checksum(crc, view, offset));
+        LONG.setRelease(segment, offset + SEQUENCE_OFFSET, sequence);
+
+        nextSequence++;
+        position += RECORD_SIZE;
+
+        if (flushPolicy == FlushPolicy.EVERY_RECORD || (flushPolicy == FlushPolicy.GROUP && ++unflushed >= groupSize)) {
+            force();
+        }
+
+        return sequence;
+    }
+
+    /**
+     * @return a reader over this journal, seeing the records as soon as they're appended
+     */
+    public JournalReader reader() {
+        return new JournalReader(directory);
+    }
+
+    /**
+     * @return the sequence the next appended transfer will get
+     */
+    public synchronized long nextSequence() {
+        return nextSequence;
+    }
+
+    public synchronized void flush() {
+        if (unflushed > 0 || flushPolicy != FlushPolicy.GROUP) {
+            force();
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (groupFlush != null) {
+            groupFlush.dispose();
+        }
+        force();
+    }
+
+    private void force() {
+        segment.force();
+        unflushed = 0;
+    }
+
+    private void recover() throws IOException {
+        Optional<Path> lastSegment;
+        try (Stream<Path> files = Files.list(directory)) {
+            lastSegment = files.filter(JournalFormat::isSegment)
+                    .max(Comparator.comparingLong(JournalFormat::firstSequence));
+        }
+
+        if (lastSegment.isEmpty()) {
+            open(1);
+            return;
+        }
+
+        long firstSequence = JournalFormat.firstSequence(lastSegment.get());
+        map(lastSegment.get());
+        nextSequence = firstSequence;
+        position = 0;
+
+        while (position < segmentSize && sequenceAt(segment, position) == nextSequence
+                && segment.getInt(position + CHECKSUM_OFFSET) == checksum(crc, view, position)) {
+            if (segment.get(position + VERSION_OFFSET) > VERSION) {
+                throw new IOException("Journal record " + nextSequence + " has the format version "
+                        + segment.get(position + VERSION_OFFSET) + ", newer than " + VERSION);
+            }
+            nextSequence++;
+            position += RECORD_SIZE;
+        }
+
+        // Clear whatever a crash left half written after the last complete record
+        for (int offset = position; offset < segmentSize && sequenceAt(segment, offset) != 0; offset += RECORD_SIZE) {
+            LONG.setRelease(segment, offset + SEQUENCE_OFFSET, 0L);
+        }
+    }
+
+    private void roll() {
+        force();
+        try {
+            open(nextSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't roll the transfer journal at " + directory, e);
+        }
+    }
+
+    private void open(long firstSequence) throws IOException {
+        map(JournalFormat.segmentPath(directory, firstSequence));
+        nextSequence = firstSequence;
+        position = 0;
+    }
+
+    private void map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, CREATE, READ, WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        segment.order(BYTE_ORDER);
+        view = segment.duplicate();
+    }
+
+    private void putCurrency(int offset, String currency) {
+        for (int i = 0; i < 3; i++) {
+            segment.put(offset + i, currency != null && i < currency.length() ? (byte) currency.charAt(i) : 0);
+        }
+    }
+
+    private void putAccountId(int offset, String accountId) {
+        int length = accountId.length();
+        boolean ascii = length <= MAX_ACCOUNT_ID_BYTES;
+        for (int i = 0; ascii && i < length; i++) {
+            char c = accountId.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+            } else {
+                segment.put(offset + 2 + i, (byte) c);
+            }
+        }
+
+        if (!ascii) {
+            byte[] bytes = accountId.getBytes(UTF_8);
+            if (bytes.length > MAX_ACCOUNT_ID_BYTES) {
+                throw new IllegalArgumentException("Account id doesn't fit into a journal record: " + accountId);
+            }
+            view.clear().position(offset + 2);
+            view.put(bytes);
+            length = bytes.length;
+        }
+
+        segment.putShort(offset, (short) length);
+    }
+}
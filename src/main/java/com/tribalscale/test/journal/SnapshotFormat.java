@@ -0,0 +1,57 @@
+package com.tribalscale.test.journal;
+
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+/**
+ * Binary layout of an account snapshot. A snapshot file is named after the sequence of the last journal record it
+ * includes and is made of a header, the accounts and a trailer:
+ * <pre>
+ * header   magic int, version int, sequence long, account count long
+ * account  id length short + UTF-8 id, currency 3 ASCII bytes, balance long in minor units
+ * trailer  checksum int, CRC32C of the accounts
+ * </pre>
+ * Snapshots are written to a temporary file which is moved into place once complete, so a snapshot file is either
+ * whole or missing.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x4E53544D;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 24;
+    static final int TRAILER_SIZE = 4;
+    static final int CURRENCY_SIZE = 3;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Size of the buffer accounts are read and written through, larger than the largest account entry.
+     */
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private SnapshotFormat() {
+    }
+
+    static Path snapshotPath(Path directory, long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    static Path temporaryPath(Path snapshot) {
+        return snapshot.resolveSibling(snapshot.getFileName() + TEMPORARY_SUFFIX);
+    }
+
+    static boolean isSnapshot(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+    }
+
+    static long sequence(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+}
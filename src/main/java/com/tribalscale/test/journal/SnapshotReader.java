@@ -0,0 +1,128 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.Account;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import static com.tribalscale.test.journal.SnapshotFormat.*;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Streams the accounts of a snapshot, see {@link SnapshotFormat}, checking them against the trailer checksum.
+ */
+final class SnapshotReader implements AutoCloseable {
+
+    private final Path snapshot;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BYTE_ORDER);
+    private final CRC32C crc = new CRC32C();
+    /**
+     * Accounts mostly share a handful of currencies, one instance of each is kept.
+     */
+    private final Map<String, String> currencies = new HashMap<>();
+    private final long sequence;
+    private final long count;
+
+    private int unchecked;
+
+    SnapshotReader(Path snapshot) throws IOException {
+        this.snapshot = snapshot;
+        this.channel = FileChannel.open(snapshot, READ);
+        buffer.flip();
+
+        ensure(HEADER_SIZE);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            channel.close();
+            throw new IOException("Not a snapshot, or written by another version: " + snapshot);
+        }
+        this.sequence = buffer.getLong();
+        this.count = buffer.getLong();
+        this.unchecked = buffer.position();
+    }
+
+    /**
+     * @return the sequence of the last journal record included in the snapshot
+     */
+    long sequence() {
+        return sequence;
+    }
+
+    long count() {
+        return count;
+    }
+
+    /**
+     * Hands every account of the snapshot to the consumer.
+     *
+     * @throws IOException when the snapshot is truncated or doesn't match its checksum, after some accounts may have
+     *                     been handed over already
+     */
+    void forEach(Consumer<Account> consumer) throws IOException {
+        byte[] accountId = new byte[Short.MAX_VALUE];
+        byte[] currency = new byte[CURRENCY_SIZE];
+
+        for (long i = 0; i < count; i++) {
+            ensure(Short.BYTES);
+            int length = buffer.getShort();
+            ensure(length + CURRENCY_SIZE + Long.BYTES);
+            buffer.get(accountId, 0, length);
+            buffer.get(currency);
+
+            consumer.accept(Account.builder()
+                    .accountId(new String(accountId, 0, length, UTF_8))
+                    .currency(currency(currency))
+                    .balance(buffer.getLong())
+                    .build());
+        }
+
+        check();
+        ensure(TRAILER_SIZE);
+        if (buffer.getInt() != (int) crc.getValue()) {
+            throw new IOException("Snapshot doesn't match its checksum: " + snapshot);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String currency(byte[] bytes) {
+        int length = bytes[CURRENCY_SIZE - 1] != 0 ? CURRENCY_SIZE : bytes[1] != 0 ? 2 : bytes[0] != 0 ? 1 : 0;
+        String currency = new String(bytes, 0, length, US_ASCII);
+        return currencies.computeIfAbsent(currency, key -> key);
+    }
+
+    /**
+     * Adds the bytes read since the last call to the checksum.
+     */
+    private void check() {
+        crc.update(buffer.duplicate().limit(buffer.position()).position(unchecked));
+        unchecked = buffer.position();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+
+        check();
+        buffer.compact();
+        unchecked = 0;
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Snapshot is truncated: " + snapshot);
+            }
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,105 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.Account;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+import static com.tribalscale.test.journal.SnapshotFormat.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes a snapshot, see {@link SnapshotFormat}. Nothing is visible under the snapshot name until {@link #commit()}.
+ */
+final class SnapshotWriter implements AutoCloseable {
+
+    private final Path snapshot;
+    private final Path temporary;
+    private final long sequence;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BYTE_ORDER);
+    private final CRC32C crc = new CRC32C();
+
+    private long count;
+    private boolean committed;
+
+    SnapshotWriter(Path directory, long sequence) throws IOException {
+        this.snapshot = snapshotPath(directory, sequence);
+        this.temporary = temporaryPath(snapshot);
+        this.sequence = sequence;
+        this.channel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, WRITE);
+        channel.position(HEADER_SIZE);
+    }
+
+    void write(Account account) throws IOException {
+        byte[] accountId = account.getAccountId().getBytes(UTF_8);
+        if (buffer.remaining() < Short.BYTES + accountId.length + CURRENCY_SIZE + Long.BYTES) {
+            drain();
+        }
+
+        buffer.putShort((short) accountId.length);
+        buffer.put(accountId);
+        String currency = account.getCurrency();
+        for (int i = 0; i < CURRENCY_SIZE; i++) {
+            buffer.put(currency != null && i < currency.length() ? (byte) currency.charAt(i) : 0);
+        }
+        buffer.putLong(account.getBalance());
+        count++;
+    }
+
+    long count() {
+        return count;
+    }
+
+    /**
+     * Completes the snapshot and moves it into place.
+     *
+     * @return the path of the snapshot
+     */
+    Path commit() throws IOException {
+        drain();
+
+        buffer.putInt((int) crc.getValue()).flip();
+        writeFully(channel.position());
+
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(sequence).putLong(count).flip();
+        writeFully(0);
+
+        channel.force(true);
+        channel.close();
+        Files.move(temporary, snapshot, ATOMIC_MOVE);
+        committed = true;
+
+        return snapshot;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        if (!committed) {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        writeFully(channel.position());
+    }
+
+    private void writeFully(long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.position(Math.max(channel.position(), position));
+        buffer.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.TransferLegs;
+
+/**
+ * Append only audit trail of the applied transfers.
+ */
+public interface TransferJournal {
+    /**
+     * @param legs the amounts the transfer moved, in the currency of each account
+     * @return the sequence given to the transfer, 0 when the journal is disabled
+     */
+    long append(MoneyTransfer moneyTransfer, TransferLegs legs);
+
+    /**
+     * Appends a transfer in the currency of both accounts.
+     */
+    default long append(MoneyTransfer moneyTransfer) {
+        return append(moneyTransfer, TransferLegs.unconverted(moneyTransfer));
+    }
+}
@@ -0,0 +1,70 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.TransferLegs;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Journals transfers before they're acknowledged.
+ */
+@Slf4j
+public final class TransferJournals {
+
+    private TransferJournals() {
+    }
+
+    /**
+     * Appends the transfer on the thread which subscribes, the append only copies the record into the mapped segment
+     * unless the flush policy forces every record.
+     *
+     * @return completes once the transfer is journaled, fails when it couldn't be, so a transfer journaled in its
+     * transaction is rolled back rather than acknowledged
+     */
+    public static Mono<Void> append(TransferJournal transferJournal, MoneyTransfer moneyTransfer, TransferLegs legs) {
+        return append(transferJournal, List.of(moneyTransfer), List.of(legs));
+    }
+
+    /**
+     * Appends the transfers, each with the legs at the same index, as {@link #append(TransferJournal, MoneyTransfer, TransferLegs)}
+     * does, failing unless every one of them was journaled.
+     */
+    public static Mono<Void> append(TransferJournal transferJournal, List<MoneyTransfer> moneyTransfers, List<TransferLegs> legs) {
+        return Mono.fromRunnable(() -> append(transferJournal, moneyTransfers, legs, true));
+    }
+
+    /**
+     * Appends transfers whose balances were already updated and can't be rolled back. A transfer the journal failed to
+     * append is logged rather than failed, as failing it would have its client send the money again: it's still
+     * acknowledged, and lost over a restart of the stores restored from the journal.
+     */
+    public static Mono<Void> appendApplied(TransferJournal transferJournal, MoneyTransfer moneyTransfer, TransferLegs legs) {
+        return appendApplied(transferJournal, List.of(moneyTransfer), List.of(legs));
+    }
+
+    /**
+     * Appends the transfers, each with the legs at the same index, as {@link #appendApplied(TransferJournal, MoneyTransfer, TransferLegs)}
+     * does, going on with the others past a transfer which couldn't be journaled.
+     */
+    public static Mono<Void> appendApplied(TransferJournal transferJournal, List<MoneyTransfer> moneyTransfers, List<TransferLegs> legs) {
+        return Mono.fromRunnable(() -> append(transferJournal, moneyTransfers, legs, false));
+    }
+
+    private static void append(TransferJournal transferJournal, List<MoneyTransfer> moneyTransfers, List<TransferLegs> legs,
+                               boolean failOnError) {
+        for (int i = 0; i < moneyTransfers.size(); i++) {
+            MoneyTransfer moneyTransfer = moneyTransfers.get(i);
+            try {
+                transferJournal.append(moneyTransfer, legs.get(i));
+            } catch (RuntimeException e) {
+                log.error("Couldn't journal the transfer from account id: {} to account id: {}, with message: {}",
+                        moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount(), e.getMessage());
+                if (failOnError) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
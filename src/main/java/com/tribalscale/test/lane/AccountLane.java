@@ -0,0 +1,77 @@
+package com.tribalscale.test.lane;
+
+import io.micrometer.core.instrument.Timer;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The lane of one account in the {@link AccountLanes}: an asynchronous lock letting one holder in at a time. Waiters
+ * don't block any thread, they are queued and run once the lane is handed over to them.
+ */
+final class AccountLane {
+
+    private final Scheduler handoff;
+    private final Timer waitTimer;
+    private final AtomicInteger queued;
+    private final Queue<Runnable> waiters = new ArrayDeque<>();
+    private boolean busy;
+
+    /**
+     * Transfers holding or waiting for the lane, guarded by the map of the {@link AccountLanes} which drops the lane
+     * once it's back to 0.
+     */
+    int references;
+
+    /**
+     * @param waitTimer time waited for any lane
+     * @param queued    transfers waiting for any lane
+     */
+    AccountLane(Scheduler handoff, Timer waitTimer, AtomicInteger queued) {
+        this.handoff = handoff;
+        this.waitTimer = waitTimer;
+        this.queued = queued;
+    }
+
+    /**
+     * Takes the lane when it's free, else queues the action to run once the lane is handed over.
+     *
+     * @return whether the lane was taken right away, the action isn't run then
+     */
+    boolean acquire(Runnable onAcquiredLater) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            if (busy) {
+                waiters.add(() -> {
+                    waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    onAcquiredLater.run();
+                });
+                queued.incrementAndGet();
+                return false;
+            }
+            busy = true;
+        }
+        waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    /**
+     * Hands the lane over to the next waiter on the handoff scheduler, so a queue of transfers completing right away
+     * doesn't pile up on the stack of the releasing thread.
+     */
+    void release() {
+        Runnable next;
+        synchronized (this) {
+            next = waiters.poll();
+            if (next == null) {
+                busy = false;
+                return;
+            }
+        }
+        queued.decrementAndGet();
+        handoff.schedule(next);
+    }
+}
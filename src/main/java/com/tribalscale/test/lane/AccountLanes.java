@@ -0,0 +1,169 @@
+package com.tribalscale.test.lane;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serializes the transfers touching the same accounts in-process.
+ * <p>
+ * Every account gets its own lane and a transfer runs once it holds the lanes of both its accounts, so transfers on
+ * a hot account queue up here instead of piling up on its row lock in the database, while transfers on any other
+ * account run in parallel. A lane is created by the first transfer of its account and dropped once no transfer holds
+ * or waits for it, so only the accounts being transferred from or to take memory. The lanes are always taken in
+ * account id order, so two transfers crossing the same accounts in opposite directions can't deadlock each other.
+ * Waiting for a lane doesn't block any thread. A settlement holds the lanes of every account of its window the same
+ * way, so the transfers of those accounts wait for it rather than interleave with its updates.
+ * <p>
+ * The wait and the queued transfers are metered over all the lanes, the number of meters doesn't grow with the
+ * accounts.
+ */
+@Component
+public class AccountLanes {
+
+    private final boolean enabled;
+    private final Scheduler handoff;
+    private final Timer waitTimer;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentMap<String, AccountLane> lanes = new ConcurrentHashMap<>();
+
+    public AccountLanes(MoneyTransferProperties properties, MeterRegistry registry) {
+        this.enabled = properties.getLanes().isEnabled();
+        this.handoff = Schedulers.parallel();
+        this.waitTimer = Timer.builder("moneytransfer.lane.wait")
+                .description("Time waited to get hold of the lanes of a transfer")
+                .register(registry);
+
+        Gauge.builder("moneytransfer.lane.queue.depth", queued, AtomicInteger::get)
+                .description("Transfers waiting for a lane")
+                .register(registry);
+        Gauge.builder("moneytransfer.lanes", lanes, ConcurrentMap::size)
+                .description("Accounts with a transfer holding or waiting for their lane")
+                .register(registry);
+    }
+
+    /**
+     * Runs the task once it holds the lanes of both accounts, releasing them when it terminates or is cancelled.
+     */
+    public <T> Mono<T> execute(String firstAccountId, String secondAccountId, Supplier<Mono<T>> task) {
+        if (!enabled) {
+            return Mono.defer(task);
+        }
+
+        int order = firstAccountId.compareTo(secondAccountId);
+        String[] accountIds = order == 0 ? new String[]{firstAccountId}
+                : order < 0 ? new String[]{firstAccountId, secondAccountId}
+                : new String[]{secondAccountId, firstAccountId};
+        return executeAll(accountIds, task);
+    }
+
+    /**
+     * Runs the task once it holds the lanes of all the accounts, releasing them when it terminates or is cancelled.
+     *
+     * @param sortedAccountIds the accounts in ascending order, each one once
+     */
+    public <T> Mono<T> executeAll(String[] sortedAccountIds, Supplier<Mono<T>> task) {
+        if (!enabled) {
+            return Mono.defer(task);
+        }
+
+        return Mono.<Permit>create(sink -> {
+                    var permit = new Permit(sortedAccountIds);
+                    sink.onCancel(permit::cancel);
+                    permit.acquire(0, sink);
+                })
+                .flatMap(permit -> Mono.defer(task).doFinally(signal -> permit.release()));
+    }
+
+    /**
+     * @return the accounts with a lane
+     */
+    int size() {
+        return lanes.size();
+    }
+
+    private AccountLane reference(String accountId) {
+        return lanes.compute(accountId, (id, lane) -> {
+            AccountLane referenced = lane != null ? lane : new AccountLane(handoff, waitTimer, queued);
+            referenced.references++;
+            return referenced;
+        });
+    }
+
+    private void dereference(String accountId) {
+        lanes.computeIfPresent(accountId, (id, lane) -> --lane.references == 0 ? null : lane);
+    }
+
+    /**
+     * The lanes of one transfer or settlement, referenced from its creation until it's released so they aren't dropped
+     * in between. Cancelling while still waiting gives the lanes back as soon as they are acquired.
+     */
+    private final class Permit {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final String[] accountIds;
+        private final AccountLane[] lanes;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(String[] accountIds) {
+            this.accountIds = accountIds;
+            this.lanes = new AccountLane[accountIds.length];
+            for (int i = 0; i < accountIds.length; i++) {
+                lanes[i] = reference(accountIds[i]);
+            }
+        }
+
+        /**
+         * Takes the lanes from the given one on in a loop while they're free, and goes on from the handoff of the first
+         * one that isn't, so the lanes of a whole settlement don't pile up on the stack.
+         */
+        void acquire(int from, MonoSink<Permit> sink) {
+            for (int i = from; i < lanes.length; i++) {
+                int next = i + 1;
+                if (!lanes[i].acquire(() -> acquire(next, sink))) {
+                    return;
+                }
+            }
+            granted(sink);
+        }
+
+        void cancel() {
+            if (!state.compareAndSet(WAITING, CANCELLED)) {
+                release();
+            }
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                for (int i = lanes.length - 1; i >= 0; i--) {
+                    lanes[i].release();
+                    dereference(accountIds[i]);
+                }
+            }
+        }
+
+        private void granted(MonoSink<Permit> sink) {
+            if (state.compareAndSet(WAITING, GRANTED)) {
+                sink.success(this);
+            } else {
+                release();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.tribalscale.test.ledger;
+
+import com.tribalscale.test.domain.Account;
+
+/**
+ * Mutable balance holder for one account. The balance is only written by the writer thread of the owning shard,
+ * readers from any other thread see the last applied value.
+ */
+final class LedgerEntry {
+
+    private final String accountId;
+    private final String currency;
+    private volatile long balance;
+
+    LedgerEntry(Account account) {
+        this.accountId = account.getAccountId();
+        this.currency = account.getCurrency();
+        this.balance = account.getBalance();
+    }
+
+    String getCurrency() {
+        return currency;
+    }
+
+    long getBalance() {
+        return balance;
+    }
+
+    void add(long amount) {
+        balance = balance + amount;
+    }
+
+    Account toAccount() {
+        return Account.builder()
+                .accountId(accountId)
+                .currency(currency)
+                .balance(balance)
+                .build();
+    }
+}
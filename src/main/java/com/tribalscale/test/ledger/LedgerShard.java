@@ -0,0 +1,48 @@
+package com.tribalscale.test.ledger;
+
+import com.tribalscale.test.domain.Account;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One partition of the {@link ShardedLedger}: the accounts hashed to it plus the single thread allowed to change
+ * their balances.
+ */
+final class LedgerShard {
+
+    private final Map<String, LedgerEntry> entries = new ConcurrentHashMap<>();
+    private final ExecutorService writer;
+
+    LedgerShard(int index) {
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ledger-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    LedgerEntry get(String accountId) {
+        return entries.get(accountId);
+    }
+
+    void put(Account account) {
+        entries.put(account.getAccountId(), new LedgerEntry(account));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void execute(Runnable task) {
+        writer.execute(task);
+    }
+
+    void shutdown(long timeoutMillis) throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,136 @@
+package com.tribalscale.test.ledger;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.TransferLegs;
+import com.tribalscale.test.fx.FxRates;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.tribalscale.test.domain.ErrorCode.CURRENCY_NOT_CONVERTIBLE;
+import static com.tribalscale.test.domain.ErrorCode.INSUFFICIENT_FUNDS;
+import static com.tribalscale.test.domain.ErrorCode.SOURCE_ACCOUNT_NOT_FOUND;
+import static com.tribalscale.test.domain.ErrorCode.TARGET_ACCOUNT_NOT_FOUND;
+
+/**
+ * In-memory account ledger partitioned into shards by account id.
+ * <p>
+ * Each shard has one writer thread: a transfer is checked and debited on the thread of the source account shard and
+ * then credited on the thread of the target account shard, so the balances of a shard are changed by one thread only
+ * and in the order the transfers reached it. Reads don't go through the writers.
+ */
+@Slf4j
+public class ShardedLedger implements AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5_000;
+
+    private final LedgerShard[] shards;
+
+    public ShardedLedger(int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("The ledger needs at least one shard");
+        }
+
+        this.shards = new LedgerShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new LedgerShard(i);
+        }
+    }
+
+    public void put(Account account) {
+        shardFor(account.getAccountId()).put(account);
+    }
+
+    public Optional<Account> get(String accountId) {
+        return Optional.ofNullable(shardFor(accountId).get(accountId))
+                .map(LedgerEntry::toAccount);
+    }
+
+    public int size() {
+        int size = 0;
+        for (LedgerShard shard : shards) {
+            size += shard.size();
+        }
+
+        return size;
+    }
+
+    /**
+     * Applies the transfer converted to the currencies of its accounts with the rates.
+     *
+     * @return the amounts debited and credited
+     */
+    public Mono<TransferLegs> transfer(MoneyTransfer moneyTransfer, FxRates rates) {
+        return Mono.create(sink -> submit(shardFor(moneyTransfer.getSourceAccount()), sink,
+                () -> debitSourceAccount(moneyTransfer, rates, sink)));
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        for (LedgerShard shard : shards) {
+            shard.shutdown(SHUTDOWN_TIMEOUT_MILLIS);
+        }
+    }
+
+    private void debitSourceAccount(MoneyTransfer moneyTransfer, FxRates rates, MonoSink<TransferLegs> sink) {
+        LedgerEntry sourceAccount = shardFor(moneyTransfer.getSourceAccount()).get(moneyTransfer.getSourceAccount());
+        if (sourceAccount == null) {
+            sink.error(SOURCE_ACCOUNT_NOT_FOUND.exception(moneyTransfer.getSourceAccount()));
+            return;
+        }
+
+        LedgerShard targetShard = shardFor(moneyTransfer.getTargetAccount());
+        LedgerEntry targetAccount = targetShard.get(moneyTransfer.getTargetAccount());
+        if (targetAccount == null) {
+            sink.error(TARGET_ACCOUNT_NOT_FOUND.exception(moneyTransfer.getTargetAccount()));
+            return;
+        }
+
+        long debit = rates.convert(moneyTransfer.getAmount(), moneyTransfer.getCurrency(), sourceAccount.getCurrency());
+        if (debit == FxRates.NO_RATE) {
+            sink.error(CURRENCY_NOT_CONVERTIBLE.exception(moneyTransfer.getSourceAccount()));
+            return;
+        }
+        long credit = rates.convert(moneyTransfer.getAmount(), moneyTransfer.getCurrency(), targetAccount.getCurrency());
+        if (credit == FxRates.NO_RATE) {
+            sink.error(CURRENCY_NOT_CONVERTIBLE.exception(moneyTransfer.getTargetAccount()));
+            return;
+        }
+
+        if (sourceAccount.getBalance() < debit) {
+            sink.error(INSUFFICIENT_FUNDS.exception(moneyTransfer.getSourceAccount()));
+            return;
+        }
+
+        sourceAccount.add(-debit);
+
+        try {
+            targetShard.execute(() -> {
+                targetAccount.add(credit);
+                sink.success(TransferLegs.of(debit, sourceAccount.getCurrency(), credit, targetAccount.getCurrency()));
+            });
+        } catch (RejectedExecutionException e) {
+            // Still on the source shard writer, so the debit can be safely given back
+            sourceAccount.add(debit);
+            log.error("Ledger shard rejected the credit of the transfer, the ledger is shutting down");
+            sink.error(e);
+        }
+    }
+
+    private void submit(LedgerShard shard, MonoSink<?> sink, Runnable task) {
+        try {
+            shard.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.error("Ledger shard rejected the transfer, the ledger is shutting down");
+            sink.error(e);
+        }
+    }
+
+    private LedgerShard shardFor(String accountId) {
+        return shards[Math.floorMod(accountId.hashCode(), shards.length)];
+    }
+}
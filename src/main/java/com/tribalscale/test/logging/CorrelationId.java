@@ -0,0 +1,51 @@
+package com.tribalscale.test.logging;
+
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Id tying together what's logged for one request, taken from the {@value #HEADER} request header when it's a sane
+ * one, and carried in the Reactor context of the request.
+ */
+public final class CorrelationId {
+
+    public static final String HEADER = "X-Correlation-Id";
+
+    private static final String CONTEXT_KEY = CorrelationId.class.getName();
+    private static final int MAX_LENGTH = 64;
+
+    private CorrelationId() {
+    }
+
+    /**
+     * The id sent by the client, or a new random one when it sent none or one that doesn't belong in a log line.
+     */
+    public static String of(String header) {
+        return isValid(header) ? header : Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+    public static Context context(String correlationId) {
+        return Context.of(CONTEXT_KEY, correlationId);
+    }
+
+    public static String get(ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, null);
+    }
+
+    private static boolean isValid(String header) {
+        if (header == null || header.isEmpty() || header.length() > MAX_LENGTH) {
+            return false;
+        }
+
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+package com.tribalscale.test.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.spi.AppenderAttachable;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous appender that never blocks nor takes a lock on the logging thread, unlike logback's AsyncAppender and
+ * its blocking queue: events are offered to a lock-free queue and one worker thread hands them to the attached
+ * appenders. Events beyond {@code queueSize} are dropped and counted.
+ * <p>
+ * The logging thread prepares the event for deferred processing before queueing it, so the message is formatted and
+ * the thread name and MDC values are captured while they're still those of the event. Caller data costs a stack walk
+ * and is only captured with {@code includeCallerData}. The worker parks while the queue is empty and is unparked by
+ * the first event queued after it went idle.
+ */
+public class LockFreeAsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements AppenderAttachable<ILoggingEvent> {
+
+    private static final long STOP_TIMEOUT_MILLIS = 1_000;
+
+    private final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+    private final Queue<ILoggingEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private int queueSize = 8192;
+    private boolean includeCallerData;
+    private Thread worker;
+
+    /**
+     * Whether the worker is parked or about to park, for the logging threads to tell whether to unpark it.
+     */
+    private volatile boolean idle;
+
+    /**
+     * Whether the worker parks for more events once the queue is empty, cleared on stop so it drains what's left and
+     * exits.
+     */
+    private volatile boolean running;
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setIncludeCallerData(boolean includeCallerData) {
+        this.includeCallerData = includeCallerData;
+    }
+
+    public boolean isIncludeCallerData() {
+        return includeCallerData;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void start() {
+        if (isStarted()) {
+            return;
+        }
+        if (!appenders.iteratorForAppenders().hasNext()) {
+            addError("No appender attached to the lock free async appender named [" + name + "]");
+            return;
+        }
+
+        worker = new Thread(this::drain, "lock-free-async-appender-" + name);
+        worker.setDaemon(true);
+        running = true;
+        super.start();
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (!isStarted()) {
+            return;
+        }
+
+        super.stop();
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(STOP_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dropped.get() > 0) {
+            addWarn("Dropped " + dropped.get() + " events, the queue of " + queueSize + " was full");
+        }
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (size.incrementAndGet() > queueSize) {
+            size.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+
+        event.prepareForDeferredProcessing();
+        if (includeCallerData) {
+            event.getCallerData();
+        }
+        queue.offer(event);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+    }
+
+    /**
+     * The worker announces it's idle before checking the queue one last time, and a logging thread checks for it after
+     * queueing its event, so either the worker sees the event or the logging thread sees it idle and unparks it.
+     */
+    private void drain() {
+        while (true) {
+            ILoggingEvent event = queue.poll();
+            if (event != null) {
+                size.decrementAndGet();
+                appenders.appendLoopOnAppenders(event);
+                continue;
+            }
+            if (!running) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+
+            idle = true;
+            if (queue.isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            idle = false;
+        }
+    }
+
+    @Override
+    public void addAppender(Appender<ILoggingEvent> appender) {
+        appenders.addAppender(appender);
+    }
+
+    @Override
+    public Iterator<Appender<ILoggingEvent>> iteratorForAppenders() {
+        return appenders.iteratorForAppenders();
+    }
+
+    @Override
+    public Appender<ILoggingEvent> getAppender(String name) {
+        return appenders.getAppender(name);
+    }
+
+    @Override
+    public boolean isAttached(Appender<ILoggingEvent> appender) {
+        return appenders.isAttached(appender);
+    }
+
+    @Override
+    public void detachAndStopAllAppenders() {
+        appenders.detachAndStopAllAppenders();
+    }
+
+    @Override
+    public boolean detachAppender(Appender<ILoggingEvent> appender) {
+        return appenders.detachAppender(appender);
+    }
+
+    @Override
+    public boolean detachAppender(String name) {
+        return appenders.detachAppender(name);
+    }
+}
@@ -0,0 +1,45 @@
+package com.tribalscale.test.logging;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.controller.AccountController;
+import com.tribalscale.test.service.impl.AccountTransferServiceImpl;
+import com.tribalscale.test.service.impl.LedgerAccountTransferServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+import static com.tribalscale.test.config.MoneyTransferProperties.Logging.Mode.PRODUCTION;
+
+/**
+ * In the production logging mode, raises the loggers writing a line per step of every transfer to warn, leaving the
+ * {@link TransferEventLogger} events as the record of the transfers.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LoggingModeConfigurer implements InitializingBean {
+
+    private static final List<Class<?>> PER_TRANSFER_LOGGERS = List.of(AccountController.class,
+            AccountTransferServiceImpl.class, LedgerAccountTransferServiceImpl.class);
+
+    private final LoggingSystem loggingSystem;
+    private final MoneyTransferProperties properties;
+
+    @Override
+    public void afterPropertiesSet() {
+        if (properties.getLogging().getMode() != PRODUCTION) {
+            return;
+        }
+
+        log.info("Production logging mode, one event per transfer with {} of the successful ones sampled",
+                properties.getLogging().getSuccessSampleRate());
+        for (Class<?> logger : PER_TRANSFER_LOGGERS) {
+            loggingSystem.setLogLevel(logger.getName(), LogLevel.WARN);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tribalscale.test.logging;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * Logs one structured event per transfer, in logfmt, to the {@value #LOGGER_NAME} logger. Every failed transfer gets
+ * one, successful ones are sampled.
+ * <p>
+ * The event arguments are immutable, so its message can be formatted by the {@link LockFreeAsyncAppender} off the
+ * request thread.
+ */
+@Component
+public class TransferEventLogger {
+
+    public static final String LOGGER_NAME = "moneytransfer.transfers";
+
+    private static final Logger events = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private static final String EVENT = "event=transfer correlationId={} status={} errorCode={} sourceAccount={} "
+            + "targetAccount={} currency={} amount={} durationMicros={}";
+
+    private final double successSampleRate;
+
+    public TransferEventLogger(MoneyTransferProperties properties) {
+        this.successSampleRate = properties.getLogging().getSuccessSampleRate();
+    }
+
+    public Mono<Integer> logTransfer(MoneyTransfer moneyTransfer, Mono<Integer> transfer) {
+        return Mono.deferContextual(context -> {
+            String correlationId = CorrelationId.get(context);
+            long start = System.nanoTime();
+
+            return transfer
+                    .doOnSuccess(updated -> {
+                        if (successSampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < successSampleRate) {
+                            log(correlationId, moneyTransfer, OK.value(), null, start);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (e instanceof MoneyTransferApplicationException) {
+                            var exception = (MoneyTransferApplicationException) e;
+                            log(correlationId, moneyTransfer, exception.getStatusCode(), exception.getErrorCode(), start);
+                        } else {
+                            log(correlationId, moneyTransfer, INTERNAL_SERVER_ERROR.value(), e.getClass().getSimpleName(), start);
+                        }
+                    });
+        });
+    }
+
+    private static void log(String correlationId, MoneyTransfer moneyTransfer, int status, Object errorCode, long start) {
+        if (events.isInfoEnabled()) {
+            events.info(EVENT, correlationId, status, errorCode, quoted(moneyTransfer.getSourceAccount()),
+                    quoted(moneyTransfer.getTargetAccount()), moneyTransfer.getCurrency(), moneyTransfer.getAmount(),
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Account ids may hold whitespace, which would split the value in logfmt.
+     */
+    private static String quoted(String accountId) {
+        for (int i = 0; i < accountId.length(); i++) {
+            if (Character.isWhitespace(accountId.charAt(i))) {
+                return '"' + accountId.replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t") + '"';
+            }
+        }
+
+        return accountId;
+    }
+}
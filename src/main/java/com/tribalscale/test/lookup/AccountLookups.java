@@ -0,0 +1,121 @@
+package com.tribalscale.test.lookup;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.service.AccountStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account lookups outside of transactions, coalesced into batches: lookups made within the window of the first one of
+ * a batch, or until the batch is full, are read with a single {@link AccountStore#getAll(java.util.Set)} query.
+ * Lookups of the same account joining a batch share its result.
+ * <p>
+ * A lookup never joins a batch already sent to the store, whose result may predate a transfer that committed since,
+ * it starts the next one instead. With a zero window every lookup goes straight to the store.
+ */
+@Component
+@ConditionalOnProperty(prefix = "moneytransfer", name = "engine", havingValue = "repository", matchIfMissing = true)
+@Slf4j
+public class AccountLookups {
+
+    private final AccountStore accountStore;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Scheduler scheduler;
+
+    /**
+     * Lookups waiting for the batch to be sent, guarded by this.
+     */
+    private Map<String, CompletableFuture<Account>> batch = new HashMap<>();
+
+    @Autowired
+    public AccountLookups(AccountStore accountStore, MoneyTransferProperties properties) {
+        this(accountStore, properties.getLookups().getWindow(), properties.getLookups().getMaxBatchSize(), Schedulers.parallel());
+    }
+
+    public AccountLookups(AccountStore accountStore, Duration window, int maxBatchSize, Scheduler scheduler) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("A batch of account lookups needs room for at least one account");
+        }
+
+        this.accountStore = accountStore;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * @return the account, empty when it doesn't exist
+     */
+    public Mono<Account> get(String accountId) {
+        if (windowNanos == 0) {
+            return accountStore.get(accountId);
+        }
+
+        // Each caller gets a copy, so a cancelled caller doesn't cancel the lookup for the others in the batch
+        return Mono.fromFuture(() -> join(accountId).copy());
+    }
+
+    private CompletableFuture<Account> join(String accountId) {
+        Map<String, CompletableFuture<Account>> full = null;
+        CompletableFuture<Account> lookup;
+        synchronized (this) {
+            lookup = batch.get(accountId);
+            if (lookup != null) {
+                return lookup;
+            }
+
+            lookup = new CompletableFuture<>();
+            batch.put(accountId, lookup);
+            if (batch.size() == 1) {
+                Map<String, CompletableFuture<Account>> opened = batch;
+                scheduler.schedule(() -> sendIfPending(opened), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            if (batch.size() == maxBatchSize) {
+                full = batch;
+                batch = new HashMap<>();
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        }
+        return lookup;
+    }
+
+    /**
+     * Sends the batch at the end of its window, unless it was sent already because it got full.
+     */
+    private void sendIfPending(Map<String, CompletableFuture<Account>> opened) {
+        synchronized (this) {
+            if (batch != opened) {
+                return;
+            }
+            batch = new HashMap<>();
+        }
+
+        send(opened);
+    }
+
+    private void send(Map<String, CompletableFuture<Account>> lookups) {
+        accountStore.getAll(lookups.keySet())
+                .collectMap(Account::getAccountId)
+                .subscribe(accounts -> lookups.forEach((accountId, lookup) -> lookup.complete(accounts.get(accountId))),
+                        e -> {
+                            log.error("Couldn't look up a batch of {} accounts, with message: {}", lookups.size(), e.getMessage());
+                            lookups.values().forEach(lookup -> lookup.completeExceptionally(e));
+                        });
+    }
+}
@@ -1,12 +1,16 @@
 package com.tribalscale.test.mapper;
 
 import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.Money;
 import com.tribalscale.test.domain.payload.AccountPayload;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", imports = Money.class)
 public interface AccountMapper {
+    @Mapping(target = "balance", expression = "java(Money.toMinorUnits(payload.getBalance(), payload.getCurrency()))")
     Account payloadToEntity(AccountPayload payload);
 
+    @Mapping(target = "balance", expression = "java(Money.toMajorUnits(entity.getBalance(), entity.getCurrency()))")
     AccountPayload entityToPayload(Account entity);
 }
@@ -1,12 +1,16 @@
 package com.tribalscale.test.mapper;
 
+import com.tribalscale.test.domain.Money;
 import com.tribalscale.test.domain.MoneyTransfer;
 import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", imports = Money.class)
 public interface MoneyTransferMapper {
+    @Mapping(target = "amount", expression = "java(Money.toMinorUnits(payload.getAmount(), payload.getCurrency()))")
     MoneyTransfer payloadToEntity(MoneyTransferRequestPayload payload);
 
+    @Mapping(target = "amount", expression = "java(Money.toMajorUnits(entity.getAmount(), entity.getCurrency()))")
     MoneyTransferRequestPayload entityToPayload(MoneyTransfer entity);
 }
@@ -0,0 +1,19 @@
+package com.tribalscale.test.mapper;
+
+import com.tribalscale.test.domain.Money;
+import com.tribalscale.test.domain.Transfer;
+import com.tribalscale.test.domain.payload.TransferPayload;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+
+import java.time.Instant;
+
+@Mapper(componentModel = "spring", imports = {Money.class, Instant.class})
+public interface TransferMapper {
+    @Mapping(target = "amount", expression = "java(Money.toMajorUnits(entity.getAmount(), entity.getCurrency()))")
+    @Mapping(target = "debit", expression = "java(Money.toMajorUnits(entity.getDebit(), entity.getDebitCurrency()))")
+    @Mapping(target = "credit", expression = "java(Money.toMajorUnits(entity.getCredit(), entity.getCreditCurrency()))")
+    @Mapping(target = "createdAt", expression = "java(Instant.ofEpochMilli(entity.getCreatedAt()))")
+    @Mapping(target = "cursor", expression = "java(entity.cursor().token())")
+    TransferPayload entityToPayload(Transfer entity);
+}
@@ -0,0 +1,64 @@
+package com.tribalscale.test.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import org.springframework.r2dbc.connection.DelegatingConnectionFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ConnectionPool} timing how long every connection takes to be acquired, and binding the gauges of the pool
+ * (acquired, allocated, idle and pending connections) under {@code r2dbc.pool}. A pool running short of connections
+ * shows as pending acquisitions and a growing acquire time well before the acquisitions time out.
+ */
+public class MeteredConnectionFactory extends DelegatingConnectionFactory implements Disposable {
+
+    private static final String ACQUIRE = "r2dbc.pool.acquire";
+
+    private final ConnectionPool connectionPool;
+    private final Timer acquired;
+    private final Timer failed;
+
+    public MeteredConnectionFactory(ConnectionPool connectionPool, String name, MeterRegistry registry) {
+        super(connectionPool);
+        this.connectionPool = connectionPool;
+        this.acquired = acquireTimer(name, "ok", registry);
+        this.failed = acquireTimer(name, "error", registry);
+
+        new ConnectionPoolMetrics(connectionPool, name, Tags.empty()).bindTo(registry);
+    }
+
+    @Override
+    public Mono<? extends Connection> create() {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return connectionPool.create()
+                    .doOnSuccess(connection -> acquired.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnError(e -> failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    @Override
+    public void dispose() {
+        connectionPool.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return connectionPool.isDisposed();
+    }
+
+    private static Timer acquireTimer(String name, String outcome, MeterRegistry registry) {
+        return Timer.builder(ACQUIRE)
+                .description("Time to acquire a connection from the pool, including the wait for one to be released")
+                .tags("name", name, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
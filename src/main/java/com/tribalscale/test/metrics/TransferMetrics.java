@@ -0,0 +1,153 @@
+package com.tribalscale.test.metrics;
+
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Timers of the transfers and of each of their stages, tagged by outcome and published with percentile histograms,
+ * along with the transferred amount per currency and the number of transfers in flight.
+ * <p>
+ * Every timer is registered upfront, so timing a stage is a couple of clock reads and no meter lookup.
+ */
+@Component
+public class TransferMetrics {
+
+    public enum Stage {
+        /**
+         * Reading the source account to tell why its debit was refused.
+         */
+        SOURCE_LOOKUP,
+        /**
+         * The guarded debit of the source account, including the source lookup when refused.
+         */
+        DEBIT,
+        CREDIT
+    }
+
+    public enum Outcome {
+        OK, NOT_FOUND, INSUFFICIENT_FUNDS, NO_EXCHANGE_RATE, ERROR;
+
+        private final String tag = name().toLowerCase(Locale.ROOT);
+
+        /**
+         * By the error code of the failure, so a rejection sharing the status of another one isn't counted as it.
+         */
+        static Outcome of(Throwable error) {
+            if (!(error instanceof MoneyTransferApplicationException)) {
+                return ERROR;
+            }
+            ErrorCode errorCode = ((MoneyTransferApplicationException) error).getErrorCode();
+            if (errorCode == null) {
+                return ERROR;
+            }
+            switch (errorCode) {
+                case ACCOUNT_NOT_FOUND:
+                case SOURCE_ACCOUNT_NOT_FOUND:
+                case TARGET_ACCOUNT_NOT_FOUND:
+                    return NOT_FOUND;
+                case INSUFFICIENT_FUNDS:
+                    return INSUFFICIENT_FUNDS;
+                case CURRENCY_NOT_CONVERTIBLE:
+                    return NO_EXCHANGE_RATE;
+                default:
+                    return ERROR;
+            }
+        }
+    }
+
+    private static final String TRANSFER = "moneytransfer.transfer";
+    private static final String STAGE = "moneytransfer.transfer.stage";
+    private static final String AMOUNT = "moneytransfer.transfer.amount";
+    private static final String IN_FLIGHT = "moneytransfer.transfers.in.flight";
+
+    private final MeterRegistry registry;
+    private final Timer[] transferTimers;
+    private final Timer[][] stageTimers;
+    private final Map<String, Counter> amountCounters = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight;
+
+    public TransferMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        Outcome[] outcomes = Outcome.values();
+        this.transferTimers = new Timer[outcomes.length];
+        for (Outcome outcome : outcomes) {
+            transferTimers[outcome.ordinal()] = Timer.builder(TRANSFER)
+                    .description("Time to apply a transfer, from the service call until it's committed")
+                    .tag("outcome", outcome.tag)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        Stage[] stages = Stage.values();
+        this.stageTimers = new Timer[stages.length][outcomes.length];
+        for (Stage stage : stages) {
+            for (Outcome outcome : outcomes) {
+                stageTimers[stage.ordinal()][outcome.ordinal()] = Timer.builder(STAGE)
+                        .description("Time of one stage of a transfer")
+                        .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+                        .tag("outcome", outcome.tag)
+                        .publishPercentileHistogram()
+                        .register(registry);
+            }
+        }
+
+        this.inFlight = registry.gauge(IN_FLIGHT, new AtomicInteger());
+    }
+
+    /**
+     * Times the whole transfer and counts it as in flight until it completes. The amount of a successful transfer is
+     * added to the amount counter of its currency.
+     */
+    public Mono<Integer> timeTransfer(MoneyTransfer moneyTransfer, Mono<Integer> transfer) {
+        return Mono.defer(() -> {
+            inFlight.incrementAndGet();
+            long start = registry.config().clock().monotonicTime();
+
+            return transfer
+                    .doOnSuccess(updated -> {
+                        record(transferTimers, Outcome.OK, start);
+                        amountCounter(moneyTransfer.getCurrency()).increment(moneyTransfer.getAmount());
+                    })
+                    .doOnError(e -> record(transferTimers, Outcome.of(e), start))
+                    .doFinally(signal -> inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * Times one stage of a transfer, an error sets the outcome it's recorded with.
+     */
+    public <T> Mono<T> timeStage(Stage stage, Mono<T> mono) {
+        Timer[] timers = stageTimers[stage.ordinal()];
+
+        return Mono.defer(() -> {
+            long start = registry.config().clock().monotonicTime();
+
+            return mono.doOnSuccess(value -> record(timers, Outcome.OK, start))
+                    .doOnError(e -> record(timers, Outcome.of(e), start));
+        });
+    }
+
+    private void record(Timer[] timers, Outcome outcome, long start) {
+        timers[outcome.ordinal()].record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private Counter amountCounter(String currency) {
+        return amountCounters.computeIfAbsent(currency, key -> Counter.builder(AMOUNT)
+                .description("Amount transferred, in minor units of the currency")
+                .tag("currency", key)
+                .register(registry));
+    }
+}
@@ -6,13 +6,37 @@ import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 @Repository
 public interface AccountRepository extends ReactiveCrudRepository<Account, String> {
-    Mono<Account> getByAccountId(String id);
+    /**
+     * Declared rather than derived from the method name, so the statement isn't built again on every call.
+     */
+    @Query("select * from Account a where a.account_id = :accountId")
+    Mono<Account> getByAccountId(@Param(value = "accountId") String id);
+
+    @Query("select * from Account a where a.account_id in (:accountIds)")
+    Flux<Account> getAllByAccountIdIn(@Param(value = "accountIds") Collection<String> accountIds);
+
+    /**
+     * Subtracts the amount from the balance only when the account holds enough funds.
+     *
+     * @return 1 when the account was debited, 0 when it doesn't exist or its balance is lower than the amount
+     */
+    @Modifying
+    @Query("update Account a set a.balance = a.balance - :amount where a.account_id = :accountId and a.balance >= :amount")
+    Mono<Integer> debitAmount(@Param(value = "accountId") String accountId, @Param(value = "amount") long amount);
 
+    /**
+     * Adds the amount to the balance.
+     *
+     * @return 1 when the account was credited, 0 when it doesn't exist
+     */
     @Modifying
-    @Query("update Account a set a.balance = :balance where a.account_id = :accountId")
-    Mono<Integer> updateAmount(@Param(value = "accountId") String accountId, @Param(value = "balance") Double balance);
+    @Query("update Account a set a.balance = a.balance + :amount where a.account_id = :accountId")
+    Mono<Integer> creditAmount(@Param(value = "accountId") String accountId, @Param(value = "amount") long amount);
 }
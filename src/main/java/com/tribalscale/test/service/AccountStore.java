@@ -0,0 +1,46 @@
+package com.tribalscale.test.service;
+
+import com.tribalscale.test.domain.Account;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * Where the accounts of the repository engine are kept, selected by {@code moneytransfer.accounts.store}. Balances are
+ * updated in place, a debit only goes through when the account holds enough funds.
+ */
+public interface AccountStore {
+
+    Mono<Account> get(String accountId);
+
+    /**
+     * Returns the accounts in no particular order, the ones which don't exist are left out.
+     */
+    Flux<Account> getAll(Set<String> accountIds);
+
+    /**
+     * Subtracts the amount from the balance only when the account holds enough funds.
+     *
+     * @return 1 when the account was debited, 0 when it doesn't exist or its balance is lower than the amount
+     */
+    Mono<Integer> debit(String accountId, long amount);
+
+    /**
+     * Adds the amount to the balance.
+     *
+     * @return 1 when the account was credited, 0 when it doesn't exist
+     */
+    Mono<Integer> credit(String accountId, long amount);
+
+    /**
+     * Returns every account, in no particular order.
+     */
+    Flux<Account> scan();
+
+    /**
+     * Whether the updates take part in the transaction of the caller and are rolled back with it. The updates of the
+     * other stores apply right away, it's up to the caller to undo them.
+     */
+    boolean isTransactional();
+}
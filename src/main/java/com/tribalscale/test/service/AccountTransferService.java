@@ -2,10 +2,38 @@ package com.tribalscale.test.service;
 
 import com.tribalscale.test.domain.Account;
 import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.Settlement;
+import com.tribalscale.test.domain.Transfer;
+import com.tribalscale.test.history.TransferCursor;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface AccountTransferService {
     Mono<Integer> transferMoneyFromAccountToAnotherAccount(MoneyTransfer moneyTransfer);
 
+    /**
+     * Applies the net position of each account over the transfers, all of them or none: the window is rejected when
+     * any account would end up short of funds. Each transfer is still recorded in the history.
+     */
+    Mono<Settlement> settle(List<MoneyTransfer> moneyTransfers);
+
     Mono<Account> getAccountDetailsByAccountId(String accountId);
+
+    /**
+     * @return the accounts in the order of their ids, leaving out the ones that don't exist
+     */
+    Flux<Account> getAccountDetailsByAccountIds(Collection<String> accountIds);
+
+    /**
+     * @return the transfers of the account older than the cursor, newest first, streamed as they're requested
+     */
+    Flux<Transfer> getTransfersByAccountId(String accountId, TransferCursor after, long limit);
+
+    /**
+     * @return the current state of the account, then its state after each committed transfer touching it
+     */
+    Flux<Account> getAccountBalanceUpdates(String accountId);
 }
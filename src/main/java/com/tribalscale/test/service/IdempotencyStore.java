@@ -0,0 +1,22 @@
+package com.tribalscale.test.service;
+
+import com.tribalscale.test.domain.TransferOutcome;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Bounded store of the outcomes of the transfers requested with an idempotency key, evicted after a time to live.
+ */
+public interface IdempotencyStore {
+    /**
+     * Returns the outcome stored for the key, or runs the transfer and stores its outcome. Concurrent calls with the
+     * same key wait for the one already running in the same instance, those of other instances sharing the store fail
+     * with {@link com.tribalscale.test.domain.ErrorCode#IDEMPOTENCY_KEY_IN_PROGRESS} until it has an outcome. A
+     * transfer failing with an error instead of an outcome stores nothing, so it's run again when retried.
+     * <p>
+     * The outcome is stored along with the hash of the request, a key reused for a request with another hash fails
+     * with {@link com.tribalscale.test.domain.ErrorCode#IDEMPOTENCY_KEY_REUSED} instead of replaying it.
+     */
+    Mono<TransferOutcome> execute(String idempotencyKey, String requestHash, Supplier<Mono<TransferOutcome>> transfer);
+}
@@ -1,71 +1,369 @@
 package com.tribalscale.test.service.impl;
 
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.cache.AccountCache;
+import com.tribalscale.test.cache.AccountCurrencyCache;
+import com.tribalscale.test.commit.GroupCommit;
 import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.ErrorCode;
 import com.tribalscale.test.domain.MoneyTransfer;
-import com.tribalscale.test.domain.MoneyTransferApplicationException;
-import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.domain.Settlement;
+import com.tribalscale.test.domain.Transfer;
+import com.tribalscale.test.domain.TransferLegs;
+import com.tribalscale.test.fx.FxRateTable;
+import com.tribalscale.test.fx.FxRates;
+import com.tribalscale.test.history.TransferCursor;
+import com.tribalscale.test.history.TransferHistory;
+import com.tribalscale.test.journal.TransferJournal;
+import com.tribalscale.test.journal.TransferJournals;
+import com.tribalscale.test.lane.AccountLanes;
+import com.tribalscale.test.lookup.AccountLookups;
+import com.tribalscale.test.metrics.TransferMetrics;
+import com.tribalscale.test.service.AccountStore;
 import com.tribalscale.test.service.AccountTransferService;
+import com.tribalscale.test.settlement.NetPositions;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.function.BiFunction;
-import java.util.function.Function;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
 
-import static java.lang.String.format;
-import static org.springframework.http.HttpStatus.BAD_REQUEST;
-import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static com.tribalscale.test.domain.ErrorCode.ACCOUNT_NOT_FOUND;
+import static com.tribalscale.test.domain.ErrorCode.CURRENCY_NOT_CONVERTIBLE;
+import static com.tribalscale.test.domain.ErrorCode.INSUFFICIENT_FUNDS;
+import static com.tribalscale.test.domain.ErrorCode.SOURCE_ACCOUNT_NOT_FOUND;
+import static com.tribalscale.test.domain.ErrorCode.TARGET_ACCOUNT_NOT_FOUND;
+import static com.tribalscale.test.metrics.TransferMetrics.Stage.CREDIT;
+import static com.tribalscale.test.metrics.TransferMetrics.Stage.DEBIT;
+import static com.tribalscale.test.metrics.TransferMetrics.Stage.SOURCE_LOOKUP;
 
 @Service
+@ConditionalOnProperty(prefix = "moneytransfer", name = "engine", havingValue = "repository", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class AccountTransferServiceImpl implements AccountTransferService {
 
-    private final AccountRepository accountRepository;
+    /**
+     * Transfers of a settlement window converted at the same time, their accounts missing from the currency cache are
+     * looked up together.
+     */
+    private static final int SETTLEMENT_CONVERSIONS = 256;
 
+    private final AccountStore accountStore;
+    private final AccountCache accountCache;
+    private final AccountCurrencyCache accountCurrencyCache;
+    private final AccountLookups accountLookups;
+    private final FxRateTable fxRateTable;
+    private final TransferJournal transferJournal;
+    private final TransferHistory transferHistory;
+    private final BalanceUpdates balanceUpdates;
+    private final TransferMetrics transferMetrics;
+    private final AccountLanes accountLanes;
+    private final GroupCommit groupCommit;
+    private final TransactionalOperator transactionalOperator;
+
+    /**
+     * Converts the transfer to the currencies of its accounts, then applies it once no other transfer sharing the
+     * lanes of its accounts is running, so it doesn't wait on their row locks, in its own transaction when the store
+     * takes part in transactions. With group commit, transfers on such a store are applied in batches sharing a
+     * transaction instead, one batch at a time, so there's no row lock to wait on. The transfer is journaled last in
+     * its transaction, a transfer which couldn't be journaled is rolled back rather than acknowledged.
+     */
     @Override
-    @Transactional
     public Mono<Integer> transferMoneyFromAccountToAnotherAccount(MoneyTransfer moneyTransfer) {
-        log.info("Calling transfer money from account id: {} to account id: {} for amount: {}",
-                moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        if (groupCommit.isEnabled() && accountStore.isTransactional()) {
+            // A rejected transfer undoes its own updates, the batch commits those of the others
+            return convert(moneyTransfer)
+                    .flatMap(legs -> groupCommit.execute(() -> transfer(moneyTransfer, legs, true)));
+        }
+
+        return convert(moneyTransfer)
+                .flatMap(legs -> accountLanes.execute(moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount(),
+                        () -> (accountStore.isTransactional()
+                                ? transactionalOperator.transactional(transfer(moneyTransfer, legs, false))
+                                : transfer(moneyTransfer, legs, true))));
+    }
+
+    /**
+     * Converts the transfers, then applies the net position of each account in account id order, a guarded debit for
+     * the accounts giving more than they get, and records every transfer, so the window costs one update per account
+     * however many transfers it holds. It all happens in one transaction when the store takes part in transactions,
+     * the positions of the other stores already applied are undone by hand when a position or the history fails.
+     * <p>
+     * A settlement holds the lanes of every account of the window, so the transfers of those accounts wait for it
+     * rather than interleave with its updates and its undo, and it stays outside of group commit, whose batches the row
+     * locks of its updates keep waiting. Its transfers are journaled last in its transaction, as for a transfer.
+     */
+    @Override
+    public Mono<Settlement> settle(List<MoneyTransfer> moneyTransfers) {
+        return Flux.fromIterable(moneyTransfers)
+                .flatMapSequential(this::convert, SETTLEMENT_CONVERSIONS)
+                .collectList()
+                .flatMap(legs -> {
+                    NetPositions positions = new NetPositions(moneyTransfers.size());
+                    for (int i = 0; i < moneyTransfers.size(); i++) {
+                        positions.add(moneyTransfers.get(i).getSourceAccount(), -legs.get(i).getDebit());
+                        positions.add(moneyTransfers.get(i).getTargetAccount(), legs.get(i).getCredit());
+                    }
+                    String[] accountIds = positions.sortedAccountIds();
 
-        return accountRepository.getByAccountId(moneyTransfer.getSourceAccount())
-                .switchIfEmpty(Mono.error(MoneyTransferApplicationException.builder()
-                        .message(format("Source account with id: %s, doesn't exist", moneyTransfer.getSourceAccount()))
-                        .statusCode(NOT_FOUND.value())
-                        .build()))
-                .filter(sourceAccount -> sourceAccount.getBalance() >= moneyTransfer.getAmount())
-                .switchIfEmpty(Mono.error(MoneyTransferApplicationException.builder()
-                        .message(format("Insufficient funds at Source account with id: %s", moneyTransfer.getSourceAccount()))
-                        .statusCode(BAD_REQUEST.value())
-                        .build()))
-                .doOnSuccess(sourceAccount -> log.info("Got source account with id: {} and balance: {}", sourceAccount.getAccountId(), sourceAccount.getBalance()))
-                .zipWith(accountRepository.getByAccountId(moneyTransfer.getTargetAccount())
-                                .switchIfEmpty(Mono.error(MoneyTransferApplicationException.builder()
-                                        .message(format("Target account with id: %s, doesn't exist", moneyTransfer.getTargetAccount()))
-                                        .statusCode(NOT_FOUND.value())
-                                        .build()))
-                                .doOnSuccess(targetAccount -> log.info("Got target account with id: {} and balance: {}", targetAccount.getAccountId(), targetAccount.getBalance())),
-                        applyDiscountToSourceAccountAndAddToTarget(moneyTransfer))
-                .doOnSuccess(accountMono -> log.info("Updated all balances..."))
-                .flatMap(Function.identity());
+                    return accountLanes.executeAll(accountIds, () -> {
+                        Mono<Settlement> settlement = settle(moneyTransfers, legs, positions, accountIds);
+                        return accountStore.isTransactional()
+                                ? transactionalOperator.transactional(settlement)
+                                : settlement;
+                    });
+                });
     }
 
     @Override
     public Mono<Account> getAccountDetailsByAccountId(String accountId) {
-        return accountRepository.getByAccountId(accountId)
-                .switchIfEmpty(Mono.error(MoneyTransferApplicationException.builder()
-                        .message(format("Account with id: %s, doesn't exist", accountId))
-                        .statusCode(NOT_FOUND.value())
-                        .build()));
-    }
-
-    private BiFunction<Account, Account, Mono<Integer>> applyDiscountToSourceAccountAndAddToTarget(MoneyTransfer moneyTransfer) {
-        return (sourceAccount, targetAccount) -> accountRepository.updateAmount(sourceAccount.getAccountId(), sourceAccount.getBalance() - moneyTransfer.getAmount())
-                .doOnSuccess(account -> log.info("Subtracted amount: {} for source account id: {} and balance: {}", moneyTransfer.getAmount(), sourceAccount.getAccountId(), sourceAccount.getBalance()))
-                .flatMap(result -> accountRepository.updateAmount(targetAccount.getAccountId(), targetAccount.getBalance() + moneyTransfer.getAmount())
-                        .doOnSuccess(account -> log.info("Added amount: {} for target account id: {}", moneyTransfer.getAmount(), moneyTransfer.getTargetAccount())));
+        return accountCache.get(accountId, accountLookups::get)
+                .switchIfEmpty(Mono.error(() -> ACCOUNT_NOT_FOUND.exception(accountId)));
+    }
+
+    /**
+     * Served from the account cache, the accounts it misses are looked up together.
+     */
+    @Override
+    public Flux<Account> getAccountDetailsByAccountIds(Collection<String> accountIds) {
+        return Flux.fromIterable(accountIds)
+                .flatMapSequential(accountId -> accountCache.get(accountId, accountLookups::get), Math.max(accountIds.size(), 1));
+    }
+
+    @Override
+    public Flux<Transfer> getTransfersByAccountId(String accountId, TransferCursor after, long limit) {
+        return getAccountDetailsByAccountId(accountId)
+                .thenMany(Flux.defer(() -> transferHistory.find(accountId, after, limit)));
+    }
+
+    /**
+     * Each update reads the committed account past the account cache, the reads of accounts changing at the same time
+     * are batched together.
+     */
+    @Override
+    public Flux<Account> getAccountBalanceUpdates(String accountId) {
+        return getAccountDetailsByAccountId(accountId)
+                .thenMany(Flux.defer(() -> balanceUpdates.subscribe(accountId, accountLookups::get)));
+    }
+
+    /**
+     * The legs of the transfer in the currencies of its accounts, with the exchange rates of the moment. The currencies
+     * are cached, so converting a transfer between accounts seen before reads none of them.
+     */
+    private Mono<TransferLegs> convert(MoneyTransfer moneyTransfer) {
+        Mono<String> sourceCurrency = currency(moneyTransfer.getSourceAccount(), SOURCE_ACCOUNT_NOT_FOUND);
+        Mono<String> targetCurrency = currency(moneyTransfer.getTargetAccount(), TARGET_ACCOUNT_NOT_FOUND);
+
+        return Mono.zip(sourceCurrency, targetCurrency)
+                .flatMap(currencies -> {
+                    FxRates rates = fxRateTable.rates();
+                    long debit = rates.convert(moneyTransfer.getAmount(), moneyTransfer.getCurrency(), currencies.getT1());
+                    if (debit == FxRates.NO_RATE) {
+                        return Mono.error(CURRENCY_NOT_CONVERTIBLE.exception(moneyTransfer.getSourceAccount()));
+                    }
+                    long credit = rates.convert(moneyTransfer.getAmount(), moneyTransfer.getCurrency(), currencies.getT2());
+                    if (credit == FxRates.NO_RATE) {
+                        return Mono.error(CURRENCY_NOT_CONVERTIBLE.exception(moneyTransfer.getTargetAccount()));
+                    }
+                    return Mono.just(TransferLegs.of(debit, currencies.getT1(), credit, currencies.getT2()));
+                });
+    }
+
+    private Mono<String> currency(String accountId, ErrorCode notFound) {
+        return accountCurrencyCache.get(accountId, accountLookups::get)
+                .switchIfEmpty(Mono.error(() -> notFound.exception(accountId)));
+    }
+
+    /**
+     * @param undoByHand whether a failure undoes the update already made, rather than leaving it to a rollback
+     */
+    private Mono<Integer> transfer(MoneyTransfer moneyTransfer, TransferLegs legs, boolean undoByHand) {
+        log.info("Calling transfer money from account id: {} to account id: {} for amount: {}",
+                moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+
+        Mono<Integer> debit = Mono.defer(() -> transferMetrics.timeStage(DEBIT, debitSourceAccount(moneyTransfer, legs.getDebit())));
+        Mono<Integer> credit = Mono.defer(() -> transferMetrics.timeStage(CREDIT, creditTargetAccount(moneyTransfer, legs.getCredit())));
+
+        // Both rows are still locked in account id order, other instances sharing the database don't go through the
+        // same lanes. Any failure rolls back the whole transaction, or is undone by hand in the other stores and in
+        // the batches of group commit.
+        Mono<Integer> transfer = moneyTransfer.getSourceAccount().compareTo(moneyTransfer.getTargetAccount()) <= 0
+                ? debit.then(undoOnError(credit, moneyTransfer.getSourceAccount(), legs.getDebit(), undoByHand))
+                : credit.flatMap(credited -> undoOnError(debit, moneyTransfer.getTargetAccount(), -legs.getCredit(), undoByHand)
+                        .thenReturn(credited));
+
+        return transfer.doOnSuccess(updated -> log.info("Updated all balances..."))
+                .flatMap(updated -> record(moneyTransfer, legs)
+                        .then(journal(List.of(moneyTransfer), List.of(legs)))
+                        .then(afterCommit(() -> transferCommitted(moneyTransfer)))
+                        .thenReturn(updated));
+    }
+
+    private Mono<Integer> debitSourceAccount(MoneyTransfer moneyTransfer, long amount) {
+        return accountStore.debit(moneyTransfer.getSourceAccount(), amount)
+                .filter(updated -> updated > 0)
+                .switchIfEmpty(Mono.defer(() -> debitFailure(moneyTransfer.getSourceAccount())))
+                .doOnSuccess(updated -> log.info("Subtracted amount: {} for source account id: {}", amount, moneyTransfer.getSourceAccount()));
+    }
+
+    private Mono<Integer> creditTargetAccount(MoneyTransfer moneyTransfer, long amount) {
+        return accountStore.credit(moneyTransfer.getTargetAccount(), amount)
+                .filter(updated -> updated > 0)
+                .switchIfEmpty(Mono.error(() -> TARGET_ACCOUNT_NOT_FOUND.exception(moneyTransfer.getTargetAccount())))
+                .doOnSuccess(updated -> log.info("Added amount: {} for target account id: {}", amount, moneyTransfer.getTargetAccount()));
+    }
+
+    /**
+     * The guarded debit didn't touch any row, the source account is only read to tell a missing account apart from
+     * one without enough funds.
+     */
+    private Mono<Integer> debitFailure(String sourceAccount) {
+        return transferMetrics.timeStage(SOURCE_LOOKUP, accountStore.get(sourceAccount)
+                        .switchIfEmpty(Mono.error(() -> SOURCE_ACCOUNT_NOT_FOUND.exception(sourceAccount))))
+                .flatMap(account -> Mono.error(INSUFFICIENT_FUNDS.exception(sourceAccount)));
+    }
+
+    /**
+     * When the second update of a transfer fails, reverses the first one with a credit of the amount, negative to take
+     * back a credit.
+     */
+    private Mono<Integer> undoOnError(Mono<Integer> update, String updatedAccountId, long amount, boolean undoByHand) {
+        if (!undoByHand) {
+            return update;
+        }
+        return update.onErrorResume(e -> accountStore.credit(updatedAccountId, amount).then(Mono.error(e)));
+    }
+
+    /**
+     * @param legs       the legs of each transfer, in the order of the transfers
+     * @param positions  the net position of each account of the transfers
+     * @param accountIds the accounts of the transfers in ascending order
+     */
+    private Mono<Settlement> settle(List<MoneyTransfer> moneyTransfers, List<TransferLegs> legs, NetPositions positions,
+                                    String[] accountIds) {
+        log.info("Settling {} transfers over {} accounts", moneyTransfers.size(), positions.size());
+
+        // The accounts whose position was applied, most recent first, for the stores whose updates are undone by hand
+        Deque<String> applied = new ArrayDeque<>();
+        Mono<Void> settlement = Flux.fromArray(accountIds)
+                .filter(accountId -> positions.get(accountId) != 0)
+                .concatMap(accountId -> applyPosition(accountId, positions.get(accountId))
+                        .doOnNext(updated -> applied.push(accountId)))
+                .then(Mono.defer(() -> transferHistory.recordAll(moneyTransfers, legs)));
+        if (!accountStore.isTransactional()) {
+            settlement = settlement.onErrorResume(e -> Flux.fromIterable(applied)
+                    .concatMap(accountId -> undoPosition(accountId, positions.get(accountId)))
+                    .then(Mono.error(e)));
+        }
+
+        return settlement.then(journal(moneyTransfers, legs))
+                .then(afterCommit(() -> settlementCommitted(applied)))
+                .then(Mono.fromSupplier(() -> Settlement.of(moneyTransfers.size(), applied.size())));
+    }
+
+    /**
+     * Debits the accounts giving more than they get, with the same guard as a transfer, and credits the others.
+     */
+    private Mono<Integer> applyPosition(String accountId, long position) {
+        if (position < 0) {
+            return accountStore.debit(accountId, -position)
+                    .filter(updated -> updated > 0)
+                    .switchIfEmpty(Mono.defer(() -> debitFailure(accountId)));
+        }
+        return accountStore.credit(accountId, position)
+                .filter(updated -> updated > 0)
+                .switchIfEmpty(Mono.error(() -> TARGET_ACCOUNT_NOT_FOUND.exception(accountId)));
+    }
+
+    /**
+     * Takes back a position already applied, with a guarded debit for a credit so the account never goes below zero.
+     * The settlement holds the lane of the account, a transfer can only have spent the credit with the lanes disabled.
+     */
+    private Mono<Integer> undoPosition(String accountId, long position) {
+        if (position < 0) {
+            return accountStore.credit(accountId, -position);
+        }
+        return accountStore.debit(accountId, position)
+                .doOnNext(updated -> {
+                    if (updated == 0) {
+                        log.error("Couldn't take back the settled credit of {} from account id: {}, it was spent already",
+                                position, accountId);
+                    }
+                });
+    }
+
+    /**
+     * Records the transfer in the history, in its transaction when the store takes part in transactions so the history
+     * never disagrees with the balances. The balances of the other stores are already updated, a transfer missing from
+     * the history is logged rather than failed.
+     */
+    private Mono<Void> record(MoneyTransfer moneyTransfer, TransferLegs legs) {
+        if (accountStore.isTransactional()) {
+            return transferHistory.record(moneyTransfer, legs);
+        }
+        return transferHistory.record(moneyTransfer, legs)
+                .onErrorResume(e -> {
+                    log.error("Couldn't record the transfer from account id: {} to account id: {} in the history, with message: {}",
+                            moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Journals the applied transfers, in their transaction when the store takes part in transactions so a transfer
+     * which couldn't be journaled is rolled back. The balances of the other stores are already updated, a transfer
+     * missing from the journal is logged rather than failed.
+     */
+    private Mono<Void> journal(List<MoneyTransfer> moneyTransfers, List<TransferLegs> legs) {
+        if (accountStore.isTransactional()) {
+            return TransferJournals.append(transferJournal, moneyTransfers, legs);
+        }
+        return TransferJournals.appendApplied(transferJournal, moneyTransfers, legs);
+    }
+
+    /**
+     * Evicts the cached accounts, so no reader can cache the balance from before the commit, and pushes their balances
+     * to their subscribers.
+     */
+    private void transferCommitted(MoneyTransfer moneyTransfer) {
+        accountCache.evict(moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount());
+        balanceUpdates.changed(moneyTransfer.getSourceAccount(), accountLookups::get);
+        balanceUpdates.changed(moneyTransfer.getTargetAccount(), accountLookups::get);
+    }
+
+    /**
+     * Evicts the cached accounts whose balance changed and pushes their balances to their subscribers.
+     */
+    private void settlementCommitted(Collection<String> updatedAccounts) {
+        accountCache.evict(updatedAccounts.toArray(String[]::new));
+        updatedAccounts.forEach(accountId -> balanceUpdates.changed(accountId, accountLookups::get));
+    }
+
+    /**
+     * Runs the action once the current transaction commits, or right away outside of a transaction.
+     */
+    private static Mono<Void> afterCommit(Runnable action) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(synchronizationManager -> synchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCommit() {
+                        return Mono.fromRunnable(action);
+                    }
+                }))
+                .onErrorResume(NoTransactionException.class, e -> Mono.empty())
+                .switchIfEmpty(Mono.fromRunnable(action))
+                .then();
     }
 }
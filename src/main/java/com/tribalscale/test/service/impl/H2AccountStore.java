@@ -0,0 +1,54 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Set;
+
+/**
+ * {@link AccountStore} over the ACCOUNT table, through the {@link AccountRepository}. The balances are durable and
+ * shared by every instance using the database, and the updates join the transaction of the caller.
+ */
+@Service
+@ConditionalOnProperty(prefix = "moneytransfer.accounts", name = "store", havingValue = "h2", matchIfMissing = true)
+@RequiredArgsConstructor
+public class H2AccountStore implements AccountStore {
+
+    private final AccountRepository accountRepository;
+
+    @Override
+    public Mono<Account> get(String accountId) {
+        return accountRepository.getByAccountId(accountId);
+    }
+
+    @Override
+    public Flux<Account> getAll(Set<String> accountIds) {
+        return accountIds.isEmpty() ? Flux.empty() : accountRepository.getAllByAccountIdIn(accountIds);
+    }
+
+    @Override
+    public Mono<Integer> debit(String accountId, long amount) {
+        return accountRepository.debitAmount(accountId, amount);
+    }
+
+    @Override
+    public Mono<Integer> credit(String accountId, long amount) {
+        return accountRepository.creditAmount(accountId, amount);
+    }
+
+    @Override
+    public Flux<Account> scan() {
+        return accountRepository.findAll();
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return true;
+    }
+}
@@ -0,0 +1,199 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.TransferOutcome;
+import com.tribalscale.test.service.IdempotencyStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import static com.tribalscale.test.domain.ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS;
+
+/**
+ * {@link IdempotencyStore} keeping the outcomes in the IDEMPOTENCY_KEY table, so they're shared by every instance
+ * using the database and don't take heap. The keys are looked up through the primary key index, and a background
+ * purge deletes the expired ones and the oldest ones over the maximum size.
+ * <p>
+ * A key is claimed with a row without outcome before its transfer runs, the primary key lets only one instance insert
+ * it, and the row is updated with the outcome once there's one. The other instances find the claimed key and fail
+ * with {@link ErrorCode#IDEMPOTENCY_KEY_IN_PROGRESS} until then, concurrent duplicates within an instance wait for its
+ * running transfer instead. A transfer failing with an error releases its claim. An outcome which couldn't be saved is
+ * still returned, as the transfer happened, and its key stays claimed until it expires so it never runs again.
+ */
+@Service
+@ConditionalOnProperty(prefix = "moneytransfer.idempotency", name = "store", havingValue = "h2")
+@Slf4j
+public class H2IdempotencyStore implements IdempotencyStore, InitializingBean, DisposableBean {
+
+    private final DatabaseClient databaseClient;
+    private final long timeToLiveMillis;
+    private final long maximumSize;
+    private final Duration purgeInterval;
+    private final Map<String, CompletableFuture<TransferOutcome>> inFlight = new ConcurrentHashMap<>();
+
+    private Disposable purge;
+
+    public H2IdempotencyStore(DatabaseClient databaseClient, MoneyTransferProperties properties) {
+        this.databaseClient = databaseClient;
+        this.timeToLiveMillis = properties.getIdempotency().getTimeToLive().toMillis();
+        this.maximumSize = properties.getIdempotency().getMaximumSize();
+        this.purgeInterval = properties.getIdempotency().getPurgeInterval();
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        purge = Flux.interval(purgeInterval, purgeInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> purge()
+                        .onErrorResume(e -> {
+                            log.error("Couldn't purge the idempotency keys, with message: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        purge.dispose();
+    }
+
+    @Override
+    public Mono<TransferOutcome> execute(String idempotencyKey, String requestHash, Supplier<Mono<TransferOutcome>> transfer) {
+        return Mono.defer(() -> {
+            var outcome = new CompletableFuture<TransferOutcome>();
+            var running = inFlight.putIfAbsent(idempotencyKey, outcome);
+            if (running != null) {
+                return Mono.fromFuture(running.copy())
+                        .map(transferOutcome -> transferOutcome.replayedFor(idempotencyKey, requestHash));
+            }
+
+            // Subscribed apart from the caller, a cancelled caller must not leave the transfer without its outcome
+            claim(idempotencyKey, requestHash)
+                    .flatMap(claimed -> claimed
+                            ? runClaimed(idempotencyKey, requestHash, transfer)
+                            : find(idempotencyKey).switchIfEmpty(Mono.error(() -> IDEMPOTENCY_KEY_IN_PROGRESS.exception(idempotencyKey))))
+                    .doFinally(signal -> inFlight.remove(idempotencyKey, outcome))
+                    .subscribe(outcome::complete, outcome::completeExceptionally, () -> outcome.complete(null));
+
+            return Mono.fromFuture(outcome.copy())
+                    .map(transferOutcome -> transferOutcome.replayedFor(idempotencyKey, requestHash));
+        });
+    }
+
+    /**
+     * Deletes the expired keys, then the oldest ones beyond the maximum size.
+     */
+    Mono<Void> purge() {
+        return databaseClient.sql("DELETE FROM IDEMPOTENCY_KEY WHERE CREATED_AT < :notBefore")
+                .bind("notBefore", System.currentTimeMillis() - timeToLiveMillis)
+                .fetch()
+                .rowsUpdated()
+                .then(databaseClient.sql("DELETE FROM IDEMPOTENCY_KEY WHERE CREATED_AT < "
+                                + "(SELECT CREATED_AT FROM IDEMPOTENCY_KEY ORDER BY CREATED_AT DESC LIMIT 1 OFFSET :maximumSize)")
+                        .bind("maximumSize", maximumSize - 1)
+                        .fetch()
+                        .rowsUpdated())
+                .then();
+    }
+
+    /**
+     * Runs the transfer of a claimed key and saves its outcome.
+     */
+    private Mono<TransferOutcome> runClaimed(String idempotencyKey, String requestHash, Supplier<Mono<TransferOutcome>> transfer) {
+        return Mono.defer(transfer)
+                .onErrorResume(e -> release(idempotencyKey).then(Mono.error(e)))
+                .map(transferOutcome -> transferOutcome.forRequest(requestHash))
+                .flatMap(transferOutcome -> save(idempotencyKey, transferOutcome)
+                        .onErrorResume(e -> {
+                            log.error("Couldn't save the outcome of idempotency key: {}, it stays in use until it expires, with message: {}",
+                                    idempotencyKey, e.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(transferOutcome));
+    }
+
+    /**
+     * Inserts the row of the key without outcome, or takes over the row of an expired key.
+     *
+     * @return whether this call claimed the key, false when the key is in use or has an outcome already
+     */
+    private Mono<Boolean> claim(String idempotencyKey, String requestHash) {
+        long now = System.currentTimeMillis();
+        return databaseClient.sql("INSERT INTO IDEMPOTENCY_KEY(IDEMPOTENCY_KEY, REQUEST_HASH, CREATED_AT) VALUES (:key, :requestHash, :createdAt)")
+                .bind("key", idempotencyKey)
+                .bind("requestHash", requestHash)
+                .bind("createdAt", now)
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(true)
+                .onErrorResume(DataIntegrityViolationException.class, e -> databaseClient.sql("UPDATE IDEMPOTENCY_KEY "
+                                + "SET STATUS_CODE = NULL, MESSAGE = NULL, ERROR_CODE = NULL, REQUEST_HASH = :requestHash, CREATED_AT = :createdAt "
+                                + "WHERE IDEMPOTENCY_KEY = :key AND CREATED_AT < :notBefore")
+                        .bind("key", idempotencyKey)
+                        .bind("requestHash", requestHash)
+                        .bind("createdAt", now)
+                        .bind("notBefore", now - timeToLiveMillis)
+                        .fetch()
+                        .rowsUpdated()
+                        .map(updated -> updated > 0));
+    }
+
+    /**
+     * Deletes the row of a key whose transfer failed without outcome, so it runs again when retried.
+     */
+    private Mono<Void> release(String idempotencyKey) {
+        return databaseClient.sql("DELETE FROM IDEMPOTENCY_KEY WHERE IDEMPOTENCY_KEY = :key AND STATUS_CODE IS NULL")
+                .bind("key", idempotencyKey)
+                .fetch()
+                .rowsUpdated()
+                .then()
+                .onErrorResume(e -> {
+                    log.error("Couldn't release idempotency key: {}, it stays in use until it expires, with message: {}",
+                            idempotencyKey, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @return the outcome of the key, empty when it has none yet
+     */
+    private Mono<TransferOutcome> find(String idempotencyKey) {
+        return databaseClient.sql("SELECT STATUS_CODE, MESSAGE, ERROR_CODE, REQUEST_HASH FROM IDEMPOTENCY_KEY WHERE IDEMPOTENCY_KEY = :key AND STATUS_CODE IS NOT NULL")
+                .bind("key", idempotencyKey)
+                .map((row, metadata) -> TransferOutcome.builder()
+                        .statusCode(row.get("STATUS_CODE", Integer.class))
+                        .message(row.get("MESSAGE", String.class))
+                        .errorCode(Optional.ofNullable(row.get("ERROR_CODE", String.class))
+                                .map(ErrorCode::valueOf)
+                                .orElse(null))
+                        .requestHash(row.get("REQUEST_HASH", String.class))
+                        .build())
+                .one();
+    }
+
+    private Mono<Void> save(String idempotencyKey, TransferOutcome outcome) {
+        var statement = databaseClient.sql("UPDATE IDEMPOTENCY_KEY SET STATUS_CODE = :statusCode, MESSAGE = :message, ERROR_CODE = :errorCode "
+                        + "WHERE IDEMPOTENCY_KEY = :key")
+                .bind("key", idempotencyKey)
+                .bind("statusCode", outcome.getStatusCode());
+        statement = outcome.getMessage() == null ? statement.bindNull("message", String.class) : statement.bind("message", outcome.getMessage());
+        statement = outcome.getErrorCode() == null ? statement.bindNull("errorCode", String.class) : statement.bind("errorCode", outcome.getErrorCode().name());
+
+        return statement.then();
+    }
+}
@@ -0,0 +1,101 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.service.AccountStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link AccountStore} over a concurrent map of immutable accounts, restored on startup by the {@link AccountRecovery}.
+ * Updates replace the account atomically and are never written back to the database: they survive a restart only
+ * through the journal, without it the store is volatile and starts over from the balances of the database.
+ */
+@Service
+@ConditionalOnProperty(prefix = "moneytransfer.accounts", name = "store", havingValue = "memory")
+@Slf4j
+public class InMemoryAccountStore implements AccountStore, SmartInitializingSingleton {
+
+    private final AccountRecovery accountRecovery;
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+
+    public InMemoryAccountStore(AccountRecovery accountRecovery) {
+        this.accountRecovery = accountRecovery;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        accountRecovery.restore(this::put);
+
+        log.info("Loaded {} accounts into the in-memory store", accounts.size());
+    }
+
+    /**
+     * Adds the account, or replaces the one with the same id.
+     */
+    public void put(Account account) {
+        accounts.put(account.getAccountId(), account);
+    }
+
+    @Override
+    public Mono<Account> get(String accountId) {
+        return Mono.fromSupplier(() -> accounts.get(accountId));
+    }
+
+    @Override
+    public Flux<Account> getAll(Set<String> accountIds) {
+        return Flux.defer(() -> Flux.fromStream(accountIds.stream().map(accounts::get).filter(Objects::nonNull)));
+    }
+
+    @Override
+    public Mono<Integer> debit(String accountId, long amount) {
+        return update(accountId, account -> account.getBalance() >= amount
+                ? account.withBalance(account.getBalance() - amount)
+                : null);
+    }
+
+    @Override
+    public Mono<Integer> credit(String accountId, long amount) {
+        return update(accountId, account -> account.withBalance(account.getBalance() + amount));
+    }
+
+    @Override
+    public Flux<Account> scan() {
+        return Flux.defer(() -> Flux.fromIterable(accounts.values()));
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+
+    /**
+     * Applies the update atomically, an update returning null leaves the account as it was.
+     *
+     * @return 1 when the account was updated, 0 when it doesn't exist or the update was refused
+     */
+    private Mono<Integer> update(String accountId, UnaryOperator<Account> update) {
+        return Mono.fromSupplier(() -> {
+            int[] updated = {0};
+            accounts.computeIfPresent(accountId, (id, account) -> {
+                Account result = update.apply(account);
+                if (result == null) {
+                    return account;
+                }
+                updated[0] = 1;
+                return result;
+            });
+            return updated[0];
+        });
+    }
+}
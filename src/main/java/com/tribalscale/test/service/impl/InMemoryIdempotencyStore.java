@@ -0,0 +1,39 @@
+package com.tribalscale.test.service.impl;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.TransferOutcome;
+import com.tribalscale.test.service.IdempotencyStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * {@link IdempotencyStore} keeping the outcomes in a size bounded Caffeine cache. The running transfer is cached as
+ * well, which is what makes concurrent duplicates wait for it.
+ */
+@Service
+@ConditionalOnProperty(prefix = "moneytransfer.idempotency", name = "store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final AsyncCache<String, TransferOutcome> outcomes;
+
+    public InMemoryIdempotencyStore(MoneyTransferProperties properties) {
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(properties.getIdempotency().getMaximumSize())
+                .expireAfterWrite(properties.getIdempotency().getTimeToLive())
+                .buildAsync();
+    }
+
+    @Override
+    public Mono<TransferOutcome> execute(String idempotencyKey, String requestHash, Supplier<Mono<TransferOutcome>> transfer) {
+        // A failed future is dropped by the cache, every caller gets a copy so a cancelled one doesn't cancel the transfer
+        return Mono.fromFuture(() -> outcomes.get(idempotencyKey, (key, executor) -> transfer.get()
+                        .map(outcome -> outcome.forRequest(requestHash))
+                        .toFuture()).copy())
+                .map(outcome -> outcome.replayedFor(idempotencyKey, requestHash));
+    }
+}
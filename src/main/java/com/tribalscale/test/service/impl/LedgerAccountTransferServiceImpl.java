@@ -0,0 +1,143 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.domain.Settlement;
+import com.tribalscale.test.domain.Transfer;
+import com.tribalscale.test.domain.TransferLegs;
+import com.tribalscale.test.fx.FxRateTable;
+import com.tribalscale.test.history.TransferCursor;
+import com.tribalscale.test.history.TransferHistory;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.journal.TransferJournal;
+import com.tribalscale.test.journal.TransferJournals;
+import com.tribalscale.test.ledger.ShardedLedger;
+import com.tribalscale.test.service.AccountTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+import static com.tribalscale.test.domain.ErrorCode.ACCOUNT_NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_IMPLEMENTED;
+
+/**
+ * {@link AccountTransferService} backed by a {@link ShardedLedger}. The accounts are restored once on startup by the
+ * {@link AccountRecovery}, afterwards every transfer and lookup is served from memory.
+ */
+@Service
+@ConditionalOnProperty(prefix = "moneytransfer", name = "engine", havingValue = "ledger")
+@Slf4j
+public class LedgerAccountTransferServiceImpl implements AccountTransferService, SmartInitializingSingleton, DisposableBean {
+
+    private final AccountRecovery accountRecovery;
+    private final TransferJournal transferJournal;
+    private final TransferHistory transferHistory;
+    private final BalanceUpdates balanceUpdates;
+    private final FxRateTable fxRateTable;
+    private final ShardedLedger ledger;
+
+    public LedgerAccountTransferServiceImpl(AccountRecovery accountRecovery, TransferJournal transferJournal,
+                                            TransferHistory transferHistory, BalanceUpdates balanceUpdates,
+                                            FxRateTable fxRateTable, MoneyTransferProperties properties) {
+        this.accountRecovery = accountRecovery;
+        this.transferJournal = transferJournal;
+        this.transferHistory = transferHistory;
+        this.balanceUpdates = balanceUpdates;
+        this.fxRateTable = fxRateTable;
+        this.ledger = new ShardedLedger(properties.getLedger().getShards());
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        accountRecovery.restore(ledger::put);
+
+        log.info("Loaded {} accounts into the ledger", ledger.size());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        ledger.close();
+    }
+
+    /**
+     * Journaled once the ledger applied it. The ledger can't roll the transfer back, a transfer the journal failed to
+     * append is logged and still acknowledged, though it won't survive a restart.
+     */
+    @Override
+    public Mono<Integer> transferMoneyFromAccountToAnotherAccount(MoneyTransfer moneyTransfer) {
+        log.info("Calling ledger transfer money from account id: {} to account id: {} for amount: {}",
+                moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+
+        // Journaled on the thread of the shard which applied it, the append costs less than handing it to another thread
+        return ledger.transfer(moneyTransfer, fxRateTable.rates())
+                .doOnNext(legs -> {
+                    balanceUpdates.changed(moneyTransfer.getSourceAccount(), this::lookup);
+                    balanceUpdates.changed(moneyTransfer.getTargetAccount(), this::lookup);
+                })
+                .flatMap(legs -> TransferJournals.appendApplied(transferJournal, moneyTransfer, legs)
+                        .then(Mono.defer(() -> record(moneyTransfer, legs))))
+                .thenReturn(1);
+    }
+
+    /**
+     * The shards of the ledger each apply their own updates, none of them can apply the positions of a whole window at
+     * once.
+     */
+    @Override
+    public Mono<Settlement> settle(List<MoneyTransfer> moneyTransfers) {
+        return Mono.error(() -> MoneyTransferApplicationException.builder()
+                .message("The ledger engine doesn't settle windows of transfers")
+                .statusCode(NOT_IMPLEMENTED.value())
+                .build());
+    }
+
+    @Override
+    public Mono<Account> getAccountDetailsByAccountId(String accountId) {
+        return Mono.justOrEmpty(ledger.get(accountId))
+                .switchIfEmpty(Mono.error(() -> ACCOUNT_NOT_FOUND.exception(accountId)));
+    }
+
+    @Override
+    public Flux<Account> getAccountDetailsByAccountIds(Collection<String> accountIds) {
+        return Flux.fromIterable(accountIds)
+                .concatMap(accountId -> Mono.justOrEmpty(ledger.get(accountId)));
+    }
+
+    @Override
+    public Flux<Transfer> getTransfersByAccountId(String accountId, TransferCursor after, long limit) {
+        return getAccountDetailsByAccountId(accountId)
+                .thenMany(Flux.defer(() -> transferHistory.find(accountId, after, limit)));
+    }
+
+    @Override
+    public Flux<Account> getAccountBalanceUpdates(String accountId) {
+        return getAccountDetailsByAccountId(accountId)
+                .thenMany(Flux.defer(() -> balanceUpdates.subscribe(accountId, this::lookup)));
+    }
+
+    private Mono<Account> lookup(String accountId) {
+        return Mono.justOrEmpty(ledger.get(accountId));
+    }
+
+    /**
+     * The ledger already applied the transfer, a transfer missing from the history is logged rather than failed.
+     */
+    private Mono<Void> record(MoneyTransfer moneyTransfer, TransferLegs legs) {
+        return transferHistory.record(moneyTransfer, legs)
+                .onErrorResume(e -> {
+                    log.error("Couldn't record the transfer from account id: {} to account id: {} in the history, with message: {}",
+                            moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,119 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountStore;
+import com.tribalscale.test.table.MappedAccountTable;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * {@link AccountStore} over a {@link MappedAccountTable}. The table is loaded from the database until a load completes,
+ * afterwards the balances it keeps survive restarts, and the heap holds none of the accounts however many there are.
+ * A load interrupted half way is started over, putting the accounts already loaded again.
+ */
+@Service
+@ConditionalOnProperty(prefix = "moneytransfer.accounts", name = "store", havingValue = "mapped")
+@Slf4j
+public class MappedAccountStore implements AccountStore, SmartInitializingSingleton, DisposableBean {
+
+    private final AccountRepository accountRepository;
+    private final MappedAccountTable table;
+
+    @Autowired
+    public MappedAccountStore(AccountRepository accountRepository, MoneyTransferProperties properties) {
+        this(accountRepository, new MappedAccountTable(Path.of(properties.getAccounts().getMappedTable()),
+                properties.getAccounts().getMappedCapacity()));
+    }
+
+    public MappedAccountStore(AccountRepository accountRepository, MappedAccountTable table) {
+        this.accountRepository = accountRepository;
+        this.table = table;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (table.isLoaded()) {
+            log.info("Opened the account table with {} accounts, out of a capacity of {}", table.size(), table.capacity());
+            return;
+        }
+        if (table.size() > 0) {
+            log.warn("The account table holds {} accounts but wasn't completely loaded, loading it again", table.size());
+        }
+
+        accountRepository.findAll()
+                .doOnNext(table::put)
+                .then()
+                .block();
+        table.markLoaded();
+
+        log.info("Loaded {} accounts into the account table, out of a capacity of {}", table.size(), table.capacity());
+    }
+
+    @Override
+    public void destroy() {
+        table.close();
+    }
+
+    /**
+     * Adds the account, or replaces the one with the same id.
+     */
+    public void put(Account account) {
+        table.put(account);
+    }
+
+    @Override
+    public Mono<Account> get(String accountId) {
+        return Mono.fromSupplier(() -> table.get(table.find(accountId)));
+    }
+
+    @Override
+    public Flux<Account> getAll(Set<String> accountIds) {
+        return Flux.defer(() -> Flux.fromStream(accountIds.stream()
+                .map(accountId -> table.get(table.find(accountId)))
+                .filter(Objects::nonNull)));
+    }
+
+    @Override
+    public Mono<Integer> debit(String accountId, long amount) {
+        return Mono.fromSupplier(() -> {
+            int record = table.find(accountId);
+            return record >= 0 && table.debit(record, amount) ? 1 : 0;
+        });
+    }
+
+    @Override
+    public Mono<Integer> credit(String accountId, long amount) {
+        return Mono.fromSupplier(() -> {
+            int record = table.find(accountId);
+            if (record < 0) {
+                return 0;
+            }
+
+            table.credit(record, amount);
+            return 1;
+        });
+    }
+
+    @Override
+    public Flux<Account> scan() {
+        // Read a record at a time as requested, the table may not fit in the heap
+        return Flux.defer(() -> Flux.range(0, table.size()).map(table::get));
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+}
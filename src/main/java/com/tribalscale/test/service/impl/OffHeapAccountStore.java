@@ -0,0 +1,176 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.service.AccountStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link AccountStore} keeping the balances in fixed size records of a direct buffer, restored on startup by the
+ * {@link AccountRecovery}, so the heap only holds the index from account id to record. Balances are updated with a
+ * compare and set on the record, without locks or allocation. Like the in-memory store, updates are never written
+ * back to the database and survive a restart only through the journal.
+ * <p>
+ * A record is the balance followed by the currency, as up to 8 ASCII bytes padded with zeros.
+ */
+@Service
+@ConditionalOnProperty(prefix = "moneytransfer.accounts", name = "store", havingValue = "off-heap")
+@Slf4j
+public class OffHeapAccountStore implements AccountStore, SmartInitializingSingleton {
+
+    static final int RECORD_SIZE = 16;
+    private static final int CURRENCY_OFFSET = 8;
+    private static final int CURRENCY_MAX_LENGTH = 8;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final AccountRecovery accountRecovery;
+    private final int capacity;
+    private final ByteBuffer records;
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    /**
+     * Decoded currencies by their encoded bits, there are only a few of them.
+     */
+    private final Map<Long, String> currencies = new ConcurrentHashMap<>();
+
+    public OffHeapAccountStore(AccountRecovery accountRecovery, MoneyTransferProperties properties) {
+        this.accountRecovery = accountRecovery;
+        this.capacity = properties.getAccounts().getOffHeapCapacity();
+        this.records = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, RECORD_SIZE)).order(ByteOrder.nativeOrder());
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        accountRecovery.restore(this::put);
+
+        log.info("Loaded {} accounts into the off-heap store, out of a capacity of {}", slots.size(), capacity);
+    }
+
+    /**
+     * Adds the account, or replaces the one with the same id.
+     *
+     * @throws IllegalStateException when every record is taken
+     * @throws IllegalArgumentException when the currency doesn't fit in a record
+     */
+    public void put(Account account) {
+        long currency = encodeCurrency(account.getCurrency());
+        int offset = slots.computeIfAbsent(account.getAccountId(), id -> {
+            int slot = size.getAndIncrement();
+            if (slot >= capacity) {
+                size.decrementAndGet();
+                throw new IllegalStateException("The off-heap account store is full, with " + capacity + " accounts");
+            }
+            return slot;
+        }) * RECORD_SIZE;
+
+        LONGS.setVolatile(records, offset + CURRENCY_OFFSET, currency);
+        LONGS.setVolatile(records, offset, account.getBalance());
+    }
+
+    @Override
+    public Mono<Account> get(String accountId) {
+        return Mono.fromSupplier(() -> read(accountId));
+    }
+
+    @Override
+    public Flux<Account> getAll(Set<String> accountIds) {
+        return Flux.defer(() -> Flux.fromStream(accountIds.stream().map(this::read).filter(Objects::nonNull)));
+    }
+
+    @Override
+    public Mono<Integer> debit(String accountId, long amount) {
+        return Mono.fromSupplier(() -> {
+            Integer slot = slots.get(accountId);
+            if (slot == null) {
+                return 0;
+            }
+
+            int offset = slot * RECORD_SIZE;
+            long balance;
+            do {
+                balance = (long) LONGS.getVolatile(records, offset);
+                if (balance < amount) {
+                    return 0;
+                }
+            } while (!LONGS.compareAndSet(records, offset, balance, balance - amount));
+            return 1;
+        });
+    }
+
+    @Override
+    public Mono<Integer> credit(String accountId, long amount) {
+        return Mono.fromSupplier(() -> {
+            Integer slot = slots.get(accountId);
+            if (slot == null) {
+                return 0;
+            }
+
+            LONGS.getAndAdd(records, slot * RECORD_SIZE, amount);
+            return 1;
+        });
+    }
+
+    @Override
+    public Flux<Account> scan() {
+        return Flux.defer(() -> Flux.fromIterable(slots.keySet()).map(this::read));
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+
+    private Account read(String accountId) {
+        Integer slot = slots.get(accountId);
+        if (slot == null) {
+            return null;
+        }
+
+        int offset = slot * RECORD_SIZE;
+        return Account.builder()
+                .accountId(accountId)
+                .currency(currencies.computeIfAbsent((long) LONGS.getVolatile(records, offset + CURRENCY_OFFSET),
+                        OffHeapAccountStore::decodeCurrency))
+                .balance((long) LONGS.getVolatile(records, offset))
+                .build();
+    }
+
+    private static long encodeCurrency(String currency) {
+        byte[] bytes = currency.getBytes(StandardCharsets.US_ASCII);
+        if (bytes.length > CURRENCY_MAX_LENGTH || !StandardCharsets.US_ASCII.newEncoder().canEncode(currency)) {
+            throw new IllegalArgumentException("Currency " + currency + " doesn't fit in an off-heap account record");
+        }
+
+        long encoded = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            encoded |= (bytes[i] & 0xFFL) << (8 * i);
+        }
+        return encoded;
+    }
+
+    private static String decodeCurrency(long encoded) {
+        var currency = new StringBuilder(CURRENCY_MAX_LENGTH);
+        for (long bits = encoded; bits != 0; bits >>>= 8) {
+            currency.append((char) (bits & 0xFF));
+        }
+        return currency.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.tribalscale.test.settlement;
+
+import java.util.Arrays;
+
+/**
+ * The net position of each account over a window of transfers, in minor units of the account currency: credits add
+ * up, debits are subtracted.
+ * <p>
+ * Open addressing over an array of account ids and an array of primitive positions, probed linearly and kept at most
+ * half full, so netting a window boxes no amount and allocates nothing but the arrays as they grow.
+ */
+public final class NetPositions {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] accountIds;
+    private long[] positions;
+    private int size;
+
+    public NetPositions() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedAccounts number of accounts held without growing
+     */
+    public NetPositions(int expectedAccounts) {
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(expectedAccounts, 1) * 2 - 1) << 1);
+        this.accountIds = new String[capacity];
+        this.positions = new long[capacity];
+    }
+
+    /**
+     * Adds the amount to the position of the account, negative for a debit.
+     *
+     * @throws ArithmeticException when the position overflows
+     */
+    public void add(String accountId, long amount) {
+        int slot = slot(accountIds, accountId);
+        if (accountIds[slot] != null) {
+            positions[slot] = Math.addExact(positions[slot], amount);
+            return;
+        }
+
+        accountIds[slot] = accountId;
+        positions[slot] = amount;
+        if (++size * 2 > accountIds.length) {
+            grow();
+        }
+    }
+
+    /**
+     * @return the position of the account, zero when no transfer of the window touches it
+     */
+    public long get(String accountId) {
+        int slot = slot(accountIds, accountId);
+        return accountIds[slot] == null ? 0 : positions[slot];
+    }
+
+    /**
+     * Number of accounts touched by the window, including the ones whose transfers cancel out.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * The accounts touched by the window in ascending order, the order their rows are locked in by the transfers.
+     */
+    public String[] sortedAccountIds() {
+        String[] sorted = new String[size];
+        int i = 0;
+        for (String accountId : accountIds) {
+            if (accountId != null) {
+                sorted[i++] = accountId;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void grow() {
+        String[] oldAccountIds = accountIds;
+        long[] oldPositions = positions;
+        accountIds = new String[oldAccountIds.length * 2];
+        positions = new long[oldPositions.length * 2];
+        for (int i = 0; i < oldAccountIds.length; i++) {
+            if (oldAccountIds[i] != null) {
+                int slot = slot(accountIds, oldAccountIds[i]);
+                accountIds[slot] = oldAccountIds[i];
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+
+    /**
+     * The slot of the account, or the empty slot it would take.
+     */
+    private static int slot(String[] accountIds, String accountId) {
+        int mask = accountIds.length - 1;
+        int hash = accountId.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (accountIds[slot] != null && !accountIds[slot].equals(accountId)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
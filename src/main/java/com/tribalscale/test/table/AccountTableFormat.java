@@ -0,0 +1,84 @@
+package com.tribalscale.test.table;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Binary layout of the mapped account table, a single preallocated file made of a header, an open addressing index
+ * and fixed size account records:
+ * <pre>
+ * header, 64 bytes
+ *   0  magic           long
+ *   8  version         int
+ *  12  capacity        int, number of records
+ *  16  index capacity  int, number of index entries, a power of two
+ *  20  size            int, number of records in use, written with release semantics
+ *  24  loaded          int, 1 once the accounts were all loaded and forced to the file, 0 before
+ *
+ * index, from byte 64
+ *      entry           int, record number + 1, 0 while the entry is free
+ *
+ * records, from the first multiple of 128 after the index
+ *   0  balance         long, minor units, updated with compare and set
+ *   8  hash            int, {@link String#hashCode()} of the account id
+ *  12  currency        short, {@link com.tribalscale.test.domain.validator.CurrencyCodes#index(String)}
+ *  14  id length       short + 110 UTF-8 bytes
+ * </pre>
+ * The file is mapped in chunks which are a multiple of the record size, so no record or entry straddles two of them.
+ */
+final class AccountTableFormat {
+
+    static final long MAGIC = 0x4D54_4143_4354_424CL;
+    static final int VERSION = 2;
+
+    static final int HEADER_SIZE = 64;
+    static final int CAPACITY_OFFSET = 12;
+    static final int INDEX_CAPACITY_OFFSET = 16;
+    static final int SIZE_OFFSET = 20;
+    static final int LOADED_OFFSET = 24;
+
+    static final int INDEX_ENTRY_SIZE = 4;
+
+    static final int RECORD_SIZE = 128;
+    static final int MAX_ACCOUNT_ID_BYTES = 110;
+
+    static final int BALANCE_OFFSET = 0;
+    static final int HASH_OFFSET = 8;
+    static final int CURRENCY_OFFSET = 12;
+    static final int ID_LENGTH_OFFSET = 14;
+    static final int ID_OFFSET = 16;
+
+    static final int CHUNK_SIZE = 1 << 30;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, BYTE_ORDER);
+    static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, BYTE_ORDER);
+
+    private AccountTableFormat() {
+    }
+
+    /**
+     * Twice as many index entries as records at least, so the probe sequences stay short when the table is full.
+     */
+    static int indexCapacity(int capacity) {
+        return Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+    }
+
+    static long recordsOffset(int indexCapacity) {
+        long indexEnd = HEADER_SIZE + (long) indexCapacity * INDEX_ENTRY_SIZE;
+        return (indexEnd + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    static long fileSize(int capacity, int indexCapacity) {
+        return recordsOffset(indexCapacity) + (long) capacity * RECORD_SIZE;
+    }
+
+    /**
+     * Spreads the bits of the hash, the ids are often sequential numbers.
+     */
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,310 @@
+package com.tribalscale.test.table;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.validator.CurrencyCodes;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static com.tribalscale.test.table.AccountTableFormat.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Accounts kept in a memory mapped file, see {@link AccountTableFormat}, so they take no heap whatever their number
+ * and are still there when the process restarts. Balances are updated with a compare and set on the mapped memory,
+ * the operating system writes the pages back, and {@link #force()} waits for it.
+ * <p>
+ * Lookups and balance updates are lock free and can run concurrently with {@link #put(Account)}, which is serialized:
+ * a record is written before the index entry pointing to it is published, and the entry before the size. An entry to
+ * a record past the size is free, lookups probe past it and a put takes it over. Accounts are never removed.
+ */
+@Slf4j
+public class MappedAccountTable implements AutoCloseable {
+
+    private static final int MAX_CAPACITY = 1 << 29;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final int capacity;
+    private final int indexMask;
+    private final long recordsOffset;
+
+    /**
+     * Opens the table in the file, or creates it with room for the capacity when the file doesn't exist. An existing
+     * table keeps the capacity it was created with.
+     *
+     * @throws UncheckedIOException when the file can't be mapped or isn't an account table
+     */
+    public MappedAccountTable(Path file, int capacity) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The capacity of an account table goes from 1 to " + MAX_CAPACITY + ", not " + capacity);
+        }
+
+        this.file = file;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            boolean created = !Files.exists(file) || Files.size(file) == 0;
+            this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+            if (created) {
+                header.putLong(0, MAGIC)
+                        .putInt(8, VERSION)
+                        .putInt(CAPACITY_OFFSET, capacity)
+                        .putInt(INDEX_CAPACITY_OFFSET, indexCapacity(capacity));
+                channel.write(header, 0);
+            } else {
+                channel.read(header, 0);
+                if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+                    throw new IOException(file + " isn't an account table of version " + VERSION);
+                }
+            }
+
+            this.capacity = header.getInt(CAPACITY_OFFSET);
+            int indexCapacity = header.getInt(INDEX_CAPACITY_OFFSET);
+            this.indexMask = indexCapacity - 1;
+            this.recordsOffset = recordsOffset(indexCapacity);
+            this.chunks = map(channel, fileSize(this.capacity, indexCapacity));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Couldn't open the account table at " + file, e);
+        }
+
+        if (this.capacity != capacity) {
+            log.warn("The account table at {} keeps its capacity of {} accounts, instead of {}", file, this.capacity, capacity);
+        }
+    }
+
+    /**
+     * Number of accounts in the table.
+     */
+    public int size() {
+        return (int) INT.getAcquire(chunks[0], SIZE_OFFSET);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Whether {@link #markLoaded()} was called on the table, when it wasn't it may hold only part of the accounts.
+     */
+    public boolean isLoaded() {
+        return (int) INT.getAcquire(chunks[0], LOADED_OFFSET) == 1;
+    }
+
+    /**
+     * Marks the table as holding all the accounts, once they are written back to the file, so a process stopped while
+     * loading it leaves a table which isn't marked.
+     */
+    public void markLoaded() {
+        force();
+        INT.setRelease(chunks[0], LOADED_OFFSET, 1);
+        chunks[0].force();
+    }
+
+    /**
+     * Adds the account, or replaces the currency and balance of the one with the same id.
+     *
+     * @throws IllegalStateException when every record is taken
+     * @throws IllegalArgumentException when the id or the currency don't fit in a record
+     */
+    public synchronized void put(Account account) {
+        int currency = CurrencyCodes.index(account.getCurrency());
+        if (currency < 0) {
+            throw new IllegalArgumentException("Currency " + account.getCurrency() + " isn't three uppercase letters");
+        }
+
+        String accountId = account.getAccountId();
+        int hash = accountId.hashCode();
+        int size = size();
+        int free = -1;
+        int entry = mix(hash) & indexMask;
+        for (int record; (record = recordAt(entry)) >= 0; entry = (entry + 1) & indexMask) {
+            if (record >= size) {
+                free = free < 0 ? entry : free;
+                continue;
+            }
+            long offset = recordOffset(record);
+            if (hasId(offset, hash, accountId)) {
+                chunk(offset).putShort(position(offset) + CURRENCY_OFFSET, (short) currency);
+                LONG.setVolatile(chunk(offset), position(offset) + BALANCE_OFFSET, account.getBalance());
+                return;
+            }
+        }
+
+        byte[] id = accountId.getBytes(UTF_8);
+        if (id.length > MAX_ACCOUNT_ID_BYTES) {
+            throw new IllegalArgumentException("Account id " + accountId + " takes more than " + MAX_ACCOUNT_ID_BYTES + " bytes");
+        }
+        if (size == capacity) {
+            throw new IllegalStateException("The account table at " + file + " is full, with " + capacity + " accounts");
+        }
+
+        long offset = recordOffset(size);
+        ByteBuffer chunk = chunk(offset);
+        int position = position(offset);
+        chunk.putInt(position + HASH_OFFSET, hash)
+                .putShort(position + CURRENCY_OFFSET, (short) currency)
+                .putShort(position + ID_LENGTH_OFFSET, (short) id.length);
+        for (int i = 0; i < id.length; i++) {
+            chunk.put(position + ID_OFFSET + i, id[i]);
+        }
+        LONG.setVolatile(chunk, position + BALANCE_OFFSET, account.getBalance());
+
+        // A crash between the two leaves an entry to a record past the size, free again for the next put
+        long entryOffset = entryOffset(free < 0 ? entry : free);
+        INT.setRelease(chunk(entryOffset), position(entryOffset), size + 1);
+        INT.setRelease(chunks[0], SIZE_OFFSET, size + 1);
+    }
+
+    /**
+     * @return the number of the account record, or -1 when the account isn't in the table
+     */
+    public int find(String accountId) {
+        int hash = accountId.hashCode();
+        int size = size();
+        for (int entry = mix(hash) & indexMask, record; (record = recordAt(entry)) >= 0; entry = (entry + 1) & indexMask) {
+            if (record < size && hasId(recordOffset(record), hash, accountId)) {
+                return record;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the account of the record, or null when there is no such record
+     */
+    public Account get(int record) {
+        if (record < 0 || record >= size()) {
+            return null;
+        }
+
+        long offset = recordOffset(record);
+        ByteBuffer chunk = chunk(offset);
+        int position = position(offset);
+        byte[] id = new byte[chunk.getShort(position + ID_LENGTH_OFFSET)];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = chunk.get(position + ID_OFFSET + i);
+        }
+
+        return Account.builder()
+                .accountId(new String(id, UTF_8))
+                .currency(CurrencyCodes.code(chunk.getShort(position + CURRENCY_OFFSET)))
+                .balance((long) LONG.getVolatile(chunk, position + BALANCE_OFFSET))
+                .build();
+    }
+
+    /**
+     * Subtracts the amount from the balance of the record only when it holds enough funds.
+     *
+     * @return whether the record was debited
+     */
+    public boolean debit(int record, long amount) {
+        long offset = recordOffset(record);
+        ByteBuffer chunk = chunk(offset);
+        int position = position(offset) + BALANCE_OFFSET;
+
+        long balance;
+        do {
+            balance = (long) LONG.getVolatile(chunk, position);
+            if (balance < amount) {
+                return false;
+            }
+        } while (!LONG.compareAndSet(chunk, position, balance, balance - amount));
+        return true;
+    }
+
+    public void credit(int record, long amount) {
+        long offset = recordOffset(record);
+        LONG.getAndAdd(chunk(offset), position(offset) + BALANCE_OFFSET, amount);
+    }
+
+    /**
+     * Waits for the operating system to write the changed pages back to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Couldn't close the account table at {}, with message: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the record number of the index entry, or -1 when the entry is free
+     */
+    private int recordAt(int entry) {
+        long offset = entryOffset(entry);
+        return (int) INT.getAcquire(chunk(offset), position(offset)) - 1;
+    }
+
+    /**
+     * Compares the id of the record with the account id without encoding it, unless it has non ASCII characters.
+     */
+    private boolean hasId(long offset, int hash, String accountId) {
+        ByteBuffer chunk = chunk(offset);
+        int position = position(offset);
+        if (chunk.getInt(position + HASH_OFFSET) != hash) {
+            return false;
+        }
+
+        int length = chunk.getShort(position + ID_LENGTH_OFFSET);
+        for (int i = 0; i < accountId.length(); i++) {
+            char c = accountId.charAt(i);
+            if (c >= 0x80) {
+                return ByteBuffer.wrap(accountId.getBytes(UTF_8))
+                        .equals(chunk.duplicate().position(position + ID_OFFSET).limit(position + ID_OFFSET + length));
+            }
+            if (i >= length || chunk.get(position + ID_OFFSET + i) != c) {
+                return false;
+            }
+        }
+        return length == accountId.length();
+    }
+
+    private long entryOffset(int entry) {
+        return HEADER_SIZE + (long) entry * INDEX_ENTRY_SIZE;
+    }
+
+    private long recordOffset(int record) {
+        return recordsOffset + (long) record * RECORD_SIZE;
+    }
+
+    private ByteBuffer chunk(long offset) {
+        return chunks[(int) (offset / CHUNK_SIZE)];
+    }
+
+    private static int position(long offset) {
+        return (int) (offset % CHUNK_SIZE);
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long fileSize) throws IOException {
+        var chunks = new MappedByteBuffer[(int) ((fileSize + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+        for (int i = 0; i < chunks.length; i++) {
+            long position = (long) i * CHUNK_SIZE;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(CHUNK_SIZE, fileSize - position));
+            chunks[i].order(BYTE_ORDER);
+        }
+        return chunks;
+    }
+}
@@ -1,12 +1,46 @@
 DROP TABLE IF EXISTS ACCOUNT;
+DROP TABLE IF EXISTS IDEMPOTENCY_KEY;
+DROP TABLE IF EXISTS TRANSFER;
 
+-- Balances are stored in minor units of the currency, 3000 EUR are 300000 cents
 CREATE TABLE ACCOUNT (
   ID INT AUTO_INCREMENT PRIMARY KEY,
   ACCOUNT_ID VARCHAR(150) NOT NULL UNIQUE,
   CURRENCY VARCHAR(30) NOT NULL,
-  BALANCE DOUBLE DEFAULT 0
+  BALANCE BIGINT DEFAULT 0
 );
 
-INSERT INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) VALUES ('1', 'EUR', 3000);
+INSERT INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) VALUES ('1', 'EUR', 300000);
 INSERT INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) VALUES ('2', 'EUR', 0);
 
+-- Outcomes of the transfers requested with an Idempotency-Key, REQUEST_HASH the SHA-256 of the transfer they are the
+-- outcome of and CREATED_AT in epoch millis. STATUS_CODE is NULL while the transfer of the key has no outcome yet
+CREATE TABLE IDEMPOTENCY_KEY (
+  IDEMPOTENCY_KEY VARCHAR(255) PRIMARY KEY,
+  STATUS_CODE INT,
+  MESSAGE VARCHAR(1000),
+  ERROR_CODE VARCHAR(50),
+  REQUEST_HASH CHAR(64) NOT NULL,
+  CREATED_AT BIGINT NOT NULL
+);
+
+CREATE INDEX IDX_IDEMPOTENCY_KEY_CREATED_AT ON IDEMPOTENCY_KEY(CREATED_AT);
+
+-- Every applied transfer, AMOUNT in minor units of CURRENCY, DEBIT and CREDIT the legs it moved in minor units of the
+-- currency of each account, and CREATED_AT in epoch millis. The history of an account is read newest first by ID from
+-- the index of either side, with the columns in the order of the reads so they're never sorted
+CREATE TABLE TRANSFER (
+  ID BIGINT AUTO_INCREMENT PRIMARY KEY,
+  CREATED_AT BIGINT NOT NULL,
+  SOURCE_ACCOUNT VARCHAR(150) NOT NULL,
+  TARGET_ACCOUNT VARCHAR(150) NOT NULL,
+  CURRENCY VARCHAR(30) NOT NULL,
+  AMOUNT BIGINT NOT NULL,
+  DEBIT_CURRENCY VARCHAR(30) NOT NULL,
+  DEBIT BIGINT NOT NULL,
+  CREDIT_CURRENCY VARCHAR(30) NOT NULL,
+  CREDIT BIGINT NOT NULL
+);
+
+CREATE INDEX IDX_TRANSFER_SOURCE_ACCOUNT ON TRANSFER(SOURCE_ACCOUNT, ID DESC);
+CREATE INDEX IDX_TRANSFER_TARGET_ACCOUNT ON TRANSFER(TARGET_ACCOUNT, ID DESC);
@@ -0,0 +1,157 @@
+package com.tribalscale.test.balance;
+
+import com.tribalscale.test.domain.Account;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BalanceUpdatesTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<String, Long> balances = new ConcurrentHashMap<>(Map.of("1", 300000L));
+    private final AtomicInteger reads = new AtomicInteger();
+    private final Function<String, Mono<Account>> loader = accountId -> Mono.fromSupplier(() -> {
+        reads.incrementAndGet();
+        return balances.containsKey(accountId) ? account(accountId, balances.get(accountId)) : null;
+    });
+
+    private BalanceUpdates underTest = new BalanceUpdates(Duration.ZERO, Schedulers.immediate(), registry);
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void subscribe_currentBalanceThenEveryChange() {
+        StepVerifier.create(underTest.subscribe("1", loader))
+                .expectNext(account("1", 300000L))
+                .then(() -> change("1", 100000L))
+                .expectNext(account("1", 100000L))
+                .then(() -> change("1", 50000L))
+                .expectNext(account("1", 50000L))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void subscribe_subscribersJoiningShareTheLatestBalance() {
+        var first = new ArrayList<Account>();
+        var second = new ArrayList<Account>();
+
+        var firstSubscription = underTest.subscribe("1", loader).subscribe(first::add);
+        change("1", 100000L);
+        var secondSubscription = underTest.subscribe("1", loader).subscribe(second::add);
+
+        assertThat(first).containsExactly(account("1", 300000L), account("1", 100000L));
+        assertThat(second).containsExactly(account("1", 100000L));
+        assertThat(reads).hasValue(2);
+        assertThat(registry.get("moneytransfer.balance.updates.subscribers").gauge().value()).isEqualTo(2);
+
+        firstSubscription.dispose();
+        secondSubscription.dispose();
+    }
+
+    @Test
+    void changed_noReadWithoutSubscribers() {
+        change("1", 100000L);
+
+        assertThat(reads).hasValue(0);
+    }
+
+    @Test
+    void subscribe_sinkDroppedWithTheLastSubscriber() {
+        var first = underTest.subscribe("1", loader).subscribe();
+        var second = underTest.subscribe("1", loader).subscribe();
+        assertThat(registry.get("moneytransfer.balance.updates.accounts").gauge().value()).isEqualTo(1);
+
+        first.dispose();
+        assertThat(registry.get("moneytransfer.balance.updates.accounts").gauge().value()).isEqualTo(1);
+
+        second.dispose();
+        assertThat(registry.get("moneytransfer.balance.updates.accounts").gauge().value()).isZero();
+        assertThat(registry.get("moneytransfer.balance.updates.subscribers").gauge().value()).isZero();
+
+        change("1", 100000L);
+        assertThat(reads).hasValue(1);
+    }
+
+    @Test
+    void changed_coalescedWhileAReadIsInFlight() {
+        var pendingReads = new ArrayList<Sinks.One<Account>>();
+        Function<String, Mono<Account>> slowLoader = accountId -> {
+            var read = Sinks.<Account>one();
+            pendingReads.add(read);
+            return read.asMono();
+        };
+        var received = new ArrayList<Account>();
+        underTest.subscribe("1", slowLoader).subscribe(received::add);
+
+        for (int i = 0; i < 5; i++) {
+            underTest.changed("1", slowLoader);
+        }
+        assertThat(pendingReads).hasSize(1);
+
+        pendingReads.get(0).tryEmitValue(account("1", 300000L));
+        assertThat(pendingReads).hasSize(2);
+        pendingReads.get(1).tryEmitValue(account("1", 100000L));
+
+        assertThat(pendingReads).hasSize(2);
+        assertThat(received).containsExactly(account("1", 300000L), account("1", 100000L));
+    }
+
+    @Test
+    void subscribe_slowSubscriberSkipsToTheLatestBalance() {
+        StepVerifier.create(underTest.subscribe("1", loader), 0)
+                .then(() -> {
+                    change("1", 200000L);
+                    change("1", 100000L);
+                })
+                .thenRequest(1)
+                .expectNext(account("1", 100000L))
+                .then(() -> change("1", 50000L))
+                .thenRequest(1)
+                .expectNext(account("1", 50000L))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void heartbeats_tickForEverySubscriber() {
+        underTest = new BalanceUpdates(Duration.ofMillis(10), Schedulers.parallel(), registry);
+
+        List<Long> ticks = underTest.heartbeats()
+                .take(2)
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(ticks).hasSize(2);
+    }
+
+    private void change(String accountId, long balance) {
+        balances.put(accountId, balance);
+        underTest.changed(accountId, loader);
+    }
+
+    private static Account account(String accountId, long balance) {
+        return Account.builder()
+                .accountId(accountId)
+                .currency("EUR")
+                .balance(balance)
+                .build();
+    }
+}
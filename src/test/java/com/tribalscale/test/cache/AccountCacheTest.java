@@ -0,0 +1,60 @@
+package com.tribalscale.test.cache;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountCacheTest {
+
+    private final AccountCache underTest = new AccountCache(new MoneyTransferProperties());
+
+    private final Account account = Account.builder()
+            .accountId("1")
+            .currency("EUR")
+            .balance(1000L)
+            .build();
+
+    @Test
+    void getLoadsOnceAndServesFromTheCache() {
+        var loads = new AtomicInteger();
+
+        StepVerifier.create(underTest.get("1", id -> Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return account;
+        })))
+                .expectNext(account)
+                .verifyComplete();
+        StepVerifier.create(underTest.get("1", id -> Mono.error(new IllegalStateException("Loaded twice"))))
+                .expectNext(account)
+                .verifyComplete();
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void getDoesNotCacheMissingAccounts() {
+        StepVerifier.create(underTest.get("1", id -> Mono.empty()))
+                .verifyComplete();
+
+        StepVerifier.create(underTest.get("1", id -> Mono.just(account)))
+                .expectNext(account)
+                .verifyComplete();
+    }
+
+    @Test
+    void getLoadsOutsideOfTheCacheEntry() {
+        // A load completing on the calling thread can run other requests touching the same entry
+        Mono<Account> loader = Mono.fromRunnable(() -> underTest.evict("1"))
+                .then(Mono.just(account));
+
+        StepVerifier.create(underTest.get("1", id -> loader))
+                .expectNext(account)
+                .verifyComplete();
+    }
+}
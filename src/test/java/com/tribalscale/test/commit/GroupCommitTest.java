@@ -0,0 +1,160 @@
+package com.tribalscale.test.commit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.tribalscale.test.domain.ErrorCode.INSUFFICIENT_FUNDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitTest {
+
+    private static final Duration WINDOW = Duration.ofMillis(1);
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+    private final AtomicInteger transactions = new AtomicInteger();
+    private final List<Integer> applied = new ArrayList<>();
+
+    private GroupCommit underTest;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionalOperator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> {
+                    transactions.incrementAndGet();
+                    return invocation.getArgument(0);
+                });
+        underTest = new GroupCommit(transactionalOperator, true, 3, WINDOW, scheduler, registry);
+    }
+
+    @Test
+    void execute_transfersSubmittedWithinTheWindowShareACommit() {
+        var first = underTest.execute(() -> transfer(1)).toFuture();
+        var second = underTest.execute(() -> transfer(2)).toFuture();
+        assertThat(applied).isEmpty();
+
+        scheduler.advanceTimeBy(WINDOW);
+
+        assertThat(first).isCompletedWithValue(1);
+        assertThat(second).isCompletedWithValue(2);
+        assertThat(applied).containsExactly(1, 2);
+        assertThat(transactions).hasValue(1);
+    }
+
+    @Test
+    void execute_fullBatchCommittedBeforeTheEndOfItsWindow() {
+        var transfers = List.of(underTest.execute(() -> transfer(1)).toFuture(),
+                underTest.execute(() -> transfer(2)).toFuture(),
+                underTest.execute(() -> transfer(3)).toFuture());
+
+        assertThat(transfers).allMatch(transfer -> transfer.isDone() && !transfer.isCompletedExceptionally());
+        assertThat(applied).containsExactly(1, 2, 3);
+        assertThat(transactions).hasValue(1);
+    }
+
+    @Test
+    void execute_rejectedTransferFailsOnItsOwn() {
+        var first = underTest.execute(() -> transfer(1)).toFuture();
+        var rejected = underTest.execute(() -> Mono.<Integer>error(INSUFFICIENT_FUNDS.exception("2")));
+        var third = underTest.execute(() -> transfer(3)).toFuture();
+
+        StepVerifier.create(rejected)
+                .then(() -> scheduler.advanceTimeBy(WINDOW))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .hasFieldOrPropertyWithValue("errorCode", INSUFFICIENT_FUNDS))
+                .verify();
+
+        assertThat(first).isCompletedWithValue(1);
+        assertThat(third).isCompletedWithValue(3);
+        assertThat(transactions).hasValue(1);
+    }
+
+    @Test
+    void execute_failedBatchCommittedTransferByTransfer() {
+        var first = underTest.execute(() -> transfer(1)).toFuture();
+        var failed = underTest.execute(() -> Mono.<Integer>error(new IllegalStateException("Connection lost"))).toFuture();
+        var third = underTest.execute(() -> transfer(3)).toFuture();
+
+        assertThat(first).isCompletedWithValue(1);
+        assertThat(failed).isCompletedExceptionally();
+        assertThat(third).isCompletedWithValue(3);
+        // The batch rolled back after the first transfer, which is then applied again alone
+        assertThat(applied).containsExactly(1, 1, 3);
+        assertThat(transactions).hasValue(4);
+    }
+
+    @Test
+    void execute_transfersSubmittedDuringACommitMakeUpTheNextBatch() {
+        var gate = Sinks.<Integer>one();
+        var first = underTest.execute(gate::asMono).toFuture();
+        scheduler.advanceTimeBy(WINDOW);
+
+        var second = underTest.execute(() -> transfer(2)).toFuture();
+        var third = underTest.execute(() -> transfer(3)).toFuture();
+        assertThat(applied).isEmpty();
+
+        // No window for the next batch, its transfers have waited for the commit already
+        gate.tryEmitValue(1);
+
+        assertThat(first).isCompletedWithValue(1);
+        assertThat(second).isCompletedWithValue(2);
+        assertThat(third).isCompletedWithValue(3);
+        assertThat(transactions).hasValue(2);
+        assertThat(registry.get("moneytransfer.group.commit.size").summary().count()).isEqualTo(2);
+        assertThat(registry.get("moneytransfer.group.commit.size").summary().totalAmount()).isEqualTo(3);
+    }
+
+    @Test
+    void execute_transferCancelledBeforeItsBatchLeftOut() {
+        underTest.execute(() -> transfer(1)).subscribe().dispose();
+        var second = underTest.execute(() -> transfer(2)).toFuture();
+
+        scheduler.advanceTimeBy(WINDOW);
+
+        assertThat(second).isCompletedWithValue(2);
+        assertThat(applied).containsExactly(2);
+        assertThat(registry.get("moneytransfer.group.commit.size").summary().totalAmount()).isEqualTo(1);
+    }
+
+    @Test
+    void execute_batchWhoseTransfersWereAllCancelledNeitherCommittedNorCounted() {
+        underTest.execute(() -> transfer(1)).subscribe().dispose();
+
+        scheduler.advanceTimeBy(WINDOW);
+
+        var second = underTest.execute(() -> transfer(2)).toFuture();
+        scheduler.advanceTimeBy(WINDOW);
+
+        assertThat(second).isCompletedWithValue(2);
+        assertThat(applied).containsExactly(2);
+        assertThat(transactions).hasValue(1);
+        assertThat(registry.get("moneytransfer.group.commit.size").summary().count()).isEqualTo(1);
+    }
+
+    private Mono<Integer> transfer(int id) {
+        return Mono.fromSupplier(() -> {
+            applied.add(id);
+            return id;
+        });
+    }
+}
@@ -0,0 +1,62 @@
+package com.tribalscale.test.config;
+
+import com.tribalscale.test.domain.payload.AccountPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
+
+class BinaryFormatsConfigurationTest {
+
+    private final BinaryFormatsConfiguration underTest = new BinaryFormatsConfiguration();
+
+    @Test
+    void cborHttpMessageConverter_readsAndWritesThePayloads() throws IOException {
+        var converter = underTest.cborHttpMessageConverter(new Jackson2ObjectMapperBuilder());
+
+        assertThat(converter.getSupportedMediaTypes()).contains(APPLICATION_CBOR);
+        assertRoundTrip(converter);
+    }
+
+    @Test
+    void smileHttpMessageConverter_readsAndWritesThePayloads() throws IOException {
+        var converter = underTest.smileHttpMessageConverter(new Jackson2ObjectMapperBuilder());
+
+        assertThat(converter.getSupportedMediaTypes()).extracting(Object::toString).contains("application/x-jackson-smile");
+        assertRoundTrip(converter);
+    }
+
+    private static void assertRoundTrip(AbstractHttpMessageConverter<Object> converter) throws IOException {
+        var account = AccountPayload.builder()
+                .accountId("1")
+                .currency("EUR")
+                .balance(3000d)
+                .build();
+        var moneyTransfer = MoneyTransferRequestPayload.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(1000d)
+                .build();
+
+        assertThat(converter.read(AccountPayload.class, new MockHttpInputMessage(write(converter, account))))
+                .isEqualTo(account);
+        assertThat(converter.read(MoneyTransferRequestPayload.class, new MockHttpInputMessage(write(converter, moneyTransfer))))
+                .isEqualTo(moneyTransfer);
+        // Field names and numbers are written as binary tokens rather than JSON text
+        assertThat(write(converter, account)).doesNotContain((byte) '{', (byte) '"');
+    }
+
+    private static byte[] write(AbstractHttpMessageConverter<Object> converter, Object payload) throws IOException {
+        var output = new MockHttpOutputMessage();
+        converter.write(payload, converter.getSupportedMediaTypes().get(0), output);
+        return output.getBodyAsBytes();
+    }
+}
@@ -1,31 +1,61 @@
 package com.tribalscale.test.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.config.MoneyTransferProperties;
 import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.domain.Settlement;
+import com.tribalscale.test.domain.Transfer;
 import com.tribalscale.test.domain.payload.AccountPayload;
 import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferResultPayload;
+import com.tribalscale.test.domain.payload.SettlementPayload;
+import com.tribalscale.test.domain.validator.MoneyTransferRequestValidator;
+import com.tribalscale.test.history.TransferCursor;
+import com.tribalscale.test.logging.TransferEventLogger;
 import com.tribalscale.test.mapper.AccountMapper;
 import com.tribalscale.test.mapper.AccountMapperImpl;
 import com.tribalscale.test.mapper.MoneyTransferMapper;
 import com.tribalscale.test.mapper.MoneyTransferMapperImpl;
+import com.tribalscale.test.mapper.TransferMapper;
+import com.tribalscale.test.mapper.TransferMapperImpl;
+import com.tribalscale.test.metrics.TransferMetrics;
 import com.tribalscale.test.service.AccountTransferService;
+import com.tribalscale.test.service.IdempotencyStore;
+import com.tribalscale.test.service.impl.InMemoryIdempotencyStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import javax.validation.ConstraintViolationException;
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 
 @ExtendWith(MockitoExtension.class)
 class AccountControllerTest {
 
-    @InjectMocks
     private AccountController underTest;
 
     @Mock
@@ -37,9 +67,42 @@ class AccountControllerTest {
     @Spy
     private final AccountMapper accountMapper = new AccountMapperImpl();
 
+    @Spy
+    private final TransferMapper transferMapper = new TransferMapperImpl();
+
+    @Spy
+    private final MoneyTransferRequestValidator moneyTransferRequestValidator = new MoneyTransferRequestValidator();
+
+    @Spy
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private final MoneyTransferProperties properties = new MoneyTransferProperties();
+
+    @Spy
+    private final IdempotencyStore idempotencyStore = new InMemoryIdempotencyStore(properties);
+
+    @Spy
+    private final TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private final TransferEventLogger transferEventLogger = new TransferEventLogger(properties);
+
+    @Spy
+    private final BalanceUpdates balanceUpdates = new BalanceUpdates(Duration.ZERO, Schedulers.immediate(), new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        var transferPipeline = new TransferPipeline(accountTransferService, moneyTransferMapper,
+                moneyTransferRequestValidator, transferMetrics, transferEventLogger);
+        underTest = new AccountController(accountTransferService, idempotencyStore, moneyTransferMapper, accountMapper,
+                transferMapper, moneyTransferRequestValidator, objectMapper, properties, transferPipeline, balanceUpdates);
+    }
+
     @Test
     void transferFundsToAccount() {
         var payload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
                 .amount(1000d)
                 .sourceAccount("1")
                 .targetAccount("2")
@@ -50,23 +113,102 @@ class AccountControllerTest {
         when(accountTransferService.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
                 .thenReturn(Mono.just(1));
 
-        ResponseEntity<Void> result = underTest.transferFundsToAccount(payload).block();
+        ResponseEntity<Void> result = underTest.transferFundsToAccount(payload, null, null).block();
 
         verify(accountTransferService).transferMoneyFromAccountToAnotherAccount(moneyTransfer);
         verify(moneyTransferMapper, times(2)).payloadToEntity(payload);
+        verifyNoInteractions(idempotencyStore);
 
         assertThat(result)
                 .isNotNull()
                 .hasFieldOrPropertyWithValue("status", OK);
     }
 
+    @Test
+    void transferFundsToAccount_retriedWithIdempotencyKey() {
+        var payload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(1000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+
+        var moneyTransfer = moneyTransferMapper.payloadToEntity(payload);
+
+        when(accountTransferService.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .thenReturn(Mono.just(1));
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(underTest.transferFundsToAccount(payload, "key", null).block())
+                    .isNotNull()
+                    .hasFieldOrPropertyWithValue("status", OK);
+        }
+
+        verify(accountTransferService, times(1)).transferMoneyFromAccountToAnotherAccount(moneyTransfer);
+    }
+
+    @Test
+    void transferFundsToAccount_idempotencyKeyReusedForAnotherTransfer() {
+        var payload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(1000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+        var otherPayload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(2000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+
+        when(accountTransferService.transferMoneyFromAccountToAnotherAccount(any()))
+                .thenReturn(Mono.just(1));
+
+        underTest.transferFundsToAccount(payload, "key", null).block();
+
+        StepVerifier.create(underTest.transferFundsToAccount(otherPayload, "key", null))
+                .expectErrorMatches(e -> e instanceof MoneyTransferApplicationException
+                        && ((MoneyTransferApplicationException) e).getStatusCode() == UNPROCESSABLE_ENTITY.value())
+                .verify();
+
+        verify(accountTransferService, times(1)).transferMoneyFromAccountToAnotherAccount(any());
+    }
+
+    @Test
+    void transferFundsToAccount_retriedWithIdempotencyKeyReplaysTheFailure() {
+        var payload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(1000d)
+                .sourceAccount("nonexisting")
+                .targetAccount("2")
+                .build();
+
+        var moneyTransfer = moneyTransferMapper.payloadToEntity(payload);
+
+        when(accountTransferService.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .thenReturn(Mono.error(MoneyTransferApplicationException.builder()
+                        .message("Source account with id: nonexisting, doesn't exist")
+                        .statusCode(NOT_FOUND.value())
+                        .build()));
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(underTest.transferFundsToAccount(payload, "key", null))
+                    .expectErrorMatches(e -> e instanceof MoneyTransferApplicationException
+                            && ((MoneyTransferApplicationException) e).getStatusCode() == NOT_FOUND.value())
+                    .verify();
+        }
+
+        verify(accountTransferService, times(1)).transferMoneyFromAccountToAnotherAccount(moneyTransfer);
+    }
+
     @Test
     void getAccountDetails() {
         var accountId = "1";
 
         Account account = Account.builder()
                 .accountId(accountId)
-                .balance(2000d)
+                .balance(200000L)
                 .currency("EUR")
                 .build();
 
@@ -84,4 +226,249 @@ class AccountControllerTest {
         verify(accountTransferService).getAccountDetailsByAccountId(accountId);
         verify(accountMapper, times(2)).entityToPayload(account);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getAccountDetails_invalidAccountId() {
+        StepVerifier.create(underTest.getAccountDetails("1-2"))
+                .verifyError(ConstraintViolationException.class);
+
+        verifyNoInteractions(accountTransferService);
+    }
+
+    @Test
+    void streamAccountDetails() {
+        Account account = Account.builder()
+                .accountId("1")
+                .balance(200000L)
+                .currency("EUR")
+                .build();
+
+        when(accountTransferService.getAccountBalanceUpdates("1"))
+                .thenReturn(Flux.just(account, account.withBalance(150000L)));
+
+        StepVerifier.create(underTest.streamAccountDetails("1"))
+                .assertNext(event -> assertThat(event.data()).isEqualTo(accountMapper.entityToPayload(account)))
+                .assertNext(event -> assertThat(event)
+                        .hasFieldOrPropertyWithValue("event", "balance")
+                        .hasFieldOrPropertyWithValue("data", accountMapper.entityToPayload(account.withBalance(150000L))))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void streamAccountDetails_invalidOrNonExistingAccountId() {
+        StepVerifier.create(underTest.streamAccountDetails("1-2"))
+                .verifyError(ConstraintViolationException.class);
+
+        when(accountTransferService.getAccountBalanceUpdates("nonexisting"))
+                .thenReturn(Flux.error(ErrorCode.ACCOUNT_NOT_FOUND.exception("nonexisting")));
+
+        StepVerifier.create(underTest.streamAccountDetails("nonexisting"))
+                .verifyError(MoneyTransferApplicationException.class);
+    }
+
+    @Test
+    void getAccountsDetails() {
+        Account account = Account.builder()
+                .accountId("1")
+                .balance(200000L)
+                .currency("EUR")
+                .build();
+
+        when(accountTransferService.getAccountDetailsByAccountIds(Set.of("1", "2")))
+                .thenReturn(Flux.just(account));
+
+        StepVerifier.create(underTest.getAccountsDetails(List.of("1", "2", "1")))
+                .expectNext(accountMapper.entityToPayload(account))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAccountsDetails_invalidOrTooManyAccountIds() {
+        StepVerifier.create(underTest.getAccountsDetails(List.of("1", "1-2")))
+                .verifyError(ConstraintViolationException.class);
+
+        properties.getLookups().setMaxIds(2);
+        StepVerifier.create(underTest.getAccountsDetails(List.of("1", "2", "3")))
+                .verifyError(ConstraintViolationException.class);
+
+        verifyNoInteractions(accountTransferService);
+    }
+
+    @Test
+    void getAccountTransfers() {
+        var transfer = Transfer.builder()
+                .id(42L)
+                .createdAt(1617272130120L)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(150L)
+                .debitCurrency("EUR")
+                .debit(150L)
+                .creditCurrency("JPY")
+                .credit(243L)
+                .build();
+
+        when(accountTransferService.getTransfersByAccountId("1", TransferCursor.of(50L), 10L))
+                .thenReturn(Flux.just(transfer));
+
+        StepVerifier.create(underTest.getAccountTransfers("1", "50", 10L))
+                .assertNext(payload -> assertThat(payload)
+                        .hasFieldOrPropertyWithValue("amount", 1.5)
+                        .hasFieldOrPropertyWithValue("debit", 1.5)
+                        .hasFieldOrPropertyWithValue("credit", 243.0)
+                        .hasFieldOrPropertyWithValue("createdAt", Instant.ofEpochMilli(1617272130120L))
+                        .hasFieldOrPropertyWithValue("cursor", "42"))
+                .verifyComplete();
+
+        when(accountTransferService.getTransfersByAccountId("1", TransferCursor.FIRST, Long.MAX_VALUE))
+                .thenReturn(Flux.empty());
+
+        StepVerifier.create(underTest.getAccountTransfers("1", null, null))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAccountTransfers_invalidAccountIdCursorOrLimit() {
+        StepVerifier.create(underTest.getAccountTransfers("1-2", null, null))
+                .verifyError(ConstraintViolationException.class);
+
+        StepVerifier.create(underTest.getAccountTransfers("1", "5-7", null))
+                .verifyError(ConstraintViolationException.class);
+
+        StepVerifier.create(underTest.getAccountTransfers("1", null, 0L))
+                .verifyError(ConstraintViolationException.class);
+
+        verifyNoInteractions(accountTransferService);
+    }
+
+    @Test
+    void transferFundsToAccounts() throws Exception {
+        var okPayload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(1000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+
+        var notFoundPayload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(1000d)
+                .sourceAccount("nonexisting")
+                .targetAccount("2")
+                .build();
+
+        var invalidPayload = MoneyTransferRequestPayload.builder()
+                .currency("invalidCurrency")
+                .amount(1000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+
+        when(accountTransferService.transferMoneyFromAccountToAnotherAccount(moneyTransferMapper.payloadToEntity(okPayload)))
+                .thenReturn(Mono.just(1));
+
+        when(accountTransferService.transferMoneyFromAccountToAnotherAccount(moneyTransferMapper.payloadToEntity(notFoundPayload)))
+                .thenReturn(Mono.error(ErrorCode.SOURCE_ACCOUNT_NOT_FOUND.exception("nonexisting")));
+
+        var body = String.join("\n",
+                objectMapper.writeValueAsString(okPayload),
+                objectMapper.writeValueAsString(notFoundPayload),
+                "",
+                "{not json",
+                objectMapper.writeValueAsString(invalidPayload),
+                objectMapper.writeValueAsString(okPayload));
+
+        var result = underTest.transferFundsToAccounts(new ByteArrayInputStream(body.getBytes(UTF_8)), null);
+
+        StepVerifier.create(result)
+                .expectNext(result(0, OK.value(), null))
+                .expectNext(result(1, NOT_FOUND.value(), ErrorCode.SOURCE_ACCOUNT_NOT_FOUND.name()))
+                .expectNext(result(3, BAD_REQUEST.value(), BAD_REQUEST.name()))
+                .expectNext(result(4, BAD_REQUEST.value(), BAD_REQUEST.name()))
+                .expectNext(result(5, OK.value(), null))
+                .verifyComplete();
+
+        verify(accountTransferService, times(2)).transferMoneyFromAccountToAnotherAccount(moneyTransferMapper.payloadToEntity(okPayload));
+        verify(accountTransferService).transferMoneyFromAccountToAnotherAccount(moneyTransferMapper.payloadToEntity(notFoundPayload));
+        verifyNoMoreInteractions(accountTransferService);
+    }
+
+    @Test
+    void settleTransfers() throws Exception {
+        var payload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(1000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+
+        var offsettingPayload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(400d)
+                .sourceAccount("2")
+                .targetAccount("1")
+                .build();
+
+        var moneyTransfers = List.of(moneyTransferMapper.payloadToEntity(payload), moneyTransferMapper.payloadToEntity(offsettingPayload));
+        when(accountTransferService.settle(moneyTransfers))
+                .thenReturn(Mono.just(Settlement.of(2, 2)));
+
+        var body = String.join("\n",
+                objectMapper.writeValueAsString(payload),
+                "",
+                objectMapper.writeValueAsString(offsettingPayload));
+
+        StepVerifier.create(underTest.settleTransfers(new ByteArrayInputStream(body.getBytes(UTF_8)), null))
+                .expectNext(SettlementPayload.builder()
+                        .transfers(2)
+                        .accounts(2)
+                        .build())
+                .verifyComplete();
+    }
+
+    @Test
+    void settleTransfers_invalidTransferOrTooManyOfThemRejectTheWindow() throws Exception {
+        var payload = MoneyTransferRequestPayload.builder()
+                .currency("EUR")
+                .amount(1000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+
+        var invalidPayload = MoneyTransferRequestPayload.builder()
+                .currency("invalidCurrency")
+                .amount(1000d)
+                .sourceAccount("1")
+                .targetAccount("2")
+                .build();
+
+        var invalid = String.join("\n", objectMapper.writeValueAsString(payload), "", objectMapper.writeValueAsString(invalidPayload));
+        StepVerifier.create(underTest.settleTransfers(new ByteArrayInputStream(invalid.getBytes(UTF_8)), null))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(ConstraintViolationException.class)
+                        .hasMessageStartingWith("settleTransfers.payloads[2]"))
+                .verify();
+
+        StepVerifier.create(underTest.settleTransfers(new ByteArrayInputStream("{not json".getBytes(UTF_8)), null))
+                .expectError(ConstraintViolationException.class)
+                .verify();
+
+        properties.getSettlement().setMaxTransfers(1);
+        var tooMany = String.join("\n", objectMapper.writeValueAsString(payload), objectMapper.writeValueAsString(payload));
+        StepVerifier.create(underTest.settleTransfers(new ByteArrayInputStream(tooMany.getBytes(UTF_8)), null))
+                .expectError(ConstraintViolationException.class)
+                .verify();
+
+        verifyNoInteractions(accountTransferService);
+    }
+
+    private static MoneyTransferResultPayload result(long index, int status, String errorCode) {
+        return MoneyTransferResultPayload.builder()
+                .index(index)
+                .status(status)
+                .errorCode(errorCode)
+                .build();
+    }
+}
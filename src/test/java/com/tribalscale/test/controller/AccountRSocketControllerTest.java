@@ -0,0 +1,133 @@
+package com.tribalscale.test.controller;
+
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.payload.AccountPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import com.tribalscale.test.domain.payload.MoneyTransferResultPayload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.rsocket.context.LocalRSocketServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.messaging.rsocket.RSocketRequester;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_CBOR;
+
+/**
+ * Transfers and looks up accounts through the RSocket server over a local TCP connection, the payloads encoded as CBOR.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = "spring.rsocket.server.port=0")
+class AccountRSocketControllerTest {
+
+    @LocalRSocketServerPort
+    private int port;
+
+    @Autowired
+    private RSocketRequester.Builder requesterBuilder;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private RSocketRequester requester;
+
+    @BeforeEach
+    void setUp() {
+        Flux.just("rsocket1", "rsocket2")
+                .concatMap(accountId -> databaseClient.sql("MERGE INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) KEY(ACCOUNT_ID) VALUES (:accountId, 'EUR', 300000)")
+                        .bind("accountId", accountId)
+                        .then())
+                .blockLast();
+
+        requester = requesterBuilder.dataMimeType(APPLICATION_CBOR)
+                .tcp("localhost", port);
+    }
+
+    @AfterEach
+    void tearDown() {
+        requester.rsocketClient().dispose();
+    }
+
+    @Test
+    void transfer() {
+        StepVerifier.create(requester.route("transfer")
+                        .data(payload("rsocket1", "rsocket2", 1000d))
+                        .retrieveMono(MoneyTransferResultPayload.class))
+                .expectNext(result(0, OK.value(), null))
+                .verifyComplete();
+
+        StepVerifier.create(requester.route("transfer")
+                        .data(payload("rsocket1", "nonexisting", 1000d))
+                        .retrieveMono(MoneyTransferResultPayload.class))
+                .expectNext(result(0, NOT_FOUND.value(), ErrorCode.TARGET_ACCOUNT_NOT_FOUND.name()))
+                .verifyComplete();
+
+        StepVerifier.create(requester.route("account.{id}", "rsocket2")
+                        .retrieveMono(AccountPayload.class))
+                .expectNext(AccountPayload.builder()
+                        .accountId("rsocket2")
+                        .currency("EUR")
+                        .balance(4000d)
+                        .build())
+                .verifyComplete();
+    }
+
+    @Test
+    void transfers() {
+        var payloads = Flux.just(payload("rsocket1", "rsocket2", 1000d),
+                payload("rsocket1", "rsocket2", 9000d),
+                payload("rsocket1", "rsocket2", -1d),
+                payload("rsocket2", "rsocket1", 500d));
+
+        StepVerifier.create(requester.route("transfers")
+                        .data(payloads)
+                        .retrieveFlux(MoneyTransferResultPayload.class))
+                .expectNext(result(0, OK.value(), null))
+                .expectNext(result(1, BAD_REQUEST.value(), ErrorCode.INSUFFICIENT_FUNDS.name()))
+                .expectNext(result(2, BAD_REQUEST.value(), BAD_REQUEST.name()))
+                .expectNext(result(3, OK.value(), null))
+                .verifyComplete();
+
+        assertThat(requester.route("account.{id}", "rsocket1")
+                .retrieveMono(AccountPayload.class)
+                .block())
+                .hasFieldOrPropertyWithValue("balance", 2500d);
+    }
+
+    @Test
+    void account_invalidOrNonExistingAccountId() {
+        StepVerifier.create(requester.route("account.{id}", "nonexisting")
+                        .retrieveMono(AccountPayload.class))
+                .expectErrorMessage("Account with id: nonexisting, doesn't exist")
+                .verify();
+
+        StepVerifier.create(requester.route("account.{id}", "non-existing")
+                        .retrieveMono(AccountPayload.class))
+                .expectErrorMessage("account.id: must be an alphanumeric account id")
+                .verify();
+    }
+
+    private static MoneyTransferRequestPayload payload(String sourceAccount, String targetAccount, double amount) {
+        return MoneyTransferRequestPayload.builder()
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .currency("EUR")
+                .amount(amount)
+                .build();
+    }
+
+    private static MoneyTransferResultPayload result(long index, int status, String errorCode) {
+        return MoneyTransferResultPayload.builder()
+                .index(index)
+                .status(status)
+                .errorCode(errorCode)
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.tribalscale.test.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class MoneyTest {
+
+    @Test
+    void toMinorUnits() {
+        assertThat(Money.toMinorUnits(1000d, "EUR")).isEqualTo(100000L);
+        assertThat(Money.toMinorUnits(0.29d, "EUR")).isEqualTo(29L);
+        assertThat(Money.toMinorUnits(1000d, "JPY")).isEqualTo(1000L);
+        assertThat(Money.toMinorUnits(1.5d, "BHD")).isEqualTo(1500L);
+        assertThat(Money.toMinorUnits(null, "EUR")).isZero();
+    }
+
+    @Test
+    void toMinorUnits_roundsHalfEvenToTheCurrencyFractionDigits() {
+        assertThat(Money.toMinorUnits(0.125d, "EUR")).isEqualTo(12L);
+        assertThat(Money.toMinorUnits(0.135d, "EUR")).isEqualTo(14L);
+        assertThat(Money.toMinorUnits(10.5d, "JPY")).isEqualTo(10L);
+    }
+
+    @Test
+    void fitsMinorUnits() {
+        assertThat(Money.fitsMinorUnits(1000d, "EUR")).isTrue();
+        assertThat(Money.fitsMinorUnits(9.2e18d, "JPY")).isTrue();
+        assertThat(Money.fitsMinorUnits(9.2e18d, "EUR")).isFalse();
+        assertThat(Money.fitsMinorUnits(1e30d, "EUR")).isFalse();
+        assertThat(Money.fitsMinorUnits(Double.NaN, "EUR")).isFalse();
+        assertThat(Money.fitsMinorUnits(Double.POSITIVE_INFINITY, "EUR")).isFalse();
+    }
+
+    @Test
+    void toMajorUnits() {
+        assertThat(Money.toMajorUnits(100000L, "EUR")).isEqualTo(1000d);
+        assertThat(Money.toMajorUnits(29L, "EUR")).isEqualTo(0.29d);
+        assertThat(Money.toMajorUnits(1000L, "JPY")).isEqualTo(1000d);
+        assertThat(Money.toMajorUnits(1500L, "BHD")).isEqualTo(1.5d);
+    }
+
+    @Test
+    void fractionDigits_withoutCurrency() {
+        var thrown = catchThrowable(() -> Money.fractionDigits(null));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,32 @@
+package com.tribalscale.test.domain;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoneyTransferTest {
+
+    @Test
+    void fingerprint_sameForTheSameTransferOnly() {
+        var transfer = transfer("1", "2", 100000L);
+
+        assertThat(transfer.fingerprint())
+                .hasSize(64)
+                .isEqualTo(transfer("1", "2", 100000L).fingerprint())
+                .isNotEqualTo(transfer("1", "2", 100001L).fingerprint())
+                .isNotEqualTo(transfer("2", "1", 100000L).fingerprint())
+                // The fields don't run into each other
+                .isNotEqualTo(transfer("12", "", 100000L).fingerprint());
+        assertThat(transfer(null, "2", 100000L).fingerprint())
+                .isNotEqualTo(transfer("", "2", 100000L).fingerprint());
+    }
+
+    private static MoneyTransfer transfer(String sourceAccount, String targetAccount, long amount) {
+        return MoneyTransfer.builder()
+                .currency("EUR")
+                .amount(amount)
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.tribalscale.test.domain.validator;
+
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.validation.BeanPropertyBindingResult;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.Currency;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The validator must accept exactly what the Bean Validation constraints of the payload accept.
+ */
+class MoneyTransferRequestValidatorTest {
+
+    private final Validator beanValidator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    private final MoneyTransferRequestValidator underTest = new MoneyTransferRequestValidator();
+
+    static Stream<Arguments> payloads() {
+        return Stream.of(
+                Arguments.of("EUR", 1000d, "1", "2"),
+                Arguments.of("EUR", 1d, "11aa23", "AZ09 az\t"),
+                Arguments.of("XTS", 1d, "1", "2"),
+                Arguments.of("eur", 1000d, "1", "2"),
+                Arguments.of("EURO", 1000d, "1", "2"),
+                Arguments.of("EU", 1000d, "1", "2"),
+                Arguments.of("XYZ", 1000d, "1", "2"),
+                Arguments.of("E1R", 1000d, "1", "2"),
+                Arguments.of("ÉUR", 1000d, "1", "2"),
+                Arguments.of("", 1000d, "1", "2"),
+                Arguments.of("EUR", 0.99d, "1", "2"),
+                Arguments.of("EUR", -5d, "1", "2"),
+                Arguments.of("EUR", null, "1", "2"),
+                Arguments.of("EUR", 1e30d, "1", "2"),
+                Arguments.of("EUR", 9.2e18d, "1", "2"),
+                Arguments.of("JPY", 9.2e18d, "1", "2"),
+                Arguments.of("EUR", Double.POSITIVE_INFINITY, "1", "2"),
+                Arguments.of("EUR", Double.NaN, "1", "2"),
+                Arguments.of("XYZ", 1e30d, "1", "2"),
+                Arguments.of("EUR", 1000d, null, "2"),
+                Arguments.of("EUR", 1000d, "1", ""),
+                Arguments.of("EUR", 1000d, " \n", "2"),
+                Arguments.of("EUR", 1000d, "1-2", "2"),
+                Arguments.of("EUR", 1000d, "1", "ü"),
+                Arguments.of("EUR", 1000d, "1", " " + "2"),
+                Arguments.of("EUR", 1000d, "a".repeat(100), "2"),
+                Arguments.of("EUR", 1000d, "a".repeat(101), "2"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("payloads")
+    void validateAgreesWithTheConstraints(String currency, Double amount, String sourceAccount, String targetAccount) {
+        var payload = MoneyTransferRequestPayload.builder()
+                .currency(currency)
+                .amount(amount)
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .build();
+        var errors = new BeanPropertyBindingResult(payload, "payload");
+
+        underTest.validate(payload, errors);
+
+        boolean valid = beanValidator.validate(payload).isEmpty();
+        assertThat(errors.hasErrors()).isEqualTo(!valid);
+        assertThat(underTest.isValid(payload)).isEqualTo(valid);
+    }
+
+    @Test
+    void currencyCodesKnowEveryAvailableCurrency() {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            assertThat(CurrencyCodes.isValid(currency.getCurrencyCode())).as(currency.getCurrencyCode()).isTrue();
+        }
+        assertThat(CurrencyCodes.isValid(null)).isFalse();
+    }
+
+    @Test
+    void currencyCodesIndexEveryThreeLetterCode() {
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            assertThat(CurrencyCodes.code(CurrencyCodes.index(currency.getCurrencyCode()))).isEqualTo(currency.getCurrencyCode());
+        }
+        assertThat(CurrencyCodes.index("AAA")).isZero();
+        assertThat(CurrencyCodes.index("ZZZ")).isEqualTo(CurrencyCodes.INDEXES - 1);
+        assertThat(CurrencyCodes.code(CurrencyCodes.index("QQQ"))).isEqualTo("QQQ");
+        assertThat(CurrencyCodes.index("EU")).isNegative();
+        assertThat(CurrencyCodes.index("eur")).isNegative();
+    }
+}
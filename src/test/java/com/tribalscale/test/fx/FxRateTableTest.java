@@ -0,0 +1,88 @@
+package com.tribalscale.test.fx;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FxRateTableTest {
+
+    @TempDir
+    Path directory;
+
+    private FxRateTable underTest;
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void withoutFileOnlyTheSameCurrencyConverts() {
+        underTest = new FxRateTable(directory.resolve("rates.properties"), Duration.ZERO);
+
+        assertThat(underTest.rates()).isSameAs(FxRates.NONE);
+        assertThat(underTest.reload()).isFalse();
+    }
+
+    @Test
+    void reloadPublishesANewSnapshotOnceTheFileChanged() throws IOException {
+        Path file = directory.resolve("rates.properties");
+        write(file, "base=EUR\nUSD=1.1\n", 1);
+        underTest = new FxRateTable(file, Duration.ZERO);
+        FxRates loaded = underTest.rates();
+
+        assertThat(loaded.convert(100L, "EUR", "USD")).isEqualTo(110L);
+        assertThat(underTest.reload()).isFalse();
+        assertThat(underTest.rates()).isSameAs(loaded);
+
+        write(file, "base=EUR\nUSD=1.2\n", 2);
+
+        assertThat(underTest.reload()).isTrue();
+        assertThat(underTest.rates().convert(100L, "EUR", "USD")).isEqualTo(120L);
+        assertThat(loaded.convert(100L, "EUR", "USD")).isEqualTo(110L);
+    }
+
+    @Test
+    void reloadKeepsThePreviousRatesWhenTheFileIsInvalid() throws IOException {
+        Path file = directory.resolve("rates.properties");
+        write(file, "base=EUR\nUSD=1.1\n", 1);
+        underTest = new FxRateTable(file, Duration.ZERO);
+
+        write(file, "base=EUR\nUSD=oops\n", 2);
+
+        assertThat(underTest.reload()).isFalse();
+        assertThat(underTest.rates().convert(100L, "EUR", "USD")).isEqualTo(110L);
+    }
+
+    @Test
+    void reloadsPeriodically() throws Exception {
+        Path file = directory.resolve("rates.properties");
+        underTest = new FxRateTable(file, Duration.ofMillis(20));
+
+        write(file, "base=EUR\nUSD=1.1\n", 1);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (underTest.rates() == FxRates.NONE && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(underTest.rates().convert(100L, "EUR", "USD")).isEqualTo(110L);
+    }
+
+    /**
+     * Sets the modification time explicitly, files rewritten within the same tick of the file system clock would
+     * otherwise look unchanged.
+     */
+    private static void write(Path file, String rates, int version) throws IOException {
+        Files.writeString(file, rates);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1_600_000_000_000L + version * 1000L));
+    }
+}
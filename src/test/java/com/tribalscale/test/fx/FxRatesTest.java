@@ -0,0 +1,88 @@
+package com.tribalscale.test.fx;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class FxRatesTest {
+
+    private final FxRates underTest = FxRates.of("EUR", Map.of("USD", 1.1, "JPY", 160.0, "BHD", 0.41));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void convertAcrossTheFractionDigitsOfBothCurrencies() {
+        // 100 EUR
+        assertThat(underTest.convert(10000L, "EUR", "USD")).isEqualTo(11000L);
+        assertThat(underTest.convert(10000L, "EUR", "JPY")).isEqualTo(16000L);
+        assertThat(underTest.convert(10000L, "EUR", "BHD")).isEqualTo(41000L);
+        // 100 USD, through the base currency
+        assertThat(underTest.convert(10000L, "USD", "JPY")).isEqualTo(14545L);
+        // 160 JPY
+        assertThat(underTest.convert(160L, "JPY", "EUR")).isEqualTo(100L);
+    }
+
+    @Test
+    void convertRoundsHalfEven() {
+        var rates = FxRates.of("EUR", Map.of("USD", 0.5));
+
+        assertThat(rates.convert(1L, "EUR", "USD")).isZero();
+        assertThat(rates.convert(3L, "EUR", "USD")).isEqualTo(2L);
+        // 60.5 cents exactly, a double factor of 1.1 makes it a little more
+        assertThat(underTest.convert(55L, "EUR", "USD")).isEqualTo(60L);
+        assertThat(underTest.convert(-55L, "EUR", "USD")).isEqualTo(-60L);
+    }
+
+    @Test
+    void convertToTheSameCurrencyNeedsNoRate() {
+        assertThat(FxRates.NONE.convert(12345L, "GBP", "GBP")).isEqualTo(12345L);
+    }
+
+    @Test
+    void convertWithoutRate() {
+        assertThat(underTest.convert(100L, "EUR", "GBP")).isEqualTo(FxRates.NO_RATE);
+        assertThat(underTest.convert(100L, "GBP", "EUR")).isEqualTo(FxRates.NO_RATE);
+        assertThat(underTest.convert(100L, "eur", "USD")).isEqualTo(FxRates.NO_RATE);
+        assertThat(FxRates.NONE.convert(100L, "EUR", "USD")).isEqualTo(FxRates.NO_RATE);
+    }
+
+    @Test
+    void convertRefusesAmountsOverflowing() {
+        assertThat(underTest.convert(Long.MAX_VALUE / 2, "EUR", "BHD")).isEqualTo(FxRates.NO_RATE);
+    }
+
+    @Test
+    void read() throws Exception {
+        Path file = directory.resolve("rates.properties");
+        Files.writeString(file, "# rates of the day\nbase=EUR\nUSD = 1.1\nJPY=160\n");
+
+        FxRates rates = FxRates.read(file);
+
+        assertThat(rates.size()).isEqualTo(3);
+        assertThat(rates.convert(10000L, "USD", "JPY")).isEqualTo(14545L);
+    }
+
+    @Test
+    void readRejectsInvalidRates() throws Exception {
+        Path file = directory.resolve("rates.properties");
+
+        Files.writeString(file, "USD=1.1\n");
+        assertThat(catchThrowable(() -> FxRates.read(file))).isInstanceOf(IllegalArgumentException.class);
+
+        Files.writeString(file, "base=EUR\nUSD=-1.1\n");
+        assertThat(catchThrowable(() -> FxRates.read(file))).isInstanceOf(IllegalArgumentException.class);
+
+        Files.writeString(file, "base=EUR\nUSD=abc\n");
+        assertThat(catchThrowable(() -> FxRates.read(file))).isInstanceOf(IllegalArgumentException.class);
+
+        Files.writeString(file, "base=EUR\nXYZ=1.1\n");
+        assertThat(catchThrowable(() -> FxRates.read(file))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
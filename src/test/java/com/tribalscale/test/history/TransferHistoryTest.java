@@ -0,0 +1,197 @@
+package com.tribalscale.test.history;
+
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.Transfer;
+import com.tribalscale.test.domain.TransferLegs;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransferHistoryTest {
+
+    private DatabaseClient databaseClient;
+    private TransferHistory underTest;
+
+    @BeforeEach
+    void setUp() {
+        var connectionFactory = ConnectionFactories.get("r2dbc:h2:mem:///history?options=DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                .populate(connectionFactory)
+                .block();
+
+        databaseClient = DatabaseClient.create(connectionFactory);
+        underTest = new TransferHistory(databaseClient, true, 2);
+    }
+
+    @Test
+    void find_transfersFromAndToTheAccountNewestFirst() {
+        record("1", "2", 100L);
+        record("3", "1", 200L);
+        record("2", "3", 300L);
+        record("1", "1", 400L);
+
+        StepVerifier.create(underTest.find("1", TransferCursor.FIRST, Long.MAX_VALUE).map(Transfer::getAmount))
+                .expectNext(400L, 200L, 100L)
+                .verifyComplete();
+
+        StepVerifier.create(underTest.find("nonexisting", TransferCursor.FIRST, Long.MAX_VALUE))
+                .verifyComplete();
+    }
+
+    @Test
+    void find_pagesAfterTheCursorWithoutGapsOrDuplicates() {
+        for (long amount = 1; amount <= 7; amount++) {
+            record(amount % 2 == 0 ? "1" : "2", amount % 2 == 0 ? "2" : "1", amount);
+        }
+
+        var amounts = new ArrayList<Long>();
+        var cursor = TransferCursor.FIRST;
+        List<Transfer> page;
+        do {
+            page = underTest.find("1", cursor, 3).collectList().block();
+            page.forEach(transfer -> amounts.add(transfer.getAmount()));
+            if (!page.isEmpty()) {
+                cursor = TransferCursor.parse(page.get(page.size() - 1).cursor().token());
+            }
+        } while (page.size() == 3);
+
+        assertThat(amounts).containsExactly(7L, 6L, 5L, 4L, 3L, 2L, 1L);
+    }
+
+    @Test
+    void find_pagesByIdWhateverTheCreationTimes() {
+        // Inserted in that order by instances whose clocks disagree
+        insert(2000L, 1L);
+        insert(1000L, 2L);
+        insert(3000L, 3L);
+
+        var first = underTest.find("1", TransferCursor.FIRST, 2).collectList().block();
+
+        assertThat(first).extracting(Transfer::getAmount).containsExactly(3L, 2L);
+        StepVerifier.create(underTest.find("1", first.get(1).cursor(), Long.MAX_VALUE).map(Transfer::getAmount))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    @Test
+    void find_transfersWithTheirLegs() {
+        underTest.record(transfer("1", "2", 10000L), TransferLegs.of(9091L, "EUR", 14545L, "JPY")).block();
+
+        StepVerifier.create(underTest.find("2", TransferCursor.FIRST, Long.MAX_VALUE))
+                .assertNext(transfer -> assertThat(transfer)
+                        .hasFieldOrPropertyWithValue("amount", 10000L)
+                        .hasFieldOrPropertyWithValue("currency", "USD")
+                        .hasFieldOrPropertyWithValue("debitCurrency", "EUR")
+                        .hasFieldOrPropertyWithValue("debit", 9091L)
+                        .hasFieldOrPropertyWithValue("creditCurrency", "JPY")
+                        .hasFieldOrPropertyWithValue("credit", 14545L))
+                .verifyComplete();
+    }
+
+    @Test
+    void find_transfersRecordedAfterTheCursorAreLeftOut() {
+        record("1", "2", 100L);
+        record("1", "2", 200L);
+        var oldest = underTest.find("1", TransferCursor.FIRST, 2).blockLast();
+
+        record("1", "2", 300L);
+
+        StepVerifier.create(underTest.find("1", oldest.cursor(), Long.MAX_VALUE))
+                .verifyComplete();
+    }
+
+    @Test
+    void find_streamsAcrossPagesAsRequested() {
+        for (long amount = 1; amount <= 5; amount++) {
+            record("1", "2", amount);
+        }
+
+        // Pages of 2 transfers, up to the limit when there's one
+        StepVerifier.create(underTest.find("2", TransferCursor.FIRST, Long.MAX_VALUE).map(Transfer::getAmount), 1)
+                .expectNext(5L)
+                .thenRequest(2)
+                .expectNext(4L, 3L)
+                .thenRequest(Long.MAX_VALUE)
+                .expectNext(2L, 1L)
+                .verifyComplete();
+
+        StepVerifier.create(underTest.find("2", TransferCursor.FIRST, 3).map(Transfer::getAmount))
+                .expectNext(5L, 4L, 3L)
+                .verifyComplete();
+    }
+
+    @Test
+    void record_nothingWhenDisabled() {
+        var disabled = new TransferHistory(databaseClient, false, 2);
+
+        disabled.record(transfer("1", "2", 100L), legs(100L)).block();
+
+        StepVerifier.create(disabled.find("1", TransferCursor.FIRST, Long.MAX_VALUE))
+                .verifyComplete();
+        assertThat(databaseClient.sql("SELECT COUNT(*) AS TRANSFERS FROM TRANSFER")
+                .map((row, metadata) -> row.get("TRANSFERS", Long.class))
+                .one()
+                .block())
+                .isZero();
+    }
+
+    @Test
+    void recordAll_transfersOfABatchListedInTheOrderRecorded() {
+        underTest.recordAll(List.of(transfer("1", "2", 100L), transfer("2", "1", 200L), transfer("2", "3", 300L)),
+                List.of(legs(100L), legs(200L), legs(300L))).block();
+
+        StepVerifier.create(underTest.find("2", TransferCursor.FIRST, Long.MAX_VALUE).map(Transfer::getAmount))
+                .expectNext(300L, 200L, 100L)
+                .verifyComplete();
+        StepVerifier.create(underTest.find("3", TransferCursor.FIRST, Long.MAX_VALUE).map(Transfer::getSourceAccount))
+                .expectNext("2")
+                .verifyComplete();
+    }
+
+    @Test
+    void cursor_parsesItsToken() {
+        var cursor = TransferCursor.of(42L);
+
+        assertThat(TransferCursor.parse(cursor.token())).isEqualTo(cursor);
+        assertThatThrownBy(() -> TransferCursor.parse("a")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransferCursor.parse("5-7")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> TransferCursor.parse("-42")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void record(String sourceAccount, String targetAccount, long amount) {
+        underTest.record(transfer(sourceAccount, targetAccount, amount), legs(amount)).block();
+    }
+
+    private void insert(long createdAt, long amount) {
+        databaseClient.sql("INSERT INTO TRANSFER(CREATED_AT, SOURCE_ACCOUNT, TARGET_ACCOUNT, CURRENCY, AMOUNT, "
+                        + "DEBIT_CURRENCY, DEBIT, CREDIT_CURRENCY, CREDIT) "
+                        + "VALUES (:createdAt, '1', '2', 'USD', :amount, 'USD', :amount, 'USD', :amount)")
+                .bind("createdAt", createdAt)
+                .bind("amount", amount)
+                .then()
+                .block();
+    }
+
+    private static MoneyTransfer transfer(String sourceAccount, String targetAccount, long amount) {
+        return MoneyTransfer.builder()
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .currency("USD")
+                .amount(amount)
+                .build();
+    }
+
+    private static TransferLegs legs(long amount) {
+        return TransferLegs.of(amount, "USD", amount, "USD");
+    }
+}
@@ -0,0 +1,96 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.TransferLegs;
+import com.tribalscale.test.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AccountRecoveryTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    private MappedTransferJournal transferJournal;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new MoneyTransferProperties();
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setRecordsPerSegment(4);
+
+        transferJournal = new MappedTransferJournal(properties);
+
+        when(accountRepository.findAll())
+                .thenReturn(Flux.just(account("1", 1000L), account("2", 0L), account("3", 500L)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferJournal.destroy();
+    }
+
+    @Test
+    void restore_appliesTheWholeJournalToTheDatabaseBalances() {
+        transferJournal.append(transfer("1", "2", 300L));
+        transferJournal.append(transfer("3", "1", 50L), TransferLegs.of(50L, "EUR", 40L, "GBP"));
+        transferJournal.append(transfer("2", "3", 100L));
+
+        var underTest = new AccountRecovery(accountRepository, Optional.of(transferJournal), Optional.empty());
+
+        assertThat(restore(underTest)).containsExactlyInAnyOrderEntriesOf(Map.of("1", 740L, "2", 200L, "3", 550L));
+    }
+
+    @Test
+    void restore_theDatabaseBalancesWithoutJournal() {
+        transferJournal.append(transfer("1", "2", 300L));
+
+        var underTest = new AccountRecovery(accountRepository, Optional.empty(), Optional.empty());
+
+        assertThat(restore(underTest)).containsExactlyInAnyOrderEntriesOf(Map.of("1", 1000L, "2", 0L, "3", 500L));
+    }
+
+    private static Map<String, Long> restore(AccountRecovery accountRecovery) {
+        Map<String, Long> balances = new HashMap<>();
+        long restored = accountRecovery.restore(account -> balances.put(account.getAccountId(), account.getBalance()));
+        assertThat(restored).isEqualTo(balances.size());
+        return balances;
+    }
+
+    private static Account account(String accountId, long balance) {
+        return Account.builder()
+                .accountId(accountId)
+                .currency("EUR")
+                .balance(balance)
+                .build();
+    }
+
+    private static MoneyTransfer transfer(String sourceAccount, String targetAccount, long amount) {
+        return MoneyTransfer.builder()
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .currency("EUR")
+                .amount(amount)
+                .build();
+    }
+}
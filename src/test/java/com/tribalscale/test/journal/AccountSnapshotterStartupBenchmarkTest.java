@@ -0,0 +1,74 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.ledger.ShardedLedger;
+import com.tribalscale.test.repository.AccountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Time to ready of the ledger engine restoring from a snapshot and the journal records after it. Run with
+ * {@code mvn test -Dtest=AccountSnapshotterStartupBenchmarkTest -Dbenchmark.accounts=10000000 -DargLine=-Xmx4g}.
+ */
+@EnabledIfSystemProperty(named = "benchmark.accounts", matches = "\\d+")
+@Slf4j
+class AccountSnapshotterStartupBenchmarkTest {
+
+    private static final int JOURNAL_RECORDS = 1_000_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void timeToReady() throws Exception {
+        int accounts = Integer.getInteger("benchmark.accounts");
+
+        var properties = new MoneyTransferProperties();
+        properties.getJournal().setDirectory(directory.toString());
+
+        try (var snapshot = new SnapshotWriter(directory, 0)) {
+            for (int i = 0; i < accounts; i++) {
+                snapshot.write(Account.builder()
+                        .accountId(Integer.toString(i))
+                        .currency("EUR")
+                        .balance(1_000_000L)
+                        .build());
+            }
+            snapshot.commit();
+        }
+
+        var transferJournal = new MappedTransferJournal(properties);
+        for (int i = 0; i < JOURNAL_RECORDS; i++) {
+            transferJournal.append(MoneyTransfer.builder()
+                    .sourceAccount(Integer.toString(i % accounts))
+                    .targetAccount(Integer.toString((i + 1) % accounts))
+                    .currency("EUR")
+                    .amount(1L)
+                    .build());
+        }
+        transferJournal.destroy();
+
+        long start = System.nanoTime();
+        transferJournal = new MappedTransferJournal(properties);
+        var snapshotter = new AccountSnapshotter(transferJournal, mock(AccountRepository.class), properties);
+        try (var ledger = new ShardedLedger(properties.getLedger().getShards())) {
+            snapshotter.restore(ledger::put);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            log.info("Restored {} accounts and replayed {} journal records in {} ms", ledger.size(), JOURNAL_RECORDS,
+                    elapsedMillis);
+            assertThat(ledger.size()).isEqualTo(accounts);
+        } finally {
+            transferJournal.destroy();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.TransferLegs;
+import com.tribalscale.test.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AccountSnapshotterTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    private MoneyTransferProperties properties;
+    private MappedTransferJournal transferJournal;
+
+    @BeforeEach
+    void setUp() {
+        properties = new MoneyTransferProperties();
+        properties.getJournal().setDirectory(directory.toString());
+        properties.getJournal().setRecordsPerSegment(4);
+
+        transferJournal = new MappedTransferJournal(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        transferJournal.destroy();
+    }
+
+    @Test
+    void restoreWithoutSnapshot() throws Exception {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L), account("3", 50L)));
+        transferJournal.append(transfer("1", "2", 300L));
+        transferJournal.append(transfer("3", "1", 50L));
+
+        Map<String, Long> balances = restore(new AccountSnapshotter(transferJournal, accountRepository, properties));
+
+        assertThat(balances).containsExactlyInAnyOrderEntriesOf(Map.of("1", 750L, "2", 300L, "3", 0L));
+        assertThat(snapshots()).extracting(SnapshotFormat::sequence).containsExactly(2L);
+    }
+
+    @Test
+    void restoreAppliesTheLegsOfConvertedTransfers() {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+        transferJournal.append(transfer("1", "2", 800L), TransferLegs.of(800L, "EUR", 1000L, "USD"));
+
+        Map<String, Long> balances = restore(new AccountSnapshotter(transferJournal, accountRepository, properties));
+
+        assertThat(balances).containsExactlyInAnyOrderEntriesOf(Map.of("1", 200L, "2", 1000L));
+    }
+
+    @Test
+    void restoreFromSnapshotAndLaterJournalRecords() {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+        transferJournal.append(transfer("1", "2", 300L));
+        restore(new AccountSnapshotter(transferJournal, accountRepository, properties));
+
+        transferJournal.append(transfer("1", "2", 100L));
+        transferJournal.append(transfer("2", "1", 50L));
+        Map<String, Long> balances = restore(new AccountSnapshotter(transferJournal, accountRepository, properties));
+
+        assertThat(balances).containsExactlyInAnyOrderEntriesOf(Map.of("1", 650L, "2", 350L));
+        verify(accountRepository).findAll();
+    }
+
+    @Test
+    void snapshotCompactsTheJournalIntoANewSnapshot() throws Exception {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+        var underTest = new AccountSnapshotter(transferJournal, accountRepository, properties);
+        restore(underTest);
+
+        transferJournal.append(transfer("1", "2", 100L));
+        assertThat(underTest.snapshot()).hasValue(1L);
+        transferJournal.append(transfer("1", "2", 200L));
+        assertThat(underTest.snapshot()).hasValue(2L);
+        assertThat(underTest.snapshot()).hasValue(2L);
+
+        assertThat(snapshots()).extracting(SnapshotFormat::sequence).containsExactly(1L, 2L);
+        try (var snapshot = new SnapshotReader(SnapshotFormat.snapshotPath(directory, 2))) {
+            var balances = new HashMap<String, Long>();
+            snapshot.forEach(account -> balances.put(account.getAccountId(), account.getBalance()));
+            assertThat(balances).containsExactlyInAnyOrderEntriesOf(Map.of("1", 700L, "2", 300L));
+        }
+    }
+
+    @Test
+    void snapshotWaitsForTheFirstSnapshot() {
+        transferJournal.append(transfer("1", "2", 100L));
+
+        var underTest = new AccountSnapshotter(transferJournal, accountRepository, properties);
+
+        assertThat(underTest.snapshot()).isEmpty();
+        verifyNoInteractions(accountRepository);
+    }
+
+    @Test
+    void restoreRejectsACorruptedSnapshot() throws Exception {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+        restore(new AccountSnapshotter(transferJournal, accountRepository, properties));
+
+        try (FileChannel channel = FileChannel.open(snapshots().get(0), WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{9}), SnapshotFormat.HEADER_SIZE + 3);
+        }
+
+        Throwable thrown = catchThrowable(() -> restore(new AccountSnapshotter(transferJournal, accountRepository, properties)));
+
+        assertThat(thrown).isInstanceOf(UncheckedIOException.class);
+    }
+
+    private static Map<String, Long> restore(AccountSnapshotter snapshotter) {
+        var balances = new HashMap<String, Long>();
+        snapshotter.restore(account -> balances.put(account.getAccountId(), account.getBalance()));
+        return balances;
+    }
+
+    private List<Path> snapshots() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(SnapshotFormat::isSnapshot).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Account account(String accountId, long balance) {
+        return Account.builder()
+                .accountId(accountId)
+                .currency("EUR")
+                .balance(balance)
+                .build();
+    }
+
+    private static MoneyTransfer transfer(String source, String target, long amount) {
+        return MoneyTransfer.builder()
+                .sourceAccount(source)
+                .targetAccount(target)
+                .currency("EUR")
+                .amount(amount)
+                .build();
+    }
+}
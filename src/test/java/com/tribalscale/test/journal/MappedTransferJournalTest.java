@@ -0,0 +1,229 @@
+package com.tribalscale.test.journal;
+
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.TransferLegs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.test.StepVerifier;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.tuple;
+
+class MappedTransferJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedTransferJournal underTest;
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null) {
+            underTest.destroy();
+        }
+    }
+
+    @Test
+    void appendAndReplay() {
+        underTest = open();
+
+        assertThat(underTest.append(transfer("1", "2", 100L))).isEqualTo(1L);
+        assertThat(underTest.append(transfer("2", "Ünïcode", 200L))).isEqualTo(2L);
+
+        var records = new ArrayList<JournalRecord>();
+        long last = underTest.reader().replay(1, records::add);
+
+        assertThat(last).isEqualTo(2L);
+        assertThat(records).extracting(JournalRecord::getSequence).containsExactly(1L, 2L);
+        assertThat(records.get(1).toMoneyTransfer()).isEqualTo(transfer("2", "Ünïcode", 200L));
+        assertThat(records.get(1).getTimestamp()).isPositive();
+    }
+
+    @Test
+    void appendKeepsTheLegsOfTheTransfer() {
+        underTest = open();
+
+        underTest.append(transfer("1", "2", 10000L), TransferLegs.of(9091L, "EUR", 14545L, "JPY"));
+        underTest.append(transfer("1", "2", 100L));
+
+        var records = new ArrayList<JournalRecord>();
+        underTest.reader().replay(1, records::add);
+
+        assertThat(records).extracting(JournalRecord::getAmount, JournalRecord::getDebit, JournalRecord::getCredit)
+                .containsExactly(tuple(10000L, 9091L, 14545L), tuple(100L, 100L, 100L));
+    }
+
+    @Test
+    void replayReadsRecordsWithoutLegsAsUnconverted() throws Exception {
+        underTest = open();
+        underTest.append(transfer("1", "2", 100L), TransferLegs.of(80L, "GBP", 125L, "USD"));
+        underTest.destroy();
+
+        // Rewrite the record as journaled before the legs
+        try (FileChannel channel = FileChannel.open(segments().get(0), READ, WRITE)) {
+            var record = ByteBuffer.allocate(JournalFormat.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(record, 0);
+            record.put(JournalFormat.VERSION_OFFSET, JournalFormat.NO_LEGS_VERSION)
+                    .putLong(JournalFormat.DEBIT_OFFSET, 0L)
+                    .putLong(JournalFormat.CREDIT_OFFSET, 0L)
+                    .putInt(JournalFormat.CHECKSUM_OFFSET, JournalFormat.checksum(new CRC32C(), record.duplicate(), 0));
+            channel.write(record.clear(), 0);
+        }
+
+        underTest = open();
+
+        var records = new ArrayList<JournalRecord>();
+        underTest.reader().replay(1, records::add);
+        assertThat(records).extracting(JournalRecord::getDebit, JournalRecord::getCredit)
+                .containsExactly(tuple(100L, 100L));
+    }
+
+    @Test
+    void recordsOfANewerVersionArentReadNorAppendedAfter() throws Exception {
+        underTest = open();
+        underTest.append(transfer("1", "2", 100L), TransferLegs.of(80L, "GBP", 125L, "USD"));
+        underTest.destroy();
+
+        try (FileChannel channel = FileChannel.open(segments().get(0), READ, WRITE)) {
+            var record = ByteBuffer.allocate(JournalFormat.RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(record, 0);
+            record.put(JournalFormat.VERSION_OFFSET, (byte) (JournalFormat.VERSION + 1))
+                    .putInt(JournalFormat.CHECKSUM_OFFSET, JournalFormat.checksum(new CRC32C(), record.duplicate(), 0));
+            channel.write(record.clear(), 0);
+        }
+
+        var records = new ArrayList<JournalRecord>();
+        assertThat(new JournalReader(directory).replay(1, records::add)).isZero();
+        assertThat(records).isEmpty();
+
+        underTest = null;
+        assertThat(catchThrowable(this::open)).isInstanceOf(UncheckedIOException.class);
+    }
+
+    @Test
+    void appendRollsSegments() throws Exception {
+        underTest = open();
+
+        for (int i = 1; i <= 10; i++) {
+            underTest.append(transfer("1", "2", i));
+        }
+
+        assertThat(segments()).hasSize(3);
+
+        var records = new ArrayList<JournalRecord>();
+        assertThat(underTest.reader().replay(3, records::add)).isEqualTo(10L);
+        assertThat(records).extracting(JournalRecord::getAmount)
+                .containsExactly(3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void replayPastTheEnd() {
+        underTest = open();
+        underTest.append(transfer("1", "2", 100L));
+
+        var records = new ArrayList<JournalRecord>();
+        assertThat(underTest.reader().replay(5, records::add)).isEqualTo(4L);
+        assertThat(records).isEmpty();
+    }
+
+    @Test
+    void reopenCarriesOnAfterTheLastRecord() {
+        underTest = open();
+        for (int i = 1; i <= 6; i++) {
+            underTest.append(transfer("1", "2", i));
+        }
+        underTest.destroy();
+
+        underTest = open();
+
+        assertThat(underTest.nextSequence()).isEqualTo(7L);
+        assertThat(underTest.append(transfer("1", "2", 7L))).isEqualTo(7L);
+        assertThat(underTest.reader().replay(1, record -> { })).isEqualTo(7L);
+    }
+
+    @Test
+    void reopenOverwritesATornRecord() throws Exception {
+        underTest = open();
+        underTest.append(transfer("1", "2", 1L));
+        underTest.append(transfer("1", "2", 2L));
+        underTest.destroy();
+
+        // Corrupt the amount of the second record, as if the crash happened halfway through writing it
+        try (FileChannel channel = FileChannel.open(segments().get(0), WRITE)) {
+            channel.write(ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 99L),
+                    JournalFormat.RECORD_SIZE + JournalFormat.AMOUNT_OFFSET);
+        }
+
+        underTest = open();
+
+        assertThat(underTest.nextSequence()).isEqualTo(2L);
+        underTest.append(transfer("1", "2", 3L));
+
+        var records = new ArrayList<JournalRecord>();
+        underTest.reader().replay(1, records::add);
+        assertThat(records).extracting(JournalRecord::getAmount).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void appendRejectsAccountIdsTooLongForARecord() {
+        underTest = open();
+
+        Throwable thrown = catchThrowable(() -> underTest.append(transfer("ü".repeat(60), "2", 1L)));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+        assertThat(underTest.append(transfer("1", "2", 1L))).isEqualTo(1L);
+    }
+
+    @Test
+    void tailSeesRecordsAppendedLater() {
+        underTest = open();
+        underTest.append(transfer("1", "2", 1L));
+
+        StepVerifier.create(underTest.reader().tail(1, Duration.ofMillis(10)).map(JournalRecord::getAmount))
+                .expectNext(1L)
+                .then(() -> {
+                    for (int i = 2; i <= 6; i++) {
+                        underTest.append(transfer("1", "2", i));
+                    }
+                })
+                .expectNext(2L, 3L, 4L, 5L, 6L)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private MappedTransferJournal open() {
+        return new MappedTransferJournal(directory, 4, FlushPolicy.GROUP, 2, Duration.ofMillis(10));
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static MoneyTransfer transfer(String source, String target, long amount) {
+        return MoneyTransfer.builder()
+                .sourceAccount(source)
+                .targetAccount(target)
+                .currency("EUR")
+                .amount(amount)
+                .build();
+    }
+}
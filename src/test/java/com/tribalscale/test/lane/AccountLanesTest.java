@@ -0,0 +1,138 @@
+package com.tribalscale.test.lane;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountLanesTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final AccountLanes underTest = new AccountLanes(new MoneyTransferProperties(), registry);
+
+    @Test
+    void executeQueuesTasksSharingAnAccount() {
+        Sinks.Empty<Void> first = Sinks.empty();
+        var started = new AtomicInteger();
+
+        var firstTransfer = underTest.execute("1", "2", () -> {
+            started.incrementAndGet();
+            return first.asMono().thenReturn(1);
+        }).subscribe();
+        var secondTransfer = underTest.execute("2", "3", () -> {
+            started.incrementAndGet();
+            return Mono.just(2);
+        });
+
+        StepVerifier.create(secondTransfer)
+                .then(() -> {
+                    assertThat(started).hasValue(1);
+                    assertThat(queueDepth()).isEqualTo(1d);
+                    first.tryEmitEmpty();
+                })
+                .expectNext(2)
+                .verifyComplete();
+
+        assertThat(started).hasValue(2);
+        assertThat(queueDepth()).isZero();
+        firstTransfer.dispose();
+    }
+
+    @Test
+    void executeRunsTasksOnUnrelatedAccountsRightAway() {
+        underTest.execute("1", "2", Mono::never).subscribe();
+
+        // Any other account, however many accounts there are
+        for (int i = 3; i < 10_000; i++) {
+            StepVerifier.create(underTest.execute(Integer.toString(i), Integer.toString(-i), () -> Mono.just(1)))
+                    .expectNext(1)
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    void executeDropsTheLanesNoTransferHoldsOrWaitsFor() {
+        var holder = underTest.execute("1", "2", Mono::never).subscribe();
+        StepVerifier.create(underTest.execute("3", "3", () -> Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(underTest.size()).isEqualTo(2);
+
+        holder.dispose();
+
+        assertThat(underTest.size()).isZero();
+        assertThat(registry.getMeters()).hasSize(3);
+    }
+
+    @Test
+    void executeReleasesTheLanesOnErrorAndCancel() {
+        StepVerifier.create(underTest.execute("1", "2", () -> Mono.error(new IllegalStateException())))
+                .verifyError(IllegalStateException.class);
+
+        underTest.execute("1", "2", Mono::never).subscribe().dispose();
+
+        // Cancelled while still waiting behind the one above
+        var holder = underTest.execute("1", "2", Mono::never).subscribe();
+        underTest.execute("2", "1", () -> Mono.just(1)).subscribe().dispose();
+        holder.dispose();
+
+        StepVerifier.create(underTest.execute("2", "1", () -> Mono.just(1)))
+                .expectNext(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void executeAllWaitsForEveryLaneOfItsAccounts() {
+        String[] accountIds = IntStream.range(0, 50_000)
+                .mapToObj(i -> String.format("%05d", i))
+                .toArray(String[]::new);
+        Sinks.Empty<Void> transfer = Sinks.empty();
+        var holder = underTest.execute("25000", "99999", () -> transfer.asMono().thenReturn(1)).subscribe();
+        var started = new AtomicInteger();
+
+        StepVerifier.create(underTest.executeAll(accountIds, () -> Mono.fromSupplier(started::incrementAndGet)))
+                .then(() -> {
+                    assertThat(started).hasValue(0);
+                    transfer.tryEmitEmpty();
+                })
+                .expectNext(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        holder.dispose();
+    }
+
+    @Test
+    void executeDoesNotDeadlockTransfersInOppositeDirections() {
+        var completed = Flux.range(0, 10_000)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> i % 2 == 0
+                        ? underTest.execute("1", "2", () -> Mono.just(i))
+                        : underTest.execute("2", "1", () -> Mono.just(i)))
+                .sequential()
+                .count()
+                .block(Duration.ofSeconds(30));
+
+        assertThat(completed).isEqualTo(10_000L);
+    }
+
+    private double queueDepth() {
+        return registry.get("moneytransfer.lane.queue.depth")
+                .gauge()
+                .value();
+    }
+}
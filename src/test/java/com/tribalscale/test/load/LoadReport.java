@@ -0,0 +1,93 @@
+package com.tribalscale.test.load;
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.extern.jackson.Jacksonized;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a load test run, written as JSON and compared against the committed baseline.
+ */
+@Value
+@Builder
+@Jacksonized
+class LoadReport {
+    double targetRate;
+    long durationSeconds;
+    int accounts;
+    double transferRatio;
+    double zipfExponent;
+    long requests;
+    long errors;
+    /**
+     * Completed requests per second over the measured period.
+     */
+    double throughput;
+    Latency transfer;
+    Latency read;
+
+    /**
+     * Latencies in milliseconds, from the time a request was due rather than sent, so a stalled server isn't hidden by
+     * the requests queued behind it.
+     */
+    @Value
+    @Builder
+    @Jacksonized
+    static class Latency {
+        long count;
+        double p50;
+        double p99;
+        double p999;
+        double max;
+
+        static Latency of(Histogram micros) {
+            return Latency.builder()
+                    .count(micros.getTotalCount())
+                    .p50(micros.getValueAtPercentile(50) / 1000d)
+                    .p99(micros.getValueAtPercentile(99) / 1000d)
+                    .p999(micros.getValueAtPercentile(99.9) / 1000d)
+                    .max(micros.getMaxValue() / 1000d)
+                    .build();
+        }
+
+        List<String> regressionsAgainst(String name, Latency baseline, double threshold) {
+            var regressions = new ArrayList<String>();
+            check(regressions, name + " p50", p50, baseline.p50, threshold);
+            check(regressions, name + " p99", p99, baseline.p99, threshold);
+            check(regressions, name + " p999", p999, baseline.p999, threshold);
+            return regressions;
+        }
+
+        private static void check(List<String> regressions, String name, double actual, double baseline, double threshold) {
+            if (actual > baseline * (1 + threshold)) {
+                regressions.add(String.format("%s latency of %.3f ms is over the baseline of %.3f ms", name, actual, baseline));
+            }
+        }
+    }
+
+    /**
+     * @return what the run was asked to do, which has to match for two reports to compare
+     */
+    List<Object> settings() {
+        return List.of(targetRate, durationSeconds, accounts, transferRatio, zipfExponent);
+    }
+
+    /**
+     * @return a description of every figure worse than the baseline by more than the threshold, a fraction
+     */
+    List<String> regressionsAgainst(LoadReport baseline, double threshold) {
+        var regressions = new ArrayList<String>();
+        if (throughput < baseline.throughput * (1 - threshold)) {
+            regressions.add(String.format("Throughput of %.1f/s is under the baseline of %.1f/s", throughput, baseline.throughput));
+        }
+        if (errors > baseline.errors) {
+            regressions.add(String.format("%d errors, the baseline had %d", errors, baseline.errors));
+        }
+        regressions.addAll(transfer.regressionsAgainst("Transfer", baseline.transfer, threshold));
+        regressions.addAll(read.regressionsAgainst("Read", baseline.read, threshold));
+        return regressions;
+    }
+}
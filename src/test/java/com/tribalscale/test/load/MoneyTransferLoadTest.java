@@ -0,0 +1,191 @@
+package com.tribalscale.test.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tribalscale.test.domain.payload.MoneyTransferRequestPayload;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Open loop load test of the application booted in-process: requests are sent at the target rate whether or not the
+ * previous ones completed, a mix of transfers and account reads between accounts picked with a Zipf skew. Latencies
+ * go into HdrHistograms, the report is written as JSON and the run fails when it regresses against the committed
+ * baseline by more than the threshold.
+ * <p>
+ * Run with {@code mvn test -Dtest=MoneyTransferLoadTest -Dload=true}, overriding any of the {@code load.*} system
+ * properties below, and with {@code -Dload.updateBaseline=true} to record a new baseline instead of checking it.
+ * Application properties such as {@code -Dmoneytransfer.engine=ledger} apply as well. The application logs at warn
+ * level so the console doesn't throttle it.
+ */
+@EnabledIfSystemProperty(named = "load", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "logging.level.com.tribalscale.test=WARN")
+@Slf4j
+class MoneyTransferLoadTest {
+
+    private static final double RATE = Double.parseDouble(System.getProperty("load.rate", "50"));
+    private static final Duration WARMUP = Duration.parse(System.getProperty("load.warmup", "PT30S"));
+    private static final Duration DURATION = Duration.parse(System.getProperty("load.duration", "PT30S"));
+    private static final int ACCOUNTS = Integer.getInteger("load.accounts", 1000);
+    private static final double TRANSFER_RATIO = Double.parseDouble(System.getProperty("load.transferRatio", "0.5"));
+    private static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("load.zipfExponent", "1.0"));
+    private static final double THRESHOLD = Double.parseDouble(System.getProperty("load.threshold", "0.5"));
+    private static final Path REPORT = Path.of(System.getProperty("load.report", "target/load-report.json"));
+    private static final Path BASELINE = Path.of(System.getProperty("load.baseline", "src/test/resources/load/baseline.json"));
+    private static final boolean UPDATE_BASELINE = Boolean.getBoolean("load.updateBaseline");
+
+    private static final long INITIAL_BALANCE = 1_000_000_000L;
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(60);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    private WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        Flux.range(0, ACCOUNTS)
+                .concatMap(i -> databaseClient.sql("MERGE INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) KEY(ACCOUNT_ID) VALUES (:accountId, 'EUR', :balance)")
+                        .bind("accountId", accountId(i))
+                        .bind("balance", INITIAL_BALANCE)
+                        .then())
+                .blockLast();
+
+        webClient = WebClient.create("http://localhost:" + port);
+    }
+
+    @Test
+    void sustainsTheRateWithinTheBaseline() throws Exception {
+        var transferLatencies = new ConcurrentHistogram(3);
+        var readLatencies = new ConcurrentHistogram(3);
+        var completed = new AtomicLong();
+        var errors = new AtomicLong();
+        var lastCompletion = new AtomicLong();
+        var inFlight = new AtomicLong();
+
+        var random = new SplittableRandom(42);
+        var zipf = new ZipfGenerator(ACCOUNTS, ZIPF_EXPONENT);
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / RATE);
+        long requests = (long) (RATE * (WARMUP.toSeconds() + DURATION.toSeconds()));
+        long start = System.nanoTime();
+        long measuredFrom = start + WARMUP.toNanos();
+
+        for (long i = 0; i < requests; i++) {
+            long due = start + i * intervalNanos;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            boolean transfer = random.nextDouble() < TRANSFER_RATIO;
+            int source = zipf.next(random);
+            int target = zipf.next(random);
+            Histogram latencies = transfer ? transferLatencies : readLatencies;
+            boolean measured = due >= measuredFrom;
+
+            inFlight.incrementAndGet();
+            (transfer ? transfer(source, target == source ? (source + 1) % ACCOUNTS : target) : read(source))
+                    .onErrorReturn(HttpStatus.SERVICE_UNAVAILABLE)
+                    .subscribe(status -> {
+                        long now = System.nanoTime();
+                        if (measured) {
+                            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(now - due));
+                            if (status.is2xxSuccessful()) {
+                                completed.incrementAndGet();
+                            } else {
+                                errors.incrementAndGet();
+                            }
+                            lastCompletion.accumulateAndGet(now, Math::max);
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(10);
+        }
+        assertThat(inFlight.get()).as("Requests still in flight after %s", DRAIN_TIMEOUT).isZero();
+
+        var report = LoadReport.builder()
+                .targetRate(RATE)
+                .durationSeconds(DURATION.toSeconds())
+                .accounts(ACCOUNTS)
+                .transferRatio(TRANSFER_RATIO)
+                .zipfExponent(ZIPF_EXPONENT)
+                .requests(completed.get() + errors.get())
+                .errors(errors.get())
+                .throughput(completed.get() / ((lastCompletion.get() - measuredFrom) / 1e9))
+                .transfer(LoadReport.Latency.of(transferLatencies))
+                .read(LoadReport.Latency.of(readLatencies))
+                .build();
+
+        Files.createDirectories(REPORT.toAbsolutePath().getParent());
+        objectMapper.writeValue(REPORT.toFile(), report);
+        log.info("Load test report written to {}:\n{}", REPORT, objectMapper.writeValueAsString(report));
+
+        if (UPDATE_BASELINE) {
+            Files.createDirectories(BASELINE.toAbsolutePath().getParent());
+            objectMapper.writeValue(BASELINE.toFile(), report);
+            log.info("Baseline updated at {}", BASELINE);
+            return;
+        }
+
+        assertThat(BASELINE).as("Baseline to compare with, record one with -Dload.updateBaseline=true").exists();
+        var baseline = objectMapper.readValue(BASELINE.toFile(), LoadReport.class);
+        assertThat(report.settings())
+                .as("Settings of the baseline, rerun with them or record a new baseline")
+                .isEqualTo(baseline.settings());
+        assertThat(report.regressionsAgainst(baseline, THRESHOLD))
+                .as("Regressions beyond %.0f%% of the baseline", THRESHOLD * 100)
+                .isEmpty();
+    }
+
+    private Mono<HttpStatus> transfer(int source, int target) {
+        return webClient.post()
+                .uri("/account/transfer")
+                .bodyValue(MoneyTransferRequestPayload.builder()
+                        .sourceAccount(accountId(source))
+                        .targetAccount(accountId(target))
+                        .currency("EUR")
+                        .amount(1d)
+                        .build())
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()));
+    }
+
+    private Mono<HttpStatus> read(int account) {
+        return webClient.get()
+                .uri("/account/{id}", accountId(account))
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()));
+    }
+
+    private static String accountId(int i) {
+        return "load" + i;
+    }
+}
@@ -0,0 +1,30 @@
+package com.tribalscale.test.load;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Draws ranks from 0 to n - 1 with the probability of rank k proportional to 1 / (k + 1)^exponent, so a few accounts
+ * get most of the traffic. An exponent of 0 draws uniformly.
+ */
+class ZipfGenerator {
+
+    private final double[] cumulative;
+
+    ZipfGenerator(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    int next(SplittableRandom random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(rank < 0 ? -rank - 1 : rank, cumulative.length - 1);
+    }
+}
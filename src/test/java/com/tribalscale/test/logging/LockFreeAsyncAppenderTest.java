@@ -0,0 +1,143 @@
+package com.tribalscale.test.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LockFreeAsyncAppenderTest {
+
+    private final LoggerContext context = new LoggerContext();
+    private final LockFreeAsyncAppender underTest = new LockFreeAsyncAppender();
+    private final RecordingAppender recording = new RecordingAppender();
+
+    @AfterEach
+    void tearDown() {
+        recording.release.countDown();
+        underTest.stop();
+    }
+
+    @Test
+    void appendHandsTheEventsToTheAttachedAppenders() {
+        start(16);
+
+        for (int i = 0; i < 10; i++) {
+            underTest.doAppend(event("Transfer {}", i));
+        }
+        recording.release.countDown();
+        underTest.stop();
+
+        assertThat(recording.events).extracting(ILoggingEvent::getFormattedMessage)
+                .containsExactly("Transfer 0", "Transfer 1", "Transfer 2", "Transfer 3", "Transfer 4",
+                        "Transfer 5", "Transfer 6", "Transfer 7", "Transfer 8", "Transfer 9");
+        assertThat(recording.events).extracting(ILoggingEvent::getThreadName)
+                .containsOnly(Thread.currentThread().getName());
+        assertThat(underTest.getDropped()).isZero();
+    }
+
+    @Test
+    void appendDropsTheEventsBeyondTheQueueSize() throws InterruptedException {
+        start(4);
+
+        underTest.doAppend(event("Blocking the worker", 0));
+        assertThat(recording.appending.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 6; i++) {
+            underTest.doAppend(event("Transfer {}", i));
+        }
+        recording.release.countDown();
+        underTest.stop();
+
+        assertThat(recording.events).hasSize(5);
+        assertThat(underTest.getDropped()).isEqualTo(2L);
+    }
+
+    @Test
+    void appendCapturesTheMessageAndMdcOnTheLoggingThread() throws InterruptedException {
+        start(16);
+
+        underTest.doAppend(event("Blocking the worker", 0));
+        assertThat(recording.appending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        var amount = new StringBuilder("100");
+        MDC.put("correlationId", "abc");
+        try {
+            underTest.doAppend(new LoggingEvent(getClass().getName(), context.getLogger("test"), Level.INFO,
+                    "Transfer of {}", null, new Object[]{amount}));
+        } finally {
+            MDC.clear();
+        }
+        amount.append("00");
+        recording.release.countDown();
+        underTest.stop();
+
+        assertThat(recording.events.get(1).getFormattedMessage()).isEqualTo("Transfer of 100");
+        assertThat(recording.events.get(1).getMDCPropertyMap()).containsEntry("correlationId", "abc");
+    }
+
+    @Test
+    void appendWakesUpTheIdleWorker() throws InterruptedException {
+        start(16);
+        // Long enough for the worker to find the queue empty and park
+        Thread.sleep(50);
+
+        underTest.doAppend(event("Transfer {}", 1));
+
+        assertThat(recording.appending.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void startRequiresAnAttachedAppender() {
+        var unattached = new LockFreeAsyncAppender();
+        unattached.setContext(context);
+        unattached.start();
+
+        assertThat(unattached.isStarted()).isFalse();
+    }
+
+    private void start(int queueSize) {
+        recording.setContext(context);
+        recording.start();
+        underTest.setContext(context);
+        underTest.setName("test");
+        underTest.setQueueSize(queueSize);
+        underTest.addAppender(recording);
+        underTest.start();
+    }
+
+    private LoggingEvent event(String message, int argument) {
+        return new LoggingEvent(getClass().getName(), context.getLogger("test"), Level.INFO, message, null,
+                new Object[]{argument});
+    }
+
+    /**
+     * Holds the worker on the first event until released, so the queue can be filled up.
+     */
+    private static class RecordingAppender extends AppenderBase<ILoggingEvent> {
+
+        private final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch appending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            appending.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        }
+    }
+}
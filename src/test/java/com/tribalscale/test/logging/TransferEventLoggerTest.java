@@ -0,0 +1,84 @@
+package com.tribalscale.test.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.MoneyTransfer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferEventLoggerTest {
+
+    private final Logger events = (Logger) LoggerFactory.getLogger(TransferEventLogger.LOGGER_NAME);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private final MoneyTransferProperties properties = new MoneyTransferProperties();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        events.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        events.detachAppender(appender);
+    }
+
+    @Test
+    void logTransferLogsOneEventWithTheCorrelationId() {
+        var underTest = new TransferEventLogger(properties);
+
+        StepVerifier.create(underTest.logTransfer(transfer("1", "2 b"), Mono.just(1))
+                        .contextWrite(CorrelationId.context("abc-123")))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(appender.list).singleElement()
+                .extracting(ILoggingEvent::getFormattedMessage)
+                .asString()
+                .startsWith("event=transfer correlationId=abc-123 status=200 errorCode=null sourceAccount=1 targetAccount=\"2 b\" currency=EUR amount=150 durationMicros=");
+    }
+
+    @Test
+    void logTransferAlwaysLogsTheFailures() {
+        properties.getLogging().setSuccessSampleRate(0);
+        var underTest = new TransferEventLogger(properties);
+
+        StepVerifier.create(underTest.logTransfer(transfer("1", "2"), Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(underTest.logTransfer(transfer("1", "2"), Mono.error(ErrorCode.INSUFFICIENT_FUNDS.exception("1"))))
+                .verifyError();
+        StepVerifier.create(underTest.logTransfer(transfer("1", "2"), Mono.error(new IllegalStateException())))
+                .verifyError();
+
+        assertThat(appender.list).hasSize(2);
+        assertThat(appender.list.get(0).getFormattedMessage()).contains("status=400 errorCode=INSUFFICIENT_FUNDS");
+        assertThat(appender.list.get(1).getFormattedMessage()).contains("status=500 errorCode=IllegalStateException");
+    }
+
+    @Test
+    void correlationIdReplacesAHeaderUnfitForALogLine() {
+        assertThat(CorrelationId.of("abc-123_X")).isEqualTo("abc-123_X");
+        assertThat(CorrelationId.of(null)).matches("[0-9a-f]+");
+        assertThat(CorrelationId.of("abc def")).matches("[0-9a-f]+");
+        assertThat(CorrelationId.of("a".repeat(65))).matches("[0-9a-f]+");
+    }
+
+    private static MoneyTransfer transfer(String source, String target) {
+        return MoneyTransfer.builder()
+                .sourceAccount(source)
+                .targetAccount(target)
+                .currency("EUR")
+                .amount(150L)
+                .build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.tribalscale.test.lookup;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.service.AccountStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AccountLookupsTest {
+
+    @Mock
+    private AccountStore accountStore;
+
+    @Test
+    void concurrentLookupsShareOneQuery() {
+        var underTest = new AccountLookups(accountStore, Duration.ofMillis(50), 100, Schedulers.parallel());
+        when(accountStore.getAll(Set.of("1", "2", "nonexisting")))
+                .thenReturn(Flux.just(account("1"), account("2")));
+
+        StepVerifier.create(Flux.mergeSequential(underTest.get("1"), underTest.get("2"), underTest.get("nonexisting"), underTest.get("1")))
+                .expectNext(account("1"), account("2"), account("1"))
+                .verifyComplete();
+
+        verify(accountStore).getAll(Set.of("1", "2", "nonexisting"));
+        verify(accountStore, never()).get(any());
+    }
+
+    @Test
+    void fullBatchIsSentBeforeTheEndOfItsWindow() {
+        var underTest = new AccountLookups(accountStore, Duration.ofHours(1), 2, Schedulers.parallel());
+        when(accountStore.getAll(Set.of("1", "2")))
+                .thenReturn(Flux.just(account("1"), account("2")));
+
+        StepVerifier.create(Flux.mergeSequential(underTest.get("1"), underTest.get("2")))
+                .expectNext(account("1"), account("2"))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void lookupsAfterABatchWasSentStartTheNextOne() {
+        var underTest = new AccountLookups(accountStore, Duration.ofMillis(5), 100, Schedulers.parallel());
+        when(accountStore.getAll(Set.of("1")))
+                .thenReturn(Flux.just(account("1")), Flux.just(account("1").withBalance(50L)));
+
+        assertThat(underTest.get("1").block()).isEqualTo(account("1"));
+        assertThat(underTest.get("1").block()).isEqualTo(account("1").withBalance(50L));
+
+        verify(accountStore, times(2)).getAll(Set.of("1"));
+    }
+
+    @Test
+    void failedQueryFailsEveryLookupOfTheBatch() {
+        var underTest = new AccountLookups(accountStore, Duration.ofMillis(20), 100, Schedulers.parallel());
+        when(accountStore.getAll(Set.of("1", "2")))
+                .thenReturn(Flux.error(new IllegalStateException("Connection lost")));
+
+        Mono<Account> first = underTest.get("1");
+        Mono<Account> second = underTest.get("2");
+        var thrown = catchThrowable(() -> Flux.merge(first, second).collectList().block());
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void withoutWindowLookupsGoStraightToTheStore() {
+        var underTest = new AccountLookups(accountStore, Duration.ZERO, 100, Schedulers.parallel());
+        when(accountStore.get("1")).thenReturn(Mono.just(account("1")));
+
+        assertThat(underTest.get("1").block()).isEqualTo(account("1"));
+        verify(accountStore, never()).getAll(any());
+    }
+
+    private static Account account(String accountId) {
+        return Account.builder()
+                .accountId(accountId)
+                .currency("EUR")
+                .balance(100L)
+                .build();
+    }
+}
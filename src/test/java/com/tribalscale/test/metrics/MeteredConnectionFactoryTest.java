@@ -0,0 +1,72 @@
+package com.tribalscale.test.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MeteredConnectionFactoryTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private MeteredConnectionFactory underTest;
+
+    @BeforeEach
+    void setUp() {
+        var connectionPool = new ConnectionPool(ConnectionPoolConfiguration
+                .builder(ConnectionFactories.get("r2dbc:h2:mem:///pool?options=DB_CLOSE_DELAY=-1"))
+                .initialSize(1)
+                .maxSize(1)
+                .maxAcquireTime(Duration.ofMillis(100))
+                .build());
+        underTest = new MeteredConnectionFactory(connectionPool, "test", registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.dispose();
+    }
+
+    @Test
+    void create_timesTheAcquisitionsAndBindsThePoolGauges() {
+        Connection connection = underTest.create().block();
+
+        assertThat(registry.get("r2dbc.pool.acquire").tags("name", "test", "outcome", "ok").timer().count()).isEqualTo(1);
+        assertThat(registry.get("r2dbc.pool.acquired").tag("name", "test").gauge().value()).isEqualTo(1);
+        assertThat(registry.get("r2dbc.pool.idle").tag("name", "test").gauge().value()).isZero();
+
+        Mono.from(connection.close()).block();
+
+        assertThat(registry.get("r2dbc.pool.acquired").tag("name", "test").gauge().value()).isZero();
+    }
+
+    @Test
+    void create_timesTheAcquisitionsTimingOutOnAnExhaustedPool() {
+        Connection connection = underTest.create().block();
+
+        StepVerifier.create(underTest.create())
+                .expectError(R2dbcTimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertThat(registry.get("r2dbc.pool.acquire").tags("name", "test", "outcome", "error").timer().count()).isEqualTo(1);
+        Mono.from(connection.close()).block();
+    }
+
+    @Test
+    void dispose_closesThePool() {
+        underTest.dispose();
+
+        assertThat(underTest.isDisposed()).isTrue();
+    }
+}
@@ -0,0 +1,91 @@
+package com.tribalscale.test.metrics;
+
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static com.tribalscale.test.domain.ErrorCode.CURRENCY_NOT_CONVERTIBLE;
+import static com.tribalscale.test.domain.ErrorCode.INSUFFICIENT_FUNDS;
+import static com.tribalscale.test.domain.ErrorCode.SOURCE_ACCOUNT_NOT_FOUND;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+class TransferMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final TransferMetrics underTest = new TransferMetrics(registry);
+
+    @Test
+    void timeTransferRecordsTheOutcomeAndTheAmount() {
+        StepVerifier.create(underTest.timeTransfer(transfer("EUR", 1000L), Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(underTest.timeTransfer(transfer("EUR", 500L), Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(underTest.timeTransfer(transfer("USD", 700L), Mono.error(SOURCE_ACCOUNT_NOT_FOUND.exception("1"))))
+                .verifyError(MoneyTransferApplicationException.class);
+
+        assertThat(transferCount("ok")).isEqualTo(2L);
+        assertThat(transferCount("not_found")).isEqualTo(1L);
+        assertThat(registry.get("moneytransfer.transfer.amount").tag("currency", "EUR").counter().count()).isEqualTo(1500d);
+        assertThat(registry.find("moneytransfer.transfer.amount").tag("currency", "USD").counter()).isNull();
+        assertThat(registry.get("moneytransfer.transfers.in.flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void timeTransferCountsItInFlightUntilItCompletes() {
+        StepVerifier.create(underTest.timeTransfer(transfer("EUR", 1L), Mono.never()))
+                .then(() -> assertThat(registry.get("moneytransfer.transfers.in.flight").gauge().value()).isEqualTo(1d))
+                .thenCancel()
+                .verify();
+
+        assertThat(registry.get("moneytransfer.transfers.in.flight").gauge().value()).isZero();
+    }
+
+    @Test
+    void timeStageRecordsTheOutcomeOfTheError() {
+        StepVerifier.create(underTest.timeStage(TransferMetrics.Stage.DEBIT, Mono.error(INSUFFICIENT_FUNDS.exception("1"))))
+                .verifyError(MoneyTransferApplicationException.class);
+        StepVerifier.create(underTest.timeStage(TransferMetrics.Stage.DEBIT, Mono.error(CURRENCY_NOT_CONVERTIBLE.exception("1"))))
+                .verifyError(MoneyTransferApplicationException.class);
+        // A bad request other than insufficient funds isn't counted as one
+        StepVerifier.create(underTest.timeStage(TransferMetrics.Stage.DEBIT, Mono.error(MoneyTransferApplicationException.builder()
+                        .message("Transfer failed")
+                        .statusCode(BAD_REQUEST.value())
+                        .build())))
+                .verifyError(MoneyTransferApplicationException.class);
+        StepVerifier.create(underTest.timeStage(TransferMetrics.Stage.DEBIT, Mono.error(new IllegalStateException())))
+                .verifyError(IllegalStateException.class);
+        StepVerifier.create(underTest.timeStage(TransferMetrics.Stage.CREDIT, Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(stageCount("debit", "insufficient_funds")).isEqualTo(1L);
+        assertThat(stageCount("debit", "no_exchange_rate")).isEqualTo(1L);
+        assertThat(stageCount("debit", "error")).isEqualTo(2L);
+        assertThat(stageCount("debit", "ok")).isZero();
+        assertThat(stageCount("credit", "ok")).isEqualTo(1L);
+    }
+
+    private long transferCount(String outcome) {
+        return registry.get("moneytransfer.transfer").tag("outcome", outcome).timer().count();
+    }
+
+    private long stageCount(String stage, String outcome) {
+        return registry.get("moneytransfer.transfer.stage").tag("stage", stage).tag("outcome", outcome).timer().count();
+    }
+
+    private static MoneyTransfer transfer(String currency, long amount) {
+        return MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency(currency)
+                .amount(amount)
+                .build();
+    }
+}
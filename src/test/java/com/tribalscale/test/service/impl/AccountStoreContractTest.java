@@ -0,0 +1,132 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.service.AccountStore;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The behaviour every {@link AccountStore} shares, run against each of them by its subclass.
+ */
+abstract class AccountStoreContractTest {
+
+    /**
+     * The store under test, empty before {@link #seed(Account...)}.
+     */
+    protected abstract AccountStore store();
+
+    protected abstract void seed(Account... accounts);
+
+    @Test
+    void get() {
+        seed(account("1", 1000L), account("2", 0L));
+
+        StepVerifier.create(store().get("1"))
+                .expectNext(account("1", 1000L))
+                .verifyComplete();
+        StepVerifier.create(store().get("nonexisting"))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAll_leavesOutTheMissingAccounts() {
+        seed(account("1", 1000L), account("2", 0L), account("3", 50L));
+
+        StepVerifier.create(store().getAll(Set.of("1", "3", "nonexisting")).collectList())
+                .assertNext(accounts -> assertThat(accounts).containsExactlyInAnyOrder(account("1", 1000L), account("3", 50L)))
+                .verifyComplete();
+        StepVerifier.create(store().getAll(Set.of()))
+                .verifyComplete();
+    }
+
+    @Test
+    void debit() {
+        seed(account("1", 1000L));
+
+        StepVerifier.create(store().debit("1", 400L))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(store().debit("1", 600L))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(balance("1")).isZero();
+    }
+
+    @Test
+    void debit_refusesAnAmountOverTheBalance() {
+        seed(account("1", 1000L));
+
+        StepVerifier.create(store().debit("1", 1001L))
+                .expectNext(0)
+                .verifyComplete();
+        StepVerifier.create(store().debit("nonexisting", 1L))
+                .expectNext(0)
+                .verifyComplete();
+
+        assertThat(balance("1")).isEqualTo(1000L);
+    }
+
+    @Test
+    void credit() {
+        seed(account("1", 1000L));
+
+        StepVerifier.create(store().credit("1", 500L))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(store().credit("1", -200L))
+                .expectNext(1)
+                .verifyComplete();
+        StepVerifier.create(store().credit("nonexisting", 1L))
+                .expectNext(0)
+                .verifyComplete();
+
+        assertThat(balance("1")).isEqualTo(1300L);
+    }
+
+    @Test
+    void scan() {
+        seed(account("1", 1000L), account("2", 0L));
+
+        StepVerifier.create(store().scan().collectList())
+                .assertNext(accounts -> assertThat(accounts).containsExactlyInAnyOrder(account("1", 1000L), account("2", 0L)))
+                .verifyComplete();
+    }
+
+    @Test
+    void concurrentDebitsNeverOverdraw() {
+        seed(account("1", 5000L), account("2", 0L));
+
+        Integer debited = Flux.range(0, 1000)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> store().debit("1", 10L)
+                        .flatMap(updated -> updated > 0 ? store().credit("2", 10L) : Mono.just(0)))
+                .sequential()
+                .reduce(0, Integer::sum)
+                .block();
+
+        assertThat(debited).isEqualTo(500);
+        assertThat(balance("1")).isZero();
+        assertThat(balance("2")).isEqualTo(5000L);
+    }
+
+    protected static Account account(String accountId, long balance) {
+        return Account.builder()
+                .accountId(accountId)
+                .currency("EUR")
+                .balance(balance)
+                .build();
+    }
+
+    private long balance(String accountId) {
+        return store().get(accountId).map(Account::getBalance).block();
+    }
+}
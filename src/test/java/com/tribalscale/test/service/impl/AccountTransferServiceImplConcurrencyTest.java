@@ -0,0 +1,101 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.repository.AccountRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Fires thousands of concurrent transfers between a small set of accounts against the real database, and checks that
+ * the guarded debit never lets money be created or destroyed.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class AccountTransferServiceImplConcurrencyTest {
+
+    private static final int ACCOUNTS = 20;
+    private static final long INITIAL_BALANCE = 100000L;
+    private static final int TRANSFERS = 2000;
+
+    @Autowired
+    private AccountTransferServiceImpl underTest;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void setUp() {
+        Flux.range(0, ACCOUNTS)
+                .concatMap(i -> databaseClient.sql("MERGE INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) KEY(ACCOUNT_ID) VALUES (:accountId, 'EUR', :balance)")
+                        .bind("accountId", accountId(i))
+                        .bind("balance", INITIAL_BALANCE)
+                        .then())
+                .blockLast();
+    }
+
+    @Test
+    void concurrentTransfersKeepTheTotalBalance() {
+        var random = new Random(42);
+        var succeeded = new AtomicInteger();
+        var rejected = new AtomicInteger();
+
+        List<MoneyTransfer> transfers = Flux.range(0, TRANSFERS)
+                .map(i -> {
+                    int source = random.nextInt(ACCOUNTS);
+                    int target = (source + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+                    return MoneyTransfer.builder()
+                            .sourceAccount(accountId(source))
+                            .targetAccount(accountId(target))
+                            .currency("EUR")
+                            .amount(100L + random.nextInt(30000))
+                            .build();
+                })
+                .collectList()
+                .block();
+
+        Flux.fromIterable(transfers)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .flatMap(moneyTransfer -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer)
+                        .doOnSuccess(updated -> succeeded.incrementAndGet())
+                        .onErrorResume(MoneyTransferApplicationException.class, e -> {
+                            rejected.incrementAndGet();
+                            return Mono.empty();
+                        }), false, 16)
+                .sequential()
+                .blockLast();
+
+        List<Account> accounts = Flux.range(0, ACCOUNTS)
+                .concatMap(i -> accountRepository.getByAccountId(accountId(i)))
+                .collectList()
+                .block();
+
+        assertThat(succeeded.get() + rejected.get()).isEqualTo(TRANSFERS);
+        assertThat(succeeded.get()).isPositive();
+        assertThat(accounts)
+                .hasSize(ACCOUNTS)
+                .allMatch(account -> account.getBalance() >= 0);
+        assertThat(accounts.stream().mapToLong(Account::getBalance).sum())
+                .isEqualTo(ACCOUNTS * INITIAL_BALANCE);
+    }
+
+    private static String accountId(int index) {
+        return "concurrency" + index;
+    }
+}
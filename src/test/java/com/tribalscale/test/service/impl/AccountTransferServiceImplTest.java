@@ -1,19 +1,51 @@
 package com.tribalscale.test.service.impl;
 
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.cache.AccountCache;
+import com.tribalscale.test.cache.AccountCurrencyCache;
+import com.tribalscale.test.commit.GroupCommit;
+import com.tribalscale.test.config.MoneyTransferProperties;
 import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.ErrorCode;
 import com.tribalscale.test.domain.MoneyTransfer;
 import com.tribalscale.test.domain.MoneyTransferApplicationException;
-import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.domain.Settlement;
+import com.tribalscale.test.domain.TransferLegs;
+import com.tribalscale.test.fx.FxRateTable;
+import com.tribalscale.test.fx.FxRates;
+import com.tribalscale.test.history.TransferCursor;
+import com.tribalscale.test.history.TransferHistory;
+import com.tribalscale.test.journal.TransferJournal;
+import com.tribalscale.test.lane.AccountLanes;
+import com.tribalscale.test.lookup.AccountLookups;
+import com.tribalscale.test.metrics.TransferMetrics;
+import com.tribalscale.test.service.AccountStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
@@ -22,132 +54,402 @@ import static org.springframework.http.HttpStatus.NOT_FOUND;
 class AccountTransferServiceImplTest {
 
     @Mock
-    private AccountRepository accountRepository;
+    private AccountStore accountStore;
+
+    @Spy
+    private final AccountCache accountCache = new AccountCache(new MoneyTransferProperties());
+
+    @Mock
+    private AccountCurrencyCache accountCurrencyCache;
+
+    @Mock
+    private AccountLookups accountLookups;
+
+    @Mock
+    private FxRateTable fxRateTable;
+
+    @Mock
+    private TransferJournal transferJournal;
+
+    @Mock
+    private TransferHistory transferHistory;
+
+    @Mock
+    private BalanceUpdates balanceUpdates;
+
+    @Spy
+    private final TransferMetrics transferMetrics = new TransferMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private final AccountLanes accountLanes = new AccountLanes(new MoneyTransferProperties(), new SimpleMeterRegistry());
+
+    @Mock
+    private GroupCommit groupCommit;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
 
     @InjectMocks
     private AccountTransferServiceImpl underTest;
 
+    @BeforeEach
+    void setUp() {
+        lenient().when(transactionalOperator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        lenient().when(accountStore.isTransactional()).thenReturn(true);
+        lenient().when(accountCurrencyCache.get(anyString(), any()))
+                .thenReturn(Mono.just("EUR"));
+        lenient().when(accountLookups.get(anyString()))
+                .thenAnswer(invocation -> accountStore.get(invocation.getArgument(0)));
+        lenient().when(transferHistory.record(any(), any()))
+                .thenReturn(Mono.empty());
+        lenient().when(transferHistory.recordAll(any(), any()))
+                .thenReturn(Mono.empty());
+        lenient().when(fxRateTable.rates())
+                .thenReturn(FxRates.of("EUR", Map.of("USD", 1.1, "JPY", 160.0)));
+    }
+
     @Test
     void transferMoneyFromAccountToAnotherAccount() {
         var moneyTransfer = MoneyTransfer.builder()
                 .sourceAccount("1")
                 .targetAccount("2")
                 .currency("EUR")
-                .amount(2000d)
+                .amount(200000L)
                 .build();
 
-        var sourceAccount = Account.builder()
-                .accountId("1")
-                .balance(3000d)
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        Mono<Integer> result = underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer);
+
+        StepVerifier.create(result)
+                .expectNextMatches(value -> value.equals(1))
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(accountStore);
+        inOrder.verify(accountStore).debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        inOrder.verify(accountStore).credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        verify(accountStore, never()).get(anyString());
+        verify(transferJournal).append(moneyTransfer, TransferLegs.unconverted(moneyTransfer));
+        verify(transferHistory).record(moneyTransfer, TransferLegs.unconverted(moneyTransfer));
+        verify(balanceUpdates).changed(eq(moneyTransfer.getSourceAccount()), any());
+        verify(balanceUpdates).changed(eq(moneyTransfer.getTargetAccount()), any());
+        verify(accountLanes).execute(eq(moneyTransfer.getSourceAccount()), eq(moneyTransfer.getTargetAccount()), any());
+        verify(transactionalOperator).transactional(any(Mono.class));
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_journalFailureRollsTheTransferBack() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
                 .currency("EUR")
+                .amount(200000L)
                 .build();
 
-        var targetAccount = Account.builder()
-                .accountId("2")
-                .balance(1000d)
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+        when(transferJournal.append(moneyTransfer, TransferLegs.unconverted(moneyTransfer)))
+                .thenThrow(new UncheckedIOException(new IOException("No space left on device")));
+
+        StepVerifier.create(underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .expectError(UncheckedIOException.class)
+                .verify();
+
+        // Journaled within the transaction, which the failure rolls back before any balance is published
+        verify(transactionalOperator).transactional(any(Mono.class));
+        verifyNoInteractions(balanceUpdates);
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_journalFailureOutsideOfATransactionStillAcknowledgesTheTransfer() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
                 .currency("EUR")
+                .amount(200000L)
                 .build();
 
-        when(accountRepository.getByAccountId(moneyTransfer.getSourceAccount()))
-                .thenReturn(Mono.just(sourceAccount));
+        when(accountStore.isTransactional()).thenReturn(false);
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+        when(transferJournal.append(moneyTransfer, TransferLegs.unconverted(moneyTransfer)))
+                .thenThrow(new UncheckedIOException(new IOException("No space left on device")));
+
+        StepVerifier.create(underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .expectNext(1)
+                .verifyComplete();
 
-        when(accountRepository.getByAccountId(moneyTransfer.getTargetAccount()))
-                .thenReturn(Mono.just(targetAccount));
+        verify(accountStore, never()).credit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        verify(balanceUpdates).changed(eq(moneyTransfer.getSourceAccount()), any());
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_locksAccountsInIdOrder() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("2")
+                .targetAccount("1")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
 
-        when(accountRepository.updateAmount(moneyTransfer.getSourceAccount(), sourceAccount.getBalance() - moneyTransfer.getAmount()))
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
                 .thenReturn(Mono.just(1));
 
-        when(accountRepository.updateAmount(moneyTransfer.getTargetAccount(), targetAccount.getBalance() + moneyTransfer.getAmount()))
-                .thenReturn(Mono.just(2));
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
 
         Mono<Integer> result = underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer);
 
         StepVerifier.create(result)
-                .expectNextMatches(value -> value.equals(2))
+                .expectNextMatches(value -> value.equals(1))
                 .verifyComplete();
 
-        verify(accountRepository).getByAccountId(moneyTransfer.getSourceAccount());
-        verify(accountRepository).getByAccountId(moneyTransfer.getTargetAccount());
-        verify(accountRepository).updateAmount(moneyTransfer.getSourceAccount(), sourceAccount.getBalance() - moneyTransfer.getAmount());
-        verify(accountRepository).updateAmount(moneyTransfer.getTargetAccount(), targetAccount.getBalance() + moneyTransfer.getAmount());
+        InOrder inOrder = inOrder(accountStore);
+        inOrder.verify(accountStore).credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        inOrder.verify(accountStore).debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        verify(accountStore, never()).get(anyString());
     }
 
     @Test
-    void transferMoneyFromAccountToSourceAccount_nonExistingSourceAccount() {
+    void transferMoneyFromAccountToAnotherAccount_convertsToTheAccountCurrencies() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("USD")
+                .amount(10000L)
+                .build();
+
+        when(accountCurrencyCache.get(eq(moneyTransfer.getTargetAccount()), any()))
+                .thenReturn(Mono.just("JPY"));
+
+        // 100 USD are 90.91 EUR and 14545 JPY
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), 9091L))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), 14545L))
+                .thenReturn(Mono.just(1));
+
+        StepVerifier.create(underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .expectNext(1)
+                .verifyComplete();
+
+        verify(accountStore).debit(moneyTransfer.getSourceAccount(), 9091L);
+        verify(accountStore).credit(moneyTransfer.getTargetAccount(), 14545L);
+        verify(transferJournal).append(moneyTransfer, TransferLegs.of(9091L, "EUR", 14545L, "JPY"));
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_noExchangeRate() {
         var moneyTransfer = MoneyTransfer.builder()
                 .sourceAccount("1")
                 .targetAccount("2")
                 .currency("EUR")
-                .amount(2000d)
+                .amount(10000L)
                 .build();
 
-        var sourceAccount = Account.builder()
-                .accountId("1")
-                .balance(3000d)
+        when(accountCurrencyCache.get(eq(moneyTransfer.getTargetAccount()), any()))
+                .thenReturn(Mono.just("GBP"));
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("statusCode", BAD_REQUEST.value())
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.CURRENCY_NOT_CONVERTIBLE);
+
+        verify(accountStore, never()).debit(anyString(), anyLong());
+        verify(accountStore, never()).credit(anyString(), anyLong());
+        verifyNoInteractions(accountLanes, transferJournal);
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_unknownTargetAccountCurrency() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("nonexisting")
                 .currency("EUR")
+                .amount(10000L)
                 .build();
 
-        var targetAccount = Account.builder()
-                .accountId("2")
-                .balance(1000d)
+        when(accountCurrencyCache.get(eq(moneyTransfer.getTargetAccount()), any()))
+                .thenReturn(Mono.empty());
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.TARGET_ACCOUNT_NOT_FOUND);
+
+        verify(accountStore, never()).debit(anyString(), anyLong());
+        verifyNoInteractions(accountLanes, transferJournal);
+    }
+
+    @Test
+    void transferMoneyFromAccountToSourceAccount_nonExistingSourceAccount() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
                 .currency("EUR")
+                .amount(200000L)
                 .build();
 
-        when(accountRepository.getByAccountId(moneyTransfer.getSourceAccount()))
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(0));
+
+        when(accountStore.get(moneyTransfer.getSourceAccount()))
                 .thenReturn(Mono.empty());
 
-        when(accountRepository.getByAccountId(moneyTransfer.getTargetAccount()))
-                .thenReturn(Mono.just(targetAccount));
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value())
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.SOURCE_ACCOUNT_NOT_FOUND);
+        assertThat(thrown.getStackTrace()).isEmpty();
+
+        verify(accountStore).debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        verify(accountStore).get(moneyTransfer.getSourceAccount());
+        verify(accountStore, never()).credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        verifyNoInteractions(transferJournal);
+    }
+
+    @Test
+    void transferMoneyFromAccountToTargetAccount() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(0));
 
         var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
 
         assertThat(thrown)
                 .isInstanceOf(MoneyTransferApplicationException.class)
-                .hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value());
+                .hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value())
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.TARGET_ACCOUNT_NOT_FOUND);
 
-        verify(accountRepository).getByAccountId(moneyTransfer.getSourceAccount());
-        verify(accountRepository).getByAccountId(moneyTransfer.getTargetAccount());
-        verify(accountRepository, never()).updateAmount(moneyTransfer.getSourceAccount(), sourceAccount.getBalance() - moneyTransfer.getAmount());
-        verify(accountRepository, never()).updateAmount(moneyTransfer.getTargetAccount(), targetAccount.getBalance() + moneyTransfer.getAmount());
+        verify(accountStore).debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        verify(accountStore).credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        verify(accountStore, never()).get(anyString());
+        verifyNoInteractions(transferJournal);
     }
 
     @Test
-    void transferMoneyFromAccountToTargetAccount() {
+    void transferMoneyFromAccountToTargetAccount_undoesTheDebitOutsideOfATransaction() {
         var moneyTransfer = MoneyTransfer.builder()
                 .sourceAccount("1")
                 .targetAccount("2")
                 .currency("EUR")
-                .amount(2000d)
+                .amount(200000L)
                 .build();
 
-        var sourceAccount = Account.builder()
-                .accountId("1")
-                .balance(3000d)
+        when(accountStore.isTransactional()).thenReturn(false);
+
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(0));
+
+        when(accountStore.credit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.TARGET_ACCOUNT_NOT_FOUND);
+
+        InOrder inOrder = inOrder(accountStore);
+        inOrder.verify(accountStore).debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        inOrder.verify(accountStore).credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        inOrder.verify(accountStore).credit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        verifyNoInteractions(transactionalOperator, transferJournal);
+    }
+
+    @Test
+    void transferMoneyFromAccountToTargetAccount_undoesTheDebitWithinAGroupCommit() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
                 .currency("EUR")
+                .amount(200000L)
                 .build();
 
-        var targetAccount = Account.builder()
-                .accountId("2")
-                .balance(1000d)
+        when(groupCommit.isEnabled()).thenReturn(true);
+        when(groupCommit.execute(any()))
+                .thenAnswer(invocation -> Mono.defer(invocation.getArgument(0)));
+
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(0));
+
+        when(accountStore.credit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        // The rest of the batch commits, the debit can't be left to a rollback
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.TARGET_ACCOUNT_NOT_FOUND);
+
+        InOrder inOrder = inOrder(accountStore);
+        inOrder.verify(accountStore).debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        inOrder.verify(accountStore).credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        inOrder.verify(accountStore).credit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        verifyNoInteractions(transactionalOperator, accountLanes, transferJournal);
+    }
+
+    @Test
+    void transferMoneyFromAccountToSourceAccount_undoesTheCreditOutsideOfATransaction() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("2")
+                .targetAccount("1")
                 .currency("EUR")
+                .amount(200000L)
                 .build();
 
-        when(accountRepository.getByAccountId(moneyTransfer.getSourceAccount()))
-                .thenReturn(Mono.just(sourceAccount));
+        when(accountStore.isTransactional()).thenReturn(false);
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(0));
 
-        when(accountRepository.getByAccountId(moneyTransfer.getTargetAccount()))
+        when(accountStore.get(moneyTransfer.getSourceAccount()))
                 .thenReturn(Mono.empty());
 
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), -moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
         var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
 
         assertThat(thrown)
                 .isInstanceOf(MoneyTransferApplicationException.class)
-                .hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value());
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.SOURCE_ACCOUNT_NOT_FOUND);
 
-        verify(accountRepository).getByAccountId(moneyTransfer.getSourceAccount());
-        verify(accountRepository).getByAccountId(moneyTransfer.getTargetAccount());
-        verify(accountRepository, never()).updateAmount(moneyTransfer.getSourceAccount(), sourceAccount.getBalance() - moneyTransfer.getAmount());
-        verify(accountRepository, never()).updateAmount(moneyTransfer.getTargetAccount(), targetAccount.getBalance() + moneyTransfer.getAmount());
+        verify(accountStore).credit(moneyTransfer.getTargetAccount(), -moneyTransfer.getAmount());
+        verifyNoInteractions(transactionalOperator, transferJournal);
     }
 
     @Test
@@ -156,36 +458,347 @@ class AccountTransferServiceImplTest {
                 .sourceAccount("1")
                 .targetAccount("2")
                 .currency("EUR")
-                .amount(9000d)
+                .amount(900000L)
                 .build();
 
         var sourceAccount = Account.builder()
                 .accountId("1")
-                .balance(1000d)
+                .balance(100000L)
                 .currency("EUR")
                 .build();
 
-        var targetAccount = Account.builder()
-                .accountId("2")
-                .balance(1000d)
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(0));
+
+        when(accountStore.get(moneyTransfer.getSourceAccount()))
+                .thenReturn(Mono.just(sourceAccount));
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("statusCode", BAD_REQUEST.value())
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.INSUFFICIENT_FUNDS);
+
+        verify(accountStore).debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount());
+        verify(accountStore).get(moneyTransfer.getSourceAccount());
+        verify(accountStore, never()).credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount());
+        verifyNoInteractions(transferJournal);
+    }
+
+    @Test
+    void getAccountDetailsByAccountId_servedFromCache() {
+        var account = Account.builder()
+                .accountId("1")
+                .balance(300000L)
                 .currency("EUR")
                 .build();
 
-        when(accountRepository.getByAccountId(moneyTransfer.getSourceAccount()))
-                .thenReturn(Mono.just(sourceAccount));
+        when(accountStore.get(account.getAccountId()))
+                .thenReturn(Mono.just(account));
+
+        StepVerifier.create(underTest.getAccountDetailsByAccountId(account.getAccountId()))
+                .expectNext(account)
+                .verifyComplete();
 
-        when(accountRepository.getByAccountId(moneyTransfer.getTargetAccount()))
-                .thenReturn(Mono.just(targetAccount));
+        StepVerifier.create(underTest.getAccountDetailsByAccountId(account.getAccountId()))
+                .expectNext(account)
+                .verifyComplete();
+
+        verify(accountStore, times(1)).get(account.getAccountId());
+    }
+
+    @Test
+    void getAccountDetailsByAccountIds_inTheOrderOfTheIds() {
+        var account = Account.builder()
+                .accountId("1")
+                .balance(300000L)
+                .currency("EUR")
+                .build();
+
+        when(accountStore.get("1")).thenReturn(Mono.just(account));
+        when(accountStore.get("2")).thenReturn(Mono.just(account.withAccountId("2")));
+        when(accountStore.get("nonexisting")).thenReturn(Mono.empty());
+
+        underTest.getAccountDetailsByAccountId("1").block();
+
+        StepVerifier.create(underTest.getAccountDetailsByAccountIds(List.of("2", "nonexisting", "1")))
+                .expectNext(account.withAccountId("2"), account)
+                .verifyComplete();
+
+        verify(accountStore, times(1)).get("1");
+        verify(accountLookups).get("2");
+    }
+
+    @Test
+    void getAccountDetailsByAccountId_nonExistingAccountNotCached() {
+        when(accountStore.get("nonexisting"))
+                .thenReturn(Mono.empty());
+
+        for (int i = 0; i < 2; i++) {
+            var thrown = catchThrowable(() -> underTest.getAccountDetailsByAccountId("nonexisting").block());
+
+            assertThat(thrown)
+                    .isInstanceOf(MoneyTransferApplicationException.class)
+                    .hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value());
+        }
+
+        verify(accountStore, times(2)).get("nonexisting");
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_evictsCachedAccounts() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        var sourceAccount = Account.builder()
+                .accountId("1")
+                .balance(300000L)
+                .currency("EUR")
+                .build();
+
+        when(accountStore.get(moneyTransfer.getSourceAccount()))
+                .thenReturn(Mono.just(sourceAccount), Mono.just(sourceAccount.withBalance(100000L)));
+
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        assertThat(underTest.getAccountDetailsByAccountId(moneyTransfer.getSourceAccount()).block())
+                .hasFieldOrPropertyWithValue("balance", 300000L);
+
+        underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block();
+
+        assertThat(underTest.getAccountDetailsByAccountId(moneyTransfer.getSourceAccount()).block())
+                .hasFieldOrPropertyWithValue("balance", 100000L);
+
+        verify(accountCache).evict(moneyTransfer.getSourceAccount(), moneyTransfer.getTargetAccount());
+        verify(accountStore, times(2)).get(moneyTransfer.getSourceAccount());
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_historyFailureRollsBackTheTransaction() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(transferHistory.record(moneyTransfer, TransferLegs.unconverted(moneyTransfer)))
+                .thenReturn(Mono.error(new IllegalStateException("The database is gone")));
 
         var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
 
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+        verifyNoInteractions(transferJournal);
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_historyFailureOutsideOfATransaction() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        when(accountStore.isTransactional()).thenReturn(false);
+
+        when(accountStore.debit(moneyTransfer.getSourceAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit(moneyTransfer.getTargetAccount(), moneyTransfer.getAmount()))
+                .thenReturn(Mono.just(1));
+
+        when(transferHistory.record(moneyTransfer, TransferLegs.unconverted(moneyTransfer)))
+                .thenReturn(Mono.error(new IllegalStateException("The database is gone")));
+
+        StepVerifier.create(underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .expectNext(1)
+                .verifyComplete();
+
+        verify(transferJournal).append(moneyTransfer, TransferLegs.unconverted(moneyTransfer));
+    }
+
+    @Test
+    void settle_appliesOneUpdatePerAccountOnTheNetPositions() {
+        var moneyTransfers = List.of(transfer("1", "2", 100000L), transfer("2", "1", 30000L),
+                transfer("2", "3", 50000L), transfer("3", "2", 50000L));
+
+        when(accountStore.debit("1", 70000L))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit("2", 70000L))
+                .thenReturn(Mono.just(1));
+
+        StepVerifier.create(underTest.settle(moneyTransfers))
+                .expectNext(Settlement.of(4, 2))
+                .verifyComplete();
+
+        // The transfers of account 3 cancel out, it isn't updated
+        InOrder inOrder = inOrder(accountStore);
+        inOrder.verify(accountStore).debit("1", 70000L);
+        inOrder.verify(accountStore).credit("2", 70000L);
+        verify(accountStore, never()).debit(eq("3"), anyLong());
+        verify(accountStore, never()).credit(eq("3"), anyLong());
+        verify(transferHistory).recordAll(moneyTransfers, moneyTransfers.stream()
+                .map(TransferLegs::unconverted)
+                .collect(Collectors.toList()));
+        verify(transferHistory, never()).record(any(), any());
+        moneyTransfers.forEach(moneyTransfer -> verify(transferJournal).append(moneyTransfer, TransferLegs.unconverted(moneyTransfer)));
+        verify(balanceUpdates).changed(eq("1"), any());
+        verify(balanceUpdates).changed(eq("2"), any());
+        verify(balanceUpdates, never()).changed(eq("3"), any());
+        verify(transactionalOperator).transactional(any(Mono.class));
+        verify(accountLanes).executeAll(aryEq(new String[]{"1", "2", "3"}), any());
+        verifyNoInteractions(groupCommit);
+    }
+
+    @Test
+    void settle_rejectsTheWindowWhenAnAccountWouldGoShortOfFunds() {
+        var moneyTransfers = List.of(transfer("1", "2", 900000L), transfer("2", "1", 100000L));
+
+        var sourceAccount = Account.builder()
+                .accountId("1")
+                .balance(100000L)
+                .currency("EUR")
+                .build();
+
+        when(accountStore.debit("1", 800000L))
+                .thenReturn(Mono.just(0));
+
+        when(accountStore.get("1"))
+                .thenReturn(Mono.just(sourceAccount));
+
+        var thrown = catchThrowable(() -> underTest.settle(moneyTransfers).block());
+
         assertThat(thrown)
                 .isInstanceOf(MoneyTransferApplicationException.class)
-                .hasFieldOrPropertyWithValue("statusCode", BAD_REQUEST.value());
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.INSUFFICIENT_FUNDS);
+
+        verify(accountStore, never()).credit(anyString(), anyLong());
+        verify(transferHistory, never()).recordAll(any(), any());
+        verifyNoInteractions(transferJournal, balanceUpdates);
+    }
+
+    @Test
+    void settle_undoesTheAppliedPositionsOutsideOfATransaction() {
+        var moneyTransfers = List.of(transfer("2", "1", 100000L));
+
+        when(accountStore.isTransactional()).thenReturn(false);
+
+        when(accountStore.credit("1", 100000L))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.debit("2", 100000L))
+                .thenReturn(Mono.just(0));
+
+        when(accountStore.get("2"))
+                .thenReturn(Mono.empty());
 
-        verify(accountRepository).getByAccountId(moneyTransfer.getSourceAccount());
-        verify(accountRepository).getByAccountId(moneyTransfer.getTargetAccount());
-        verify(accountRepository, never()).updateAmount(moneyTransfer.getSourceAccount(), sourceAccount.getBalance() - moneyTransfer.getAmount());
-        verify(accountRepository, never()).updateAmount(moneyTransfer.getTargetAccount(), targetAccount.getBalance() + moneyTransfer.getAmount());
+        when(accountStore.debit("1", 100000L))
+                .thenReturn(Mono.just(1));
+
+        var thrown = catchThrowable(() -> underTest.settle(moneyTransfers).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.SOURCE_ACCOUNT_NOT_FOUND);
+
+        // The credit is taken back with a guarded debit
+        verify(accountStore).debit("1", 100000L);
+        verify(accountStore, never()).credit("1", -100000L);
+        verify(transferHistory, never()).recordAll(any(), any());
+        verifyNoInteractions(transactionalOperator, transferJournal);
+    }
+
+    @Test
+    void settle_undoesTheAppliedPositionsWhenTheHistoryFailsOutsideOfATransaction() {
+        var moneyTransfers = List.of(transfer("1", "2", 100000L));
+
+        when(accountStore.isTransactional()).thenReturn(false);
+
+        when(accountStore.debit("1", 100000L))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit("2", 100000L))
+                .thenReturn(Mono.just(1));
+
+        when(transferHistory.recordAll(any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("The database is gone")));
+
+        when(accountStore.debit("2", 100000L))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit("1", 100000L))
+                .thenReturn(Mono.just(1));
+
+        var thrown = catchThrowable(() -> underTest.settle(moneyTransfers).block());
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+        InOrder inOrder = inOrder(accountStore);
+        inOrder.verify(accountStore).debit("2", 100000L);
+        inOrder.verify(accountStore).credit("1", 100000L);
+        verifyNoInteractions(transferJournal, balanceUpdates);
+    }
+
+    @Test
+    void settle_waitsForTheTransfersOfItsAccounts() {
+        var moneyTransfers = List.of(transfer("1", "2", 100000L));
+        var transfer = Sinks.<Integer>empty();
+        var holder = accountLanes.execute("2", "3", transfer::asMono).subscribe();
+
+        when(accountStore.debit("1", 100000L))
+                .thenReturn(Mono.just(1));
+
+        when(accountStore.credit("2", 100000L))
+                .thenReturn(Mono.just(1));
+
+        StepVerifier.create(underTest.settle(moneyTransfers))
+                .then(() -> {
+                    verify(accountStore, never()).debit(anyString(), anyLong());
+                    transfer.tryEmitEmpty();
+                })
+                .expectNext(Settlement.of(1, 2))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+
+        holder.dispose();
+    }
+
+    @Test
+    void getTransfersByAccountId_nonExistingAccount() {
+        when(accountStore.get("nonexisting"))
+                .thenReturn(Mono.empty());
+
+        StepVerifier.create(underTest.getTransfersByAccountId("nonexisting", TransferCursor.FIRST, 10))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(MoneyTransferApplicationException.class)
+                        .hasFieldOrPropertyWithValue("errorCode", ErrorCode.ACCOUNT_NOT_FOUND))
+                .verify();
+
+        verify(transferHistory, never()).find(anyString(), any(), anyLong());
+    }
+
+    private static MoneyTransfer transfer(String sourceAccount, String targetAccount, long amount) {
+        return MoneyTransfer.builder()
+                .sourceAccount(sourceAccount)
+                .targetAccount(targetAccount)
+                .currency("EUR")
+                .amount(amount)
+                .build();
     }
-}
\ No newline at end of file
+}
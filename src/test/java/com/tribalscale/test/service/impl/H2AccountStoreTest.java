@@ -0,0 +1,50 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountStore;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.support.R2dbcRepositoryFactory;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+
+class H2AccountStoreTest extends AccountStoreContractTest {
+
+    private DatabaseClient databaseClient;
+    private H2AccountStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        var connectionFactory = ConnectionFactories.get("r2dbc:h2:mem:///accountstore?options=DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                .populate(connectionFactory)
+                .block();
+
+        databaseClient = DatabaseClient.create(connectionFactory);
+        databaseClient.sql("DELETE FROM ACCOUNT").then().block();
+
+        var accountRepository = new R2dbcRepositoryFactory(new R2dbcEntityTemplate(connectionFactory))
+                .getRepository(AccountRepository.class);
+        underTest = new H2AccountStore(accountRepository);
+    }
+
+    @Override
+    protected AccountStore store() {
+        return underTest;
+    }
+
+    @Override
+    protected void seed(Account... accounts) {
+        Flux.fromArray(accounts)
+                .concatMap(account -> databaseClient.sql("INSERT INTO ACCOUNT(ACCOUNT_ID, CURRENCY, BALANCE) VALUES (:accountId, :currency, :balance)")
+                        .bind("accountId", account.getAccountId())
+                        .bind("currency", account.getCurrency())
+                        .bind("balance", account.getBalance())
+                        .then())
+                .blockLast();
+    }
+}
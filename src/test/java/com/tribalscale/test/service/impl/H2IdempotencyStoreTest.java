@@ -0,0 +1,193 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.domain.TransferOutcome;
+import io.r2dbc.spi.ConnectionFactories;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+class H2IdempotencyStoreTest {
+
+    private DatabaseClient databaseClient;
+    private MoneyTransferProperties properties;
+    private H2IdempotencyStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        var connectionFactory = ConnectionFactories.get("r2dbc:h2:mem:///idempotency?options=DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql"))
+                .populate(connectionFactory)
+                .block();
+
+        databaseClient = DatabaseClient.create(connectionFactory);
+        properties = new MoneyTransferProperties();
+        underTest = new H2IdempotencyStore(databaseClient, properties);
+        underTest.afterPropertiesSet();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Test
+    void execute_replaysTheStoredOutcome() {
+        var transfers = new AtomicInteger();
+        var failed = TransferOutcome.failed(ErrorCode.SOURCE_ACCOUNT_NOT_FOUND.exception("nonexisting"));
+        var stored = failed.forRequest("hash");
+
+        StepVerifier.create(underTest.execute("key", "hash", () -> Mono.just(failed).doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectNext(stored)
+                .verifyComplete();
+
+        // A store sharing the database, e.g. after a restart, replays it as well
+        var otherInstance = new H2IdempotencyStore(databaseClient, properties);
+        StepVerifier.create(otherInstance.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded()).doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectNext(stored)
+                .verifyComplete();
+
+        assertThat(transfers).hasValue(1);
+    }
+
+    @Test
+    void execute_concurrentDuplicatesWaitForTheRunningTransfer() {
+        var transfers = new AtomicInteger();
+        var outcome = Sinks.<TransferOutcome>one();
+
+        var results = Flux.range(0, 3)
+                .flatMap(i -> underTest.execute("key", "hash", () -> outcome.asMono().doOnSubscribe(s -> transfers.incrementAndGet())))
+                .collectList()
+                .toFuture();
+
+        outcome.tryEmitValue(TransferOutcome.succeeded());
+
+        assertThat(results.join())
+                .hasSize(3)
+                .allMatch(TransferOutcome::isSucceeded);
+        assertThat(transfers).hasValue(1);
+    }
+
+    @Test
+    void execute_keyReusedForAnotherRequestRejected() {
+        var transfers = new AtomicInteger();
+        underTest.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded())).block();
+
+        StepVerifier.create(underTest.execute("key", "otherHash", () -> Mono.just(TransferOutcome.succeeded()).doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectErrorMatches(e -> e instanceof MoneyTransferApplicationException
+                        && ((MoneyTransferApplicationException) e).getErrorCode() == ErrorCode.IDEMPOTENCY_KEY_REUSED
+                        && ((MoneyTransferApplicationException) e).getStatusCode() == UNPROCESSABLE_ENTITY.value())
+                .verify();
+
+        assertThat(transfers).hasValue(0);
+    }
+
+    @Test
+    void execute_keyClaimedByAnotherInstanceInProgressUntilItHasAnOutcome() throws InterruptedException {
+        var transfers = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var outcome = Sinks.<TransferOutcome>one();
+        var otherInstance = new H2IdempotencyStore(databaseClient, properties);
+
+        var first = underTest.execute("key", "hash", () -> outcome.asMono().doOnSubscribe(s -> {
+                    transfers.incrementAndGet();
+                    started.countDown();
+                }))
+                .toFuture();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        StepVerifier.create(otherInstance.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded()).doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectErrorMatches(e -> e instanceof MoneyTransferApplicationException
+                        && ((MoneyTransferApplicationException) e).getErrorCode() == ErrorCode.IDEMPOTENCY_KEY_IN_PROGRESS
+                        && ((MoneyTransferApplicationException) e).getStatusCode() == CONFLICT.value())
+                .verify();
+
+        outcome.tryEmitValue(TransferOutcome.succeeded());
+        assertThat(first.join().isSucceeded()).isTrue();
+
+        StepVerifier.create(otherInstance.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded()).doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectNext(TransferOutcome.succeeded().forRequest("hash"))
+                .verifyComplete();
+        assertThat(transfers).hasValue(1);
+    }
+
+    @Test
+    void execute_transferFailingWithoutOutcomeReleasesTheKey() {
+        var transfers = new AtomicInteger();
+
+        StepVerifier.create(underTest.execute("key", "hash", () -> Mono.<TransferOutcome>error(new IllegalStateException("The database is gone"))
+                        .doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(underTest.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded()).doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectNext(TransferOutcome.succeeded().forRequest("hash"))
+                .verifyComplete();
+        assertThat(transfers).hasValue(2);
+    }
+
+    @Test
+    void execute_outcomeWhichCouldntBeSavedStillReturned() {
+        // The table is gone by the time the outcome is saved
+        var transfer = databaseClient.sql("DROP TABLE IDEMPOTENCY_KEY")
+                .then()
+                .thenReturn(TransferOutcome.succeeded());
+
+        StepVerifier.create(underTest.execute("key", "hash", () -> transfer))
+                .expectNext(TransferOutcome.succeeded().forRequest("hash"))
+                .verifyComplete();
+    }
+
+    @Test
+    void execute_expiredKeyRunsAgain() throws InterruptedException {
+        properties.getIdempotency().setTimeToLive(Duration.ofMillis(1));
+        var expiring = new H2IdempotencyStore(databaseClient, properties);
+        var transfers = new AtomicInteger();
+
+        expiring.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded()).doOnSubscribe(s -> transfers.incrementAndGet())).block();
+        Thread.sleep(5);
+
+        StepVerifier.create(expiring.execute("key", "otherHash", () -> Mono.just(TransferOutcome.succeeded()).doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectNext(TransferOutcome.succeeded().forRequest("otherHash"))
+                .verifyComplete();
+        assertThat(transfers).hasValue(2);
+    }
+
+    @Test
+    void purge_keepsTheNewestKeysUpToTheMaximumSize() {
+        properties.getIdempotency().setMaximumSize(2);
+        var bounded = new H2IdempotencyStore(databaseClient, properties);
+
+        Flux.range(0, 5)
+                .concatMap(i -> bounded.execute("key" + i, "hash", () -> Mono.just(TransferOutcome.succeeded()))
+                        .delayElement(Duration.ofMillis(5)))
+                .blockLast();
+
+        bounded.purge().block();
+
+        assertThat(databaseClient.sql("SELECT IDEMPOTENCY_KEY FROM IDEMPOTENCY_KEY ORDER BY CREATED_AT")
+                .map((row, metadata) -> row.get("IDEMPOTENCY_KEY", String.class))
+                .all()
+                .collectList()
+                .block())
+                .containsExactly("key3", "key4");
+    }
+}
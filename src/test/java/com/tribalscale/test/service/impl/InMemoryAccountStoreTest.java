@@ -0,0 +1,42 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountStore;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class InMemoryAccountStoreTest extends AccountStoreContractTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+    private final InMemoryAccountStore underTest = new InMemoryAccountStore(new AccountRecovery(accountRepository, Optional.empty(), Optional.empty()));
+
+    @Override
+    protected AccountStore store() {
+        return underTest;
+    }
+
+    @Override
+    protected void seed(Account... accounts) {
+        for (Account account : accounts) {
+            underTest.put(account);
+        }
+    }
+
+    @Test
+    void afterSingletonsInstantiated_loadsTheAccountsOfTheDatabase() {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+
+        underTest.afterSingletonsInstantiated();
+
+        assertThat(underTest.scan().collectList().block())
+                .containsExactlyInAnyOrder(account("1", 1000L), account("2", 0L));
+    }
+}
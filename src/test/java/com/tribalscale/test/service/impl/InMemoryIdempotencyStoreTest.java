@@ -0,0 +1,95 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.domain.TransferOutcome;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+
+class InMemoryIdempotencyStoreTest {
+
+    private final InMemoryIdempotencyStore underTest = new InMemoryIdempotencyStore(new MoneyTransferProperties());
+
+    @Test
+    void execute_replaysTheStoredOutcome() {
+        var transfers = new AtomicInteger();
+        var failed = TransferOutcome.builder()
+                .statusCode(BAD_REQUEST.value())
+                .message("Insufficient funds at Source account with id: 1")
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(underTest.execute("key", "hash", () -> Mono.fromSupplier(() -> {
+                        transfers.incrementAndGet();
+                        return failed;
+                    })))
+                    .expectNext(failed.forRequest("hash"))
+                    .verifyComplete();
+        }
+
+        assertThat(transfers).hasValue(1);
+    }
+
+    @Test
+    void execute_concurrentDuplicatesWaitForTheRunningTransfer() {
+        var transfers = new AtomicInteger();
+        var outcome = Sinks.<TransferOutcome>one();
+
+        List<Mono<TransferOutcome>> duplicates = List.of(
+                underTest.execute("key", "hash", () -> outcome.asMono().doOnSubscribe(s -> transfers.incrementAndGet())),
+                underTest.execute("key", "hash", () -> outcome.asMono().doOnSubscribe(s -> transfers.incrementAndGet())),
+                underTest.execute("key", "hash", () -> outcome.asMono().doOnSubscribe(s -> transfers.incrementAndGet())));
+
+        var results = Flux.merge(duplicates)
+                .collectList()
+                .toFuture();
+
+        outcome.tryEmitValue(TransferOutcome.succeeded());
+
+        assertThat(results.join())
+                .hasSize(3)
+                .allMatch(TransferOutcome::isSucceeded);
+        assertThat(transfers).hasValue(1);
+    }
+
+    @Test
+    void execute_errorsAreNotStored() {
+        var transfers = new AtomicInteger();
+
+        StepVerifier.create(underTest.execute("key", "hash", () -> Mono.<TransferOutcome>error(new IllegalStateException("Connection refused"))
+                        .doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(underTest.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded())
+                        .doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectNext(TransferOutcome.succeeded().forRequest("hash"))
+                .verifyComplete();
+
+        assertThat(transfers).hasValue(2);
+    }
+
+    @Test
+    void execute_keyReusedForAnotherRequestRejected() {
+        var transfers = new AtomicInteger();
+        underTest.execute("key", "hash", () -> Mono.just(TransferOutcome.succeeded())).block();
+
+        StepVerifier.create(underTest.execute("key", "otherHash", () -> Mono.just(TransferOutcome.succeeded())
+                        .doOnSubscribe(s -> transfers.incrementAndGet())))
+                .expectErrorMatches(e -> e instanceof MoneyTransferApplicationException
+                        && ((MoneyTransferApplicationException) e).getErrorCode() == ErrorCode.IDEMPOTENCY_KEY_REUSED)
+                .verify();
+
+        assertThat(transfers).hasValue(0);
+    }
+}
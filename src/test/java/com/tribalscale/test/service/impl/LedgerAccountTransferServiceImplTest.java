@@ -0,0 +1,342 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.balance.BalanceUpdates;
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.domain.ErrorCode;
+import com.tribalscale.test.domain.MoneyTransfer;
+import com.tribalscale.test.domain.MoneyTransferApplicationException;
+import com.tribalscale.test.domain.TransferLegs;
+import com.tribalscale.test.fx.FxRateTable;
+import com.tribalscale.test.history.TransferHistory;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.journal.TransferJournal;
+import com.tribalscale.test.repository.AccountRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_IMPLEMENTED;
+
+@ExtendWith(MockitoExtension.class)
+class LedgerAccountTransferServiceImplTest {
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private TransferJournal transferJournal;
+
+    @Mock
+    private TransferHistory transferHistory;
+
+    @TempDir
+    Path directory;
+
+    private Path ratesFile;
+    private FxRateTable fxRateTable;
+    private LedgerAccountTransferServiceImpl underTest;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ratesFile = directory.resolve("rates.properties");
+
+        var properties = new MoneyTransferProperties();
+        properties.getLedger().setShards(4);
+
+        var sourceAccount = Account.builder()
+                .accountId("1")
+                .balance(300000L)
+                .currency("EUR")
+                .build();
+
+        var targetAccount = Account.builder()
+                .accountId("2")
+                .balance(100000L)
+                .currency("EUR")
+                .build();
+
+        var dollarAccount = Account.builder()
+                .accountId("3")
+                .balance(0L)
+                .currency("USD")
+                .build();
+
+        when(accountRepository.findAll())
+                .thenReturn(Flux.just(sourceAccount, targetAccount, dollarAccount));
+
+        Files.writeString(ratesFile, "base=EUR\nUSD=1.25\n");
+        fxRateTable = new FxRateTable(ratesFile, Duration.ZERO);
+
+        lenient().when(transferHistory.record(any(), any()))
+                .thenReturn(Mono.empty());
+
+        underTest = new LedgerAccountTransferServiceImpl(new AccountRecovery(accountRepository, Optional.empty(), Optional.empty()),
+                transferJournal, transferHistory, new BalanceUpdates(Duration.ZERO, Schedulers.immediate(), new SimpleMeterRegistry()),
+                fxRateTable, properties);
+        underTest.afterSingletonsInstantiated();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        underTest.destroy();
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        Mono<Integer> result = underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer);
+
+        StepVerifier.create(result)
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 100000L);
+        assertThat(underTest.getAccountDetailsByAccountId("2").block())
+                .hasFieldOrPropertyWithValue("balance", 300000L);
+        verify(transferJournal).append(moneyTransfer, TransferLegs.unconverted(moneyTransfer));
+        verify(transferHistory).record(moneyTransfer, TransferLegs.unconverted(moneyTransfer));
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_journalFailureStillAcknowledgesTheAppliedTransfer() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        when(transferJournal.append(moneyTransfer, TransferLegs.unconverted(moneyTransfer)))
+                .thenThrow(new UncheckedIOException(new IOException("No space left on device")));
+
+        StepVerifier.create(underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 100000L);
+        verify(transferHistory).record(moneyTransfer, TransferLegs.unconverted(moneyTransfer));
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_convertsToTheTargetAccountCurrency() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("3")
+                .currency("EUR")
+                .amount(20000L)
+                .build();
+
+        StepVerifier.create(underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer))
+                .expectNext(1)
+                .verifyComplete();
+
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 280000L);
+        assertThat(underTest.getAccountDetailsByAccountId("3").block())
+                .hasFieldOrPropertyWithValue("balance", 25000L);
+        verify(transferJournal).append(moneyTransfer, TransferLegs.of(20000L, "EUR", 25000L, "USD"));
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_usesTheReloadedRates() throws IOException {
+        Files.writeString(ratesFile, "base=EUR\nUSD=2\n");
+        Files.setLastModifiedTime(ratesFile, FileTime.fromMillis(Files.getLastModifiedTime(ratesFile).toMillis() + 1000));
+        assertThat(fxRateTable.reload()).isTrue();
+
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("3")
+                .currency("EUR")
+                .amount(1000L)
+                .build();
+
+        underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block();
+
+        assertThat(underTest.getAccountDetailsByAccountId("3").block())
+                .hasFieldOrPropertyWithValue("balance", 2000L);
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccount_noExchangeRate() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("GBP")
+                .amount(20000L)
+                .build();
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("errorCode", ErrorCode.CURRENCY_NOT_CONVERTIBLE);
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 300000L);
+    }
+
+    @Test
+    void transferMoneyFromAccountToSourceAccount_nonExistingSourceAccount() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("nonexisting")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value());
+        assertThat(underTest.getAccountDetailsByAccountId("2").block())
+                .hasFieldOrPropertyWithValue("balance", 100000L);
+    }
+
+    @Test
+    void transferMoneyFromAccountToTargetAccount() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("nonexisting")
+                .currency("EUR")
+                .amount(200000L)
+                .build();
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value());
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 300000L);
+    }
+
+    @Test
+    void transferMoneyFromAccountToAnotherAccountNoEnoughMoneySource() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(900000L)
+                .build();
+
+        var thrown = catchThrowable(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("statusCode", BAD_REQUEST.value());
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 300000L);
+        assertThat(underTest.getAccountDetailsByAccountId("2").block())
+                .hasFieldOrPropertyWithValue("balance", 100000L);
+    }
+
+    @Test
+    void transferMoneyConcurrentlyOnHotAccounts() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(100L)
+                .build();
+
+        Flux.range(0, 3000)
+                .flatMap(i -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer)
+                        .onErrorResume(MoneyTransferApplicationException.class, e -> Mono.just(0)), 256)
+                .blockLast();
+
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 0L);
+        assertThat(underTest.getAccountDetailsByAccountId("2").block())
+                .hasFieldOrPropertyWithValue("balance", 400000L);
+    }
+
+    @Test
+    void settle_notImplemented() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(20000L)
+                .build();
+
+        var thrown = catchThrowable(() -> underTest.settle(List.of(moneyTransfer)).block());
+
+        assertThat(thrown)
+                .isInstanceOf(MoneyTransferApplicationException.class)
+                .hasFieldOrPropertyWithValue("statusCode", NOT_IMPLEMENTED.value());
+        assertThat(underTest.getAccountDetailsByAccountId("1").block())
+                .hasFieldOrPropertyWithValue("balance", 300000L);
+    }
+
+    @Test
+    void getAccountDetailsByAccountIds() {
+        StepVerifier.create(underTest.getAccountDetailsByAccountIds(List.of("2", "nonexisting", "1")))
+                .assertNext(account -> assertThat(account.getAccountId()).isEqualTo("2"))
+                .assertNext(account -> assertThat(account.getAccountId()).isEqualTo("1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAccountDetailsByAccountId_nonExistingAccount() {
+        StepVerifier.create(underTest.getAccountDetailsByAccountId("nonexisting"))
+                .expectErrorMatches(e -> e instanceof MoneyTransferApplicationException
+                        && ((MoneyTransferApplicationException) e).getStatusCode() == NOT_FOUND.value())
+                .verify();
+    }
+
+    @Test
+    void getAccountBalanceUpdates_currentBalanceThenEveryTransfer() {
+        var moneyTransfer = MoneyTransfer.builder()
+                .sourceAccount("1")
+                .targetAccount("2")
+                .currency("EUR")
+                .amount(50000L)
+                .build();
+
+        StepVerifier.create(underTest.getAccountBalanceUpdates("2").map(Account::getBalance))
+                .expectNext(100000L)
+                .then(() -> underTest.transferMoneyFromAccountToAnotherAccount(moneyTransfer).block())
+                .expectNext(150000L)
+                .thenCancel()
+                .verify();
+
+        StepVerifier.create(underTest.getAccountBalanceUpdates("nonexisting"))
+                .verifyErrorSatisfies(e -> assertThat(e).hasFieldOrPropertyWithValue("statusCode", NOT_FOUND.value()));
+    }
+}
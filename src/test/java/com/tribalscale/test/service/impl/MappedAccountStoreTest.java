@@ -0,0 +1,85 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountStore;
+import com.tribalscale.test.table.MappedAccountTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MappedAccountStoreTest extends AccountStoreContractTest {
+
+    @TempDir
+    Path directory;
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+
+    private MappedAccountStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        underTest = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        underTest.destroy();
+    }
+
+    @Override
+    protected AccountStore store() {
+        return underTest;
+    }
+
+    @Override
+    protected void seed(Account... accounts) {
+        for (Account account : accounts) {
+            underTest.put(account);
+        }
+    }
+
+    @Test
+    void afterSingletonsInstantiated_loadsTheDatabaseOnlyIntoANewTable() {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+        underTest.afterSingletonsInstantiated();
+        underTest.debit("1", 300L).block();
+        underTest.destroy();
+
+        underTest = open();
+        underTest.afterSingletonsInstantiated();
+
+        StepVerifier.create(underTest.get("1"))
+                .expectNext(account("1", 700L))
+                .verifyComplete();
+        verify(accountRepository).findAll();
+    }
+
+    @Test
+    void afterSingletonsInstantiated_loadsAgainATableWhoseLoadWasInterrupted() {
+        underTest.put(account("1", 1000L));
+        underTest.destroy();
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+
+        underTest = open();
+        underTest.afterSingletonsInstantiated();
+
+        StepVerifier.create(underTest.get("2"))
+                .expectNext(account("2", 0L))
+                .verifyComplete();
+        verify(accountRepository).findAll();
+    }
+
+    private MappedAccountStore open() {
+        return new MappedAccountStore(accountRepository, new MappedAccountTable(directory.resolve("accounts.table"), 16));
+    }
+}
@@ -0,0 +1,82 @@
+package com.tribalscale.test.service.impl;
+
+import com.tribalscale.test.config.MoneyTransferProperties;
+import com.tribalscale.test.domain.Account;
+import com.tribalscale.test.journal.AccountRecovery;
+import com.tribalscale.test.repository.AccountRepository;
+import com.tribalscale.test.service.AccountStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OffHeapAccountStoreTest extends AccountStoreContractTest {
+
+    private final AccountRepository accountRepository = mock(AccountRepository.class);
+
+    private OffHeapAccountStore underTest;
+
+    @BeforeEach
+    void setUp() {
+        var properties = new MoneyTransferProperties();
+        properties.getAccounts().setOffHeapCapacity(4);
+        underTest = new OffHeapAccountStore(new AccountRecovery(accountRepository, Optional.empty(), Optional.empty()), properties);
+    }
+
+    @Override
+    protected AccountStore store() {
+        return underTest;
+    }
+
+    @Override
+    protected void seed(Account... accounts) {
+        for (Account account : accounts) {
+            underTest.put(account);
+        }
+    }
+
+    @Test
+    void afterSingletonsInstantiated_loadsTheAccountsOfTheDatabase() {
+        when(accountRepository.findAll()).thenReturn(Flux.just(account("1", 1000L), account("2", 0L)));
+
+        underTest.afterSingletonsInstantiated();
+
+        assertThat(underTest.scan().collectList().block())
+                .containsExactlyInAnyOrder(account("1", 1000L), account("2", 0L));
+    }
+
+    @Test
+    void put_replacesTheAccountInItsRecord() {
+        seed(account("1", 1000L), account("1", 50L).withCurrency("USD"));
+
+        StepVerifier.create(underTest.get("1"))
+                .expectNext(account("1", 50L).withCurrency("USD"))
+                .verifyComplete();
+    }
+
+    @Test
+    void put_rejectsAccountsOverTheCapacity() {
+        seed(account("1", 0L), account("2", 0L), account("3", 0L), account("4", 0L));
+
+        Throwable thrown = catchThrowable(() -> underTest.put(account("5", 0L)));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+        assertThat(underTest.get("5").block()).isNull();
+        underTest.put(account("4", 10L));
+        assertThat(underTest.get("4").block()).isEqualTo(account("4", 10L));
+    }
+
+    @Test
+    void put_rejectsCurrenciesNotFittingARecord() {
+        Throwable thrown = catchThrowable(() -> underTest.put(account("1", 0L).withCurrency("TOOLONGCODE")));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,60 @@
+package com.tribalscale.test.settlement;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NetPositionsTest {
+
+    @Test
+    void add_netsTheAmountsOfEachAccount() {
+        var underTest = new NetPositions();
+
+        underTest.add("1", -100000L);
+        underTest.add("2", 100000L);
+        underTest.add("2", -30000L);
+        underTest.add("1", 30000L);
+        underTest.add("3", 0L);
+
+        assertThat(underTest.get("1")).isEqualTo(-70000L);
+        assertThat(underTest.get("2")).isEqualTo(70000L);
+        assertThat(underTest.get("3")).isZero();
+        assertThat(underTest.get("nonexisting")).isZero();
+        assertThat(underTest.size()).isEqualTo(3);
+    }
+
+    @Test
+    void add_growsPastItsExpectedAccounts() {
+        var underTest = new NetPositions(1);
+
+        for (int i = 0; i < 1000; i++) {
+            underTest.add(Integer.toString(i), i);
+            underTest.add(Integer.toString(i), i);
+        }
+
+        assertThat(underTest.size()).isEqualTo(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(underTest.get(Integer.toString(i))).isEqualTo(2L * i);
+        }
+    }
+
+    @Test
+    void add_overflowingPositionRejected() {
+        var underTest = new NetPositions();
+        underTest.add("1", Long.MAX_VALUE);
+
+        assertThatThrownBy(() -> underTest.add("1", 1L)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void sortedAccountIds_inLockOrder() {
+        var underTest = new NetPositions();
+        underTest.add("b", 1L);
+        underTest.add("10", -1L);
+        underTest.add("a", 0L);
+        underTest.add("2", 0L);
+
+        assertThat(underTest.sortedAccountIds()).containsExactly("10", "2", "a", "b");
+    }
+}
@@ -0,0 +1,166 @@
+package com.tribalscale.test.table;
+
+import com.tribalscale.test.domain.Account;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class MappedAccountTableTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedAccountTable underTest;
+
+    @AfterEach
+    void tearDown() {
+        if (underTest != null) {
+            underTest.close();
+        }
+    }
+
+    @Test
+    void putAndFindUntilFull() {
+        underTest = open(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            underTest.put(account("account" + i, i));
+        }
+
+        assertThat(underTest.size()).isEqualTo(1000);
+        for (int i = 0; i < 1000; i++) {
+            assertThat(underTest.get(underTest.find("account" + i))).isEqualTo(account("account" + i, i));
+        }
+        assertThat(underTest.find("account1000")).isNegative();
+        assertThat(underTest.get(-1)).isNull();
+
+        Throwable thrown = catchThrowable(() -> underTest.put(account("account1000", 0L)));
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void putReplacesTheCurrencyAndBalance() {
+        underTest = open(4);
+        underTest.put(account("1", 1000L));
+
+        underTest.put(account("1", 50L).withCurrency("USD"));
+
+        assertThat(underTest.size()).isOne();
+        assertThat(underTest.get(underTest.find("1"))).isEqualTo(account("1", 50L).withCurrency("USD"));
+    }
+
+    @Test
+    void putRejectsWhatDoesntFitARecord() {
+        underTest = open(4);
+
+        assertThat(catchThrowable(() -> underTest.put(account("ü".repeat(56), 0L)))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> underTest.put(account("1", 0L).withCurrency("EURO")))).isInstanceOf(IllegalArgumentException.class);
+        assertThat(underTest.size()).isZero();
+    }
+
+    @Test
+    void findComparesNonAsciiIds() {
+        underTest = open(4);
+        underTest.put(account("Ünïcode", 1L));
+        underTest.put(account("Unicode", 2L));
+
+        assertThat(underTest.get(underTest.find("Ünïcode")).getBalance()).isEqualTo(1L);
+        assertThat(underTest.get(underTest.find("Unicode")).getBalance()).isEqualTo(2L);
+        assertThat(underTest.find("Ünïcod")).isNegative();
+    }
+
+    @Test
+    void debitAndCredit() {
+        underTest = open(4);
+        underTest.put(account("1", 1000L));
+        int record = underTest.find("1");
+
+        assertThat(underTest.debit(record, 1000L)).isTrue();
+        assertThat(underTest.debit(record, 1L)).isFalse();
+        underTest.credit(record, 300L);
+
+        assertThat(underTest.get(record).getBalance()).isEqualTo(300L);
+    }
+
+    @Test
+    void reopenKeepsTheAccountsAndTheirCapacity() {
+        underTest = open(4);
+        underTest.put(account("1", 1000L));
+        underTest.put(account("2", 0L));
+        underTest.debit(underTest.find("1"), 400L);
+        underTest.credit(underTest.find("2"), 400L);
+        underTest.close();
+
+        underTest = open(100);
+
+        assertThat(underTest.size()).isEqualTo(2);
+        assertThat(underTest.capacity()).isEqualTo(4);
+        assertThat(underTest.get(underTest.find("1"))).isEqualTo(account("1", 600L));
+        assertThat(underTest.get(underTest.find("2"))).isEqualTo(account("2", 400L));
+    }
+
+    @Test
+    void markLoadedSurvivesAReopen() {
+        underTest = open(4);
+        underTest.put(account("1", 1000L));
+        assertThat(underTest.isLoaded()).isFalse();
+        underTest.markLoaded();
+        underTest.close();
+
+        underTest = open(4);
+
+        assertThat(underTest.isLoaded()).isTrue();
+    }
+
+    @Test
+    void reloadAfterAnEntryPublishedWithoutTheSizeKeepsEveryAccount() throws Exception {
+        underTest = open(4);
+        underTest.put(account("1", 1000L));
+        underTest.close();
+        // As if the process stopped between publishing the index entry and the size
+        try (var channel = FileChannel.open(directory.resolve("accounts.table"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).order(AccountTableFormat.BYTE_ORDER).putInt(0, 0),
+                    AccountTableFormat.SIZE_OFFSET);
+        }
+
+        underTest = open(4);
+        assertThat(underTest.find("1")).isNegative();
+        underTest.put(account("1", 1000L));
+        underTest.put(account("2", 0L));
+
+        assertThat(underTest.size()).isEqualTo(2);
+        assertThat(underTest.get(underTest.find("1"))).isEqualTo(account("1", 1000L));
+        assertThat(underTest.get(underTest.find("2"))).isEqualTo(account("2", 0L));
+    }
+
+    @Test
+    void openRejectsAFileWhichIsntATable() throws Exception {
+        Files.writeString(directory.resolve("accounts.table"), "not an account table, as long as a table header ".repeat(2));
+
+        Throwable thrown = catchThrowable(() -> open(4));
+
+        assertThat(thrown).isInstanceOf(UncheckedIOException.class);
+    }
+
+    private MappedAccountTable open(int capacity) {
+        return new MappedAccountTable(directory.resolve("accounts.table"), capacity);
+    }
+
+    private static Account account(String accountId, long balance) {
+        return Account.builder()
+                .accountId(accountId)
+                .currency("EUR")
+                .balance(balance)
+                .build();
+    }
+}